@@ -64,7 +64,7 @@ public final class ClientEventHandlers {
         return Button.builder(
                 Component.translatable("gui.scs.update"),
                 button -> {
-                    String updateBaseUrl = ServerMetadata.getMetadata(server.ip);
+                    String updateBaseUrl = ServerMetadata.getUpdateUrl(server.ip);
                     LOGGER.info("Update button clicked for server: {}", updateBaseUrl);
                     Minecraft.getInstance().setScreen(new UpdateActionScreen(returnScreen, server.ip, updateBaseUrl));
                 }
@@ -22,6 +22,9 @@ public class DownloadProgressScreen extends Screen {
     private volatile int progress = 0;
     private volatile String downloadSpeed = "0 KB/s";
     private volatile String estimatedTimeRemaining = "";
+    private volatile boolean isQueued = false;
+    private volatile int queuePosition = -1;
+    private volatile int queueRetrySeconds = 0;
     private Button cancelButton;
     private volatile boolean isProcessing = false;
     private volatile String processingTitle = "";
@@ -88,6 +91,9 @@ public class DownloadProgressScreen extends Screen {
         this.progress = 0;
         this.downloadSpeed = "0 KB/s";
         this.estimatedTimeRemaining = "";
+        this.isQueued = false;
+        this.queuePosition = -1;
+        this.queueRetrySeconds = 0;
         this.isProcessing = false;
         this.processingTitle = "";
         this.processingDetail = "";
@@ -119,11 +125,24 @@ public class DownloadProgressScreen extends Screen {
      * @param estimatedTimeRemaining Estimated time remaining (optional).
      */
     public void updateProgress(int progress, String downloadSpeed, String estimatedTimeRemaining) {
+        this.isQueued = false;
         this.progress = Math.min(100, Math.max(0, progress));
         this.downloadSpeed = downloadSpeed;
         this.estimatedTimeRemaining = estimatedTimeRemaining;
     }
 
+    /**
+     * Shows that the server queued this download.
+     *
+     * @param position     Position in the server's download queue, or -1 if unknown.
+     * @param retrySeconds Seconds until the next attempt.
+     */
+    public void updateQueue(int position, int retrySeconds) {
+        this.isQueued = true;
+        this.queuePosition = position;
+        this.queueRetrySeconds = retrySeconds;
+    }
+
     /**
      * Call this when extraction starts after download finishes.
      * Shows extraction info including last download speed.
@@ -199,8 +218,16 @@ public class DownloadProgressScreen extends Screen {
         int barX = (this.width - barWidth) / 2;
         int barY = this.height / 2;
 
-        guiGraphics.drawCenteredString(this.font, downloadSpeed, this.width / 2, barY - 30, 0xFFFFFF);
-        if (!estimatedTimeRemaining.isEmpty()) {
+        if (isQueued) {
+            Component queueLine = queuePosition > 0
+                    ? Component.translatable("screen.scs.queue_position", queuePosition)
+                    : Component.translatable("screen.scs.queue_waiting");
+            guiGraphics.drawCenteredString(this.font, queueLine, this.width / 2, barY - 55, 0xFFFFFF);
+            guiGraphics.drawCenteredString(this.font, Component.translatable("screen.scs.queue_retry", queueRetrySeconds), this.width / 2, barY - 30, 0xFFFFFF);
+        } else {
+            guiGraphics.drawCenteredString(this.font, downloadSpeed, this.width / 2, barY - 30, 0xFFFFFF);
+        }
+        if (!isQueued && !estimatedTimeRemaining.isEmpty()) {
             guiGraphics.drawCenteredString(this.font, Component.translatable("screen.scs.eta", estimatedTimeRemaining), this.width / 2, barY - 55, 0xFFFFFF);
         }
 
@@ -3,6 +3,7 @@ package com.scs.client;
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
 import com.scs.core.Config;
+import com.scs.core.HostedPacks;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -15,15 +16,23 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
+/**
+ * Per-server client settings: the download URL of each server entry, in
+ * {@code SCS/server_metadata.json}, and the hosted pack it uses, in {@code SCS/server_packs.json}.
+ * A server with a pack downloads from {@code <url>/packs/<pack>/} instead of the root of its file server.
+ */
 public class ServerMetadata {
     private static final File METADATA_FILE = new File("SCS/server_metadata.json");
+    private static final File PACKS_FILE = new File("SCS/server_packs.json");
     private static final Gson GSON = new Gson();
     private static final Logger LOGGER = LoggerFactory.getLogger(ServerMetadata.class);
     private static final Type METADATA_TYPE = new TypeToken<Map<String, String>>() {}.getType();
     private static Map<String, String> serverMetadata = new HashMap<>();
+    private static Map<String, String> serverPacks = new HashMap<>();
 
     static {
         loadMetadata();
+        loadPacks();
     }
 
     private static void loadMetadata() {
@@ -42,6 +51,36 @@ public class ServerMetadata {
         }
     }
 
+    private static void loadPacks() {
+        if (!PACKS_FILE.exists()) {
+            return;
+        }
+        try (FileReader reader = new FileReader(PACKS_FILE)) {
+            Map<String, String> loadedData = GSON.fromJson(reader, METADATA_TYPE);
+            if (loadedData != null) {
+                serverPacks = new HashMap<>(loadedData);
+            }
+        } catch (Exception e) {
+            LOGGER.error("Failed to load server packs.", e);
+        }
+    }
+
+    private static void savePacks() {
+        try {
+            File parentDir = PACKS_FILE.getParentFile();
+            if (parentDir != null && !parentDir.exists() && !parentDir.mkdirs()) {
+                LOGGER.error("Failed to create metadata directory: {}", parentDir.getAbsolutePath());
+                return;
+            }
+
+            try (FileWriter writer = new FileWriter(PACKS_FILE)) {
+                GSON.toJson(serverPacks, writer);
+            }
+        } catch (Exception e) {
+            LOGGER.error("Failed to save server packs.", e);
+        }
+    }
+
     public static void saveMetadata() {
         try {
             File parentDir = METADATA_FILE.getParentFile();
@@ -108,6 +147,58 @@ public class ServerMetadata {
         }
     }
 
+    /**
+     * The hosted pack this server entry downloads, or an empty string for the file server's own packs.
+     */
+    public static String getPack(String serverIP) {
+        return serverPacks.getOrDefault(serverIP, "");
+    }
+
+    /**
+     * Maps the server entry to a hosted pack; a blank name goes back to the file server's own packs.
+     */
+    public static void setPack(String serverIP, String pack) {
+        if (!isValidServerIP(serverIP)) {
+            return;
+        }
+        String name = pack == null ? "" : pack.trim();
+        if (name.isEmpty()) {
+            if (serverPacks.remove(serverIP) != null) {
+                savePacks();
+            }
+            return;
+        }
+        if (!HostedPacks.isValidName(name)) {
+            LOGGER.warn("Invalid pack name '{}'. Skipping update.", name);
+            return;
+        }
+        if (!name.equals(serverPacks.put(serverIP, name))) {
+            savePacks();
+            LOGGER.info("Pack for server {} set to {}", serverIP, name);
+        }
+    }
+
+    /**
+     * The URL updates are downloaded from: the server's download URL, or the directory of its
+     * hosted pack below it. A download URL naming a zip ({@code host:port/mods.zip}) stands for
+     * its directory, as it does for the default pack, so the pack directory goes next to the zip
+     * rather than below it. Objects fetched for one pack are cached by hash, so a file shared by
+     * several packs is downloaded once whichever server it was first needed for.
+     */
+    public static String getUpdateUrl(String serverIP) {
+        String base = getMetadata(serverIP);
+        String pack = getPack(serverIP);
+        if (base.isBlank() || pack.isEmpty()) {
+            return base;
+        }
+        String trimmed = base.endsWith("/") ? base.substring(0, base.length() - 1) : base;
+        int lastSlash = trimmed.lastIndexOf('/');
+        if (lastSlash > trimmed.indexOf("://") + 2 && trimmed.substring(lastSlash + 1).endsWith(".zip")) {
+            trimmed = trimmed.substring(0, lastSlash);
+        }
+        return trimmed + HostedPacks.URL_PREFIX + pack;
+    }
+
     private static boolean isValidServerIP(String serverIP) {
         return serverIP != null && !serverIP.isBlank();
     }
@@ -1,9 +1,13 @@
 package com.scs.client;
 
+import com.scs.client.update.ModGroupChoices;
 import com.scs.client.update.UpdateCoordinator;
+import com.scs.core.ModGroups;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.gui.GuiGraphics;
 import net.minecraft.client.gui.components.Button;
+import net.minecraft.client.gui.components.CycleButton;
+import net.minecraft.client.gui.components.Tooltip;
 import net.minecraft.client.gui.screens.ConfirmScreen;
 import net.minecraft.client.gui.screens.Screen;
 import net.minecraft.network.chat.Component;
@@ -13,16 +17,27 @@ public final class UpdateActionScreen extends Screen {
     private static final int BUTTON_WIDTH = 100;
     private static final int BUTTON_HEIGHT = 20;
     private static final int BUTTON_GAP = 8;
+    private static final int ROW_GAP = 4;
 
     private final Screen returnScreen;
     private final String serverAddress;
     private final String updateBaseUrl;
+    private final ModGroupChoices groupChoices;
+    private ModGroups groups = ModGroups.NONE;
 
     public UpdateActionScreen(Screen returnScreen, String serverAddress, String updateBaseUrl) {
         super(Component.translatable("screen.scs.update_options.title"));
         this.returnScreen = returnScreen;
         this.serverAddress = serverAddress == null ? "" : serverAddress;
         this.updateBaseUrl = updateBaseUrl;
+        this.groupChoices = UpdateCoordinator.modGroupChoices(this.serverAddress, updateBaseUrl);
+        // The optional groups are listed once the server's manifest arrives.
+        UpdateCoordinator.fetchModGroups(updateBaseUrl).thenAccept(fetched -> Minecraft.getInstance().execute(() -> {
+            groups = fetched;
+            if (!fetched.isEmpty() && this.minecraft != null && this.minecraft.screen == this) {
+                rebuildWidgets();
+            }
+        }));
     }
 
     @Override
@@ -63,6 +78,28 @@ public final class UpdateActionScreen extends Screen {
                     minecraft.setScreen(confirmScreen);
                 }
         ).bounds(leftX, centerY + BUTTON_HEIGHT + 6, totalWidth, BUTTON_HEIGHT).build());
+
+        // Optional mod groups, two per row; each choice is saved for this server as it is made.
+        int groupsTop = groupsTop();
+        for (int i = 0; i < groups.groups().size(); i++) {
+            ModGroups.Group group = groups.groups().get(i);
+            CycleButton<Boolean> toggle = CycleButton.onOffBuilder(groupChoices.isSelected(group)).create(
+                    leftX + (i % 2) * (BUTTON_WIDTH + BUTTON_GAP),
+                    groupsTop + (i / 2) * (BUTTON_HEIGHT + ROW_GAP),
+                    BUTTON_WIDTH,
+                    BUTTON_HEIGHT,
+                    Component.literal(group.name()),
+                    (button, selected) -> groupChoices.select(group, selected)
+            );
+            if (!group.description().isBlank()) {
+                toggle.setTooltip(Tooltip.create(Component.literal(group.description())));
+            }
+            this.addRenderableWidget(toggle);
+        }
+    }
+
+    private int groupsTop() {
+        return (this.height / 2) + (BUTTON_HEIGHT + 6) * 2 + 14;
     }
 
     @Override
@@ -80,5 +117,8 @@ public final class UpdateActionScreen extends Screen {
         guiGraphics.drawCenteredString(this.font, Component.translatable("screen.scs.update_this_server"), this.width / 2, (this.height / 2) - 40, 0xFFFFFF);
         String serverLabel = serverAddress.isBlank() ? "" : serverAddress;
         guiGraphics.drawCenteredString(this.font, Component.translatable("screen.scs.server_label", serverLabel), this.width / 2, (this.height / 2) - 26, 0xA0A0A0);
+        if (!groups.isEmpty()) {
+            guiGraphics.drawCenteredString(this.font, Component.translatable("screen.scs.optional_mods"), this.width / 2, groupsTop() - 12, 0xA0A0A0);
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,235 @@
+package com.scs.client.update;
+
+import com.scs.core.ChunkIndex;
+import com.scs.core.ContentChunker;
+import com.scs.core.PackManifest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Client-side chunk cache under {@code SCS/chunks}, shared by every server. A large file is rebuilt
+ * from its server-side {@link ChunkIndex}: chunks already cached or present in an older local version
+ * of the file are reused and only the others are downloaded, so shaded libraries and unchanged parts
+ * of a jar are never fetched twice.
+ */
+final class ChunkCache {
+
+    static final Path DEFAULT_ROOT = Path.of("SCS/chunks");
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ChunkCache.class);
+    private static final String CHUNKS_PATH = "chunks/";
+    private static final String INDEX_PATH = "chunk-index/";
+    /**
+     * Below this share of reusable bytes one full download beats many chunk requests.
+     */
+    private static final double MIN_REUSE_RATIO = 0.25;
+    private static final HexFormat HEX_FORMAT = HexFormat.of();
+
+    private final Path root;
+
+    ChunkCache(Path root) {
+        this.root = root;
+    }
+
+    /**
+     * A chunk found inside a local file.
+     */
+    private static final class LocalChunk {
+        private final Path file;
+        private final long offset;
+
+        private LocalChunk(Path file, long offset) {
+            this.file = file;
+            this.offset = offset;
+        }
+    }
+
+    /**
+     * Opens the content of {@code entry} assembled from chunks, downloading the missing ones, or
+     * returns null when the server has no chunk index for it or too little can be reused. The caller
+     * verifies the SHA-256 of the assembled stream.
+     */
+    InputStream assemble(
+            String serverUrl,
+            PackManifest.Entry entry,
+            List<Path> localVersions,
+            AtomicLong receivedBytes
+    ) throws IOException {
+        ChunkIndex index = fetchIndex(serverUrl + INDEX_PATH + entry.sha256());
+        if (index == null || !index.sha256().equals(entry.sha256()) || index.size() != entry.size()) {
+            return null;
+        }
+
+        Set<String> missing = new HashSet<>();
+        long reusableBytes = 0;
+        for (ChunkIndex.Chunk chunk : index.chunks()) {
+            if (contains(chunk)) {
+                reusableBytes += chunk.length();
+            } else {
+                missing.add(chunk.sha256());
+            }
+        }
+        Map<String, LocalChunk> local = findLocalChunks(localVersions, missing);
+        for (ChunkIndex.Chunk chunk : index.chunks()) {
+            if (local.containsKey(chunk.sha256())) {
+                reusableBytes += chunk.length();
+                missing.remove(chunk.sha256());
+            }
+        }
+        if (reusableBytes < index.size() * MIN_REUSE_RATIO) {
+            LOGGER.debug("Only {} of {} bytes of {} reusable; downloading it whole.", reusableBytes, index.size(), entry.path());
+            return null;
+        }
+
+        long fetchedBytes = 0;
+        for (ChunkIndex.Chunk chunk : index.chunks()) {
+            if (missing.remove(chunk.sha256())) {
+                fetchChunk(serverUrl + CHUNKS_PATH + chunk.sha256(), chunk);
+                fetchedBytes += chunk.length();
+                receivedBytes.addAndGet(chunk.length());
+            }
+        }
+        receivedBytes.addAndGet(entry.size() - fetchedBytes);
+        LOGGER.info("Assembling {} from chunks: {} bytes reused, {} downloaded.", entry.path(), entry.size() - fetchedBytes, fetchedBytes);
+        return open(index, local);
+    }
+
+    private boolean contains(ChunkIndex.Chunk chunk) {
+        Path path = path(chunk.sha256());
+        try {
+            if (Files.isRegularFile(path) && Files.size(path) == chunk.length()) {
+                ObjectCache.touch(path);
+                return true;
+            }
+            return false;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private Path path(String sha256) {
+        return root.resolve(sha256.substring(0, 2)).resolve(sha256);
+    }
+
+    /**
+     * Chunks the local files the same way the server does and records where the wanted chunks are.
+     */
+    private static Map<String, LocalChunk> findLocalChunks(List<Path> files, Set<String> wanted) {
+        Map<String, LocalChunk> found = new HashMap<>();
+        MessageDigest digest = newDigest();
+        for (Path file : files) {
+            if (found.size() == wanted.size()) {
+                break;
+            }
+            long[] offset = new long[1];
+            try (InputStream in = Files.newInputStream(file)) {
+                ContentChunker.split(in, (data, start, length) -> {
+                    digest.update(data, start, length);
+                    String sha256 = HEX_FORMAT.formatHex(digest.digest());
+                    if (wanted.contains(sha256)) {
+                        found.putIfAbsent(sha256, new LocalChunk(file, offset[0]));
+                    }
+                    offset[0] += length;
+                });
+            } catch (IOException e) {
+                LOGGER.debug("Could not chunk local file {}", file, e);
+            }
+        }
+        return found;
+    }
+
+    private InputStream open(ChunkIndex index, Map<String, LocalChunk> local) {
+        Iterator<ChunkIndex.Chunk> chunks = index.chunks().iterator();
+        return new SequenceInputStream(new Enumeration<>() {
+            @Override
+            public boolean hasMoreElements() {
+                return chunks.hasNext();
+            }
+
+            @Override
+            public InputStream nextElement() {
+                ChunkIndex.Chunk chunk = chunks.next();
+                try {
+                    LocalChunk localChunk = local.get(chunk.sha256());
+                    if (localChunk == null) {
+                        return Files.newInputStream(path(chunk.sha256()));
+                    }
+                    FileChannel channel = FileChannel.open(localChunk.file, StandardOpenOption.READ).position(localChunk.offset);
+                    return new BoundedInputStream(Channels.newInputStream(channel), chunk.length());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        });
+    }
+
+    private static ChunkIndex fetchIndex(String url) throws IOException {
+        try (PackTransport.Resource resource = PackTransport.forUrl(url).open(url)) {
+            if (resource == null) {
+                return null;
+            }
+            return ChunkIndex.parse(new String(resource.stream().readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    private void fetchChunk(String url, ChunkIndex.Chunk chunk) throws IOException {
+        byte[] data;
+        try (PackTransport.Resource resource = PackTransport.forUrl(url).open(url)) {
+            if (resource == null) {
+                throw new IOException("Chunk " + chunk.sha256() + " not found at " + url);
+            }
+            data = resource.stream().readAllBytes();
+        }
+        if (data.length != chunk.length() || !HEX_FORMAT.formatHex(newDigest().digest(data)).equals(chunk.sha256())) {
+            throw new IOException("Chunk " + chunk.sha256() + " failed verification");
+        }
+        Path target = path(chunk.sha256());
+        Files.createDirectories(target.getParent());
+        Path temp = Files.createTempFile(target.getParent(), chunk.sha256(), ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                out.write(data);
+            }
+            try {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
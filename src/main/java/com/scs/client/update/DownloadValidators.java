@@ -0,0 +1,71 @@
+package com.scs.client.update;
+
+import com.google.gson.Gson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * ETag / Last-Modified of the last pack that was fully applied for a server. Sent back as
+ * If-None-Match / If-Modified-Since so an unchanged pack answers 304 and costs no transfer.
+ */
+final class DownloadValidators {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DownloadValidators.class);
+    private static final Gson GSON = new Gson();
+
+    private String url;
+    private String etag;
+    private String lastModified;
+
+    private DownloadValidators() {
+    }
+
+    /**
+     * Loads the stored validators for the URL, or null when none apply.
+     */
+    static DownloadValidators load(Path validatorFile, String url) {
+        if (!Files.exists(validatorFile)) {
+            return null;
+        }
+        try {
+            DownloadValidators stored = GSON.fromJson(Files.readString(validatorFile), DownloadValidators.class);
+            if (stored == null || !url.equals(stored.url) || !stored.hasAny()) {
+                return null;
+            }
+            return stored;
+        } catch (Exception e) {
+            LOGGER.warn("Ignoring unreadable validator file {}", validatorFile, e);
+            return null;
+        }
+    }
+
+    static DownloadValidators fromResponse(HttpURLConnection connection, String url) {
+        DownloadValidators validators = new DownloadValidators();
+        validators.url = url;
+        validators.etag = connection.getHeaderField("ETag");
+        validators.lastModified = connection.getHeaderField("Last-Modified");
+        return validators.hasAny() ? validators : null;
+    }
+
+    void applyTo(HttpURLConnection connection) {
+        if (etag != null && !etag.isBlank()) {
+            connection.setRequestProperty("If-None-Match", etag);
+        } else if (lastModified != null && !lastModified.isBlank()) {
+            connection.setRequestProperty("If-Modified-Since", lastModified);
+        }
+    }
+
+    void save(Path validatorFile) throws IOException {
+        Files.createDirectories(validatorFile.getParent());
+        Files.writeString(validatorFile, GSON.toJson(this));
+    }
+
+    private boolean hasAny() {
+        return (etag != null && !etag.isBlank()) || (lastModified != null && !lastModified.isBlank());
+    }
+}
@@ -0,0 +1,96 @@
+package com.scs.client.update;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import com.scs.core.ModGroups;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * The optional mod groups a player picked for one server, kept in
+ * {@code SCS/servers/<server>/mod_groups.json}. A group the player never chose for follows its
+ * {@code enabledByDefault}. Choices are preferences, not cache, so clearing the cache keeps them.
+ */
+public final class ModGroupChoices {
+
+    static final String FILE_NAME = "mod_groups.json";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ModGroupChoices.class);
+    private static final Gson GSON = new Gson();
+    private static final Type CHOICES_TYPE = new TypeToken<Map<String, Boolean>>() {}.getType();
+
+    private final Path file;
+    private final Map<String, Boolean> choices;
+
+    private ModGroupChoices(Path file, Map<String, Boolean> choices) {
+        this.file = file;
+        this.choices = choices;
+    }
+
+    static ModGroupChoices load(Path serverRoot) {
+        Path file = serverRoot.resolve(FILE_NAME);
+        Map<String, Boolean> choices = new HashMap<>();
+        if (Files.exists(file)) {
+            try {
+                Map<String, Boolean> stored = GSON.fromJson(Files.readString(file), CHOICES_TYPE);
+                if (stored != null) {
+                    choices.putAll(stored);
+                }
+            } catch (Exception e) {
+                LOGGER.warn("Ignoring unreadable group choices {}", file, e);
+            }
+        }
+        return new ModGroupChoices(file, choices);
+    }
+
+    public boolean isSelected(ModGroups.Group group) {
+        Boolean chosen = choices.get(group.name());
+        return chosen != null ? chosen : group.enabledByDefault();
+    }
+
+    /**
+     * Records the player's choice for a group and saves it.
+     */
+    public void select(ModGroups.Group group, boolean selected) {
+        choices.put(group.name(), selected);
+        try {
+            Files.createDirectories(file.getParent());
+            Files.writeString(file, GSON.toJson(choices));
+        } catch (IOException e) {
+            LOGGER.warn("Failed to save group choices {}", file, e);
+        }
+    }
+
+    /**
+     * Matches paths, relative to {@code mods/}, that belong to a group the player left out.
+     */
+    Predicate<String> optedOut(ModGroups groups) {
+        if (groups.isEmpty()) {
+            return path -> false;
+        }
+        return path -> {
+            ModGroups.Group group = groups.groupOf(path);
+            return group != null && !isSelected(group);
+        };
+    }
+
+    List<String> optedOutNames(ModGroups groups) {
+        List<String> names = new ArrayList<>();
+        for (ModGroups.Group group : groups.groups()) {
+            if (!isSelected(group)) {
+                names.add(group.name());
+            }
+        }
+        return names;
+    }
+}
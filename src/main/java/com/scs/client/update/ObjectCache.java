@@ -0,0 +1,414 @@
+package com.scs.client.update;
+
+import com.scs.client.DownloadProgressScreen;
+import com.scs.core.BinaryPatch;
+import com.scs.core.Checksum;
+import com.scs.core.ChunkIndex;
+import com.scs.core.PackManifest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Client-side content-addressed store under {@code SCS/objects}, shared by every server. Objects are
+ * named by their SHA-256, verified on download and never modified, so an object fetched for one
+ * server or pack is reused by all others. Together with the {@link ChunkCache} it is kept within
+ * {@code objectCacheSizeMb} by {@link #trim}, dropping what was used least recently first.
+ */
+final class ObjectCache {
+
+    static final Path DEFAULT_ROOT = Path.of("SCS/objects");
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ObjectCache.class);
+    private static final int PARALLEL_FETCHES = 4;
+    private static final HexFormat HEX_FORMAT = HexFormat.of();
+    private static final String OBJECTS_PATH = "objects/";
+    private static final String PATCHES_PATH = "patches/";
+
+    /**
+     * An older version of a file available locally, identified by its SHA-256.
+     */
+    static final class PreviousVersion {
+        private final String sha256;
+        private final Path file;
+
+        PreviousVersion(String sha256, Path file) {
+            this.sha256 = sha256;
+            this.file = file;
+        }
+
+        String sha256() {
+            return sha256;
+        }
+
+        Path file() {
+            return file;
+        }
+    }
+
+    private final Path root;
+    private final ChunkCache chunks;
+
+    ObjectCache(Path root, ChunkCache chunks) {
+        this.root = root;
+        this.chunks = chunks;
+    }
+
+    Path path(String sha256) {
+        return root.resolve(sha256.substring(0, 2)).resolve(sha256);
+    }
+
+    boolean contains(String sha256, long size) {
+        Path object = path(sha256);
+        try {
+            if (Files.isRegularFile(object) && Files.size(object) == size) {
+                touch(object);
+                return true;
+            }
+            return false;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Marks a cached file as used; {@link #trim} removes the files used least recently.
+     */
+    static void touch(Path file) {
+        try {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            LOGGER.debug("Could not touch {}", file, e);
+        }
+    }
+
+    /**
+     * Deletes the least recently used files under the given cache roots until they hold at most
+     * {@code maxBytes} together. Anything deleted is fetched again if a later update needs it.
+     */
+    static void trim(long maxBytes, Path... roots) {
+        List<Path> files = new ArrayList<>();
+        long total = 0;
+        for (Path root : roots) {
+            if (!Files.isDirectory(root)) {
+                continue;
+            }
+            try (Stream<Path> walk = Files.walk(root, 2)) {
+                for (Path file : (Iterable<Path>) walk::iterator) {
+                    if (Files.isRegularFile(file)) {
+                        files.add(file);
+                        total += Files.size(file);
+                    }
+                }
+            } catch (IOException e) {
+                LOGGER.warn("Could not measure the cache in {}", root, e);
+                return;
+            }
+        }
+        if (total <= maxBytes) {
+            return;
+        }
+        Map<Path, Long> lastUsed = new HashMap<>();
+        for (Path file : files) {
+            try {
+                lastUsed.put(file, Files.getLastModifiedTime(file).toMillis());
+            } catch (IOException e) {
+                lastUsed.put(file, 0L);
+            }
+        }
+        files.sort(Comparator.comparingLong(lastUsed::get));
+        long freed = 0;
+        int deleted = 0;
+        for (Path file : files) {
+            if (total - freed <= maxBytes) {
+                break;
+            }
+            try {
+                long size = Files.size(file);
+                Files.delete(file);
+                freed += size;
+                deleted++;
+            } catch (IOException e) {
+                LOGGER.debug("Could not delete cached {}", file, e);
+            }
+        }
+        LOGGER.info("Trimmed the object cache: removed {} file(s), {} bytes.", deleted, freed);
+    }
+
+    /**
+     * Copies a local file into the cache if its content really has the given hash.
+     */
+    boolean importFile(Path source, String sha256) {
+        try (InputStream in = Files.newInputStream(source)) {
+            return store(in, sha256);
+        } catch (IOException e) {
+            LOGGER.debug("Could not import {} as object {}", source, sha256, e);
+            return false;
+        }
+    }
+
+    /**
+     * Downloads the given entries' objects from {@code serverUrl} (the directory holding the packs)
+     * with several requests in flight. Each entry is rebuilt from the cheapest source that works:
+     * a binary patch against one of its {@code previousVersions} (keyed by the entry's SHA-256), then
+     * chunks for large files, then the full object. Returns false when cancelled; throws when any
+     * object cannot be fetched.
+     */
+    boolean fetchAll(
+            String serverUrl,
+            List<PackManifest.Entry> entries,
+            Map<String, List<PreviousVersion>> previousVersions,
+            DownloadProgressScreen progressScreen
+    ) throws IOException {
+        if (entries.isEmpty()) {
+            return true;
+        }
+
+        long totalBytes = 0;
+        for (PackManifest.Entry entry : entries) {
+            totalBytes += entry.size();
+        }
+        AtomicLong receivedBytes = new AtomicLong();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(PARALLEL_FETCHES, entries.size()), runnable -> {
+            Thread thread = new Thread(runnable, "scs-object-fetch");
+            thread.setDaemon(true);
+            return thread;
+        });
+        List<Future<?>> futures = new ArrayList<>();
+        for (PackManifest.Entry entry : entries) {
+            List<PreviousVersion> versions = previousVersions.getOrDefault(entry.sha256(), List.of());
+            futures.add(executor.submit(() -> {
+                PreviousVersion base = null;
+                for (PreviousVersion version : versions) {
+                    if (entry.patchBases().contains(version.sha256())) {
+                        base = version;
+                        break;
+                    }
+                }
+                if (base != null && patch(serverUrl, base, entry, receivedBytes)) {
+                    return null;
+                }
+                if (entry.size() >= ChunkIndex.MIN_FILE_SIZE && assemble(serverUrl, entry, versions, receivedBytes)) {
+                    return null;
+                }
+                fetch(serverUrl + OBJECTS_PATH + entry.sha256(), entry.sha256(), receivedBytes);
+                return null;
+            }));
+        }
+        executor.shutdown();
+
+        long startTime = System.currentTimeMillis();
+        try {
+            for (Future<?> future : futures) {
+                while (true) {
+                    if (progressScreen.isCancelled()) {
+                        executor.shutdownNow();
+                        return false;
+                    }
+                    try {
+                        future.get(100, TimeUnit.MILLISECONDS);
+                        break;
+                    } catch (TimeoutException e) {
+                        reportProgress(progressScreen, receivedBytes.get(), totalBytes, startTime);
+                    }
+                }
+            }
+        } catch (ExecutionException e) {
+            executor.shutdownNow();
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException io ? io : new IOException("Object download failed", cause);
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while downloading objects", e);
+        }
+        reportProgress(progressScreen, totalBytes, totalBytes, startTime);
+        return true;
+    }
+
+    /**
+     * Applies {@code /patches/<base>-<target>} to the base file and stores the result if its SHA-256
+     * matches. Any failure only returns false so the caller downloads the full object instead.
+     */
+    private boolean patch(String serverUrl, PreviousVersion base, PackManifest.Entry entry, AtomicLong receivedBytes) {
+        String url = serverUrl + PATCHES_PATH + base.sha256() + "-" + entry.sha256();
+        Path target = path(entry.sha256());
+        Path temp = null;
+        try {
+            try (PackTransport.Resource resource = PackTransport.forUrl(url).open(url)) {
+                if (resource == null) {
+                    LOGGER.info("Patch {} unavailable, downloading the full file.", url);
+                    return false;
+                }
+                Files.createDirectories(target.getParent());
+                temp = Files.createTempFile(target.getParent(), entry.sha256(), ".patched");
+                try (OutputStream out = Files.newOutputStream(temp)) {
+                    BinaryPatch.apply(base.file(), resource.stream(), out);
+                }
+            }
+            String actual = Checksum.computeChecksum(temp);
+            if (!actual.equals(entry.sha256())) {
+                LOGGER.warn("Patched {} has SHA-256 {}, expected {}; downloading the full file.", entry.path(), actual, entry.sha256());
+                return false;
+            }
+            try {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            receivedBytes.addAndGet(entry.size());
+            return true;
+        } catch (Exception e) {
+            LOGGER.warn("Failed to patch {} from {}; downloading the full file.", entry.path(), base.sha256(), e);
+            return false;
+        } finally {
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    /**
+     * Stores the entry assembled from chunks. Any failure only returns false so the caller downloads
+     * the full object instead.
+     */
+    private boolean assemble(String serverUrl, PackManifest.Entry entry, List<PreviousVersion> versions, AtomicLong receivedBytes) {
+        List<Path> files = new ArrayList<>();
+        for (PreviousVersion version : versions) {
+            files.add(version.file());
+        }
+        try (InputStream in = chunks.assemble(serverUrl, entry, files, receivedBytes)) {
+            if (in != null && store(in, entry.sha256())) {
+                return true;
+            }
+            if (in != null) {
+                LOGGER.warn("{} assembled from chunks does not match its SHA-256; downloading the full file.", entry.path());
+            }
+        } catch (IOException | UncheckedIOException e) {
+            LOGGER.warn("Failed to assemble {} from chunks; downloading the full file.", entry.path(), e);
+        }
+        return false;
+    }
+
+    private void fetch(String url, String sha256, AtomicLong receivedBytes) throws IOException {
+        try (PackTransport.Resource resource = PackTransport.forUrl(url).open(url)) {
+            if (resource == null) {
+                throw new IOException("Object " + sha256 + " not found at " + url);
+            }
+            if (!store(new CountingInputStream(resource.stream(), receivedBytes), sha256)) {
+                throw new IOException("Object " + sha256 + " failed verification");
+            }
+        }
+    }
+
+    /**
+     * Writes the stream to a temporary file and moves it into place only if its SHA-256 matches.
+     */
+    private boolean store(InputStream in, String sha256) throws IOException {
+        Path target = path(sha256);
+        Files.createDirectories(target.getParent());
+        Path temp = Files.createTempFile(target.getParent(), sha256, ".tmp");
+        try {
+            MessageDigest digest = newDigest();
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    digest.update(buffer, 0, read);
+                    out.write(buffer, 0, read);
+                }
+            }
+            if (!HEX_FORMAT.formatHex(digest.digest()).equals(sha256)) {
+                return false;
+            }
+            try {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return true;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    static void reportProgress(DownloadProgressScreen progressScreen, long received, long total, long startTime) {
+        int progress = total > 0 ? (int) Math.min(100, (received * 100) / total) : 100;
+        long elapsed = System.currentTimeMillis() - startTime;
+        double speedInKB = elapsed > 0 ? (received / 1024.0) / (elapsed / 1000.0) : 0.0;
+        String speed = speedInKB >= 1024
+                ? String.format(Locale.ROOT, "%.2f MB/s", speedInKB / 1024)
+                : String.format(Locale.ROOT, "%.2f KB/s", speedInKB);
+        String eta = "";
+        if (speedInKB > 0 && received < total) {
+            int secondsRemaining = (int) (((total - received) / 1024.0) / speedInKB);
+            eta = String.format("%dm %ds", secondsRemaining / 60, secondsRemaining % 60);
+        }
+        progressScreen.updateProgress(progress, speed, eta);
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+        private final AtomicLong counter;
+
+        private CountingInputStream(InputStream in, AtomicLong counter) {
+            super(in);
+            this.counter = counter;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int value = super.read();
+            if (value != -1) {
+                counter.incrementAndGet();
+            }
+            return value;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                counter.addAndGet(read);
+            }
+            return read;
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package com.scs.client.update;
+
+import com.scs.core.PackManifest;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Entries of a pack to apply, read from a downloaded zip, from content-addressed objects, or from
+ * the changed entries of a remote zip.
+ */
+abstract class PackSource implements Closeable {
+
+    /**
+     * One pack entry. {@code crc} is -1 and {@code sha256} null when the source does not know them.
+     */
+    static final class Entry {
+        private final String name;
+        private final boolean directory;
+        private final long size;
+        private final long crc;
+        private final String sha256;
+
+        Entry(String name, boolean directory, long size, long crc, String sha256) {
+            this.name = name;
+            this.directory = directory;
+            this.size = size;
+            this.crc = crc;
+            this.sha256 = sha256;
+        }
+
+        String name() {
+            return name;
+        }
+
+        boolean isDirectory() {
+            return directory;
+        }
+
+        long size() {
+            return size;
+        }
+
+        long crc() {
+            return crc;
+        }
+
+        String sha256() {
+            return sha256;
+        }
+    }
+
+    abstract List<Entry> entries();
+
+    abstract InputStream open(Entry entry) throws IOException;
+
+    /**
+     * True when the source already found the entry identical on disk and did not fetch it.
+     */
+    boolean isUnchanged(Entry entry) {
+        return false;
+    }
+
+    static PackSource zip(Path zipPath) throws IOException {
+        return new ZipSource(new ZipFile(zipPath.toFile()));
+    }
+
+    /**
+     * Pack assembled from objects in {@code cache}; only entries that are opened need to be present.
+     */
+    static PackSource objects(PackManifest manifest, ObjectCache cache) {
+        return new ObjectSource(manifest, cache);
+    }
+
+    /**
+     * Pack read through the central directory of a remote zip: entries in {@code unchanged} map to
+     * the identical local file, the others were fetched into {@code stagingDirectory}, which is
+     * deleted on close.
+     */
+    static PackSource remoteZip(RemoteZip zip, Path stagingDirectory, Map<String, Path> unchanged) {
+        return new RemoteZipSource(zip, stagingDirectory, unchanged);
+    }
+
+    private static final class ZipSource extends PackSource {
+        private final ZipFile zipFile;
+        private final List<Entry> entries;
+
+        private ZipSource(ZipFile zipFile) {
+            this.zipFile = zipFile;
+            List<Entry> list = new ArrayList<>();
+            for (ZipEntry entry : Collections.list(zipFile.entries())) {
+                list.add(new Entry(entry.getName(), entry.isDirectory(), entry.getSize(), entry.getCrc(), null));
+            }
+            this.entries = Collections.unmodifiableList(list);
+        }
+
+        @Override
+        List<Entry> entries() {
+            return entries;
+        }
+
+        @Override
+        InputStream open(Entry entry) throws IOException {
+            ZipEntry zipEntry = zipFile.getEntry(entry.name());
+            if (zipEntry == null) {
+                throw new IOException("Missing zip entry " + entry.name());
+            }
+            return zipFile.getInputStream(zipEntry);
+        }
+
+        @Override
+        public void close() throws IOException {
+            zipFile.close();
+        }
+    }
+
+    private static final class ObjectSource extends PackSource {
+        private final ObjectCache cache;
+        private final List<Entry> entries;
+
+        private ObjectSource(PackManifest manifest, ObjectCache cache) {
+            this.cache = cache;
+            List<Entry> list = new ArrayList<>();
+            for (PackManifest.Entry entry : manifest.entries()) {
+                list.add(new Entry(entry.path(), false, entry.size(), entry.crc32(), entry.sha256()));
+            }
+            this.entries = Collections.unmodifiableList(list);
+        }
+
+        @Override
+        List<Entry> entries() {
+            return entries;
+        }
+
+        @Override
+        InputStream open(Entry entry) throws IOException {
+            Path object = cache.path(entry.sha256());
+            if (!Files.exists(object)) {
+                throw new IOException("Object " + entry.sha256() + " for " + entry.name() + " is not cached");
+            }
+            return Files.newInputStream(object);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static final class RemoteZipSource extends PackSource {
+        private final RemoteZip zip;
+        private final Path stagingDirectory;
+        private final Map<String, Path> unchanged;
+        private final Map<String, RemoteZip.Entry> remoteEntries = new HashMap<>();
+        private final List<Entry> entries;
+
+        private RemoteZipSource(RemoteZip zip, Path stagingDirectory, Map<String, Path> unchanged) {
+            this.zip = zip;
+            this.stagingDirectory = stagingDirectory;
+            this.unchanged = unchanged;
+            List<Entry> list = new ArrayList<>();
+            for (RemoteZip.Entry entry : zip.entries()) {
+                remoteEntries.put(entry.name(), entry);
+                list.add(new Entry(entry.name(), entry.isDirectory(), entry.size(), entry.crc(), null));
+            }
+            this.entries = Collections.unmodifiableList(list);
+        }
+
+        @Override
+        List<Entry> entries() {
+            return entries;
+        }
+
+        @Override
+        boolean isUnchanged(Entry entry) {
+            return unchanged.containsKey(entry.name());
+        }
+
+        @Override
+        InputStream open(Entry entry) throws IOException {
+            Path local = unchanged.get(entry.name());
+            if (local != null) {
+                return Files.newInputStream(local);
+            }
+            RemoteZip.Entry remoteEntry = remoteEntries.get(entry.name());
+            Path fetched = remoteEntry != null ? zip.fetchedPath(stagingDirectory, remoteEntry) : null;
+            if (fetched == null || !Files.isRegularFile(fetched)) {
+                throw new IOException("Zip entry " + entry.name() + " was not fetched");
+            }
+            return Files.newInputStream(fetched);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!Files.isDirectory(stagingDirectory)) {
+                return;
+            }
+            try (Stream<Path> files = Files.list(stagingDirectory)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    Files.deleteIfExists(file);
+                }
+            }
+            Files.deleteIfExists(stagingDirectory);
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.scs.client.update;
+
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * How the files next to a pack are read: over HTTP from the SCS file server or any web server or
+ * CDN, or straight from disk when the update URL is a {@code file://} URL or a local directory
+ * holding a tree written by {@code /scs export}. URLs are resolved the same way in both cases, so
+ * {@code <base>/objects/<sha256>} is a request path for one and a file path for the other.
+ */
+abstract class PackTransport {
+
+    private static final int CONNECTION_TIMEOUT_MS = 5000;
+    private static final int READ_TIMEOUT_MS = 15000;
+    private static final PackTransport HTTP = new HttpTransport();
+    private static final PackTransport FILE = new FileTransport();
+
+    static PackTransport forUrl(String url) {
+        return isFileUrl(url) ? FILE : HTTP;
+    }
+
+    static boolean isFileUrl(String url) {
+        return url != null && url.toLowerCase(Locale.ROOT).startsWith("file:");
+    }
+
+    /**
+     * Turns an update URL that names an existing local directory into a {@code file://} URL, so the
+     * rest of the update can treat it like any other base URL. Returns null for anything else.
+     */
+    static String localDirectoryUrl(String value) {
+        if (value == null || value.isBlank() || value.contains("://")) {
+            return null;
+        }
+        try {
+            Path directory = Path.of(value.trim());
+            return Files.isDirectory(directory) ? directory.toAbsolutePath().toUri().toString() : null;
+        } catch (InvalidPathException e) {
+            return null;
+        }
+    }
+
+    /**
+     * An opened file; closing it releases the underlying connection.
+     */
+    static final class Resource implements Closeable {
+        private final InputStream stream;
+        private final long length;
+
+        private Resource(InputStream stream, long length) {
+            this.stream = stream;
+            this.length = length;
+        }
+
+        InputStream stream() {
+            return stream;
+        }
+
+        /**
+         * Length in bytes, or -1 when unknown.
+         */
+        long length() {
+            return length;
+        }
+
+        @Override
+        public void close() throws IOException {
+            stream.close();
+        }
+    }
+
+    /**
+     * Opens the file at {@code url}, or returns null when there is none. Any other failure throws.
+     */
+    abstract Resource open(String url) throws IOException;
+
+    /**
+     * The file on disk behind {@code url}, or null when the transport is remote.
+     */
+    Path localFile(String url) {
+        return null;
+    }
+
+    private static final class HttpTransport extends PackTransport {
+        @Override
+        Resource open(String url) throws IOException {
+            HttpURLConnection connection = (HttpURLConnection) URI.create(url).toURL().openConnection();
+            connection.setConnectTimeout(CONNECTION_TIMEOUT_MS);
+            connection.setReadTimeout(READ_TIMEOUT_MS);
+            int responseCode;
+            try {
+                responseCode = connection.getResponseCode();
+            } catch (IOException e) {
+                connection.disconnect();
+                throw e;
+            }
+            if (responseCode == HttpURLConnection.HTTP_NOT_FOUND || responseCode == HttpURLConnection.HTTP_GONE) {
+                connection.disconnect();
+                return null;
+            }
+            if (responseCode != HttpURLConnection.HTTP_OK) {
+                connection.disconnect();
+                throw new IOException(url + " - Server returned response code: " + responseCode);
+            }
+            InputStream stream = new FilterInputStream(connection.getInputStream()) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        connection.disconnect();
+                    }
+                }
+            };
+            return new Resource(stream, connection.getContentLengthLong());
+        }
+    }
+
+    /**
+     * Reads a static tree from disk. Dynamic endpoints (URLs with a query, such as the delta) do not
+     * exist there.
+     */
+    private static final class FileTransport extends PackTransport {
+        @Override
+        Resource open(String url) throws IOException {
+            Path file = localFile(url);
+            if (file == null) {
+                return null;
+            }
+            try {
+                return new Resource(Files.newInputStream(file), Files.size(file));
+            } catch (NoSuchFileException e) {
+                return null;
+            }
+        }
+
+        @Override
+        Path localFile(String url) {
+            try {
+                URI uri = URI.create(url);
+                return uri.getRawQuery() == null ? Path.of(uri) : null;
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+    }
+}
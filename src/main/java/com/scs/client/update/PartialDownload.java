@@ -0,0 +1,119 @@
+package com.scs.client.update;
+
+import com.google.gson.Gson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Tracks an interrupted download so it can be resumed with a Range request, even after a restart.
+ * Bytes go to {@code <name>.part}; the URL and validator they belong to are kept in {@code <name>.part.json}.
+ */
+final class PartialDownload {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PartialDownload.class);
+    private static final Gson GSON = new Gson();
+
+    private final Path partFile;
+    private final Path recordFile;
+    private final String url;
+    private Record record;
+
+    private static final class Record {
+        private String url;
+        private String validator;
+        private long totalLength;
+    }
+
+    private PartialDownload(Path partFile, Path recordFile, String url, Record record) {
+        this.partFile = partFile;
+        this.recordFile = recordFile;
+        this.url = url;
+        this.record = record;
+    }
+
+    static PartialDownload open(Path destination, String url) {
+        Path partFile = destination.resolveSibling(destination.getFileName() + ".part");
+        Path recordFile = destination.resolveSibling(destination.getFileName() + ".part.json");
+        Record record = null;
+        try {
+            if (Files.exists(recordFile) && Files.exists(partFile)) {
+                record = GSON.fromJson(Files.readString(recordFile), Record.class);
+            }
+        } catch (Exception e) {
+            LOGGER.warn("Ignoring unreadable partial download record {}", recordFile, e);
+        }
+        if (record != null && (!url.equals(record.url) || record.validator == null || record.validator.isBlank())) {
+            record = null;
+        }
+        return new PartialDownload(partFile, recordFile, url, record);
+    }
+
+    Path partFile() {
+        return partFile;
+    }
+
+    /**
+     * Number of bytes already on disk that can be resumed, or 0 when starting over.
+     */
+    long resumeOffset() {
+        if (record == null) {
+            return 0;
+        }
+        try {
+            long size = Files.size(partFile);
+            if (record.totalLength > 0 && size >= record.totalLength) {
+                return 0;
+            }
+            return size;
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    String validator() {
+        return record == null ? null : record.validator;
+    }
+
+    /**
+     * Records the validator of the response being written so a later attempt can send If-Range.
+     */
+    void begin(String validator, long totalLength) throws IOException {
+        Files.createDirectories(partFile.getParent());
+        if (validator == null || validator.isBlank()) {
+            record = null;
+            Files.deleteIfExists(recordFile);
+            return;
+        }
+        Record updated = new Record();
+        updated.url = url;
+        updated.validator = validator;
+        updated.totalLength = totalLength;
+        Files.writeString(recordFile, GSON.toJson(updated));
+        record = updated;
+    }
+
+    /**
+     * Moves the finished part file over the destination and forgets the record.
+     */
+    void complete(Path destination) throws IOException {
+        try {
+            Files.move(partFile, destination, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(partFile, destination, StandardCopyOption.REPLACE_EXISTING);
+        }
+        Files.deleteIfExists(recordFile);
+        record = null;
+    }
+
+    void discard() throws IOException {
+        Files.deleteIfExists(partFile);
+        Files.deleteIfExists(recordFile);
+        record = null;
+    }
+}
@@ -0,0 +1,519 @@
+package com.scs.client.update;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongConsumer;
+import java.util.zip.CRC32;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * A zip on any Range-capable HTTP server, read without downloading it: the central directory is
+ * fetched with a suffix Range request, and then only the byte ranges of the wanted entries, with
+ * neighbouring ranges coalesced into one request. Every range request carries If-Range so a zip
+ * replaced half-way answers 200 and the fetch fails instead of mixing two versions. Range requests
+ * for a pack go through the server's download queue like a full download: a 503 with a queue ticket
+ * is waited out and retried with the ticket, keeping the ranges already fetched.
+ */
+final class RemoteZip {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RemoteZip.class);
+    private static final int CONNECTION_TIMEOUT_MS = 5000;
+    private static final int READ_TIMEOUT_MS = 15000;
+    private static final int END_RECORD_SIZE = 22;
+    private static final int MAX_COMMENT_SIZE = 0xFFFF;
+    private static final int ZIP64_LOCATOR_SIZE = 20;
+    private static final int END_SIGNATURE = 0x06054b50;
+    private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+    private static final int ZIP64_END_SIGNATURE = 0x06064b50;
+    private static final int CENTRAL_SIGNATURE = 0x02014b50;
+    private static final int LOCAL_SIGNATURE = 0x04034b50;
+    private static final int LOCAL_HEADER_SIZE = 30;
+    /**
+     * Ranges separated by fewer bytes than this are fetched as one; the gap costs less than a request.
+     */
+    private static final long COALESCE_GAP = 16 * 1024;
+
+    /**
+     * One entry of the central directory.
+     */
+    static final class Entry {
+        private final String name;
+        private final int method;
+        private final long crc;
+        private final long compressedSize;
+        private final long size;
+        private final long localHeaderOffset;
+        private final int index;
+        private long end;
+
+        private Entry(int index, String name, int method, long crc, long compressedSize, long size, long localHeaderOffset) {
+            this.name = name;
+            this.method = method;
+            this.crc = crc;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.localHeaderOffset = localHeaderOffset;
+            this.index = index;
+        }
+
+        String name() {
+            return name;
+        }
+
+        boolean isDirectory() {
+            return name.endsWith("/");
+        }
+
+        long crc() {
+            return crc;
+        }
+
+        long size() {
+            return size;
+        }
+
+        /**
+         * Bytes this entry occupies in the zip: local header, data and data descriptor.
+         */
+        long span() {
+            return end - localHeaderOffset;
+        }
+    }
+
+    /**
+     * Waits for a place in the server's download queue; returns false when the update was cancelled.
+     */
+    @FunctionalInterface
+    interface QueueWait {
+        /**
+         * @param retryAfterSeconds the server's Retry-After, or -1 when it sent none.
+         */
+        boolean await(int position, int retryAfterSeconds);
+    }
+
+    private final String url;
+    private final String rangeValidator;
+    private final DownloadValidators validators;
+    private final long zipSize;
+    private final List<Entry> entries;
+    private final QueueWait queue;
+
+    private RemoteZip(String url, String rangeValidator, DownloadValidators validators, long zipSize, List<Entry> entries, QueueWait queue) {
+        this.url = url;
+        this.rangeValidator = rangeValidator;
+        this.validators = validators;
+        this.zipSize = zipSize;
+        this.entries = entries;
+        this.queue = queue;
+    }
+
+    /**
+     * Result of {@link #open}: the zip, or why it could not be read remotely.
+     */
+    static final class Opened {
+        private final RemoteZip zip;
+        private final boolean notModified;
+
+        private Opened(RemoteZip zip, boolean notModified) {
+            this.zip = zip;
+            this.notModified = notModified;
+        }
+
+        /**
+         * Null when the server does not answer suffix Range requests or the zip cannot be parsed.
+         */
+        RemoteZip zip() {
+            return zip;
+        }
+
+        boolean notModified() {
+            return notModified;
+        }
+    }
+
+    /**
+     * Reads the central directory. {@code conditional} makes an unchanged zip answer 304.
+     */
+    static Opened open(String url, DownloadValidators conditional, QueueWait queue) throws IOException {
+        HttpURLConnection connection = request(url, "bytes=-" + (END_RECORD_SIZE + MAX_COMMENT_SIZE + ZIP64_LOCATOR_SIZE), null, conditional, queue);
+        byte[] tail;
+        long tailStart;
+        long zipSize;
+        String rangeValidator;
+        DownloadValidators validators;
+        try {
+            int responseCode = connection.getResponseCode();
+            if (responseCode == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                return new Opened(null, true);
+            }
+            if (responseCode == HttpURLConnection.HTTP_NOT_FOUND || responseCode == HttpURLConnection.HTTP_GONE) {
+                LOGGER.info("{} not found ({}).", url, responseCode);
+                return new Opened(null, false);
+            }
+            if (responseCode != HttpURLConnection.HTTP_PARTIAL) {
+                LOGGER.info("{} does not support suffix Range requests ({}).", url, responseCode);
+                return new Opened(null, false);
+            }
+            long[] range = parseContentRange(connection.getHeaderField("Content-Range"));
+            rangeValidator = readValidator(connection);
+            if (rangeValidator == null) {
+                LOGGER.info("{} sends no validator for If-Range; not reading it remotely.", url);
+                return new Opened(null, false);
+            }
+            validators = DownloadValidators.fromResponse(connection, url);
+            try (InputStream in = connection.getInputStream()) {
+                tail = in.readAllBytes();
+            }
+            tailStart = range[0];
+            zipSize = range[2];
+        } finally {
+            connection.disconnect();
+        }
+
+        int end = findEndRecord(tail);
+        if (end < 0) {
+            LOGGER.warn("No end of central directory in {}", url);
+            return new Opened(null, false);
+        }
+        ByteBuffer record = ByteBuffer.wrap(tail).order(ByteOrder.LITTLE_ENDIAN);
+        long entryCount = record.getShort(end + 10) & 0xFFFFL;
+        long directorySize = record.getInt(end + 12) & 0xFFFFFFFFL;
+        long directoryOffset = record.getInt(end + 16) & 0xFFFFFFFFL;
+        if (directoryOffset == 0xFFFFFFFFL || directorySize == 0xFFFFFFFFL || entryCount == 0xFFFF) {
+            int locator = end - ZIP64_LOCATOR_SIZE;
+            if (locator < 0 || record.getInt(locator) != ZIP64_LOCATOR_SIGNATURE) {
+                throw new IOException("Missing ZIP64 locator in " + url);
+            }
+            long zip64End = record.getLong(locator + 8) - tailStart;
+            if (zip64End < 0 || zip64End + 56 > tail.length || record.getInt((int) zip64End) != ZIP64_END_SIGNATURE) {
+                throw new IOException("ZIP64 end record of " + url + " is outside the fetched tail");
+            }
+            entryCount = record.getLong((int) zip64End + 32);
+            directorySize = record.getLong((int) zip64End + 40);
+            directoryOffset = record.getLong((int) zip64End + 48);
+        }
+
+        byte[] directory;
+        if (directoryOffset >= tailStart) {
+            int from = (int) (directoryOffset - tailStart);
+            directory = Arrays.copyOfRange(tail, from, from + (int) directorySize);
+        } else {
+            directory = fetchRange(url, rangeValidator, directoryOffset, directoryOffset + directorySize - 1, queue);
+        }
+        List<Entry> entries = parseDirectory(directory, entryCount);
+        List<Entry> byOffset = new ArrayList<>(entries);
+        byOffset.sort(Comparator.comparingLong(entry -> entry.localHeaderOffset));
+        for (int i = 0; i < byOffset.size(); i++) {
+            byOffset.get(i).end = i + 1 < byOffset.size() ? byOffset.get(i + 1).localHeaderOffset : directoryOffset;
+        }
+        LOGGER.info("Read central directory of {}: {} entries, {} bytes.", url, entries.size(), zipSize);
+        return new Opened(new RemoteZip(url, rangeValidator, validators, zipSize, entries, queue), false);
+    }
+
+    List<Entry> entries() {
+        return Collections.unmodifiableList(entries);
+    }
+
+    long zipSize() {
+        return zipSize;
+    }
+
+    /**
+     * Validators of the zip that was read, to be saved once it has been applied.
+     */
+    DownloadValidators validators() {
+        return validators;
+    }
+
+    /**
+     * Downloads and inflates the given entries into {@code directory} as {@code <index>} files named
+     * by the entry's position in {@link #entries()}, checking CRC32 and size. Returns the number of
+     * range requests made; throws {@link InterruptedIOException} once {@code cancelled} is true.
+     */
+    int fetch(Collection<Entry> wanted, Path directory, LongConsumer progress, BooleanSupplier cancelled) throws IOException {
+        List<Entry> sorted = new ArrayList<>(wanted);
+        sorted.sort(Comparator.comparingLong(entry -> entry.localHeaderOffset));
+        Files.createDirectories(directory);
+
+        int requests = 0;
+        int i = 0;
+        while (i < sorted.size()) {
+            int j = i;
+            while (j + 1 < sorted.size() && sorted.get(j + 1).localHeaderOffset - sorted.get(j).end <= COALESCE_GAP) {
+                j++;
+            }
+            List<Entry> group = sorted.subList(i, j + 1);
+            if (cancelled.getAsBoolean()) {
+                throw new InterruptedIOException("Cancelled");
+            }
+            fetchGroup(group, directory, progress);
+            requests++;
+            i = j + 1;
+        }
+        return requests;
+    }
+
+    Path fetchedPath(Path directory, Entry entry) {
+        return directory.resolve(Integer.toString(entry.index));
+    }
+
+    private void fetchGroup(List<Entry> group, Path directory, LongConsumer progress) throws IOException {
+        long start = group.get(0).localHeaderOffset;
+        long end = group.get(group.size() - 1).end - 1;
+        HttpURLConnection connection = request(url, "bytes=" + start + "-" + end, rangeValidator, null, queue);
+        try {
+            int responseCode = connection.getResponseCode();
+            if (responseCode != HttpURLConnection.HTTP_PARTIAL) {
+                throw new IOException(url + " changed while reading it (response " + responseCode + ")");
+            }
+            if (parseContentRange(connection.getHeaderField("Content-Range"))[0] != start) {
+                throw new IOException(url + " answered a different range than requested");
+            }
+            try (DataInputStream in = new DataInputStream(connection.getInputStream())) {
+                long position = start;
+                for (Entry entry : group) {
+                    skipFully(in, entry.localHeaderOffset - position);
+                    long read = extract(in, entry, fetchedPath(directory, entry));
+                    position = entry.localHeaderOffset + read;
+                    progress.accept(read);
+                }
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * Reads one local header and its data from the stream; returns the bytes consumed.
+     */
+    private static long extract(DataInputStream in, Entry entry, Path target) throws IOException {
+        byte[] header = new byte[LOCAL_HEADER_SIZE];
+        in.readFully(header);
+        ByteBuffer buffer = ByteBuffer.wrap(header).order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.getInt(0) != LOCAL_SIGNATURE) {
+            throw new IOException("Bad local header for " + entry.name);
+        }
+        int nameLength = buffer.getShort(26) & 0xFFFF;
+        int extraLength = buffer.getShort(28) & 0xFFFF;
+        skipFully(in, nameLength + extraLength);
+
+        BoundedInputStream compressed = new BoundedInputStream(in, entry.compressedSize);
+        InputStream data = compressed;
+        Inflater inflater = null;
+        if (entry.method == 8) {
+            inflater = new Inflater(true);
+            data = new InflaterInputStream(compressed, inflater, 8192);
+        } else if (entry.method != 0) {
+            throw new IOException("Unsupported compression method " + entry.method + " for " + entry.name);
+        }
+        CRC32 crc = new CRC32();
+        long size = 0;
+        try (OutputStream out = Files.newOutputStream(target)) {
+            byte[] chunk = new byte[8192];
+            int read;
+            while ((read = data.read(chunk)) != -1) {
+                crc.update(chunk, 0, read);
+                out.write(chunk, 0, read);
+                size += read;
+            }
+        } finally {
+            if (inflater != null) {
+                inflater.end();
+            }
+        }
+        // The inflater may stop before the end of the compressed data; the next header follows it.
+        compressed.transferTo(OutputStream.nullOutputStream());
+        if (size != entry.size || crc.getValue() != entry.crc) {
+            throw new IOException("Entry " + entry.name + " failed CRC/size verification");
+        }
+        return LOCAL_HEADER_SIZE + nameLength + extraLength + entry.compressedSize;
+    }
+
+    private static List<Entry> parseDirectory(byte[] directory, long entryCount) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(directory).order(ByteOrder.LITTLE_ENDIAN);
+        List<Entry> entries = new ArrayList<>();
+        int position = 0;
+        for (long i = 0; i < entryCount; i++) {
+            if (position + 46 > directory.length || buffer.getInt(position) != CENTRAL_SIGNATURE) {
+                throw new IOException("Malformed central directory");
+            }
+            int method = buffer.getShort(position + 10) & 0xFFFF;
+            long crc = buffer.getInt(position + 16) & 0xFFFFFFFFL;
+            long compressedSize = buffer.getInt(position + 20) & 0xFFFFFFFFL;
+            long size = buffer.getInt(position + 24) & 0xFFFFFFFFL;
+            int nameLength = buffer.getShort(position + 28) & 0xFFFF;
+            int extraLength = buffer.getShort(position + 30) & 0xFFFF;
+            int commentLength = buffer.getShort(position + 32) & 0xFFFF;
+            long localHeaderOffset = buffer.getInt(position + 42) & 0xFFFFFFFFL;
+            String name = new String(directory, position + 46, nameLength, StandardCharsets.UTF_8);
+
+            // ZIP64 extended information replaces the saturated 32-bit fields, in this order.
+            int extra = position + 46 + nameLength;
+            int extraEnd = extra + extraLength;
+            while (extra + 4 <= extraEnd) {
+                int id = buffer.getShort(extra) & 0xFFFF;
+                int length = buffer.getShort(extra + 2) & 0xFFFF;
+                if (id == 0x0001) {
+                    int field = extra + 4;
+                    if (size == 0xFFFFFFFFL) {
+                        size = buffer.getLong(field);
+                        field += 8;
+                    }
+                    if (compressedSize == 0xFFFFFFFFL) {
+                        compressedSize = buffer.getLong(field);
+                        field += 8;
+                    }
+                    if (localHeaderOffset == 0xFFFFFFFFL) {
+                        localHeaderOffset = buffer.getLong(field);
+                    }
+                }
+                extra += 4 + length;
+            }
+            entries.add(new Entry(entries.size(), name, method, crc, compressedSize, size, localHeaderOffset));
+            position = extraEnd + commentLength;
+        }
+        return entries;
+    }
+
+    private static int findEndRecord(byte[] tail) {
+        ByteBuffer buffer = ByteBuffer.wrap(tail).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = tail.length - END_RECORD_SIZE; i >= 0; i--) {
+            if (buffer.getInt(i) == END_SIGNATURE && i + END_RECORD_SIZE + (buffer.getShort(i + 20) & 0xFFFF) == tail.length) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static byte[] fetchRange(String url, String rangeValidator, long start, long end, QueueWait queue) throws IOException {
+        HttpURLConnection connection = request(url, "bytes=" + start + "-" + end, rangeValidator, null, queue);
+        try {
+            if (connection.getResponseCode() != HttpURLConnection.HTTP_PARTIAL
+                    || parseContentRange(connection.getHeaderField("Content-Range"))[0] != start) {
+                throw new IOException(url + " changed while reading its central directory");
+            }
+            try (InputStream in = connection.getInputStream()) {
+                return in.readAllBytes();
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * Parses {@code bytes <start>-<end>/<total>} into {start, end, total}.
+     */
+    private static long[] parseContentRange(String contentRange) throws IOException {
+        if (contentRange != null && contentRange.startsWith("bytes ")) {
+            int dash = contentRange.indexOf('-');
+            int slash = contentRange.indexOf('/');
+            if (dash > 6 && slash > dash) {
+                try {
+                    return new long[]{
+                            Long.parseLong(contentRange.substring(6, dash).trim()),
+                            Long.parseLong(contentRange.substring(dash + 1, slash).trim()),
+                            Long.parseLong(contentRange.substring(slash + 1).trim())
+                    };
+                } catch (NumberFormatException ignored) {
+                }
+            }
+        }
+        throw new IOException("Invalid Content-Range: " + contentRange);
+    }
+
+    private static String readValidator(HttpURLConnection connection) {
+        String etag = connection.getHeaderField("ETag");
+        if (etag != null && !etag.isBlank() && !etag.startsWith("W/")) {
+            return etag;
+        }
+        return connection.getHeaderField("Last-Modified");
+    }
+
+    private static void skipFully(InputStream in, long count) throws IOException {
+        if (count < 0) {
+            throw new IOException("Overlapping zip entries");
+        }
+        long remaining = count;
+        while (remaining > 0) {
+            long skipped = in.skip(remaining);
+            if (skipped <= 0) {
+                if (in.read() < 0) {
+                    throw new EOFException("Zip range ended early");
+                }
+                skipped = 1;
+            }
+            remaining -= skipped;
+        }
+    }
+
+    /**
+     * Sends a Range request and returns the connection once the server answers anything but a
+     * queued 503. While queued it retries with the ticket after {@code queue} has waited; a 503
+     * without a ticket fails the request. Throws {@link InterruptedIOException} when cancelled.
+     */
+    private static HttpURLConnection request(
+            String url,
+            String range,
+            String ifRange,
+            DownloadValidators conditional,
+            QueueWait queue
+    ) throws IOException {
+        String ticket = null;
+        while (true) {
+            HttpURLConnection connection = openConnection(url);
+            connection.setRequestProperty("Range", range);
+            if (ifRange != null) {
+                connection.setRequestProperty("If-Range", ifRange);
+            }
+            if (conditional != null) {
+                conditional.applyTo(connection);
+            }
+            if (ticket != null) {
+                connection.setRequestProperty(UpdateCoordinator.QUEUE_TICKET_HEADER, ticket);
+            }
+            if (connection.getResponseCode() != HttpURLConnection.HTTP_UNAVAILABLE) {
+                return connection;
+            }
+            String issued = connection.getHeaderField(UpdateCoordinator.QUEUE_TICKET_HEADER);
+            int position = UpdateCoordinator.parseIntHeader(connection.getHeaderField(UpdateCoordinator.QUEUE_POSITION_HEADER), -1);
+            int retryAfter = UpdateCoordinator.parseIntHeader(connection.getHeaderField("Retry-After"), -1);
+            connection.disconnect();
+            if (issued == null) {
+                throw new IOException(url + " is unavailable (503)");
+            }
+            ticket = issued;
+            if (!queue.await(position, retryAfter)) {
+                throw new InterruptedIOException("Cancelled");
+            }
+        }
+    }
+
+    private static HttpURLConnection openConnection(String url) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) URI.create(url).toURL().openConnection();
+        connection.setConnectTimeout(CONNECTION_TIMEOUT_MS);
+        connection.setReadTimeout(READ_TIMEOUT_MS);
+        return connection;
+    }
+}
@@ -4,6 +4,10 @@ import com.scs.client.DownloadProgressScreen;
 import com.scs.client.ServerMetadata;
 import com.scs.core.Checksum;
 import com.scs.core.Config;
+import com.scs.core.ModGroups;
+import com.scs.core.ModJarMetadata;
+import com.scs.core.PackIgnore;
+import com.scs.core.PackManifest;
 import com.scs.core.SCS;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.gui.screens.Screen;
@@ -14,27 +18,37 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.URI;
 import java.net.URL;
+import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.ArrayList;
 import java.util.Map;
 import java.util.List;
 import java.util.Locale;
 import java.util.Set;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.zip.ZipFile;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 import org.json.JSONArray;
@@ -45,9 +59,23 @@ import java.io.ByteArrayOutputStream;
 public final class UpdateCoordinator {
 
     private static final int CONNECTION_TIMEOUT_MS = 5000;
+    static final String QUEUE_TICKET_HEADER = "X-SCS-Queue-Ticket";
+    static final String QUEUE_POSITION_HEADER = "X-SCS-Queue-Position";
+    private static final int DEFAULT_RETRY_AFTER_SECONDS = 5;
+    private static final int MAX_UNQUEUED_RETRIES = 5;
     private static final String MOD_ZIP_NAME = "mods.zip";
     private static final String CONFIG_ZIP_NAME = "config.zip";
     private static final String MODS_REMOVE_LIST_NAME = "modsToRemoveFromTheClient.json";
+    private static final String DELTA_PATH = "delta";
+    /**
+     * Above this share of the zip in changed entries, one sequential download beats range requests.
+     */
+    private static final double MAX_REMOTE_ZIP_CHANGED_RATIO = 0.5;
+    /**
+     * Above this share of the pack in changed entries, the update goes through the queued zip download
+     * instead of one object request per file, which bypasses the download queue.
+     */
+    private static final double MAX_OBJECT_SYNC_CHANGED_RATIO = 0.25;
     private static final Path SERVER_CACHE_ROOT = Path.of("SCS/servers");
     private static final Path MOD_UNZIP_DESTINATION = Path.of("mods");
     private static final Path CONFIG_UNZIP_DESTINATION = Path.of("config");
@@ -139,6 +167,28 @@ public final class UpdateCoordinator {
         executor.execute(() -> performUpdateFlow(updateBaseUrl, modsUrl, minecraft, progressScreen, executor, cachePaths));
     }
 
+    /**
+     * The optional mod groups the player picked for a server.
+     */
+    public static ModGroupChoices modGroupChoices(String serverKey, String updateBaseUrl) {
+        return ModGroupChoices.load(buildServerCachePaths(resolveServerKey(serverKey, updateBaseUrl)).serverRoot());
+    }
+
+    /**
+     * Fetches the optional mod groups the server publishes in its mods manifest, off the calling
+     * thread; completes with no groups when there is no manifest or it cannot be read.
+     */
+    public static CompletableFuture<ModGroups> fetchModGroups(String updateBaseUrl) {
+        String modsUrl = buildDownloadUrl(updateBaseUrl, MOD_ZIP_NAME);
+        if (modsUrl == null) {
+            return CompletableFuture.completedFuture(ModGroups.NONE);
+        }
+        return CompletableFuture.supplyAsync(() -> {
+            PackManifest manifest = fetchManifest(modsUrl, PackManifest.MODS);
+            return manifest != null ? manifest.groups() : ModGroups.NONE;
+        });
+    }
+
     public static void clearCache(Screen returnScreen) {
         clearCache(returnScreen, null);
     }
@@ -195,7 +245,14 @@ public final class UpdateCoordinator {
         int deletedFiles = 0;
         int deletedDirs = 0;
 
-        Path[] cacheFiles = {cachePaths.modChecksumFile(), cachePaths.configChecksumFile()};
+        Path[] cacheFiles = {
+                cachePaths.modChecksumFile(),
+                cachePaths.configChecksumFile(),
+                cachePaths.modValidatorFile(),
+                cachePaths.configValidatorFile(),
+                cachePaths.modManifestFile(),
+                cachePaths.configManifestFile()
+        };
         for (Path cacheFile : cacheFiles) {
             if (Files.deleteIfExists(cacheFile)) {
                 deletedFiles++;
@@ -240,8 +297,12 @@ public final class UpdateCoordinator {
                 sharedFilesDir,
                 sharedFilesDir.resolve(MOD_ZIP_NAME),
                 serverRoot.resolve("mods_checksums.json"),
+                serverRoot.resolve("mods_validators.json"),
+                serverRoot.resolve("mods_manifest.json"),
                 sharedFilesDir.resolve(CONFIG_ZIP_NAME),
-                serverRoot.resolve("config_checksums.json")
+                serverRoot.resolve("config_checksums.json"),
+                serverRoot.resolve("config_validators.json"),
+                serverRoot.resolve("config_manifest.json")
         );
     }
 
@@ -272,8 +333,12 @@ public final class UpdateCoordinator {
         private final Path sharedFilesDir;
         private final Path modDownloadPath;
         private final Path modChecksumFile;
+        private final Path modValidatorFile;
+        private final Path modManifestFile;
         private final Path configDownloadPath;
         private final Path configChecksumFile;
+        private final Path configValidatorFile;
+        private final Path configManifestFile;
 
         private ServerCachePaths(
                 String serverKey,
@@ -281,16 +346,24 @@ public final class UpdateCoordinator {
                 Path sharedFilesDir,
                 Path modDownloadPath,
                 Path modChecksumFile,
+                Path modValidatorFile,
+                Path modManifestFile,
                 Path configDownloadPath,
-                Path configChecksumFile
+                Path configChecksumFile,
+                Path configValidatorFile,
+                Path configManifestFile
         ) {
             this.serverKey = serverKey;
             this.serverRoot = serverRoot;
             this.sharedFilesDir = sharedFilesDir;
             this.modDownloadPath = modDownloadPath;
             this.modChecksumFile = modChecksumFile;
+            this.modValidatorFile = modValidatorFile;
+            this.modManifestFile = modManifestFile;
             this.configDownloadPath = configDownloadPath;
             this.configChecksumFile = configChecksumFile;
+            this.configValidatorFile = configValidatorFile;
+            this.configManifestFile = configManifestFile;
         }
 
         private String serverKey() {
@@ -313,6 +386,14 @@ public final class UpdateCoordinator {
             return modChecksumFile;
         }
 
+        private Path modValidatorFile() {
+            return modValidatorFile;
+        }
+
+        private Path modManifestFile() {
+            return modManifestFile;
+        }
+
         private Path configDownloadPath() {
             return configDownloadPath;
         }
@@ -320,6 +401,14 @@ public final class UpdateCoordinator {
         private Path configChecksumFile() {
             return configChecksumFile;
         }
+
+        private Path configValidatorFile() {
+            return configValidatorFile;
+        }
+
+        private Path configManifestFile() {
+            return configManifestFile;
+        }
     }
 
     private static void performUpdateFlow(
@@ -349,8 +438,12 @@ public final class UpdateCoordinator {
                     cachePaths.modDownloadPath(),
                     MOD_UNZIP_DESTINATION,
                     cachePaths.modChecksumFile(),
+                    cachePaths.modValidatorFile(),
+                    PackManifest.MODS,
+                    cachePaths.modManifestFile(),
                     true,
                     Config.mirrorMods,
+                    ModGroupChoices.load(cachePaths.serverRoot()),
                     currentModVersion,
                     summaryExtras
             );
@@ -410,9 +503,13 @@ public final class UpdateCoordinator {
                     cachePaths.configDownloadPath(),
                     CONFIG_UNZIP_DESTINATION,
                     cachePaths.configChecksumFile(),
+                    cachePaths.configValidatorFile(),
+                    PackManifest.CONFIG,
+                    cachePaths.configManifestFile(),
                     false,
                     Config.mirrorConfig,
                     null,
+                    null,
                     null
             );
         } catch (Exception e) {
@@ -427,7 +524,10 @@ public final class UpdateCoordinator {
         }
 
         String baseUrl = serverUpdateIP;
-        if (!baseUrl.startsWith("http://") && !baseUrl.startsWith("https://")) {
+        String localDirectory = PackTransport.localDirectoryUrl(baseUrl);
+        if (localDirectory != null) {
+            baseUrl = localDirectory;
+        } else if (!PackTransport.isFileUrl(baseUrl) && !baseUrl.startsWith("http://") && !baseUrl.startsWith("https://")) {
             baseUrl = "http://" + baseUrl;
         }
 
@@ -459,43 +559,214 @@ public final class UpdateCoordinator {
             Path downloadPath,
             Path unzipDestination,
             Path checksumFile,
+            Path validatorFile,
+            String pack,
+            Path manifestFile,
             boolean syncModsById,
             boolean mirrorMode,
+            ModGroupChoices groupChoices,
             String currentModVersion,
             List<String> summaryExtras
     ) throws Exception {
         minecraft.execute(() -> progressScreen.startNewDownload(displayName, downloadUrl));
 
-        HttpURLConnection connection = initializeConnection(downloadUrl, displayName);
-        downloadFileWithProgress(connection, downloadPath, progressScreen);
+        String rootPrefixToStrip = syncModsById ? null : "config/";
+        PackManifest manifest = fetchManifest(downloadUrl, pack);
+        Predicate<String> optedOut = path -> false;
+        if (manifest != null && groupChoices != null) {
+            // Plan, fetch and record only what the player installs.
+            Predicate<String> skipped = groupChoices.optedOut(manifest.groups());
+            manifest = manifest.filter(entry -> !skipped.test(entry.path()));
+            optedOut = skipped;
+        }
+        UpdatePlan plan = null;
+        if (manifest != null) {
+            PackManifest applied = Files.exists(checksumFile) ? readAppliedManifest(manifestFile) : null;
+            plan = applied == null
+                    ? UpdatePlan.full(manifest)
+                    : UpdatePlan.between(
+                            applied,
+                            manifest,
+                            unzipDestination,
+                            name -> normalizeZipEntryName(name, rootPrefixToStrip),
+                            entry -> syncModsById && isNotExtractedModsEntry(entry)
+                    );
+            LOGGER.info("{} manifest: {}", displayName, plan.describe());
+            if (plan.isUpToDate()) {
+                LOGGER.info("{} is up to date according to the pack manifest. Skipping download and extraction.", displayName);
+                return UpdateOutcome.success(null);
+            }
+        }
+
+        PackSource source = null;
+        DownloadValidators received = null;
+        if (plan != null && !plan.hasBaseline()) {
+            LOGGER.info("{}: nothing applied yet; downloading the zip.", displayName);
+        } else if (plan != null && plan.changedBytes() > plan.totalBytes() * MAX_OBJECT_SYNC_CHANGED_RATIO) {
+            LOGGER.info("{}: {} of {} bytes changed; downloading the zip.", displayName, plan.changedBytes(), plan.totalBytes());
+        } else if (plan != null) {
+            source = prepareObjectSource(downloadUrl, displayName, plan, progressScreen);
+            if (progressScreen.isCancelled()) {
+                LOGGER.info("{} object download cancelled by user.", displayName);
+                return UpdateOutcome.cancelled();
+            }
+        }
+
+        // A static tree on disk is read in place: there is nothing to download, resume or revalidate.
+        Path localZip = source == null ? PackTransport.forUrl(downloadUrl).localFile(downloadUrl) : null;
+        // Validators are only trusted while the checksum snapshot of the last applied pack exists.
+        // With a manifest the plan already decided that something changed, so do not revalidate.
+        DownloadValidators previous = source == null && localZip == null && plan == null && Files.exists(checksumFile)
+                ? DownloadValidators.load(validatorFile, downloadUrl)
+                : null;
+        if (localZip != null) {
+            validateDownloadedFile(localZip, displayName);
+            Files.deleteIfExists(validatorFile);
+            Files.deleteIfExists(manifestFile);
+            minecraft.execute(() -> progressScreen.startProcessing("Preparing " + displayName + "...", "Reading " + localZip + "..."));
+            source = PackSource.zip(localZip);
+        } else if (source == null && Files.exists(checksumFile)) {
+            RemoteZip.Opened opened = openRemoteZip(downloadUrl, displayName, previous, progressScreen);
+            if (progressScreen.isCancelled()) {
+                LOGGER.info("{} download cancelled by user while queued.", displayName);
+                return UpdateOutcome.cancelled();
+            }
+            if (opened != null && opened.notModified()) {
+                LOGGER.info("{} is unchanged on the server (304). Skipping download and extraction.", displayName);
+                return UpdateOutcome.success(null);
+            }
+            if (opened != null && opened.zip() != null) {
+                source = prepareRemoteZipSource(
+                        opened.zip(),
+                        displayName,
+                        unzipDestination,
+                        rootPrefixToStrip,
+                        optedOut,
+                        downloadPath.resolveSibling(downloadPath.getFileName() + ".entries"),
+                        progressScreen
+                );
+                if (progressScreen.isCancelled()) {
+                    LOGGER.info("{} entry download cancelled by user.", displayName);
+                    return UpdateOutcome.cancelled();
+                }
+                if (source != null) {
+                    received = opened.zip().validators();
+                    Files.deleteIfExists(validatorFile);
+                    Files.deleteIfExists(manifestFile);
+                    minecraft.execute(() -> progressScreen.startProcessing("Preparing " + displayName + "...", "Applying changed entries..."));
+                }
+            }
+        } else if (source != null) {
+            Files.deleteIfExists(validatorFile);
+            Files.deleteIfExists(manifestFile);
+            minecraft.execute(() -> progressScreen.startProcessing("Preparing " + displayName + "...", "Assembling from objects..."));
+        }
+
+        if (source == null) {
+            PartialDownload partial = PartialDownload.open(downloadPath, downloadUrl);
+            HttpURLConnection connection = initializeConnection(downloadUrl, displayName, partial, previous, progressScreen);
+            if (connection == null) {
+                LOGGER.info("{} download cancelled by user while queued.", displayName);
+                return UpdateOutcome.cancelled();
+            }
+            if (connection.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                LOGGER.info("{} is unchanged on the server (304). Skipping download and extraction.", displayName);
+                connection.disconnect();
+                return UpdateOutcome.success(null);
+            }
+
+            received = DownloadValidators.fromResponse(connection, downloadUrl);
+            Files.deleteIfExists(validatorFile);
+            Files.deleteIfExists(manifestFile);
+            boolean completed = downloadFileWithProgress(connection, downloadPath, partial, progressScreen);
+
+            if (!completed || progressScreen.isCancelled()) {
+                LOGGER.info("{} download cancelled by user.", displayName);
+                return UpdateOutcome.cancelled();
+            }
+
+            minecraft.execute(() -> progressScreen.startProcessing("Preparing " + displayName + "...", "Validating download..."));
+            validateDownloadedFile(downloadPath, displayName);
+            source = PackSource.zip(downloadPath);
+        }
 
-        if (progressScreen.isCancelled()) {
-            LOGGER.info("{} download cancelled by user.", displayName);
-            return UpdateOutcome.cancelled();
+        try (PackSource entries = source) {
+            return applyPack(
+                    entries,
+                    progressScreen,
+                    displayName,
+                    unzipDestination,
+                    checksumFile,
+                    validatorFile,
+                    manifestFile,
+                    manifest,
+                    received,
+                    plan,
+                    rootPrefixToStrip,
+                    syncModsById,
+                    mirrorMode,
+                    groupChoices,
+                    currentModVersion,
+                    summaryExtras
+            );
         }
+    }
 
-        minecraft.execute(() -> progressScreen.startProcessing("Preparing " + displayName + "...", "Validating download..."));
-        validateDownloadedFile(downloadPath, displayName);
+    private static UpdateOutcome applyPack(
+            PackSource source,
+            DownloadProgressScreen progressScreen,
+            String displayName,
+            Path unzipDestination,
+            Path checksumFile,
+            Path validatorFile,
+            Path manifestFile,
+            PackManifest manifest,
+            DownloadValidators received,
+            UpdatePlan plan,
+            String rootPrefixToStrip,
+            boolean syncModsById,
+            boolean mirrorMode,
+            ModGroupChoices groupChoices,
+            String currentModVersion,
+            List<String> summaryExtras
+    ) throws Exception {
         prepareDestinationDirectory(unzipDestination);
+        Predicate<String> optedOut = path -> false;
+        if (groupChoices != null) {
+            // Without a manifest the groups come from the descriptor packed into the zip.
+            ModGroups groups = manifest != null ? manifest.groups() : readPackGroups(source);
+            optedOut = groupChoices.optedOut(groups);
+            List<String> leftOut = groupChoices.optedOutNames(groups);
+            if (!leftOut.isEmpty()) {
+                LOGGER.info("Leaving out optional mod group(s): {}", String.join(", ", leftOut));
+                if (summaryExtras != null) {
+                    summaryExtras.add("Optional mods not installed: " + String.join(", ", leftOut) + ".");
+                }
+            }
+        }
         Set<String> extractedFiles = null;
         if (syncModsById) {
             LOGGER.info("Using modId sync extraction for {}", displayName);
-            extractedFiles = extractModsZipFileWithModIdSync(
-                    downloadPath,
+            extractedFiles = extractModsWithModIdSync(
+                    source,
                     unzipDestination,
                     progressScreen,
                     currentModVersion,
-                    summaryExtras
+                    summaryExtras,
+                    plan,
+                    optedOut
             );
         } else {
-            extractedFiles = extractZipFile(downloadPath, unzipDestination, progressScreen, displayName, "config/");
+            extractedFiles = extractPack(source, unzipDestination, progressScreen, displayName, rootPrefixToStrip, plan);
         }
         Set<String> mirrorAllowed = extractedFiles == null ? new HashSet<>() : new HashSet<>(extractedFiles);
         if (mirrorMode) {
             if (syncModsById) {
                 mirrorAllowed.addAll(getSelfJarFileNames(unzipDestination, progressScreen));
             }
-            MirrorResult mirrorResult = mirrorDirectoryContents(unzipDestination, mirrorAllowed, progressScreen, displayName);
+            PackIgnore ignore = manifest != null ? PackIgnore.compile(manifest.ignorePatterns()) : PackIgnore.NONE;
+            Predicate<String> keep = optedOut.or(ignore::isIgnored);
+            MirrorResult mirrorResult = mirrorDirectoryContents(unzipDestination, mirrorAllowed, keep, progressScreen, displayName);
             if (summaryExtras != null && mirrorResult.removedFiles > 0) {
                 summaryExtras.add("Mirror removed " + mirrorResult.removedFiles + " extra file(s) from " + displayName + ".");
             }
@@ -504,8 +775,8 @@ public final class UpdateCoordinator {
         if (mirrorMode) {
             diff = computeAndSaveChecksums(unzipDestination, checksumFile, progressScreen, displayName, null, false);
         } else if (!syncModsById) {
-            diff = computeAndSaveChecksumsFromZip(
-                    downloadPath,
+            diff = computeAndSaveChecksumsFromPack(
+                    source,
                     checksumFile,
                     progressScreen,
                     displayName,
@@ -521,41 +792,511 @@ public final class UpdateCoordinator {
                     syncModsById
             );
         }
+        if (received != null) {
+            received.save(validatorFile);
+        }
+        if (manifest != null) {
+            manifest.write(manifestFile);
+        }
         return UpdateOutcome.success(diff);
     }
 
-    private static HttpURLConnection initializeConnection(String url, String displayName) throws IOException {
+    /**
+     * Fetches {@code <pack>.manifest.json} next to the zip. Returns null when the server does not
+     * publish one (older servers, manually uploaded zips) or it cannot be read.
+     */
+    private static PackManifest fetchManifest(String zipUrl, String pack) {
+        int lastSlash = zipUrl.lastIndexOf('/');
+        if (lastSlash < 0) {
+            return null;
+        }
+        String manifestUrl = zipUrl.substring(0, lastSlash + 1) + PackManifest.fileName(pack);
+        try (PackTransport.Resource resource = PackTransport.forUrl(manifestUrl).open(manifestUrl)) {
+            if (resource == null) {
+                LOGGER.info("No pack manifest at {}.", manifestUrl);
+                return null;
+            }
+            return PackManifest.parse(new String(resource.stream().readAllBytes(), StandardCharsets.UTF_8));
+        } catch (Exception e) {
+            LOGGER.warn("Failed to fetch pack manifest {}", manifestUrl, e);
+            return null;
+        }
+    }
+
+    private static PackManifest readAppliedManifest(Path manifestFile) {
+        try {
+            return PackManifest.read(manifestFile);
+        } catch (IOException e) {
+            LOGGER.warn("Ignoring unreadable manifest {}", manifestFile, e);
+            return null;
+        }
+    }
+
+    /**
+     * Reads the optional groups from the descriptor inside the pack, for packs without a manifest.
+     */
+    private static ModGroups readPackGroups(PackSource source) {
+        for (PackSource.Entry entry : source.entries()) {
+            if (ModGroups.FILE_NAME.equals(entry.name())) {
+                try (InputStream in = source.open(entry)) {
+                    return ModGroups.parse(new String(in.readAllBytes(), StandardCharsets.UTF_8));
+                } catch (IOException e) {
+                    LOGGER.warn("Failed to read {}; installing every optional group.", ModGroups.FILE_NAME, e);
+                }
+            }
+        }
+        return ModGroups.NONE;
+    }
+
+    /**
+     * Entries of mods.zip that are never written to /mods: the removal list, the optional group
+     * descriptor and the SCS jar itself.
+     */
+    private static boolean isNotExtractedModsEntry(PackManifest.Entry entry) {
+        return MODS_REMOVE_LIST_NAME.equals(entry.path())
+                || ModGroups.FILE_NAME.equals(entry.path())
+                || entry.metadata().modIds().contains(SCS.MODID.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * True when the plan marks the entry unchanged and the pack entry matches the manifest, which
+     * guards against a manifest fetched just before the pack was rebuilt.
+     */
+    private static boolean isUnchangedEntry(UpdatePlan plan, PackManifest.Entry manifestEntry, PackSource.Entry entry) {
+        return plan != null
+                && manifestEntry != null
+                && plan.isUnchanged(manifestEntry.path())
+                && entry.size() == manifestEntry.size()
+                && entry.crc() == manifestEntry.crc32();
+    }
+
+    /**
+     * Gathers the objects of every changed entry into the shared object cache: objects already cached
+     * are reused, local files the applied pack had under another path are imported, entries without
+     * an older local version come from the delta since the applied generation, and the rest are
+     * patched, assembled from chunks or fetched from {@code /objects/<sha256>}. Returns null when the
+     * server has no object store or a fetch fails (the caller falls back to the zip), or when the
+     * user cancelled.
+     */
+    private static PackSource prepareObjectSource(
+            String zipUrl,
+            String displayName,
+            UpdatePlan plan,
+            DownloadProgressScreen progressScreen
+    ) {
+        int lastSlash = zipUrl.lastIndexOf('/');
+        if (lastSlash < 0) {
+            return null;
+        }
+        String serverUrl = zipUrl.substring(0, lastSlash + 1);
+        if (Config.objectCacheSizeMb > 0) {
+            ObjectCache.trim(Config.objectCacheSizeMb * 1024L * 1024L, ObjectCache.DEFAULT_ROOT, ChunkCache.DEFAULT_ROOT);
+        }
+        ObjectCache cache = new ObjectCache(ObjectCache.DEFAULT_ROOT, new ChunkCache(ChunkCache.DEFAULT_ROOT));
+        Map<String, PackManifest.Entry> entries = plan.target().entriesByPath();
+        Set<String> changed = new HashSet<>(plan.changed());
+        Map<String, PackManifest.Entry> missing = new LinkedHashMap<>();
+        int reused = 0;
+        for (PackManifest.Entry entry : entries.values()) {
+            boolean needed = changed.contains(entry.path()) || MODS_REMOVE_LIST_NAME.equals(entry.path());
+            if (!needed || entry.metadata().modIds().contains(SCS.MODID.toLowerCase(Locale.ROOT))) {
+                continue;
+            }
+            if (cache.contains(entry.sha256(), entry.size())) {
+                reused++;
+                continue;
+            }
+            Path localCopy = plan.localCopy(entry.sha256());
+            if (localCopy != null && cache.importFile(localCopy, entry.sha256())) {
+                reused++;
+                continue;
+            }
+            missing.putIfAbsent(entry.sha256(), entry);
+        }
+        Map<String, List<ObjectCache.PreviousVersion>> previousVersions = findPreviousVersions(missing.values(), plan, cache);
+        LOGGER.info("{}: {} object(s) reused locally, {} to download ({} with an older local version).",
+                displayName, reused, missing.size(), previousVersions.size());
+
+        try {
+            long base = plan.baseGeneration();
+            long target = plan.target().generation();
+            // A delta carries whole files, so it only serves the entries that cannot be patched or chunked.
+            Map<String, PackManifest.Entry> wanted = new HashMap<>();
+            for (PackManifest.Entry entry : missing.values()) {
+                if (!previousVersions.containsKey(entry.sha256())) {
+                    wanted.put(entry.path(), entry);
+                }
+            }
+            if (!wanted.isEmpty() && base > 0 && base < target) {
+                String deltaUrl = serverUrl + DELTA_PATH
+                        + "?pack=" + URLEncoder.encode(plan.target().pack(), StandardCharsets.UTF_8)
+                        + "&from=" + base + "&to=" + target;
+                if (importDeltaEntries(deltaUrl, displayName, wanted, cache, progressScreen)) {
+                    missing.values().removeIf(entry -> cache.contains(entry.sha256(), entry.size()));
+                } else if (progressScreen.isCancelled()) {
+                    return null;
+                } else {
+                    LOGGER.info("{}: no usable delta from generation {}; fetching objects.", displayName, base);
+                }
+            }
+            if (!cache.fetchAll(serverUrl, new ArrayList<>(missing.values()), previousVersions, progressScreen)) {
+                return null;
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Falling back to the full {} download: {}", displayName, e.getMessage());
+            return null;
+        }
+        return PackSource.objects(plan.target(), cache);
+    }
+
+    /**
+     * Reads the wanted entries out of the delta with Range requests, leaving the entries that have
+     * an older local version to be patched or chunked. Like the zip, the delta waits in the
+     * server's download queue. Returns false when the server has no such delta (the base generation
+     * was pruned), it cannot be read remotely or a fetch fails, so the caller fetches objects instead.
+     */
+    private static boolean importDeltaEntries(
+            String deltaUrl,
+            String displayName,
+            Map<String, PackManifest.Entry> wanted,
+            ObjectCache cache,
+            DownloadProgressScreen progressScreen
+    ) {
+        RemoteZip.Opened opened = openRemoteZip(deltaUrl, displayName + " delta", null, progressScreen);
+        if (opened == null || opened.zip() == null || progressScreen.isCancelled()) {
+            return false;
+        }
+        RemoteZip delta = opened.zip();
+        List<RemoteZip.Entry> selected = new ArrayList<>();
+        long totalBytes = 0;
+        for (RemoteZip.Entry entry : delta.entries()) {
+            if (!entry.isDirectory() && wanted.containsKey(entry.name())) {
+                selected.add(entry);
+                totalBytes += entry.span();
+            }
+        }
+        Path staging = null;
+        try {
+            staging = Files.createTempDirectory("scs-delta");
+            long expectedBytes = totalBytes;
+            long startTime = System.currentTimeMillis();
+            AtomicLong receivedBytes = new AtomicLong();
+            int requests = delta.fetch(
+                    selected,
+                    staging,
+                    read -> ObjectCache.reportProgress(progressScreen, receivedBytes.addAndGet(read), expectedBytes, startTime),
+                    progressScreen::isCancelled
+            );
+            for (RemoteZip.Entry entry : selected) {
+                PackManifest.Entry manifestEntry = wanted.get(entry.name());
+                if (!cache.importFile(delta.fetchedPath(staging, entry), manifestEntry.sha256())) {
+                    throw new IOException("Delta entry " + entry.name() + " does not match the manifest");
+                }
+            }
+            LOGGER.info("{}: {} of {} delta entries fetched ({} bytes in {} range request(s)).",
+                    displayName, selected.size(), delta.entries().size(), totalBytes, requests);
+            return true;
+        } catch (IOException e) {
+            if (!progressScreen.isCancelled()) {
+                LOGGER.info("{}: could not read the delta by ranges: {}", displayName, e.getMessage());
+            }
+            return false;
+        } finally {
+            if (staging != null) {
+                deleteStaging(staging);
+            }
+        }
+    }
+
+    private static void deleteStaging(Path staging) {
+        try (var files = Files.list(staging)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.deleteIfExists(file);
+            }
+            Files.deleteIfExists(staging);
+        } catch (IOException e) {
+            LOGGER.debug("Could not delete {}", staging, e);
+        }
+    }
+
+    /**
+     * For each entry, the older versions the client still holds (in the object cache or installed
+     * by the applied pack): the bases the server can patch from, then the applied version itself.
+     */
+    private static Map<String, List<ObjectCache.PreviousVersion>> findPreviousVersions(
+            Collection<PackManifest.Entry> entries,
+            UpdatePlan plan,
+            ObjectCache cache
+    ) {
+        Map<String, List<ObjectCache.PreviousVersion>> versions = new HashMap<>();
+        for (PackManifest.Entry entry : entries) {
+            Set<String> candidates = new LinkedHashSet<>(entry.patchBases());
+            String applied = plan.previousVersion(entry);
+            if (applied != null) {
+                candidates.add(applied);
+            }
+            List<ObjectCache.PreviousVersion> found = new ArrayList<>();
+            for (String sha256 : candidates) {
+                Path file = Files.isRegularFile(cache.path(sha256)) ? cache.path(sha256) : plan.localCopy(sha256);
+                if (file != null) {
+                    found.add(new ObjectCache.PreviousVersion(sha256, file));
+                }
+            }
+            if (!found.isEmpty()) {
+                versions.put(entry.sha256(), found);
+            }
+        }
+        return versions;
+    }
+
+    /**
+     * Reads the central directory of the zip with a suffix Range request. Returns null when the
+     * server or an intermediary does not support it, so the caller downloads the zip whole.
+     */
+    private static RemoteZip.Opened openRemoteZip(
+            String zipUrl,
+            String displayName,
+            DownloadValidators conditional,
+            DownloadProgressScreen progressScreen
+    ) {
+        RemoteZip.QueueWait queue = (position, retryAfterSeconds) -> {
+            long waitMillis = withJitter(retryAfterSeconds > 0 ? retryAfterSeconds : DEFAULT_RETRY_AFTER_SECONDS);
+            LOGGER.info("{} range requests queued at position {}. Retrying in {} ms.", displayName, position, waitMillis);
+            return waitInQueue(progressScreen, position, waitMillis);
+        };
+        try {
+            return RemoteZip.open(zipUrl, conditional, queue);
+        } catch (IOException e) {
+            LOGGER.info("Cannot read the {} zip remotely: {}", displayName, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Compares every entry of the remote central directory with the installed file by size and
+     * CRC32 and fetches only the entries that differ, as coalesced byte ranges of the zip. Returns
+     * null when too much changed or a fetch fails (the caller downloads the zip), or when cancelled.
+     */
+    private static PackSource prepareRemoteZipSource(
+            RemoteZip zip,
+            String displayName,
+            Path destination,
+            String rootPrefixToStrip,
+            Predicate<String> optedOut,
+            Path stagingDirectory,
+            DownloadProgressScreen progressScreen
+    ) throws IOException {
+        Map<String, Path> unchanged = new HashMap<>();
+        List<RemoteZip.Entry> changed = new ArrayList<>();
+        long changedBytes = 0;
+        for (RemoteZip.Entry entry : zip.entries()) {
+            String entryName = normalizeZipEntryName(entry.name(), rootPrefixToStrip);
+            if (entry.isDirectory() || entryName.isBlank() || optedOut.test(entryName)) {
+                continue;
+            }
+            Path local = destination.resolve(entryName).normalize();
+            if (!MODS_REMOVE_LIST_NAME.equals(entry.name()) && local.startsWith(destination) && matchesLocalFile(local, entry)) {
+                unchanged.put(entry.name(), local);
+            } else {
+                changed.add(entry);
+                changedBytes += entry.span();
+            }
+        }
+        if (changedBytes > zip.zipSize() * MAX_REMOTE_ZIP_CHANGED_RATIO) {
+            LOGGER.info("{}: {} of {} bytes changed; downloading the zip whole.", displayName, changedBytes, zip.zipSize());
+            return null;
+        }
+
+        PackSource source = PackSource.remoteZip(zip, stagingDirectory, unchanged);
+        long totalBytes = changedBytes;
+        long startTime = System.currentTimeMillis();
+        AtomicLong receivedBytes = new AtomicLong();
+        try {
+            int requests = zip.fetch(
+                    changed,
+                    stagingDirectory,
+                    read -> ObjectCache.reportProgress(progressScreen, receivedBytes.addAndGet(read), totalBytes, startTime),
+                    progressScreen::isCancelled
+            );
+            LOGGER.info("{}: {} entries unchanged, {} fetched ({} bytes in {} range request(s)).",
+                    displayName, unchanged.size(), changed.size(), changedBytes, requests);
+            return source;
+        } catch (IOException e) {
+            source.close();
+            if (!progressScreen.isCancelled()) {
+                LOGGER.warn("Falling back to the full {} download: {}", displayName, e.getMessage());
+            }
+            return null;
+        }
+    }
+
+    private static boolean matchesLocalFile(Path file, RemoteZip.Entry entry) {
+        try {
+            if (!Files.isRegularFile(file) || Files.size(file) != entry.size()) {
+                return false;
+            }
+            CRC32 crc = new CRC32();
+            try (InputStream in = new CheckedInputStream(Files.newInputStream(file), crc)) {
+                in.transferTo(OutputStream.nullOutputStream());
+            }
+            return crc.getValue() == entry.crc();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Opens the download, resuming and revalidating where possible. While the server answers 503
+     * (download queue full) the request is retried after its Retry-After estimate plus jitter, keeping
+     * the queue ticket so the client holds its place. Returns null when cancelled while waiting.
+     */
+    private static HttpURLConnection initializeConnection(
+            String url,
+            String displayName,
+            PartialDownload partial,
+            DownloadValidators conditional,
+            DownloadProgressScreen progressScreen
+    ) throws IOException {
         URL downloadUrl;
         try {
             downloadUrl = URI.create(url).toURL();
         } catch (IllegalArgumentException e) {
             throw new IOException("Invalid URL: " + url, e);
         }
-        HttpURLConnection connection = (HttpURLConnection) downloadUrl.openConnection();
-        connection.setConnectTimeout(CONNECTION_TIMEOUT_MS);
-        connection.setReadTimeout(CONNECTION_TIMEOUT_MS);
-        connection.setRequestMethod("GET");
 
-        int responseCode = connection.getResponseCode();
-        LOGGER.info("Connecting to {} - Response Code: {}", url, responseCode);
+        String queueTicket = null;
+        int unqueuedRetries = 0;
+        while (true) {
+            HttpURLConnection connection = (HttpURLConnection) downloadUrl.openConnection();
+            connection.setConnectTimeout(CONNECTION_TIMEOUT_MS);
+            connection.setReadTimeout(CONNECTION_TIMEOUT_MS);
+            connection.setRequestMethod("GET");
+
+            long resumeOffset = partial != null ? partial.resumeOffset() : 0;
+            if (resumeOffset > 0) {
+                connection.setRequestProperty("Range", "bytes=" + resumeOffset + "-");
+                connection.setRequestProperty("If-Range", partial.validator());
+            }
+            if (conditional != null) {
+                conditional.applyTo(connection);
+            }
+            if (queueTicket != null) {
+                connection.setRequestProperty(QUEUE_TICKET_HEADER, queueTicket);
+            }
+
+            int responseCode = connection.getResponseCode();
+            LOGGER.info("Connecting to {} - Response Code: {}", url, responseCode);
+
+            if (responseCode == 416 && resumeOffset > 0) {
+                LOGGER.info("Partial {} download no longer matches the server, starting over.", displayName);
+                connection.disconnect();
+                partial.discard();
+                continue;
+            }
+
+            if (responseCode == HttpURLConnection.HTTP_UNAVAILABLE) {
+                String ticket = connection.getHeaderField(QUEUE_TICKET_HEADER);
+                int position = parseIntHeader(connection.getHeaderField(QUEUE_POSITION_HEADER), -1);
+                int retryAfter = parseIntHeader(connection.getHeaderField("Retry-After"), -1);
+                connection.disconnect();
+                if (ticket != null) {
+                    queueTicket = ticket;
+                } else if (++unqueuedRetries > MAX_UNQUEUED_RETRIES) {
+                    throw new IOException("Failed to fetch " + displayName + " - Server is unavailable (503).");
+                }
+                long waitMillis = withJitter(retryAfter > 0 ? retryAfter : DEFAULT_RETRY_AFTER_SECONDS);
+                LOGGER.info("{} download queued at position {}. Retrying in {} ms.", displayName, position, waitMillis);
+                if (!waitInQueue(progressScreen, position, waitMillis)) {
+                    return null;
+                }
+                continue;
+            }
+
+            if (responseCode != HttpURLConnection.HTTP_OK
+                    && responseCode != HttpURLConnection.HTTP_PARTIAL
+                    && responseCode != HttpURLConnection.HTTP_NOT_MODIFIED) {
+                throw new IOException("Failed to fetch " + displayName + " - Server returned response code: " + responseCode);
+            }
 
-        if (responseCode != HttpURLConnection.HTTP_OK) {
-            throw new IOException("Failed to fetch " + displayName + " - Server returned response code: " + responseCode);
+            return connection;
         }
+    }
 
-        return connection;
+    /**
+     * Retry-After scaled by a random factor in [0.75, 1.25) so queued clients do not retry in lockstep.
+     */
+    private static long withJitter(int retryAfterSeconds) {
+        double factor = 0.75 + ThreadLocalRandom.current().nextDouble() * 0.5;
+        return (long) (retryAfterSeconds * 1000L * factor);
+    }
+
+    private static boolean waitInQueue(DownloadProgressScreen progressScreen, int position, long waitMillis) {
+        long deadline = System.currentTimeMillis() + waitMillis;
+        while (true) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (progressScreen.isCancelled()) {
+                return false;
+            }
+            if (remaining <= 0) {
+                return true;
+            }
+            progressScreen.updateQueue(position, (int) Math.ceil(remaining / 1000.0));
+            try {
+                Thread.sleep(Math.min(remaining, 250));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
     }
 
-    private static void downloadFileWithProgress(HttpURLConnection connection, Path destination, DownloadProgressScreen progressScreen) throws IOException {
+    static int parseIntHeader(String value, int fallback) {
+        if (value == null || value.isBlank()) {
+            return fallback;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+
+    /**
+     * Streams the response into the partial file, appending when the server answered 206 for our
+     * resume offset. Returns false when cancelled; the partial file is kept for the next attempt.
+     */
+    private static boolean downloadFileWithProgress(
+            HttpURLConnection connection,
+            Path destination,
+            PartialDownload partial,
+            DownloadProgressScreen progressScreen
+    ) throws IOException {
         Files.createDirectories(destination.getParent());
-        if (!Files.exists(destination)) {
-            Files.createFile(destination); // Create the file only if it doesn't exist
+
+        long offset = 0;
+        if (connection.getResponseCode() == HttpURLConnection.HTTP_PARTIAL) {
+            offset = parseContentRangeStart(connection.getHeaderField("Content-Range"));
+            if (offset != partial.resumeOffset()) {
+                partial.discard();
+                throw new IOException("Server resumed at byte " + offset + " but " + partial.resumeOffset() + " were expected.");
+            }
+            LOGGER.info("Resuming download at {} bytes.", offset);
+        } else {
+            partial.discard();
         }
+
+        long contentLength = connection.getContentLengthLong();
+        boolean hasLength = contentLength > 0;
+        long totalBytes = hasLength ? offset + contentLength : -1;
+        partial.begin(readValidator(connection), totalBytes);
+
+        StandardOpenOption[] openOptions = offset > 0
+                ? new StandardOpenOption[]{StandardOpenOption.CREATE, StandardOpenOption.APPEND}
+                : new StandardOpenOption[]{StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE};
+
+        long downloadedBytes = 0;
         try (InputStream in = connection.getInputStream();
-             var out = Files.newOutputStream(destination)) {
-            long totalBytes = connection.getContentLengthLong();
-            boolean hasLength = totalBytes > 0;
-            long downloadedBytes = 0;
+             var out = Files.newOutputStream(partial.partFile(), openOptions)) {
             long startTime = System.currentTimeMillis();
 
             byte[] buffer = new byte[8192];
@@ -565,13 +1306,13 @@ public final class UpdateCoordinator {
             while ((bytesRead = in.read(buffer)) != -1) {
                 if (progressScreen.isCancelled()) {
                     LOGGER.info("Download cancelled by user.");
-                    return;
+                    return false;
                 }
 
                 out.write(buffer, 0, bytesRead);
                 downloadedBytes += bytesRead;
 
-                int progress = hasLength ? (int) ((downloadedBytes * 100) / totalBytes) : 0;
+                int progress = hasLength ? (int) (((offset + downloadedBytes) * 100) / totalBytes) : 0;
                 long elapsedTime = System.currentTimeMillis() - startTime;
                 double speedInKB = elapsedTime > 0 ? (downloadedBytes / 1024.0) / (elapsedTime / 1000.0) : 0.0;
 
@@ -581,7 +1322,7 @@ public final class UpdateCoordinator {
                 lastSpeed = speed;
 
                 // Calculate ETA
-                long bytesRemaining = totalBytes - downloadedBytes;
+                long bytesRemaining = totalBytes - offset - downloadedBytes;
                 String eta;
                 if (!hasLength) {
                     eta = "Unknown";
@@ -603,6 +1344,35 @@ public final class UpdateCoordinator {
                 progressScreen.updateProgress(100, lastSpeed, "");
             }
         }
+
+        if (hasLength && downloadedBytes < contentLength) {
+            throw new IOException("Connection closed after " + (offset + downloadedBytes) + " of " + totalBytes + " bytes.");
+        }
+
+        partial.complete(destination);
+        return true;
+    }
+
+    private static long parseContentRangeStart(String contentRange) throws IOException {
+        // Format: "bytes <start>-<end>/<total>"
+        if (contentRange != null && contentRange.startsWith("bytes ")) {
+            int dash = contentRange.indexOf('-');
+            if (dash > 6) {
+                try {
+                    return Long.parseLong(contentRange.substring(6, dash).trim());
+                } catch (NumberFormatException ignored) {
+                }
+            }
+        }
+        throw new IOException("Invalid Content-Range in partial response: " + contentRange);
+    }
+
+    private static String readValidator(HttpURLConnection connection) {
+        String etag = connection.getHeaderField("ETag");
+        if (etag != null && !etag.isBlank() && !etag.startsWith("W/")) {
+            return etag;
+        }
+        return connection.getHeaderField("Last-Modified");
     }
 
     private static void validateDownloadedFile(Path downloadPath, String displayName) throws IOException {
@@ -679,9 +1449,15 @@ public final class UpdateCoordinator {
         return names;
     }
 
+    /**
+     * Deletes files under {@code destination} that the pack did not contain, except those {@code keep}
+     * matches: files the server's {@code .scsignore} never packs and mods of optional groups the
+     * player left out, which are the player's own to install or not.
+     */
     private static MirrorResult mirrorDirectoryContents(
             Path destination,
             Set<String> allowedRelativePaths,
+            Predicate<String> keep,
             DownloadProgressScreen progressScreen,
             String displayName
     ) throws IOException {
@@ -711,7 +1487,7 @@ public final class UpdateCoordinator {
             }
 
             String rel = normalizeRelativeKey(destination, file);
-            if (!allowed.contains(rel)) {
+            if (!allowed.contains(rel) && !keep.test(destination.relativize(file).toString().replace('\\', '/'))) {
                 try {
                     Files.deleteIfExists(file);
                     removedFiles++;
@@ -768,163 +1544,184 @@ public final class UpdateCoordinator {
         }
         return rel.replace('\\', '/').toLowerCase(Locale.ROOT);
     }
-    private static Set<String> extractZipFile(
-            Path zipPath,
+    private static Set<String> extractPack(
+            PackSource source,
             Path destination,
             DownloadProgressScreen progressScreen,
             String displayName,
-            String rootPrefixToStrip
+            String rootPrefixToStrip,
+            UpdatePlan plan
     ) throws IOException {
         Set<String> extractedFiles = new HashSet<>();
-        try (ZipFile zipFile = new ZipFile(zipPath.toFile())) {
-            List<? extends ZipEntry> entries = Collections.list(zipFile.entries());
-            int total = entries.size();
-            int current = 0;
-            for (ZipEntry entry : entries) {
-                current++;
-                String entryName = normalizeZipEntryName(entry.getName(), rootPrefixToStrip);
-                if (entryName.isBlank()) {
-                    continue;
-                }
-                int progress = total > 0 ? (int) ((current * 100L) / total) : 0;
-                String detail = total > 0
-                        ? String.format("%d/%d: %s", current, total, entryName)
-                        : entryName;
-                updateProcessing(progressScreen, "Extracting " + displayName + "...", detail, progress, total > 0);
-
-                Path entryPath = destination.resolve(entryName).normalize();
-                if (!entryPath.startsWith(destination)) {
-                    throw new IOException("Blocked zip entry outside destination: " + entryName);
-                }
-                if (entry.isDirectory()) {
-                    Files.createDirectories(entryPath);
-                } else {
-                    Files.createDirectories(entryPath.getParent());
-                    try (InputStream is = zipFile.getInputStream(entry)) {
-                        Files.copy(is, entryPath, StandardCopyOption.REPLACE_EXISTING);
-                    }
-                    extractedFiles.add(entryName.replace('\\', '/'));
+        Map<String, PackManifest.Entry> manifestEntries = plan != null ? plan.target().entriesByPath() : Collections.emptyMap();
+        List<PackSource.Entry> entries = source.entries();
+        int total = entries.size();
+        int current = 0;
+        for (PackSource.Entry entry : entries) {
+            current++;
+            String entryName = normalizeZipEntryName(entry.name(), rootPrefixToStrip);
+            if (entryName.isBlank()) {
+                continue;
+            }
+            int progress = total > 0 ? (int) ((current * 100L) / total) : 0;
+            String detail = total > 0
+                    ? String.format("%d/%d: %s", current, total, entryName)
+                    : entryName;
+            updateProcessing(progressScreen, "Extracting " + displayName + "...", detail, progress, total > 0);
+
+            Path entryPath = destination.resolve(entryName).normalize();
+            if (!entryPath.startsWith(destination)) {
+                throw new IOException("Blocked zip entry outside destination: " + entryName);
+            }
+            if (entry.isDirectory()) {
+                Files.createDirectories(entryPath);
+            } else if (isUnchangedEntry(plan, manifestEntries.get(entry.name().replace('\\', '/')), entry) || source.isUnchanged(entry)) {
+                extractedFiles.add(entryName.replace('\\', '/'));
+            } else {
+                Files.createDirectories(entryPath.getParent());
+                try (InputStream is = source.open(entry)) {
+                    Files.copy(is, entryPath, StandardCopyOption.REPLACE_EXISTING);
                 }
+                extractedFiles.add(entryName.replace('\\', '/'));
             }
         }
         return extractedFiles;
     }
 
-    private static Set<String> extractModsZipFileWithModIdSync(
-            Path zipPath,
+    private static Set<String> extractModsWithModIdSync(
+            PackSource source,
             Path destination,
             DownloadProgressScreen progressScreen,
             String currentModVersion,
-            List<String> summaryExtras
+            List<String> summaryExtras,
+            UpdatePlan plan,
+            Predicate<String> optedOut
     ) throws Exception {
+        Map<String, PackManifest.Entry> manifestEntries = plan != null ? plan.target().entriesByPath() : Collections.emptyMap();
         Map<String, List<Path>> existingModsById = indexInstalledModsById(destination, progressScreen);
         Set<String> extractedFiles = new HashSet<>();
         List<String> modsToRemove = new ArrayList<>();
         boolean warnedSelfUpdate = false;
 
-        try (ZipFile zipFile = new ZipFile(zipPath.toFile())) {
-            List<? extends ZipEntry> entries = Collections.list(zipFile.entries());
-            int total = entries.size();
-            int current = 0;
+        List<PackSource.Entry> entries = source.entries();
+        int total = entries.size();
+        int current = 0;
 
-            for (ZipEntry entry : entries) {
-                current++;
-                String entryName = entry.getName();
+        for (PackSource.Entry entry : entries) {
+            current++;
+            String entryName = entry.name();
 
-                if (MODS_REMOVE_LIST_NAME.equals(entryName)) {
-                    modsToRemove = parseModsRemovalList(zipFile, entry);
-                    continue;
-                }
+            if (MODS_REMOVE_LIST_NAME.equals(entryName)) {
+                modsToRemove = parseModsRemovalList(source, entry);
+                continue;
+            }
+            if (ModGroups.FILE_NAME.equals(entryName) || optedOut.test(entryName.replace('\\', '/'))) {
+                continue;
+            }
 
-                Path entryPath = destination.resolve(entryName).normalize();
-                if (!entryPath.startsWith(destination)) {
-                    throw new IOException("Blocked zip entry outside destination: " + entryName);
-                }
+            Path entryPath = destination.resolve(entryName).normalize();
+            if (!entryPath.startsWith(destination)) {
+                throw new IOException("Blocked zip entry outside destination: " + entryName);
+            }
 
-                int progress = total > 0 ? (int) ((current * 100L) / total) : 0;
-                String detail = total > 0
-                        ? String.format("%d/%d: %s", current, total, entryName)
-                        : entryName;
-                updateProcessing(progressScreen, "Extracting mods...", detail, progress, total > 0);
+            int progress = total > 0 ? (int) ((current * 100L) / total) : 0;
+            String detail = total > 0
+                    ? String.format("%d/%d: %s", current, total, entryName)
+                    : entryName;
+            updateProcessing(progressScreen, "Extracting mods...", detail, progress, total > 0);
 
-                if (entry.isDirectory()) {
-                    Files.createDirectories(entryPath);
-                    continue;
-                }
+            if (entry.isDirectory()) {
+                Files.createDirectories(entryPath);
+                continue;
+            }
 
-                Files.createDirectories(entryPath.getParent());
-                boolean isJar = entryName.toLowerCase(Locale.ROOT).endsWith(".jar");
+            PackManifest.Entry manifestEntry = manifestEntries.get(entryName.replace('\\', '/'));
+            if (isUnchangedEntry(plan, manifestEntry, entry) || source.isUnchanged(entry)) {
+                extractedFiles.add(entryName.replace('\\', '/'));
+                continue;
+            }
 
-                if (isJar) {
-                    byte[] jarBytes;
-                    try (InputStream is = zipFile.getInputStream(entry)) {
+            Files.createDirectories(entryPath.getParent());
+            boolean isJar = entryName.toLowerCase(Locale.ROOT).endsWith(".jar");
+
+            if (isJar) {
+                // The manifest already carries the modIds; only parse the nested jar without one.
+                byte[] jarBytes = null;
+                ModJarMetadata metadata = ModJarMetadata.of(null, null);
+                if (manifestEntry != null && manifestEntry.hasModMetadata()) {
+                    metadata = manifestEntry.metadata();
+                } else {
+                    try (InputStream is = source.open(entry)) {
                         jarBytes = is.readAllBytes();
                     }
-
-                    Set<String> modIds = Collections.emptySet();
-                    Map<String, String> modVersions = Collections.emptyMap();
                     try {
-                        Toml toml = readTomlFromJarBytes(jarBytes);
-                        modIds = extractModIdsFromToml(toml);
-                        modVersions = extractModVersionsFromToml(toml);
+                        metadata = ModJarMetadata.fromToml(readTomlFromJarBytes(jarBytes));
                     } catch (Exception e) {
                         LOGGER.warn("Failed to identify modId for {} - extracting without duplicate cleanup.", entryName, e);
                     }
+                }
+                Set<String> modIds = metadata.modIds();
+                Map<String, String> modVersions = metadata.versions();
 
-                    if (!modIds.isEmpty()) {
-                        LOGGER.info("Zip entry {} has modId(s): {}", entryName, String.join(", ", modIds));
-                    }
+                if (!modIds.isEmpty()) {
+                    LOGGER.info("Zip entry {} has modId(s): {}", entryName, String.join(", ", modIds));
+                }
 
-                    boolean isSelfJar = modIds.contains(SCS.MODID.toLowerCase(Locale.ROOT));
-                    if (isSelfJar) {
-                        if (!warnedSelfUpdate && summaryExtras != null) {
-                            String zipVersion = modVersions.get(SCS.MODID.toLowerCase(Locale.ROOT));
-                            if (zipVersion != null
-                                    && currentModVersion != null
-                                    && !currentModVersion.isBlank()
-                                    && !"unknown".equalsIgnoreCase(currentModVersion)
-                                    && !zipVersion.contains("${")) {
-                                int comparison = compareVersions(zipVersion, currentModVersion);
-                                if (comparison != 0) {
-                                    summaryExtras.add(tr("screen.scs.warn_self_update", zipVersion, currentModVersion));
-                                    warnedSelfUpdate = true;
-                                }
+                boolean isSelfJar = modIds.contains(SCS.MODID.toLowerCase(Locale.ROOT));
+                if (isSelfJar) {
+                    if (!warnedSelfUpdate && summaryExtras != null) {
+                        String zipVersion = modVersions.get(SCS.MODID.toLowerCase(Locale.ROOT));
+                        if (zipVersion != null
+                                && currentModVersion != null
+                                && !currentModVersion.isBlank()
+                                && !"unknown".equalsIgnoreCase(currentModVersion)
+                                && !zipVersion.contains("${")) {
+                            int comparison = compareVersions(zipVersion, currentModVersion);
+                            if (comparison != 0) {
+                                summaryExtras.add(tr("screen.scs.warn_self_update", zipVersion, currentModVersion));
+                                warnedSelfUpdate = true;
                             }
                         }
-                        LOGGER.info("Skipping SCS self-jar update while mod is running: {}", entryName);
+                    }
+                    LOGGER.info("Skipping SCS self-jar update while mod is running: {}", entryName);
+                    continue;
+                }
+
+                for (String modId : modIds) {
+                    if (modId == null || modId.isBlank()) {
                         continue;
                     }
 
-                    for (String modId : modIds) {
-                        if (modId == null || modId.isBlank()) {
+                    List<Path> installed = existingModsById.getOrDefault(modId, Collections.emptyList());
+                    for (Path installedJar : installed) {
+                        if (installedJar.equals(entryPath)) {
                             continue;
                         }
-
-                        List<Path> installed = existingModsById.getOrDefault(modId, Collections.emptyList());
-                        for (Path installedJar : installed) {
-                            if (installedJar.equals(entryPath)) {
-                                continue;
-                            }
-                            try {
-                                if (Files.deleteIfExists(installedJar)) {
-                                    LOGGER.info("Removed old mod jar for modId {}: {}", modId, installedJar.getFileName());
-                                }
-                            } catch (Exception e) {
-                                LOGGER.warn("Failed to remove old mod jar {} for modId {}", installedJar, modId, e);
+                        try {
+                            if (Files.deleteIfExists(installedJar)) {
+                                LOGGER.info("Removed old mod jar for modId {}: {}", modId, installedJar.getFileName());
                             }
+                        } catch (Exception e) {
+                            LOGGER.warn("Failed to remove old mod jar {} for modId {}", installedJar, modId, e);
                         }
-
-                        existingModsById.put(modId, new ArrayList<>(List.of(entryPath)));
                     }
 
+                    existingModsById.put(modId, new ArrayList<>(List.of(entryPath)));
+                }
+
+                if (jarBytes != null) {
                     Files.write(entryPath, jarBytes, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
-                    extractedFiles.add(entryName.replace('\\', '/'));
                 } else {
-                    try (InputStream is = zipFile.getInputStream(entry)) {
+                    try (InputStream is = source.open(entry)) {
                         Files.copy(is, entryPath, StandardCopyOption.REPLACE_EXISTING);
                     }
-                    extractedFiles.add(entryName.replace('\\', '/'));
                 }
+                extractedFiles.add(entryName.replace('\\', '/'));
+            } else {
+                try (InputStream is = source.open(entry)) {
+                    Files.copy(is, entryPath, StandardCopyOption.REPLACE_EXISTING);
+                }
+                extractedFiles.add(entryName.replace('\\', '/'));
             }
         }
 
@@ -994,20 +1791,7 @@ public final class UpdateCoordinator {
         return byId;
     }
     private static Set<String> getModIdsFromJarFile(Path jarPath) throws Exception {
-        try (ZipFile zipFile = new ZipFile(jarPath.toFile())) {
-            ZipEntry entry = zipFile.getEntry("META-INF/neoforge.mods.toml");
-            if (entry == null) {
-                entry = zipFile.getEntry("META-INF/mods.toml");
-            }
-            if (entry == null) {
-                return Collections.emptySet();
-            }
-
-            try (InputStream is = zipFile.getInputStream(entry)) {
-                Toml toml = new Toml().read(is);
-                return extractModIdsFromToml(toml);
-            }
-        }
+        return ModJarMetadata.read(jarPath).modIds();
     }
 
     private static Toml readTomlFromJarBytes(byte[] jarBytes) throws Exception {
@@ -1027,45 +1811,6 @@ public final class UpdateCoordinator {
         return null;
     }
 
-    private static Set<String> extractModIdsFromToml(Toml toml) {
-        if (toml == null) {
-            return Collections.emptySet();
-        }
-
-        Set<String> modIds = new HashSet<>();
-        List<Toml> modsTables = toml.getTables("mods");
-        if (modsTables != null) {
-            for (Toml modTable : modsTables) {
-                String modId = modTable.getString("modId");
-                if (modId != null && !modId.isBlank()) {
-                    modIds.add(modId.toLowerCase(Locale.ROOT));
-                }
-            }
-        }
-
-        return modIds;
-    }
-
-    private static Map<String, String> extractModVersionsFromToml(Toml toml) {
-        if (toml == null) {
-            return Collections.emptyMap();
-        }
-
-        Map<String, String> versions = new HashMap<>();
-        List<Toml> modsTables = toml.getTables("mods");
-        if (modsTables != null) {
-            for (Toml modTable : modsTables) {
-                String modId = modTable.getString("modId");
-                String version = modTable.getString("version");
-                if (modId != null && !modId.isBlank() && version != null && !version.isBlank()) {
-                    versions.put(modId.toLowerCase(Locale.ROOT), version.trim());
-                }
-            }
-        }
-
-        return versions;
-    }
-
     private static UpdateSummary buildUpdateSummary(
             String updateBaseUrl,
             UpdateOutcome modsOutcome,
@@ -1208,8 +1953,8 @@ public final class UpdateCoordinator {
         minecraft.execute(() -> progressScreen.updateProcessing(title, detail, progress, hasProgress));
     }
 
-    private static List<String> parseModsRemovalList(ZipFile zipFile, ZipEntry entry) {
-        try (InputStream is = zipFile.getInputStream(entry)) {
+    private static List<String> parseModsRemovalList(PackSource source, PackSource.Entry entry) {
+        try (InputStream is = source.open(entry)) {
             String content = new String(is.readAllBytes(), StandardCharsets.UTF_8);
             JSONArray array = new JSONArray(content);
             List<String> items = new ArrayList<>();
@@ -1381,39 +2126,41 @@ public final class UpdateCoordinator {
         }
     }
 
-    private static Checksum.ChecksumDiff computeAndSaveChecksumsFromZip(
-            Path zipPath,
+    private static Checksum.ChecksumDiff computeAndSaveChecksumsFromPack(
+            PackSource source,
             Path checksumFile,
             DownloadProgressScreen progressScreen,
             String displayName,
             String rootPrefixToStrip
     ) throws Exception {
         LOGGER.info("Comparing checksums...");
-        updateProcessing(progressScreen, "Comparing " + displayName + " checksums...", "Scanning zip entries...", 0, false);
+        updateProcessing(progressScreen, "Comparing " + displayName + " checksums...", "Scanning pack entries...", 0, false);
 
         Map<String, String> newChecksums = new HashMap<>();
-        try (ZipFile zipFile = new ZipFile(zipPath.toFile())) {
-            List<? extends ZipEntry> entries = Collections.list(zipFile.entries());
-            int total = entries.size();
-            int current = 0;
-            for (ZipEntry entry : entries) {
-                if (entry.isDirectory()) {
-                    continue;
-                }
-                current++;
-                String entryName = normalizeZipEntryName(entry.getName(), rootPrefixToStrip);
-                if (entryName.isBlank()) {
-                    continue;
-                }
-                int progress = total > 0 ? (int) ((current * 100L) / total) : 0;
-                String detail = total > 0
-                        ? String.format("%d/%d: %s", current, total, entryName)
-                        : entryName;
-                updateProcessing(progressScreen, "Comparing " + displayName + " checksums...", detail, progress, total > 0);
+        List<PackSource.Entry> entries = source.entries();
+        int total = entries.size();
+        int current = 0;
+        for (PackSource.Entry entry : entries) {
+            if (entry.isDirectory()) {
+                continue;
+            }
+            current++;
+            String entryName = normalizeZipEntryName(entry.name(), rootPrefixToStrip);
+            if (entryName.isBlank()) {
+                continue;
+            }
+            int progress = total > 0 ? (int) ((current * 100L) / total) : 0;
+            String detail = total > 0
+                    ? String.format("%d/%d: %s", current, total, entryName)
+                    : entryName;
+            updateProcessing(progressScreen, "Comparing " + displayName + " checksums...", detail, progress, total > 0);
 
-                try (InputStream is = zipFile.getInputStream(entry)) {
-                    newChecksums.put(entryName, Checksum.computeChecksum(is));
-                }
+            if (entry.sha256() != null) {
+                newChecksums.put(entryName, entry.sha256());
+                continue;
+            }
+            try (InputStream is = source.open(entry)) {
+                newChecksums.put(entryName, Checksum.computeChecksum(is));
             }
         }
 
@@ -0,0 +1,200 @@
+package com.scs.client.update;
+
+import com.scs.core.PackManifest;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Compares the manifest of the last applied pack with the server's current manifest. An entry is
+ * unchanged when the applied pack had the same SHA-256 and the local copy is still in place with
+ * the same size, so updates can skip it without hashing the local file again.
+ */
+final class UpdatePlan {
+
+    private final PackManifest target;
+    private final Set<String> unchanged;
+    private final List<String> changed;
+    private final Map<String, Path> localCopies;
+    private final Map<String, String> appliedShaByPath;
+    private final Map<String, String> appliedShaByModId;
+    private final long baseGeneration;
+
+    private UpdatePlan(
+            PackManifest target,
+            long baseGeneration,
+            Set<String> unchanged,
+            List<String> changed,
+            Map<String, Path> localCopies,
+            Map<String, String> appliedShaByPath,
+            Map<String, String> appliedShaByModId
+    ) {
+        this.target = target;
+        this.baseGeneration = baseGeneration;
+        this.unchanged = unchanged;
+        this.changed = changed;
+        this.localCopies = localCopies;
+        this.appliedShaByPath = appliedShaByPath;
+        this.appliedShaByModId = appliedShaByModId;
+    }
+
+    /**
+     * @param localName        maps a manifest path to the path relative to {@code destination}.
+     * @param notMaterialized  entries the client never writes to {@code destination} (e.g. the removal list);
+     *                         they count as unchanged when their hash is unchanged.
+     */
+    static UpdatePlan between(
+            PackManifest applied,
+            PackManifest target,
+            Path destination,
+            Function<String, String> localName,
+            Predicate<PackManifest.Entry> notMaterialized
+    ) {
+        Map<String, PackManifest.Entry> previous = applied == null ? Collections.emptyMap() : applied.entriesByPath();
+        Map<String, Path> localCopies = new HashMap<>();
+        Map<String, String> appliedShaByPath = new HashMap<>();
+        Map<String, String> appliedShaByModId = new HashMap<>();
+        for (PackManifest.Entry entry : previous.values()) {
+            String relative = localName.apply(entry.path());
+            if (!notMaterialized.test(entry) && isInPlace(destination, relative, entry.size())) {
+                localCopies.putIfAbsent(entry.sha256(), destination.resolve(relative).normalize());
+                appliedShaByPath.put(entry.path(), entry.sha256());
+                for (String modId : entry.metadata().modIds()) {
+                    appliedShaByModId.put(modId, entry.sha256());
+                }
+            }
+        }
+        Set<String> unchanged = new HashSet<>();
+        List<String> changed = new ArrayList<>();
+        for (PackManifest.Entry entry : target.entries()) {
+            PackManifest.Entry before = previous.get(entry.path());
+            boolean sameHash = before != null && entry.sha256().equals(before.sha256());
+            if (sameHash && (notMaterialized.test(entry) || isInPlace(destination, localName.apply(entry.path()), entry.size()))) {
+                unchanged.add(entry.path());
+            } else {
+                changed.add(entry.path());
+            }
+        }
+        return new UpdatePlan(target, applied == null ? 0 : applied.generation(), unchanged, changed, localCopies, appliedShaByPath, appliedShaByModId);
+    }
+
+    /**
+     * Plan for a pack without an applied baseline: everything is changed.
+     */
+    static UpdatePlan full(PackManifest target) {
+        List<String> changed = new ArrayList<>();
+        for (PackManifest.Entry entry : target.entries()) {
+            changed.add(entry.path());
+        }
+        return new UpdatePlan(
+                target,
+                0,
+                Collections.emptySet(),
+                changed,
+                Collections.emptyMap(),
+                Collections.emptyMap(),
+                Collections.emptyMap()
+        );
+    }
+
+    PackManifest target() {
+        return target;
+    }
+
+    /**
+     * Generation of the pack applied last time, or 0 when unknown.
+     */
+    long baseGeneration() {
+        return baseGeneration;
+    }
+
+    /**
+     * Whether the plan compares against an applied pack, rather than treating everything as changed.
+     */
+    boolean hasBaseline() {
+        return !unchanged.isEmpty() || !localCopies.isEmpty();
+    }
+
+    /**
+     * Total size of the changed entries.
+     */
+    long changedBytes() {
+        Map<String, PackManifest.Entry> entries = target.entriesByPath();
+        long bytes = 0;
+        for (String path : changed) {
+            bytes += entries.get(path).size();
+        }
+        return bytes;
+    }
+
+    long totalBytes() {
+        long bytes = 0;
+        for (PackManifest.Entry entry : target.entries()) {
+            bytes += entry.size();
+        }
+        return bytes;
+    }
+
+    boolean isUpToDate() {
+        return changed.isEmpty();
+    }
+
+    boolean isUnchanged(String path) {
+        return unchanged.contains(path);
+    }
+
+    List<String> changed() {
+        return changed;
+    }
+
+    /**
+     * A local file that the applied pack installed with this SHA-256, or null. Lets a renamed or moved
+     * file be reused instead of downloaded again; callers still verify the hash before trusting it.
+     */
+    Path localCopy(String sha256) {
+        return localCopies.get(sha256);
+    }
+
+    /**
+     * SHA-256 of the version of this entry that the applied pack installed and is still in place,
+     * matched by path or, for a renamed jar, by modId; null when there is none.
+     */
+    String previousVersion(PackManifest.Entry entry) {
+        String sha256 = appliedShaByPath.get(entry.path());
+        if (sha256 == null) {
+            for (String modId : entry.metadata().modIds()) {
+                sha256 = appliedShaByModId.get(modId);
+                if (sha256 != null) {
+                    break;
+                }
+            }
+        }
+        return sha256 == null || sha256.equals(entry.sha256()) ? null : sha256;
+    }
+
+    String describe() {
+        return changed.size() + " of " + target.entries().size() + " entries changed (generation " + target.generation() + ")";
+    }
+
+    private static boolean isInPlace(Path destination, String relative, long size) {
+        if (relative == null || relative.isBlank()) {
+            return false;
+        }
+        Path local = destination.resolve(relative).normalize();
+        try {
+            return local.startsWith(destination) && Files.isRegularFile(local) && Files.size(local) == size;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
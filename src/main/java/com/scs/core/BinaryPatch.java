@@ -0,0 +1,210 @@
+package com.scs.core;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * VCDIFF-style binary patches: the new file is described as COPY instructions (ranges of the old
+ * file) and ADD instructions (literal bytes), and the instruction stream is deflated. Matches are
+ * found with a rolling hash over fixed-size blocks of the old file, then extended in both directions,
+ * so a jar that only had a few classes recompiled patches in kilobytes.
+ */
+public final class BinaryPatch {
+
+    /**
+     * Files larger than this are not diffed; both versions are held in memory while diffing.
+     */
+    public static final long MAX_DIFF_SIZE = 64L * 1024 * 1024;
+
+    private static final int MAGIC = 0x53435350; // "SCSP"
+    private static final int BLOCK = 32;
+    private static final int HASH_BASE = 257;
+    private static final byte OP_END = 0;
+    private static final byte OP_COPY = 1;
+    private static final byte OP_ADD = 2;
+
+    private BinaryPatch() {
+    }
+
+    /**
+     * Writes a patch that turns {@code oldFile} into {@code newFile}.
+     */
+    public static void diff(Path oldFile, Path newFile, OutputStream out) throws IOException {
+        if (Files.size(oldFile) > MAX_DIFF_SIZE || Files.size(newFile) > MAX_DIFF_SIZE) {
+            throw new IOException("File too large to diff");
+        }
+        byte[] source = Files.readAllBytes(oldFile);
+        byte[] target = Files.readAllBytes(newFile);
+
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            DeflaterOutputStream deflated = new DeflaterOutputStream(out, deflater);
+            DataOutputStream data = new DataOutputStream(deflated);
+            data.writeInt(MAGIC);
+            data.writeLong(source.length);
+            data.writeLong(target.length);
+            writeInstructions(source, target, data);
+            data.writeByte(OP_END);
+            data.flush();
+            deflated.finish();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Rebuilds the new file from {@code oldFile} and a patch. Fails when the patch was made for a
+     * different base or is malformed; callers verify the result's SHA-256 before using it.
+     */
+    public static void apply(Path oldFile, InputStream patch, OutputStream out) throws IOException {
+        try (FileChannel base = FileChannel.open(oldFile, StandardOpenOption.READ)) {
+            DataInputStream data = new DataInputStream(new InflaterInputStream(patch));
+            if (data.readInt() != MAGIC) {
+                throw new IOException("Not a patch");
+            }
+            long baseSize = data.readLong();
+            long targetSize = data.readLong();
+            if (baseSize != base.size()) {
+                throw new IOException("Patch expects a base of " + baseSize + " bytes, found " + base.size());
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+            long written = 0;
+            while (true) {
+                byte op = data.readByte();
+                if (op == OP_END) {
+                    break;
+                }
+                int length = data.readInt();
+                if (length < 0 || written + length > targetSize) {
+                    throw new IOException("Patch writes past the target size");
+                }
+                if (op == OP_COPY) {
+                    long offset = data.readLong();
+                    if (offset < 0 || offset + length > baseSize) {
+                        throw new IOException("Patch copies outside the base");
+                    }
+                    long position = offset;
+                    long remaining = length;
+                    while (remaining > 0) {
+                        buffer.clear().limit((int) Math.min(buffer.capacity(), remaining));
+                        int read = base.read(buffer, position);
+                        if (read <= 0) {
+                            throw new IOException("Base ended early");
+                        }
+                        out.write(buffer.array(), 0, read);
+                        position += read;
+                        remaining -= read;
+                    }
+                } else if (op == OP_ADD) {
+                    int remaining = length;
+                    while (remaining > 0) {
+                        int chunk = Math.min(buffer.capacity(), remaining);
+                        data.readFully(buffer.array(), 0, chunk);
+                        out.write(buffer.array(), 0, chunk);
+                        remaining -= chunk;
+                    }
+                } else {
+                    throw new IOException("Unknown patch instruction " + op);
+                }
+                written += length;
+            }
+            if (written != targetSize) {
+                throw new IOException("Patch produced " + written + " of " + targetSize + " bytes");
+            }
+        }
+    }
+
+    private static void writeInstructions(byte[] source, byte[] target, DataOutputStream data) throws IOException {
+        if (source.length < BLOCK || target.length < BLOCK) {
+            writeAdd(target, 0, target.length, data);
+            return;
+        }
+
+        int blocks = source.length / BLOCK;
+        int tableSize = Integer.highestOneBit(Math.max(16, blocks * 2 - 1)) << 1;
+        int[] table = new int[tableSize];
+        Arrays.fill(table, -1);
+        for (int offset = 0; offset + BLOCK <= source.length; offset += BLOCK) {
+            int slot = slot(hash(source, offset), tableSize);
+            if (table[slot] < 0) {
+                table[slot] = offset;
+            }
+        }
+
+        int power = 1;
+        for (int i = 1; i < BLOCK; i++) {
+            power *= HASH_BASE;
+        }
+
+        int position = 0;
+        int pending = 0;
+        int hash = hash(target, 0);
+        while (position + BLOCK <= target.length) {
+            int candidate = table[slot(hash, tableSize)];
+            if (candidate >= 0 && Arrays.equals(source, candidate, candidate + BLOCK, target, position, position + BLOCK)) {
+                int start = position;
+                int from = candidate;
+                while (start > pending && from > 0 && source[from - 1] == target[start - 1]) {
+                    start--;
+                    from--;
+                }
+                int end = position + BLOCK;
+                int sourceEnd = candidate + BLOCK;
+                while (end < target.length && sourceEnd < source.length && source[sourceEnd] == target[end]) {
+                    end++;
+                    sourceEnd++;
+                }
+                writeAdd(target, pending, start, data);
+                data.writeByte(OP_COPY);
+                data.writeInt(end - start);
+                data.writeLong(from);
+                position = end;
+                pending = end;
+                if (position + BLOCK <= target.length) {
+                    hash = hash(target, position);
+                }
+                continue;
+            }
+            if (position + BLOCK == target.length) {
+                break;
+            }
+            hash = (hash - (target[position] & 0xFF) * power) * HASH_BASE + (target[position + BLOCK] & 0xFF);
+            position++;
+        }
+        writeAdd(target, pending, target.length, data);
+    }
+
+    private static void writeAdd(byte[] target, int from, int to, DataOutputStream data) throws IOException {
+        if (to <= from) {
+            return;
+        }
+        data.writeByte(OP_ADD);
+        data.writeInt(to - from);
+        data.write(target, from, to - from);
+    }
+
+    private static int hash(byte[] bytes, int offset) {
+        int hash = 0;
+        for (int i = 0; i < BLOCK; i++) {
+            hash = hash * HASH_BASE + (bytes[offset + i] & 0xFF);
+        }
+        return hash;
+    }
+
+    private static int slot(int hash, int tableSize) {
+        return (hash * 0x9E3779B1) >>> (Integer.SIZE - Integer.numberOfTrailingZeros(tableSize));
+    }
+}
@@ -0,0 +1,110 @@
+package com.scs.core;
+
+import com.google.gson.Gson;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The chunks a file is made of, in order, as cut by {@link ContentChunker}. Only files of at least
+ * {@link #MIN_FILE_SIZE} are chunked; smaller ones are cheaper to fetch whole.
+ */
+public final class ChunkIndex {
+
+    public static final long MIN_FILE_SIZE = 256 * 1024;
+
+    private static final Gson GSON = new Gson();
+
+    private String sha256;
+    private long size;
+    private List<Chunk> chunks = new ArrayList<>();
+
+    private ChunkIndex() {
+    }
+
+    public ChunkIndex(String sha256, long size, List<Chunk> chunks) {
+        this.sha256 = sha256;
+        this.size = size;
+        this.chunks = new ArrayList<>(chunks);
+    }
+
+    public static final class Chunk {
+        private String sha256;
+        private int length;
+
+        private Chunk() {
+        }
+
+        public Chunk(String sha256, int length) {
+            this.sha256 = sha256;
+            this.length = length;
+        }
+
+        public String sha256() {
+            return sha256;
+        }
+
+        public int length() {
+            return length;
+        }
+    }
+
+    public static ChunkIndex parse(String json) throws IOException {
+        try {
+            ChunkIndex index = GSON.fromJson(json, ChunkIndex.class);
+            if (index == null || index.sha256 == null || index.chunks == null) {
+                throw new IOException("Empty chunk index");
+            }
+            long total = 0;
+            for (Chunk chunk : index.chunks) {
+                total += chunk.length;
+            }
+            if (total != index.size) {
+                throw new IOException("Chunk index covers " + total + " of " + index.size + " bytes");
+            }
+            return index;
+        } catch (RuntimeException e) {
+            throw new IOException("Malformed chunk index", e);
+        }
+    }
+
+    /**
+     * Writes the index through a temporary file so readers never see a partial document.
+     */
+    public void write(Path file) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        try {
+            Files.writeString(temp, GSON.toJson(this));
+            try {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * SHA-256 of the whole file.
+     */
+    public String sha256() {
+        return sha256;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public List<Chunk> chunks() {
+        return Collections.unmodifiableList(chunks);
+    }
+}
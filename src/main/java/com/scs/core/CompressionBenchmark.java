@@ -0,0 +1,99 @@
+package com.scs.core;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Measures what the compression rules do to the real packs: every file of {@code mods/} and
+ * {@code config/} is packed once deflated at the default level (what builds did before the rules
+ * existed), once stored and once with the configured rules, and each archive is then extracted the
+ * way clients stream it. Runs on one thread so the times compare; nothing is published.
+ */
+final class CompressionBenchmark {
+
+    private static final Path WORK_DIRECTORY = Path.of("SCS/benchmark");
+
+    private CompressionBenchmark() {
+    }
+
+    private static final class Result {
+        private long bytes;
+        private long stored;
+        private long deflated;
+        private long packNanos;
+        private long extractNanos;
+    }
+
+    /**
+     * Runs the benchmark over the given files, entry name to path, and returns the report lines.
+     */
+    static List<String> run(Map<String, Path> files) throws IOException {
+        long rawBytes = 0;
+        for (Path file : files.values()) {
+            rawBytes += Files.size(file);
+        }
+        Map<String, CompressionPolicy> strategies = new LinkedHashMap<>();
+        strategies.put("deflate (default level)", CompressionPolicy.parse(List.of("*=6")));
+        strategies.put("stored", CompressionPolicy.parse(List.of("*=stored")));
+        strategies.put("configured rules", CompressionPolicy.fromConfig());
+        List<String> report = new ArrayList<>();
+        report.add(String.format("Compression benchmark: %d files, %.1f MB uncompressed.", files.size(), rawBytes / 1048576.0));
+        Files.createDirectories(WORK_DIRECTORY);
+        for (Map.Entry<String, CompressionPolicy> strategy : strategies.entrySet()) {
+            Result result = measure(files, strategy.getValue());
+            report.add(String.format("%s: %.1f MB (%.1f%%), packed in %d ms, extracted in %d ms; %d stored, %d deflated.",
+                    strategy.getKey(),
+                    result.bytes / 1048576.0,
+                    rawBytes == 0 ? 100.0 : result.bytes * 100.0 / rawBytes,
+                    result.packNanos / 1_000_000,
+                    result.extractNanos / 1_000_000,
+                    result.stored,
+                    result.deflated));
+        }
+        return report;
+    }
+
+    private static Result measure(Map<String, Path> files, CompressionPolicy policy) throws IOException {
+        Result result = new Result();
+        Path zipFile = Files.createTempFile(WORK_DIRECTORY, "benchmark", ".zip");
+        try {
+            long start = System.nanoTime();
+            try (ParallelZipWriter zip = new ParallelZipWriter(zipFile)) {
+                for (Map.Entry<String, Path> file : files.entrySet()) {
+                    ParallelZipWriter.ScatterEntry entry;
+                    try (InputStream in = Files.newInputStream(file.getValue())) {
+                        entry = zip.scatter(file.getKey(), in, policy.forEntry(file.getKey()));
+                    }
+                    if (entry.isStored()) {
+                        result.stored++;
+                    } else {
+                        result.deflated++;
+                    }
+                    zip.append(entry);
+                }
+            }
+            result.packNanos = System.nanoTime() - start;
+            result.bytes = Files.size(zipFile);
+
+            start = System.nanoTime();
+            try (ZipInputStream in = new ZipInputStream(new BufferedInputStream(Files.newInputStream(zipFile)))) {
+                while (in.getNextEntry() != null) {
+                    in.transferTo(OutputStream.nullOutputStream());
+                }
+            }
+            result.extractNanos = System.nanoTime() - start;
+        } finally {
+            Files.deleteIfExists(zipFile);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,207 @@
+package com.scs.core;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+/**
+ * Decides how each pack entry is compressed, by file extension, from rules such as
+ * {@code jar=stored}, {@code toml=9} or {@code *=auto}:
+ * <ul>
+ *     <li>{@code stored}: written as is. Jars, archives, images and sounds are compressed already,
+ *     so deflating them again costs CPU on the server and on every client for almost no gain.</li>
+ *     <li>{@code 1} to {@code 9}: deflated at that level; small text files are worth the highest.</li>
+ *     <li>{@code auto}: the first {@value #SAMPLE_SIZE} bytes are deflated at the fastest level and
+ *     the entry is stored unless that saves at least a tenth, otherwise deflated at the default
+ *     level.</li>
+ * </ul>
+ * {@code *} covers every extension without a rule of its own.
+ */
+public final class CompressionPolicy {
+
+    public static final int SAMPLE_SIZE = 64 * 1024;
+    public static final List<String> DEFAULT_RULES = List.of(
+            "jar=stored", "zip=stored", "gz=stored", "xz=stored", "bz2=stored", "7z=stored", "zst=stored",
+            "png=stored", "jpg=stored", "jpeg=stored", "gif=stored", "webp=stored", "ogg=stored", "mp3=stored",
+            "toml=9", "json=9", "json5=9", "cfg=9", "conf=9", "properties=9", "txt=9", "yml=9", "yaml=9",
+            "snbt=9", "xml=9", "js=9", "zs=9", "mcmeta=9",
+            "*=auto"
+    );
+
+    private static final String ANY_EXTENSION = "*";
+    private static final double MIN_SAMPLE_SAVING = 0.1;
+
+    private final Map<String, Compression> byExtension;
+    private final Compression fallback;
+    private final String description;
+
+    private CompressionPolicy(Map<String, Compression> byExtension, Compression fallback, String description) {
+        this.byExtension = byExtension;
+        this.fallback = fallback;
+        this.description = description;
+    }
+
+    /**
+     * How one entry is compressed: stored, deflated at a fixed level, or decided from a sample.
+     */
+    public static final class Compression {
+        public static final Compression STORED = new Compression(0, false);
+        public static final Compression AUTO = new Compression(Deflater.DEFAULT_COMPRESSION, true);
+
+        private final int level;
+        private final boolean sampled;
+
+        private Compression(int level, boolean sampled) {
+            this.level = level;
+            this.sampled = sampled;
+        }
+
+        public static Compression deflate(int level) {
+            if (level < 1 || level > 9) {
+                throw new IllegalArgumentException("Deflate level must be 1 to 9: " + level);
+            }
+            return new Compression(level, false);
+        }
+
+        public boolean isStored() {
+            return level == 0;
+        }
+
+        /**
+         * True when {@link #resolve} must look at the start of the content first.
+         */
+        public boolean isSampled() {
+            return sampled;
+        }
+
+        /**
+         * Deflate level, only meaningful when the entry is deflated.
+         */
+        public int level() {
+            return level;
+        }
+
+        /**
+         * The fixed choice for an entry whose content starts with {@code sample}.
+         */
+        public Compression resolve(byte[] sample, int length) {
+            if (!sampled) {
+                return this;
+            }
+            if (length == 0) {
+                return STORED;
+            }
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+            try {
+                deflater.setInput(sample, 0, length);
+                deflater.finish();
+                byte[] output = new byte[SAMPLE_SIZE];
+                long compressed = 0;
+                while (!deflater.finished()) {
+                    compressed += deflater.deflate(output);
+                }
+                return compressed > length * (1 - MIN_SAMPLE_SAVING) ? STORED : new Compression(level, false);
+            } finally {
+                deflater.end();
+            }
+        }
+
+        /**
+         * True when an entry written with the zip {@code method} (0 stored, 8 deflated) matches this
+         * choice, so it can be copied from a previous build as it is.
+         */
+        public boolean accepts(int method) {
+            if (sampled) {
+                return method == 0 || method == 8;
+            }
+            return method == (isStored() ? 0 : 8);
+        }
+
+        @Override
+        public String toString() {
+            return sampled ? "auto" : isStored() ? "stored" : String.valueOf(level);
+        }
+    }
+
+    /**
+     * The policy configured in {@code packCompressionRules}.
+     */
+    public static CompressionPolicy fromConfig() {
+        return parse(Config.packCompressionRules != null ? Config.packCompressionRules : DEFAULT_RULES);
+    }
+
+    /**
+     * Builds a policy from {@code extension=choice} rules; malformed rules are logged and skipped,
+     * and a later rule for the same extension wins.
+     */
+    public static CompressionPolicy parse(List<? extends String> rules) {
+        Map<String, Compression> byExtension = new HashMap<>();
+        Compression fallback = Compression.AUTO;
+        List<String> accepted = new ArrayList<>();
+        for (String rule : rules) {
+            int separator = rule == null ? -1 : rule.indexOf('=');
+            Compression compression = separator < 0 ? null : parseChoice(rule.substring(separator + 1).trim());
+            String extension = separator < 0 ? "" : rule.substring(0, separator).trim().toLowerCase(Locale.ROOT);
+            if (compression == null || extension.isEmpty()) {
+                SCS.LOGGER.warn("Ignoring malformed compression rule '{}'; expected <extension>=stored|auto|1-9", rule);
+                continue;
+            }
+            if (extension.startsWith(".")) {
+                extension = extension.substring(1);
+            }
+            if (extension.equals(ANY_EXTENSION)) {
+                fallback = compression;
+            } else {
+                byExtension.put(extension, compression);
+            }
+            accepted.add(extension + "=" + compression);
+        }
+        return new CompressionPolicy(byExtension, fallback, String.join(",", accepted));
+    }
+
+    public static boolean isValidRule(Object rule) {
+        if (!(rule instanceof String text)) {
+            return false;
+        }
+        int separator = text.indexOf('=');
+        return separator > 0 && parseChoice(text.substring(separator + 1).trim()) != null;
+    }
+
+    private static Compression parseChoice(String choice) {
+        switch (choice.toLowerCase(Locale.ROOT)) {
+            case "stored":
+                return Compression.STORED;
+            case "auto":
+                return Compression.AUTO;
+            default:
+                try {
+                    int level = Integer.parseInt(choice);
+                    return level == 0 ? Compression.STORED : Compression.deflate(level);
+                } catch (IllegalArgumentException e) {
+                    return null;
+                }
+        }
+    }
+
+    public Compression forEntry(String entryName) {
+        int slash = entryName.lastIndexOf('/');
+        int dot = entryName.lastIndexOf('.');
+        if (dot > slash + 1) {
+            Compression compression = byExtension.get(entryName.substring(dot + 1).toLowerCase(Locale.ROOT));
+            if (compression != null) {
+                return compression;
+            }
+        }
+        return fallback;
+    }
+
+    /**
+     * The rules in effect, so a build can tell whether the policy changed since the last one.
+     */
+    public String describe() {
+        return description;
+    }
+}
@@ -7,6 +7,8 @@ import net.neoforged.fml.event.config.ModConfigEvent;
 import net.neoforged.fml.loading.FMLEnvironment;
 import net.neoforged.neoforge.common.ModConfigSpec;
 
+import java.util.List;
+
 /**
  * Config class to handle mod settings and updates.
  */
@@ -21,6 +23,170 @@ public class Config {
                     "Default: 25566"
             )
             .define("fileServerPort", 25566);
+    private static final ModConfigSpec.EnumValue<FileServerEngine> FILE_SERVER_ENGINE = BUILDER
+            .comment(
+                    "Engine used by the file server.",
+                    "JDK: built-in com.sun.net.httpserver, one thread per transfer.",
+                    "NETTY: Netty event loops with zero-copy (sendfile) transfers, keep-alive and a bounded thread count.",
+                    "Default: JDK"
+            )
+            .defineEnum("fileServerEngine", FileServerEngine.JDK);
+    private static final ModConfigSpec.ConfigValue<Integer> FILE_SERVER_THREADS = BUILDER
+            .comment(
+                    "Number of I/O threads used by the NETTY file server engine.",
+                    "Default: 2"
+            )
+            .defineInRange("fileServerThreads", 2, 1, 32);
+    private static final ModConfigSpec.ConfigValue<Integer> HOT_CACHE_SIZE_MB = BUILDER
+            .comment(
+                    "Memory budget in MB for the file server hot cache. Cached files are served without reading the disk.",
+                    "Set to 0 to disable the cache.",
+                    "Default: 64"
+            )
+            .defineInRange("hotCacheSizeMb", 64, 0, 4096);
+    private static final ModConfigSpec.ConfigValue<Integer> HOT_CACHE_MAX_FILE_KB = BUILDER
+            .comment(
+                    "Files up to this size (KB) are copied into memory on first request.",
+                    "Default: 4096"
+            )
+            .defineInRange("hotCacheMaxFileKb", 4096, 1, 1048576);
+    private static final ModConfigSpec.ConfigValue<Boolean> HOT_CACHE_MAP_LARGE_FILES = BUILDER
+            .comment(
+                    "If true, larger files that are requested repeatedly are memory-mapped (up to half of the budget).",
+                    "Default: true"
+            )
+            .define("hotCacheMapLargeFiles", true);
+    private static final ModConfigSpec.ConfigValue<Boolean> HOT_CACHE_LOG_STATS = BUILDER
+            .comment(
+                    "If true, hot cache hit/miss counters are logged whenever a pack is republished.",
+                    "The counters are always available through /scs cache-stats.",
+                    "Default: false"
+            )
+            .define("hotCacheLogStats", false);
+    private static final ModConfigSpec.ConfigValue<Integer> GLOBAL_BANDWIDTH_LIMIT_KBPS = BUILDER
+            .comment(
+                    "Maximum combined upload rate of the file server in KB/s, shared by all downloads.",
+                    "Keep it below the host uplink so game traffic is never starved. 0 = unlimited.",
+                    "Applied immediately when the config is reloaded.",
+                    "Default: 0"
+            )
+            .defineInRange("globalBandwidthLimitKBps", 0, 0, Integer.MAX_VALUE / 1024);
+    private static final ModConfigSpec.ConfigValue<Integer> PER_IP_BANDWIDTH_LIMIT_KBPS = BUILDER
+            .comment(
+                    "Maximum upload rate in KB/s for all downloads from the same IP address. 0 = unlimited.",
+                    "Default: 0"
+            )
+            .defineInRange("perIpBandwidthLimitKBps", 0, 0, Integer.MAX_VALUE / 1024);
+    private static final ModConfigSpec.ConfigValue<Integer> PER_CONNECTION_BANDWIDTH_LIMIT_KBPS = BUILDER
+            .comment(
+                    "Maximum upload rate in KB/s for a single download. 0 = unlimited.",
+                    "Default: 0"
+            )
+            .defineInRange("perConnectionBandwidthLimitKBps", 0, 0, Integer.MAX_VALUE / 1024);
+    private static final ModConfigSpec.ConfigValue<Integer> MAX_CONCURRENT_PACK_TRANSFERS = BUILDER
+            .comment(
+                    "Maximum number of mods.zip/config.zip downloads served at the same time.",
+                    "Further clients are queued and retry in arrival order. 0 = unlimited.",
+                    "Default: 4"
+            )
+            .defineInRange("maxConcurrentPackTransfers", 4, 0, 256);
+    private static final ModConfigSpec.ConfigValue<Boolean> ADAPTIVE_THROTTLE_ENABLED = BUILDER
+            .comment(
+                    "If true, the file server slows down downloads and defers new ones while the server tick time (MSPT) is high,",
+                    "then ramps back up when ticks recover. Use /scs throttle to see the current level.",
+                    "Default: true"
+            )
+            .define("adaptiveThrottleEnabled", true);
+    private static final ModConfigSpec.ConfigValue<Double> ADAPTIVE_THROTTLE_MSPT_THRESHOLD = BUILDER
+            .comment(
+                    "Average MSPT above which downloads are throttled. A tick has 50 ms before TPS drops.",
+                    "Default: 40.0"
+            )
+            .defineInRange("adaptiveThrottleMsptThreshold", 40.0, 1.0, 1000.0);
+    private static final ModConfigSpec.ConfigValue<Integer> ADAPTIVE_THROTTLE_MIN_PERCENT = BUILDER
+            .comment(
+                    "Lowest throttle level in percent of the normal download rate and concurrency.",
+                    "Default: 10"
+            )
+            .defineInRange("adaptiveThrottleMinPercent", 10, 1, 100);
+    private static final ModConfigSpec.ConfigValue<Integer> PACK_HISTORY_GENERATIONS = BUILDER
+            .comment(
+                    "Number of past mods/config pack generations kept to build delta archives from.",
+                    "Clients further behind download the full zip instead.",
+                    "Default: 5"
+            )
+            .defineInRange("packHistoryGenerations", 5, 1, 100);
+    private static final ModConfigSpec.ConfigValue<Integer> PACK_BUILD_THREADS = BUILDER
+            .comment(
+                    "Number of threads compressing files while mods.zip/config.zip are built.",
+                    "0 = half of the available processors, leaving the rest to the server tick.",
+                    "Default: 0"
+            )
+            .defineInRange("packBuildThreads", 0, 0, 64);
+    private static final ModConfigSpec.ConfigValue<Boolean> PACK_BUILD_LOW_PRIORITY = BUILDER
+            .comment(
+                    "If true, pack build threads run at the lowest thread priority so the operating system prefers the server thread.",
+                    "Default: true"
+            )
+            .define("packBuildLowPriority", true);
+    private static final ModConfigSpec.ConfigValue<List<? extends String>> PACK_COMPRESSION_RULES = BUILDER
+            .comment(
+                    "How pack entries are compressed, as <extension>=<choice> rules; '*' covers every other extension.",
+                    "stored = no compression (already-compressed files such as jars), 1-9 = deflate level,",
+                    "auto = store the file unless deflating a sample of it saves at least 10%.",
+                    "Default: stored for jars, archives, images and sounds; 9 for text configs; *=auto"
+            )
+            .defineListAllowEmpty("packCompressionRules", CompressionPolicy.DEFAULT_RULES, () -> "*=auto", CompressionPolicy::isValidRule);
+    private static final ModConfigSpec.ConfigValue<Boolean> STREAM_PACKS = BUILDER
+            .comment(
+                    "If true, mods.zip/config.zip are not written to disk: a build only publishes the manifest, and the",
+                    "file server generates each zip on the fly, uncompressed, from the stored copies of the files.",
+                    "Saves the disk space and build time of the archives; Range requests keep working.",
+                    "Default: false"
+            )
+            .define("streamPacks", false);
+    private static final ModConfigSpec.ConfigValue<Boolean> EXCLUDE_SERVER_ONLY_MODS = BUILDER
+            .comment(
+                    "If true, jars whose neoforge.mods.toml marks them as server-only (displayTest = \"IGNORE_SERVER_VERSION\",",
+                    "or dependencies on minecraft/neoforge with side = \"SERVER\") are left out of mods.zip.",
+                    "Default: true"
+            )
+            .define("excludeServerOnlyMods", true);
+    private static final ModConfigSpec.ConfigValue<List<? extends String>> SERVER_ONLY_MOD_OVERRIDES = BUILDER
+            .comment(
+                    "Overrides for what is left out of mods.zip, as <modId or jar file name>=include|exclude rules.",
+                    "include = always pack the jar, exclude = never pack it, whatever its toml declares.",
+                    "Default: []"
+            )
+            .defineListAllowEmpty("serverOnlyModOverrides", List.of(), () -> "modid=include", ServerOnlyMods::isValidOverride);
+    private static final ModConfigSpec.ConfigValue<List<? extends String>> HOSTED_PACKS = BUILDER
+            .comment(
+                    "Further packs served by this file server, as <name>=<directory> rules. The directory is the root of",
+                    "another server holding its own mods/ and config/; its packs are served at /packs/<name>/mods.zip and",
+                    "/packs/<name>/config.zip. Hosted packs are always streamed and share one object store, so a jar used",
+                    "by several packs is stored once. Build them with /scs save-pack <name>.",
+                    "Default: []"
+            )
+            .defineListAllowEmpty("hostedPacks", List.of(), () -> "survival=../survival", HostedPacks::isValidRule);
+    private static final ModConfigSpec.ConfigValue<Boolean> AUTO_REBUILD = BUILDER
+            .comment(
+                    "If true, the server watches the mods and config folders and rebuilds mods.zip/config.zip by itself",
+                    "once changes settle, as if /scs save-mods or /scs save-config had been run.",
+                    "Default: false"
+            )
+            .define("autoRebuild", false);
+    private static final ModConfigSpec.ConfigValue<Integer> AUTO_REBUILD_DELAY_SECONDS = BUILDER
+            .comment(
+                    "Seconds without further changes before an automatic rebuild starts, so copying many files triggers one build.",
+                    "Default: 5"
+            )
+            .defineInRange("autoRebuildDelaySeconds", 5, 1, 3600);
+    private static final ModConfigSpec.ConfigValue<Integer> AUTO_REBUILD_MIN_INTERVAL_SECONDS = BUILDER
+            .comment(
+                    "Minimum number of seconds between two automatic rebuilds of the same pack.",
+                    "Default: 60"
+            )
+            .defineInRange("autoRebuildMinIntervalSeconds", 60, 0, 86400);
     private static final ModConfigSpec.ConfigValue<Boolean> UPDATE_CONFIG = BUILDER
             .comment(
                     "If true, the client will also update the config folder when pressing the update button.",
@@ -45,16 +211,54 @@ public class Config {
             )
             .define("mirrorConfig", false);
 
+    private static final ModConfigSpec.ConfigValue<Integer> OBJECT_CACHE_SIZE_MB = BUILDER
+            .comment(
+                    "Size budget in MB of the client's shared object and chunk caches (SCS/objects, SCS/chunks).",
+                    "The files used least recently are deleted before each update that syncs by objects. 0 = unlimited.",
+                    "Default: 2048"
+            )
+            .defineInRange("objectCacheSizeMb", 2048, 0, 1048576);
+
     /**
      * Compile the final specification.
      */
     static final ModConfigSpec SPEC = BUILDER.build();
 
+    public enum FileServerEngine {
+        JDK,
+        NETTY
+    }
+
     public static int fileServerPort;
+    public static FileServerEngine fileServerEngine;
+    public static int fileServerThreads;
+    public static int hotCacheSizeMb;
+    public static int hotCacheMaxFileKb;
+    public static boolean hotCacheMapLargeFiles;
+    public static boolean hotCacheLogStats;
+    public static int globalBandwidthLimitKBps;
+    public static int perIpBandwidthLimitKBps;
+    public static int perConnectionBandwidthLimitKBps;
+    public static int maxConcurrentPackTransfers;
+    public static boolean adaptiveThrottleEnabled;
+    public static double adaptiveThrottleMsptThreshold;
+    public static int adaptiveThrottleMinPercent;
+    public static int packHistoryGenerations;
+    public static int packBuildThreads;
+    public static boolean packBuildLowPriority;
+    public static List<? extends String> packCompressionRules;
+    public static boolean streamPacks;
+    public static boolean excludeServerOnlyMods;
+    public static List<? extends String> serverOnlyModOverrides;
+    public static List<? extends String> hostedPacks;
+    public static boolean autoRebuild;
+    public static int autoRebuildDelaySeconds;
+    public static int autoRebuildMinIntervalSeconds;
 
     public static boolean updateConfig;
     public static boolean mirrorMods;
     public static boolean mirrorConfig;
+    public static int objectCacheSizeMb;
 
     /**
      * Called when the configuration is loaded or updated. This ensures runtime
@@ -69,24 +273,67 @@ public class Config {
 
         // Update static values with configuration values
         fileServerPort = FILE_SERVER_PORT.get();
+        fileServerEngine = FILE_SERVER_ENGINE.get();
+        fileServerThreads = FILE_SERVER_THREADS.get();
+        hotCacheSizeMb = HOT_CACHE_SIZE_MB.get();
+        hotCacheMaxFileKb = HOT_CACHE_MAX_FILE_KB.get();
+        hotCacheMapLargeFiles = HOT_CACHE_MAP_LARGE_FILES.get();
+        hotCacheLogStats = HOT_CACHE_LOG_STATS.get();
+        globalBandwidthLimitKBps = GLOBAL_BANDWIDTH_LIMIT_KBPS.get();
+        perIpBandwidthLimitKBps = PER_IP_BANDWIDTH_LIMIT_KBPS.get();
+        perConnectionBandwidthLimitKBps = PER_CONNECTION_BANDWIDTH_LIMIT_KBPS.get();
+        maxConcurrentPackTransfers = MAX_CONCURRENT_PACK_TRANSFERS.get();
+        adaptiveThrottleEnabled = ADAPTIVE_THROTTLE_ENABLED.get();
+        adaptiveThrottleMsptThreshold = ADAPTIVE_THROTTLE_MSPT_THRESHOLD.get();
+        adaptiveThrottleMinPercent = ADAPTIVE_THROTTLE_MIN_PERCENT.get();
+        packHistoryGenerations = PACK_HISTORY_GENERATIONS.get();
+        packBuildThreads = PACK_BUILD_THREADS.get();
+        packBuildLowPriority = PACK_BUILD_LOW_PRIORITY.get();
+        packCompressionRules = PACK_COMPRESSION_RULES.get();
+        streamPacks = STREAM_PACKS.get();
+        excludeServerOnlyMods = EXCLUDE_SERVER_ONLY_MODS.get();
+        serverOnlyModOverrides = SERVER_ONLY_MOD_OVERRIDES.get();
+        hostedPacks = HOSTED_PACKS.get();
+        autoRebuild = AUTO_REBUILD.get();
+        autoRebuildDelaySeconds = AUTO_REBUILD_DELAY_SECONDS.get();
+        autoRebuildMinIntervalSeconds = AUTO_REBUILD_MIN_INTERVAL_SECONDS.get();
 
         updateConfig = UPDATE_CONFIG.get();
         mirrorMods = MIRROR_MODS.get();
         mirrorConfig = MIRROR_CONFIG.get();
+        objectCacheSizeMb = OBJECT_CACHE_SIZE_MB.get();
 
         // Log configuration load
         SCS.LOGGER.info("Configuration loaded:");
         SCS.LOGGER.info("File Server Port: {}", fileServerPort);
+        SCS.LOGGER.info("File Server Engine: {} ({} threads)", fileServerEngine, fileServerThreads);
+        SCS.LOGGER.info("Hot Cache: {} MB (direct up to {} KB, map large files: {})",
+                hotCacheSizeMb, hotCacheMaxFileKb, hotCacheMapLargeFiles);
+        SCS.LOGGER.info("Bandwidth Limits (KB/s, 0 = unlimited): global {}, per IP {}, per connection {}",
+                globalBandwidthLimitKBps, perIpBandwidthLimitKBps, perConnectionBandwidthLimitKBps);
+        SCS.LOGGER.info("Max Concurrent Pack Transfers: {}", maxConcurrentPackTransfers);
+        SCS.LOGGER.info("Adaptive Throttle: {} (MSPT threshold {} ms, minimum {}%)",
+                adaptiveThrottleEnabled, adaptiveThrottleMsptThreshold, adaptiveThrottleMinPercent);
+        SCS.LOGGER.info("Pack History Generations: {}", packHistoryGenerations);
+        SCS.LOGGER.info("Pack Build Threads: {} (low priority: {})", packBuildThreads, packBuildLowPriority);
+        SCS.LOGGER.info("Pack Compression Rules: {}", packCompressionRules);
+        SCS.LOGGER.info("Stream Packs: {}", streamPacks);
+        SCS.LOGGER.info("Exclude Server-Only Mods: {} (overrides: {})", excludeServerOnlyMods, serverOnlyModOverrides);
+        SCS.LOGGER.info("Hosted Packs: {}", hostedPacks);
+        SCS.LOGGER.info("Auto Rebuild: {} (delay {} s, minimum interval {} s)",
+                autoRebuild, autoRebuildDelaySeconds, autoRebuildMinIntervalSeconds);
         SCS.LOGGER.info("Update Config: {}", updateConfig);
         SCS.LOGGER.info("Mirror Mods: {}", mirrorMods);
         SCS.LOGGER.info("Mirror Config: {}", mirrorConfig);
+        SCS.LOGGER.info("Object Cache Size: {} MB", objectCacheSizeMb);
 
         if (FMLEnvironment.dist == Dist.DEDICATED_SERVER) {
             try {
-                com.scs.server.FileHostingServer.restartIfPortChanged();
+                com.scs.server.FileHostingServer.restartIfSettingsChanged();
             } catch (Exception e) {
                 SCS.LOGGER.error("Failed to apply file server config changes.", e);
             }
+            com.scs.server.PackWatcher.applyConfig();
         }
     }
 }
@@ -0,0 +1,98 @@
+package com.scs.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * FastCDC content-defined chunking: cut points are chosen by a gear rolling hash over the content
+ * itself, so an insertion or a changed zip entry only alters the chunks around it and identical runs
+ * of bytes (unchanged classes, shaded libraries) yield identical chunks in any file.
+ */
+public final class ContentChunker {
+
+    public static final int MIN_SIZE = 4 * 1024;
+    public static final int AVERAGE_SIZE = 16 * 1024;
+    public static final int MAX_SIZE = 64 * 1024;
+
+    private static final int AVERAGE_BITS = Integer.numberOfTrailingZeros(AVERAGE_SIZE);
+    // Normalized chunking: a stricter mask before the average size and a looser one after it.
+    private static final long MASK_SMALL = topBits(AVERAGE_BITS + 1);
+    private static final long MASK_LARGE = topBits(AVERAGE_BITS - 1);
+    private static final long[] GEAR = gearTable();
+
+    private ContentChunker() {
+    }
+
+    @FunctionalInterface
+    public interface Sink {
+        void chunk(byte[] data, int offset, int length) throws IOException;
+    }
+
+    /**
+     * Reads the stream to the end, handing every chunk to the sink in order.
+     */
+    public static void split(InputStream in, Sink sink) throws IOException {
+        byte[] buffer = new byte[MAX_SIZE];
+        int available = 0;
+        boolean eof = false;
+        while (true) {
+            while (!eof && available < MAX_SIZE) {
+                int read = in.read(buffer, available, MAX_SIZE - available);
+                if (read < 0) {
+                    eof = true;
+                } else {
+                    available += read;
+                }
+            }
+            if (available == 0) {
+                return;
+            }
+            int cut = cutPoint(buffer, available);
+            sink.chunk(buffer, 0, cut);
+            System.arraycopy(buffer, cut, buffer, 0, available - cut);
+            available -= cut;
+        }
+    }
+
+    private static int cutPoint(byte[] data, int length) {
+        if (length <= MIN_SIZE) {
+            return length;
+        }
+        long fingerprint = 0;
+        int normal = Math.min(AVERAGE_SIZE, length);
+        int i = MIN_SIZE;
+        for (; i < normal; i++) {
+            fingerprint = (fingerprint << 1) + GEAR[data[i] & 0xFF];
+            if ((fingerprint & MASK_SMALL) == 0) {
+                return i + 1;
+            }
+        }
+        for (; i < length; i++) {
+            fingerprint = (fingerprint << 1) + GEAR[data[i] & 0xFF];
+            if ((fingerprint & MASK_LARGE) == 0) {
+                return i + 1;
+            }
+        }
+        return length;
+    }
+
+    private static long topBits(int count) {
+        return ((1L << count) - 1) << (Long.SIZE - count);
+    }
+
+    /**
+     * Fixed pseudo-random table (SplitMix64 from a constant seed); server and client must agree on it.
+     */
+    private static long[] gearTable() {
+        long[] table = new long[256];
+        long state = 0x5343535F47454152L;
+        for (int i = 0; i < table.length; i++) {
+            state += 0x9E3779B97F4A7C15L;
+            long z = state;
+            z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+            z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+            table[i] = z ^ (z >>> 31);
+        }
+        return table;
+    }
+}
@@ -0,0 +1,232 @@
+package com.scs.core;
+
+import com.google.gson.Gson;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers, per pack, the SHA-256, CRC32 and mod metadata of every source file together with the size,
+ * modification time and file key (inode) it had when it was hashed. A file whose attributes still
+ * match is not read again, so deciding whether a pack must be rebuilt, and rebuilding it, only costs
+ * a stat per unchanged file. Kept in {@code SCS/fingerprints/<pack>.json} so this survives restarts.
+ */
+final class FileFingerprints {
+
+    static final Path DIRECTORY = Path.of("SCS/fingerprints");
+
+    private static final int FORMAT = 3;
+    /**
+     * A file modified this close to being hashed may change again without its modification time
+     * moving (coarse timestamps), so its hash is not kept.
+     */
+    private static final long RACY_WINDOW_MS = 2000;
+    private static final Gson GSON = new Gson();
+
+    private final Path file;
+    private final Map<String, Fingerprint> fingerprints;
+    private volatile String settings;
+    private volatile boolean dirty;
+
+    private FileFingerprints(Path file, Map<String, Fingerprint> fingerprints, String settings) {
+        this.file = file;
+        this.fingerprints = fingerprints;
+        this.settings = settings;
+    }
+
+    /**
+     * Attributes of a file and, when they still match what was recorded, its hash and metadata.
+     */
+    static final class Fingerprint {
+        private String path;
+        private long size;
+        private long modified;
+        private String fileKey;
+        private String sha256;
+        private long crc32;
+        private String displayName;
+        private List<String> modIds;
+        private Map<String, String> versions;
+        private ModJarMetadata.Side side;
+
+        private Fingerprint() {
+        }
+
+        private Fingerprint(String path, long size, long modified, String fileKey) {
+            this.path = path;
+            this.size = size;
+            this.modified = modified;
+            this.fileKey = fileKey;
+        }
+
+        /**
+         * Entry name of the file inside the pack.
+         */
+        String path() {
+            return path;
+        }
+
+        long size() {
+            return size;
+        }
+
+        /**
+         * True when the hash below still describes the file on disk.
+         */
+        boolean isKnown() {
+            return sha256 != null;
+        }
+
+        String sha256() {
+            return sha256;
+        }
+
+        long crc32() {
+            return crc32;
+        }
+
+        /**
+         * Metadata read from the jar when it was hashed, or null for files that are not mods.
+         */
+        ModJarMetadata metadata() {
+            if (modIds == null) {
+                return null;
+            }
+            return ModJarMetadata.of(displayName, new LinkedHashSet<>(modIds), versions, side);
+        }
+
+        private boolean sameFile(Fingerprint other) {
+            return size == other.size && modified == other.modified && Objects.equals(fileKey, other.fileKey);
+        }
+    }
+
+    private static final class Document {
+        private int format = FORMAT;
+        private String settings;
+        private List<Fingerprint> files = new ArrayList<>();
+    }
+
+    /**
+     * Loads the fingerprints recorded for a pack; a missing or unreadable file starts empty, which
+     * only means every file is hashed once more.
+     */
+    static FileFingerprints load(String pack) {
+        Path file = DIRECTORY.resolve(pack + ".json");
+        Map<String, Fingerprint> fingerprints = new ConcurrentHashMap<>();
+        String settings = null;
+        if (Files.isRegularFile(file)) {
+            try {
+                Document document = GSON.fromJson(Files.readString(file), Document.class);
+                if (document != null && document.format == FORMAT && document.files != null) {
+                    settings = document.settings;
+                    for (Fingerprint fingerprint : document.files) {
+                        if (fingerprint != null && fingerprint.path != null && fingerprint.sha256 != null) {
+                            fingerprints.put(fingerprint.path, fingerprint);
+                        }
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                SCS.LOGGER.warn("Ignoring unreadable {}", file, e);
+            }
+        }
+        return new FileFingerprints(file, fingerprints, settings);
+    }
+
+    /**
+     * The build settings (such as the compression rules) the published pack was built with, or null
+     * when unknown. A pack built with other settings is rebuilt even if no file changed.
+     */
+    String settings() {
+        return settings;
+    }
+
+    void settings(String settings) {
+        if (!Objects.equals(this.settings, settings)) {
+            this.settings = settings;
+            dirty = true;
+        }
+    }
+
+    /**
+     * Reads the attributes of {@code source}. The result carries the recorded hash and metadata when
+     * the file has not changed since it was hashed; otherwise it must be hashed and passed to
+     * {@link #record}.
+     */
+    Fingerprint check(String entryName, Path source) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(source, BasicFileAttributes.class);
+        Object key = attributes.fileKey();
+        Fingerprint current = new Fingerprint(entryName, attributes.size(),
+                attributes.lastModifiedTime().toMillis(), key == null ? null : key.toString());
+        Fingerprint recorded = fingerprints.get(entryName);
+        return recorded != null && recorded.sameFile(current) ? recorded : current;
+    }
+
+    /**
+     * Records the hash of a file whose attributes were read by {@link #check} before it was read, so
+     * a change made while hashing shows up as different attributes next time.
+     */
+    Fingerprint record(Fingerprint checked, String sha256, long crc32, ModJarMetadata metadata) {
+        Fingerprint fingerprint = new Fingerprint(checked.path, checked.size, checked.modified, checked.fileKey);
+        fingerprint.sha256 = sha256;
+        fingerprint.crc32 = crc32;
+        if (metadata != null) {
+            fingerprint.displayName = metadata.displayName();
+            fingerprint.modIds = new ArrayList<>(metadata.modIds());
+            fingerprint.versions = new LinkedHashMap<>(metadata.versions());
+            fingerprint.side = metadata.side();
+        }
+        if (checked.modified < System.currentTimeMillis() - RACY_WINDOW_MS) {
+            fingerprints.put(fingerprint.path, fingerprint);
+        } else {
+            fingerprints.remove(fingerprint.path);
+        }
+        dirty = true;
+        return fingerprint;
+    }
+
+    /**
+     * Forgets files that are no longer part of the pack and writes the fingerprints if anything
+     * changed. A failure is logged; the next build simply hashes more.
+     */
+    void save(Collection<String> entryNames) {
+        if (fingerprints.keySet().retainAll(new LinkedHashSet<>(entryNames))) {
+            dirty = true;
+        }
+        if (!dirty) {
+            return;
+        }
+        Document document = new Document();
+        document.settings = settings;
+        document.files.addAll(fingerprints.values());
+        document.files.sort((a, b) -> a.path.compareTo(b.path));
+        try {
+            Files.createDirectories(DIRECTORY);
+            Path temp = Files.createTempFile(DIRECTORY, file.getFileName().toString(), ".tmp");
+            try {
+                Files.writeString(temp, GSON.toJson(document));
+                try {
+                    Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+            dirty = false;
+        } catch (IOException e) {
+            SCS.LOGGER.warn("Failed to write {}", file, e);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.scs.core;
+
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Further packs served by the same file server, configured in {@code hostedPacks} as
+ * {@code <name>=<directory>} rules. The directory is the root of another server (a proxy backend,
+ * say) holding its own {@code mods/} and {@code config/}; they are published as
+ * {@code /packs/<name>/mods.zip} and {@code /packs/<name>/config.zip}, with their manifests, history
+ * and fingerprints kept under the pack id {@code <name>-mods} / {@code <name>-config}. Hosted packs
+ * are always streamed: their files only go to the object store, which every pack shares, so a jar
+ * used by several servers is stored once and a client that already fetched it for one server does
+ * not download it again for another.
+ */
+public final class HostedPacks {
+
+    public static final String URL_PREFIX = "/packs/";
+
+    private static final Pattern NAME = Pattern.compile("[a-z0-9_-]+");
+
+    private HostedPacks() {
+    }
+
+    public static final class Pack {
+        private final String name;
+        private final Path root;
+
+        private Pack(String name, Path root) {
+            this.name = name;
+            this.root = root;
+        }
+
+        public String name() {
+            return name;
+        }
+
+        public Path root() {
+            return root;
+        }
+
+        public Path modsFolder() {
+            return root.resolve("mods");
+        }
+
+        public Path configFolder() {
+            return root.resolve("config");
+        }
+
+        /**
+         * Id under which one of this server's packs ({@link PackManifest#MODS} or
+         * {@link PackManifest#CONFIG}) is published.
+         */
+        public String packId(String pack) {
+            return HostedPacks.packId(name, pack);
+        }
+    }
+
+    /**
+     * The packs configured in {@code hostedPacks}. Malformed rules and repeated names are logged and
+     * skipped.
+     */
+    public static List<Pack> fromConfig() {
+        List<Pack> packs = new ArrayList<>();
+        Set<String> names = new HashSet<>();
+        List<? extends String> rules = Config.hostedPacks != null ? Config.hostedPacks : List.of();
+        for (String rule : rules) {
+            if (!isValidRule(rule)) {
+                SCS.LOGGER.warn("Ignoring malformed hosted pack '{}'; expected <name>=<directory>", rule);
+                continue;
+            }
+            int separator = rule.indexOf('=');
+            String name = rule.substring(0, separator).trim();
+            if (!names.add(name)) {
+                SCS.LOGGER.warn("Ignoring repeated hosted pack '{}'", name);
+                continue;
+            }
+            packs.add(new Pack(name, Path.of(rule.substring(separator + 1).trim())));
+        }
+        return packs;
+    }
+
+    /**
+     * The configured pack with this name, or null.
+     */
+    public static Pack find(String name) {
+        for (Pack pack : fromConfig()) {
+            if (pack.name().equals(name)) {
+                return pack;
+            }
+        }
+        return null;
+    }
+
+    static boolean isValidRule(Object rule) {
+        if (!(rule instanceof String text)) {
+            return false;
+        }
+        int separator = text.indexOf('=');
+        if (separator <= 0 || !isValidName(text.substring(0, separator).trim())) {
+            return false;
+        }
+        String directory = text.substring(separator + 1).trim();
+        if (directory.isEmpty()) {
+            return false;
+        }
+        try {
+            Path.of(directory);
+            return true;
+        } catch (InvalidPathException e) {
+            return false;
+        }
+    }
+
+    public static boolean isValidName(String name) {
+        return name != null && NAME.matcher(name).matches();
+    }
+
+    /**
+     * {@code <name>-<pack>}. The pack never contains a dash, so two hosted packs never share an id,
+     * nor does a hosted pack with the server's own {@code mods} and {@code config}.
+     */
+    public static String packId(String name, String pack) {
+        return name + "-" + pack;
+    }
+}
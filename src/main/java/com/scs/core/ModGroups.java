@@ -0,0 +1,155 @@
+package com.scs.core;
+
+import com.google.gson.Gson;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Named groups of optional mods, declared in {@code mods/scs-groups.json}:
+ * <pre>
+ * {"groups": [
+ *   {"name": "Shaders", "description": "Iris and its addons", "enabledByDefault": false,
+ *    "files": ["iris-*.jar", "shaders/"]}
+ * ]}
+ * </pre>
+ * {@code files} uses the {@link PackIgnore} pattern syntax, relative to {@code mods/}. A file
+ * belongs to the first group listing it; every other file of the pack is required. The descriptor
+ * is packed into mods.zip and its groups are published in the manifest, so clients can offer the
+ * groups before downloading anything and leave out those the player did not pick.
+ */
+public final class ModGroups {
+
+    public static final String FILE_NAME = "scs-groups.json";
+    public static final ModGroups NONE = new ModGroups(Collections.emptyList());
+
+    private static final Gson GSON = new Gson();
+
+    private final List<Group> groups;
+
+    private ModGroups(List<Group> groups) {
+        this.groups = groups;
+    }
+
+    public static final class Group {
+        private String name;
+        private String description;
+        private boolean enabledByDefault;
+        private List<String> files;
+        private transient PackIgnore matcher;
+
+        private Group() {
+        }
+
+        public String name() {
+            return name;
+        }
+
+        /**
+         * Text shown to players next to the group; empty when the descriptor has none.
+         */
+        public String description() {
+            return description == null ? "" : description;
+        }
+
+        /**
+         * Whether clients that never chose for this group download it.
+         */
+        public boolean enabledByDefault() {
+            return enabledByDefault;
+        }
+
+        public List<String> files() {
+            return files == null ? Collections.emptyList() : Collections.unmodifiableList(files);
+        }
+
+        /**
+         * True when the group lists this path, relative to {@code mods/} with {@code /} separators.
+         */
+        public boolean contains(String relativePath) {
+            PackIgnore compiled = matcher;
+            if (compiled == null) {
+                compiled = PackIgnore.compile(files());
+                matcher = compiled;
+            }
+            return compiled.matchesPath(relativePath);
+        }
+    }
+
+    private static final class Document {
+        private List<Group> groups;
+    }
+
+    /**
+     * Reads a descriptor; without one there are no optional groups.
+     */
+    public static ModGroups read(Path file) throws IOException {
+        if (!Files.isRegularFile(file)) {
+            return NONE;
+        }
+        return parse(Files.readString(file));
+    }
+
+    /**
+     * Parses a descriptor. Groups without a name or files, and repeated names, are logged and
+     * skipped.
+     */
+    public static ModGroups parse(String json) throws IOException {
+        Document document;
+        try {
+            document = GSON.fromJson(json, Document.class);
+        } catch (RuntimeException e) {
+            throw new IOException("Malformed " + FILE_NAME, e);
+        }
+        if (document == null || document.groups == null) {
+            return NONE;
+        }
+        return of(document.groups);
+    }
+
+    static ModGroups of(List<Group> groups) {
+        if (groups == null || groups.isEmpty()) {
+            return NONE;
+        }
+        List<Group> valid = new ArrayList<>();
+        Set<String> names = new HashSet<>();
+        for (Group group : groups) {
+            if (group == null || group.name == null || group.name.isBlank() || group.files().isEmpty()) {
+                SCS.LOGGER.warn("Ignoring a group without a name or files in {}", FILE_NAME);
+                continue;
+            }
+            if (!names.add(group.name)) {
+                SCS.LOGGER.warn("Ignoring repeated group '{}' in {}", group.name, FILE_NAME);
+                continue;
+            }
+            valid.add(group);
+        }
+        return new ModGroups(List.copyOf(valid));
+    }
+
+    public List<Group> groups() {
+        return groups;
+    }
+
+    public boolean isEmpty() {
+        return groups.isEmpty();
+    }
+
+    /**
+     * The group a pack file belongs to, or null when it is required.
+     */
+    public Group groupOf(String relativePath) {
+        for (Group group : groups) {
+            if (group.contains(relativePath)) {
+                return group;
+            }
+        }
+        return null;
+    }
+}
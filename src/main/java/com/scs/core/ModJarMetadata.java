@@ -0,0 +1,201 @@
+package com.scs.core;
+
+import com.moandjiezana.toml.Toml;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Display name, modIds, versions and side declared in a jar's {@code neoforge.mods.toml} (or legacy {@code mods.toml}).
+ */
+public final class ModJarMetadata {
+
+    public static final String NEOFORGE_MODS_TOML = "META-INF/neoforge.mods.toml";
+    public static final String LEGACY_MODS_TOML = "META-INF/mods.toml";
+
+    private static final ModJarMetadata EMPTY = new ModJarMetadata(null, Collections.emptySet(), Collections.emptyMap(), Side.BOTH);
+    private static final Set<String> LOADER_MOD_IDS = Set.of("minecraft", "neoforge", "forge");
+
+    private final String displayName;
+    private final Set<String> modIds;
+    private final Map<String, String> versions;
+    private final Side side;
+
+    private ModJarMetadata(String displayName, Set<String> modIds, Map<String, String> versions, Side side) {
+        this.displayName = displayName;
+        this.modIds = modIds;
+        this.versions = versions;
+        this.side = side;
+    }
+
+    /**
+     * Where a jar is needed, as far as its toml tells.
+     */
+    public enum Side {
+        /**
+         * Needed on both sides, or nothing says otherwise.
+         */
+        BOTH,
+        /**
+         * Only does something on the client ({@code displayTest = "IGNORE_ALL_VERSION"},
+         * {@code clientSideOnly}, or loaded on the client only).
+         */
+        CLIENT,
+        /**
+         * Only does something on the server ({@code displayTest = "IGNORE_SERVER_VERSION"}, or
+         * loaded on the server only); clients do not need the jar.
+         */
+        SERVER
+    }
+
+    /**
+     * Reads the metadata of a jar on disk; a jar without a mods.toml yields empty metadata.
+     */
+    public static ModJarMetadata read(Path jarPath) throws IOException {
+        try (ZipFile zipFile = new ZipFile(jarPath.toFile())) {
+            ZipEntry entry = zipFile.getEntry(NEOFORGE_MODS_TOML);
+            if (entry == null) {
+                entry = zipFile.getEntry(LEGACY_MODS_TOML);
+            }
+            if (entry == null) {
+                return EMPTY;
+            }
+            try (InputStream is = zipFile.getInputStream(entry)) {
+                return fromToml(new Toml().read(is));
+            }
+        }
+    }
+
+    public static ModJarMetadata fromToml(Toml toml) {
+        if (toml == null) {
+            return EMPTY;
+        }
+
+        String displayName = toml.getString("display_name");
+        Set<String> modIds = new LinkedHashSet<>();
+        Map<String, String> versions = new LinkedHashMap<>();
+        Set<Side> declaredSides = EnumSet.noneOf(Side.class);
+        List<Toml> modsTables = toml.getTables("mods");
+        if (modsTables != null) {
+            for (Toml modTable : modsTables) {
+                if (displayName == null) {
+                    displayName = modTable.getString("displayName");
+                }
+                String modId = modTable.getString("modId");
+                if (modId == null || modId.isBlank()) {
+                    continue;
+                }
+                String key = modId.toLowerCase(Locale.ROOT);
+                modIds.add(key);
+                String version = modTable.getString("version");
+                if (version != null && !version.isBlank()) {
+                    versions.put(key, version.trim());
+                }
+                declaredSides.add(sideOf(toml, modTable, modId));
+            }
+        }
+        Side side = declaredSides.size() == 1 ? declaredSides.iterator().next() : Side.BOTH;
+        if (Boolean.TRUE.equals(toml.getBoolean("clientSideOnly"))) {
+            side = Side.CLIENT;
+        }
+        return new ModJarMetadata(displayName, modIds, versions, side);
+    }
+
+    /**
+     * Side of one mod: its {@code displayTest}, or else the {@code side} of its dependencies on the
+     * game and the loader when all of them agree on one side.
+     */
+    private static Side sideOf(Toml toml, Toml modTable, String modId) {
+        String displayTest = modTable.getString("displayTest");
+        if ("IGNORE_SERVER_VERSION".equals(displayTest)) {
+            return Side.SERVER;
+        }
+        if ("IGNORE_ALL_VERSION".equals(displayTest)) {
+            return Side.CLIENT;
+        }
+        List<Toml> dependencies = toml.getTables("dependencies." + modId);
+        if (dependencies == null) {
+            return Side.BOTH;
+        }
+        Side side = null;
+        for (Toml dependency : dependencies) {
+            String target = dependency.getString("modId");
+            if (target == null || !LOADER_MOD_IDS.contains(target.toLowerCase(Locale.ROOT))) {
+                continue;
+            }
+            Side declared = parseSide(dependency.getString("side"));
+            if (side != null && side != declared) {
+                return Side.BOTH;
+            }
+            side = declared;
+        }
+        return side != null ? side : Side.BOTH;
+    }
+
+    private static Side parseSide(String side) {
+        if (side == null) {
+            return Side.BOTH;
+        }
+        switch (side.toUpperCase(Locale.ROOT)) {
+            case "CLIENT":
+                return Side.CLIENT;
+            case "SERVER":
+                return Side.SERVER;
+            default:
+                return Side.BOTH;
+        }
+    }
+
+    public static ModJarMetadata of(Set<String> modIds, Map<String, String> versions) {
+        return of(null, modIds, versions);
+    }
+
+    public static ModJarMetadata of(String displayName, Set<String> modIds, Map<String, String> versions) {
+        return of(displayName, modIds, versions, Side.BOTH);
+    }
+
+    public static ModJarMetadata of(String displayName, Set<String> modIds, Map<String, String> versions, Side side) {
+        return new ModJarMetadata(
+                displayName,
+                modIds == null ? Collections.emptySet() : modIds,
+                versions == null ? Collections.emptyMap() : versions,
+                side == null ? Side.BOTH : side
+        );
+    }
+
+    /**
+     * Display name from the toml, or null when it declares none.
+     */
+    public String displayName() {
+        return displayName;
+    }
+
+    /**
+     * Lower-cased modIds.
+     */
+    public Set<String> modIds() {
+        return modIds;
+    }
+
+    /**
+     * Declared version per lower-cased modId; may contain placeholders such as {@code ${file.jarVersion}}.
+     */
+    public Map<String, String> versions() {
+        return versions;
+    }
+
+    public Side side() {
+        return side;
+    }
+}
@@ -0,0 +1,214 @@
+package com.scs.core;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * Paths left out of a pack, from gitignore-style patterns in {@code .scsignore} at the root of
+ * {@code mods/} or {@code config/}:
+ * <ul>
+ *     <li>{@code #} starts a comment; blank lines are skipped.</li>
+ *     <li>{@code *} and {@code ?} match within one path segment, {@code **} across segments, and
+ *     {@code [a-z]} / {@code [!a-z]} one character of a set.</li>
+ *     <li>A pattern without a slash matches a file or directory name at any depth; with a slash it
+ *     is relative to the pack root. A trailing slash only matches directories.</li>
+ *     <li>{@code !} re-includes what an earlier pattern excluded; the last matching pattern wins.
+ *     A file inside an excluded directory stays excluded.</li>
+ * </ul>
+ * Each pattern is compiled once: plain names and {@code *.ext} become string comparisons on the
+ * file name, anything else a regular expression. The patterns are published in the pack manifest
+ * so clients in mirror mode keep the files the server left out.
+ */
+public final class PackIgnore {
+
+    public static final String FILE_NAME = ".scsignore";
+    public static final PackIgnore NONE = new PackIgnore(Collections.emptyList(), Collections.emptyList());
+
+    private final List<String> patterns;
+    private final List<Rule> rules;
+
+    private PackIgnore(List<String> patterns, List<Rule> rules) {
+        this.patterns = patterns;
+        this.rules = rules;
+    }
+
+    private static final class Rule {
+        private final boolean negated;
+        private final boolean directoryOnly;
+        private final boolean anchored;
+        private final Predicate<String> matcher;
+
+        private Rule(boolean negated, boolean directoryOnly, boolean anchored, Predicate<String> matcher) {
+            this.negated = negated;
+            this.directoryOnly = directoryOnly;
+            this.anchored = anchored;
+            this.matcher = matcher;
+        }
+    }
+
+    /**
+     * Reads {@code root/.scsignore}; without one nothing is ignored.
+     */
+    public static PackIgnore load(Path root) throws IOException {
+        Path file = root.resolve(FILE_NAME);
+        if (!Files.isRegularFile(file)) {
+            return NONE;
+        }
+        return compile(Files.readAllLines(file));
+    }
+
+    public static PackIgnore compile(List<String> lines) {
+        if (lines == null || lines.isEmpty()) {
+            return NONE;
+        }
+        List<String> patterns = new ArrayList<>();
+        List<Rule> rules = new ArrayList<>();
+        for (String line : lines) {
+            Rule rule = line == null ? null : compileRule(line.stripTrailing());
+            if (rule != null) {
+                patterns.add(line.stripTrailing());
+                rules.add(rule);
+            }
+        }
+        return new PackIgnore(List.copyOf(patterns), List.copyOf(rules));
+    }
+
+    private static Rule compileRule(String text) {
+        if (text.isEmpty() || text.startsWith("#")) {
+            return null;
+        }
+        boolean negated = text.startsWith("!");
+        if (negated) {
+            text = text.substring(1);
+        } else if (text.startsWith("\\#") || text.startsWith("\\!")) {
+            text = text.substring(1);
+        }
+        boolean directoryOnly = text.endsWith("/");
+        while (text.endsWith("/")) {
+            text = text.substring(0, text.length() - 1);
+        }
+        boolean anchored = text.contains("/");
+        if (text.startsWith("/")) {
+            text = text.substring(1);
+        }
+        if (text.isEmpty()) {
+            return null;
+        }
+
+        Predicate<String> matcher;
+        if (!anchored && !hasWildcards(text)) {
+            String name = text.replace("\\", "");
+            matcher = name::equals;
+        } else if (!anchored && text.startsWith("*") && !hasWildcards(text.substring(1))) {
+            String suffix = text.substring(1).replace("\\", "");
+            matcher = name -> name.endsWith(suffix);
+        } else {
+            matcher = Pattern.compile(toRegex(text)).asMatchPredicate();
+        }
+        return new Rule(negated, directoryOnly, anchored, matcher);
+    }
+
+    private static boolean hasWildcards(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '*' || c == '?' || c == '[') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String toRegex(String glob) {
+        StringBuilder regex = new StringBuilder();
+        int length = glob.length();
+        for (int i = 0; i < length; i++) {
+            char c = glob.charAt(i);
+            boolean segmentStart = i == 0 || glob.charAt(i - 1) == '/';
+            if (c == '*' && i + 1 < length && glob.charAt(i + 1) == '*') {
+                if (segmentStart && i + 2 < length && glob.charAt(i + 2) == '/') {
+                    regex.append("(?:.*/)?");
+                    i += 2;
+                } else {
+                    regex.append(".*");
+                    i++;
+                }
+            } else if (c == '*') {
+                regex.append("[^/]*");
+            } else if (c == '?') {
+                regex.append("[^/]");
+            } else if (c == '[' && glob.indexOf(']', i + 2) > 0) {
+                int close = glob.indexOf(']', i + 2);
+                String set = glob.substring(i + 1, close);
+                if (set.startsWith("!")) {
+                    set = "^" + set.substring(1);
+                }
+                regex.append('[').append(set.replace("\\", "\\\\").replace("[", "\\[")).append(']');
+                i = close;
+            } else if (c == '\\' && i + 1 < length) {
+                regex.append(Pattern.quote(String.valueOf(glob.charAt(++i))));
+            } else {
+                regex.append(Pattern.quote(String.valueOf(c)));
+            }
+        }
+        return regex.toString();
+    }
+
+    /**
+     * The patterns as written, without comments and blank lines.
+     */
+    public List<String> patterns() {
+        return patterns;
+    }
+
+    public boolean isEmpty() {
+        return rules.isEmpty();
+    }
+
+    /**
+     * True when the last pattern matching this path, relative to the pack root with {@code /}
+     * separators, excludes it. Parent directories are not considered; see {@link #isIgnored}.
+     */
+    public boolean matches(String relativePath, boolean directory) {
+        String name = relativePath.substring(relativePath.lastIndexOf('/') + 1);
+        for (int i = rules.size() - 1; i >= 0; i--) {
+            Rule rule = rules.get(i);
+            if (rule.directoryOnly && !directory) {
+                continue;
+            }
+            if (rule.matcher.test(rule.anchored ? relativePath : name)) {
+                return !rule.negated;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * True when a file, or any directory it is in, is excluded. The ignore file itself always is.
+     */
+    public boolean isIgnored(String relativePath) {
+        return relativePath.equals(FILE_NAME) || matchesPath(relativePath);
+    }
+
+    /**
+     * True when the patterns exclude a file or any directory it is in.
+     */
+    public boolean matchesPath(String relativePath) {
+        if (rules.isEmpty()) {
+            return false;
+        }
+        int slash = relativePath.indexOf('/');
+        while (slash > 0) {
+            if (matches(relativePath.substring(0, slash), true)) {
+                return true;
+            }
+            slash = relativePath.indexOf('/', slash + 1);
+        }
+        return matches(relativePath, false);
+    }
+}
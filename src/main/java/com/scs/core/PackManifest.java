@@ -0,0 +1,270 @@
+package com.scs.core;
+
+import com.google.gson.Gson;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Describes every entry of a published pack (mods.zip / config.zip): path, size, SHA-256, CRC32 and,
+ * for jars, the modIds and versions from their mods.toml. Published next to the zip as
+ * {@code <pack>.manifest.json} so clients can plan an update without downloading the zip.
+ */
+public final class PackManifest {
+
+    public static final int FORMAT = 1;
+    public static final String MODS = "mods";
+    public static final String CONFIG = "config";
+
+    private static final Gson GSON = new Gson();
+
+    private int format = FORMAT;
+    private String pack;
+    private long generation;
+    private long createdAt;
+    private List<Entry> entries = new ArrayList<>();
+    private List<String> ignore;
+    private List<ModGroups.Group> groups;
+
+    private PackManifest() {
+    }
+
+    public static PackManifest create(String pack, long generation, List<Entry> entries) {
+        return create(pack, generation, entries, Collections.emptyList());
+    }
+
+    /**
+     * @param ignore the {@link PackIgnore} patterns the pack was built with.
+     */
+    public static PackManifest create(String pack, long generation, List<Entry> entries, List<String> ignore) {
+        return create(pack, generation, entries, ignore, ModGroups.NONE);
+    }
+
+    /**
+     * @param ignore the {@link PackIgnore} patterns the pack was built with.
+     * @param groups the optional {@link ModGroups} declared in the pack.
+     */
+    public static PackManifest create(String pack, long generation, List<Entry> entries, List<String> ignore, ModGroups groups) {
+        PackManifest manifest = new PackManifest();
+        manifest.pack = pack;
+        manifest.generation = generation;
+        manifest.createdAt = System.currentTimeMillis();
+        manifest.entries = new ArrayList<>(entries);
+        manifest.ignore = ignore.isEmpty() ? null : new ArrayList<>(ignore);
+        manifest.groups = groups.isEmpty() ? null : new ArrayList<>(groups.groups());
+        return manifest;
+    }
+
+    public static final class Entry {
+        private String path;
+        private long size;
+        private String sha256;
+        private long crc32;
+        private List<String> modIds;
+        private Map<String, String> versions;
+        private List<String> patchBases;
+
+        private Entry() {
+        }
+
+        public Entry(String path, long size, String sha256, long crc32, ModJarMetadata metadata) {
+            this.path = path;
+            this.size = size;
+            this.sha256 = sha256;
+            this.crc32 = crc32;
+            if (metadata != null) {
+                this.modIds = new ArrayList<>(metadata.modIds());
+                this.versions = new LinkedHashMap<>(metadata.versions());
+            }
+        }
+
+        /**
+         * Entry name inside the zip, always with forward slashes.
+         */
+        public String path() {
+            return path;
+        }
+
+        public long size() {
+            return size;
+        }
+
+        public String sha256() {
+            return sha256;
+        }
+
+        public long crc32() {
+            return crc32;
+        }
+
+        /**
+         * True for jars, whose modIds were read when the pack was built.
+         */
+        public boolean hasModMetadata() {
+            return modIds != null;
+        }
+
+        public ModJarMetadata metadata() {
+            return ModJarMetadata.of(
+                    modIds == null ? null : new LinkedHashSet<>(modIds),
+                    versions
+            );
+        }
+
+        /**
+         * SHA-256 of earlier versions of this file that the server has a binary patch from.
+         */
+        public List<String> patchBases() {
+            return patchBases == null ? Collections.emptyList() : Collections.unmodifiableList(patchBases);
+        }
+
+        void addPatchBase(String sha256) {
+            if (patchBases == null) {
+                patchBases = new ArrayList<>();
+            }
+            if (!patchBases.contains(sha256)) {
+                patchBases.add(sha256);
+            }
+        }
+    }
+
+    /**
+     * Manifest file name published for a pack, e.g. {@code mods.manifest.json}.
+     */
+    public static String fileName(String pack) {
+        return pack + ".manifest.json";
+    }
+
+    /**
+     * Reads a manifest, or returns null when the file does not exist.
+     */
+    public static PackManifest read(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        return parse(Files.readString(file));
+    }
+
+    public static PackManifest parse(String json) throws IOException {
+        try {
+            PackManifest manifest = GSON.fromJson(json, PackManifest.class);
+            if (manifest == null || manifest.entries == null) {
+                throw new IOException("Empty pack manifest");
+            }
+            if (manifest.format > FORMAT) {
+                throw new IOException("Unsupported pack manifest format " + manifest.format);
+            }
+            return manifest;
+        } catch (RuntimeException e) {
+            throw new IOException("Malformed pack manifest", e);
+        }
+    }
+
+    /**
+     * Writes the manifest through a temporary file so readers never see a partial document.
+     */
+    public void write(Path file) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        try {
+            Files.writeString(temp, GSON.toJson(this));
+            try {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    public String pack() {
+        return pack;
+    }
+
+    /**
+     * Increases by one every time the pack is rebuilt with different content.
+     */
+    public long generation() {
+        return generation;
+    }
+
+    public long createdAt() {
+        return createdAt;
+    }
+
+    public List<Entry> entries() {
+        return Collections.unmodifiableList(entries);
+    }
+
+    /**
+     * Patterns of the files the server left out of the pack; clients in mirror mode keep them.
+     */
+    public List<String> ignorePatterns() {
+        return ignore == null ? Collections.emptyList() : Collections.unmodifiableList(ignore);
+    }
+
+    /**
+     * Optional groups of the pack; files outside them are required.
+     */
+    public ModGroups groups() {
+        return ModGroups.of(groups);
+    }
+
+    /**
+     * A copy listing only the entries {@code keep} accepts, e.g. without the optional groups a
+     * client left out, so the update is planned and recorded for what it actually installs.
+     */
+    public PackManifest filter(Predicate<Entry> keep) {
+        PackManifest manifest = new PackManifest();
+        manifest.format = format;
+        manifest.pack = pack;
+        manifest.generation = generation;
+        manifest.createdAt = createdAt;
+        manifest.ignore = ignore;
+        manifest.groups = groups;
+        manifest.entries = new ArrayList<>();
+        for (Entry entry : entries) {
+            if (keep.test(entry)) {
+                manifest.entries.add(entry);
+            }
+        }
+        return manifest;
+    }
+
+    /**
+     * True when both manifests list the same paths with the same content.
+     */
+    public boolean sameContentAs(PackManifest other) {
+        if (other == null || other.entries.size() != entries.size()) {
+            return false;
+        }
+        Map<String, Entry> otherEntries = other.entriesByPath();
+        for (Entry entry : entries) {
+            Entry match = otherEntries.get(entry.path());
+            if (match == null || !entry.sha256().equals(match.sha256())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public Map<String, Entry> entriesByPath() {
+        Map<String, Entry> byPath = new LinkedHashMap<>();
+        for (Entry entry : entries) {
+            byPath.put(entry.path(), entry);
+        }
+        return byPath;
+    }
+}
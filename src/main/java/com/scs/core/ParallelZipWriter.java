@@ -0,0 +1,436 @@
+package com.scs.core;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Zip writer for entries compressed on several threads, in the manner of Commons Compress's
+ * {@code ParallelScatterZipCreator}: {@link #scatter} compresses one entry into its own buffer (kept in
+ * memory when small, spilled to a temporary file otherwise) and can be called concurrently, then
+ * {@link #append} copies the already compressed bytes into the archive on a single thread, in
+ * whatever order the entries should appear. Entries of a previous archive can be {@link #reuse}d as
+ * they are. ZIP64 records are only written when sizes or offsets need them.
+ */
+public final class ParallelZipWriter implements Closeable {
+
+    /**
+     * Entries that compress to more than this are spilled to disk while waiting to be appended.
+     */
+    private static final int MEMORY_THRESHOLD = 1024 * 1024;
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int END_SIGNATURE = 0x06054b50;
+    private static final int ZIP64_END_SIGNATURE = 0x06064b50;
+    private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+    private static final int UTF8_FLAG = 0x0800;
+    private static final int STORED = 0;
+    private static final int DEFLATED = 8;
+    private static final long ZIP64_LIMIT = 0xFFFFFFFFL;
+    private static final int ZIP64_ENTRY_LIMIT = 0xFFFF;
+
+    /**
+     * A compressed entry waiting to be appended.
+     */
+    public static final class ScatterEntry {
+        private final String name;
+        private final int method;
+        private final long crc;
+        private final long size;
+        private final long compressedSize;
+        private final int dosTime;
+        private final byte[] data;
+        private final Path spillFile;
+        private final FileChannel source;
+        private final long sourceOffset;
+
+        private ScatterEntry(
+                String name,
+                int method,
+                long crc,
+                long size,
+                long compressedSize,
+                int dosTime,
+                byte[] data,
+                Path spillFile,
+                FileChannel source,
+                long sourceOffset
+        ) {
+            this.name = name;
+            this.method = method;
+            this.crc = crc;
+            this.size = size;
+            this.compressedSize = compressedSize;
+            this.dosTime = dosTime;
+            this.data = data;
+            this.spillFile = spillFile;
+            this.source = source;
+            this.sourceOffset = sourceOffset;
+        }
+
+        public String name() {
+            return name;
+        }
+
+        public long crc() {
+            return crc;
+        }
+
+        public long size() {
+            return size;
+        }
+
+        public long compressedSize() {
+            return compressedSize;
+        }
+
+        public boolean isStored() {
+            return method == STORED;
+        }
+
+        /**
+         * Deletes the spilled data of an entry that will not be appended.
+         */
+        public void discard() throws IOException {
+            if (spillFile != null) {
+                Files.deleteIfExists(spillFile);
+            }
+        }
+    }
+
+    private static final class CentralRecord {
+        private final byte[] name;
+        private final int method;
+        private final long crc;
+        private final long size;
+        private final long compressedSize;
+        private final int dosTime;
+        private final long offset;
+
+        private CentralRecord(byte[] name, int method, long crc, long size, long compressedSize, int dosTime, long offset) {
+            this.name = name;
+            this.method = method;
+            this.crc = crc;
+            this.size = size;
+            this.compressedSize = compressedSize;
+            this.dosTime = dosTime;
+            this.offset = offset;
+        }
+    }
+
+    private final OutputStream out;
+    private final Path spillDirectory;
+    private final List<CentralRecord> records = new ArrayList<>();
+    private long offset;
+
+    /**
+     * Creates {@code zip}, spilling large entries next to it.
+     */
+    public ParallelZipWriter(Path zip) throws IOException {
+        Path parent = zip.toAbsolutePath().getParent();
+        this.spillDirectory = Files.createTempDirectory(parent, zip.getFileName() + ".scatter");
+        this.out = new BufferedOutputStream(Files.newOutputStream(zip), 1 << 16);
+    }
+
+    /**
+     * Reads the stream to the end and stores or deflates it into a scatter buffer, as
+     * {@code compression} says; a sampled choice is made from the first chunk read. Safe to call
+     * from any number of threads.
+     */
+    public ScatterEntry scatter(String name, InputStream in, CompressionPolicy.Compression compression) throws IOException {
+        int dosTime = toDosTime(System.currentTimeMillis());
+        CRC32 crc = new CRC32();
+        long size = 0;
+        byte[] chunk = new byte[CompressionPolicy.SAMPLE_SIZE];
+        int read = 0;
+        if (compression.isSampled()) {
+            read = in.readNBytes(chunk, 0, chunk.length);
+            compression = compression.resolve(chunk, read);
+        }
+        SpillOutputStream buffer = new SpillOutputStream(spillDirectory);
+        Deflater deflater = compression.isStored() ? null : new Deflater(compression.level(), true);
+        try {
+            try (OutputStream target = deflater == null ? buffer : new DeflaterOutputStream(buffer, deflater, 1 << 16)) {
+                while (read != -1) {
+                    crc.update(chunk, 0, read);
+                    target.write(chunk, 0, read);
+                    size += read;
+                    read = in.read(chunk);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            buffer.discard();
+            throw e;
+        } finally {
+            if (deflater != null) {
+                deflater.end();
+            }
+        }
+        int method = deflater == null ? STORED : DEFLATED;
+        return new ScatterEntry(name, method, crc.getValue(), size, buffer.count, dosTime, buffer.memory(), buffer.file, null, 0);
+    }
+
+    /**
+     * Refers to an entry of an existing archive whose compressed bytes will be copied unchanged,
+     * without inflating and deflating them again. The directory must stay open until the entry
+     * has been appended. Safe to call from any number of threads.
+     */
+    public ScatterEntry reuse(ZipDirectory directory, ZipDirectory.Entry entry) throws IOException {
+        if (!entry.isCopyable()) {
+            throw new IOException("Zip entry " + entry.name() + " cannot be copied");
+        }
+        return new ScatterEntry(
+                entry.name(),
+                entry.method(),
+                entry.crc(),
+                entry.size(),
+                entry.compressedSize(),
+                entry.dosTime(),
+                null,
+                null,
+                directory.channel(),
+                directory.dataOffset(entry)
+        );
+    }
+
+    /**
+     * Copies a scattered entry into the archive and releases its buffer. Not thread-safe.
+     */
+    public void append(ScatterEntry entry) throws IOException {
+        byte[] name = entry.name.getBytes(StandardCharsets.UTF_8);
+        byte[] header = localHeader(name, entry.method, entry.crc, entry.size, entry.compressedSize, entry.dosTime);
+        records.add(new CentralRecord(name, entry.method, entry.crc, entry.size, entry.compressedSize, entry.dosTime, offset));
+        out.write(header);
+        offset += header.length;
+        if (entry.data != null) {
+            out.write(entry.data);
+        } else if (entry.source != null) {
+            WritableByteChannel target = Channels.newChannel(out);
+            long copied = 0;
+            while (copied < entry.compressedSize) {
+                long transferred = entry.source.transferTo(entry.sourceOffset + copied, entry.compressedSize - copied, target);
+                if (transferred <= 0) {
+                    throw new IOException("Reused entry " + entry.name + " is truncated");
+                }
+                copied += transferred;
+            }
+        } else {
+            try {
+                Files.copy(entry.spillFile, out);
+            } finally {
+                Files.deleteIfExists(entry.spillFile);
+            }
+        }
+        offset += entry.compressedSize;
+    }
+
+    /**
+     * Writes the central directory and closes the archive.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            long directoryOffset = offset;
+            for (CentralRecord record : records) {
+                writeCentralRecord(record);
+            }
+            byte[] end = endRecords(records.size(), directoryOffset, offset - directoryOffset);
+            out.write(end);
+            offset += end.length;
+            out.close();
+        } finally {
+            try (var leftovers = Files.list(spillDirectory)) {
+                for (Path file : (Iterable<Path>) leftovers::iterator) {
+                    Files.deleteIfExists(file);
+                }
+            }
+            Files.deleteIfExists(spillDirectory);
+        }
+    }
+
+    private void writeCentralRecord(CentralRecord record) throws IOException {
+        byte[] header = centralHeader(record.name, record.method, record.crc, record.size, record.compressedSize, record.dosTime, record.offset);
+        out.write(header);
+        offset += header.length;
+    }
+
+    /**
+     * Local file header of an entry, with a ZIP64 extra field when a size needs one.
+     */
+    static byte[] localHeader(byte[] name, int method, long crc, long size, long compressedSize, int dosTime) {
+        boolean zip64 = size >= ZIP64_LIMIT || compressedSize >= ZIP64_LIMIT;
+        ByteBuffer header = ByteBuffer.allocate(30 + name.length + (zip64 ? 20 : 0)).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(LOCAL_HEADER_SIGNATURE)
+                .putShort((short) (zip64 ? 45 : 20))
+                .putShort((short) UTF8_FLAG)
+                .putShort((short) method)
+                .putInt(dosTime)
+                .putInt((int) crc)
+                .putInt((int) (zip64 ? ZIP64_LIMIT : compressedSize))
+                .putInt((int) (zip64 ? ZIP64_LIMIT : size))
+                .putShort((short) name.length)
+                .putShort((short) (zip64 ? 20 : 0))
+                .put(name);
+        if (zip64) {
+            header.putShort((short) 1).putShort((short) 16).putLong(size).putLong(compressedSize);
+        }
+        return header.array();
+    }
+
+    /**
+     * Central directory record of an entry whose local header starts at {@code offset}.
+     */
+    static byte[] centralHeader(byte[] name, int method, long crc, long size, long compressedSize, int dosTime, long offset) {
+        boolean sizes64 = size >= ZIP64_LIMIT || compressedSize >= ZIP64_LIMIT;
+        boolean offset64 = offset >= ZIP64_LIMIT;
+        int extraLength = sizes64 || offset64 ? 4 + (sizes64 ? 16 : 0) + (offset64 ? 8 : 0) : 0;
+        ByteBuffer header = ByteBuffer.allocate(46 + name.length + extraLength).order(ByteOrder.LITTLE_ENDIAN);
+        short version = (short) (extraLength > 0 ? 45 : 20);
+        header.putInt(CENTRAL_HEADER_SIGNATURE)
+                .putShort(version)
+                .putShort(version)
+                .putShort((short) UTF8_FLAG)
+                .putShort((short) method)
+                .putInt(dosTime)
+                .putInt((int) crc)
+                .putInt((int) (sizes64 ? ZIP64_LIMIT : compressedSize))
+                .putInt((int) (sizes64 ? ZIP64_LIMIT : size))
+                .putShort((short) name.length)
+                .putShort((short) extraLength)
+                .putShort((short) 0)
+                .putShort((short) 0)
+                .putShort((short) 0)
+                .putInt(0)
+                .putInt((int) (offset64 ? ZIP64_LIMIT : offset))
+                .put(name);
+        if (extraLength > 0) {
+            header.putShort((short) 1).putShort((short) (extraLength - 4));
+            if (sizes64) {
+                header.putLong(size).putLong(compressedSize);
+            }
+            if (offset64) {
+                header.putLong(offset);
+            }
+        }
+        return header.array();
+    }
+
+    /**
+     * End of central directory record, preceded by the ZIP64 end record and locator when the entry
+     * count, size or offset of the directory need them. The records follow the directory directly.
+     */
+    static byte[] endRecords(int entries, long directoryOffset, long directorySize) {
+        boolean zip64 = entries >= ZIP64_ENTRY_LIMIT || directoryOffset >= ZIP64_LIMIT || directorySize >= ZIP64_LIMIT;
+        ByteBuffer end = ByteBuffer.allocate((zip64 ? 56 + 20 : 0) + 22).order(ByteOrder.LITTLE_ENDIAN);
+        if (zip64) {
+            long zip64EndOffset = directoryOffset + directorySize;
+            end.putInt(ZIP64_END_SIGNATURE)
+                    .putLong(44)
+                    .putShort((short) 45)
+                    .putShort((short) 45)
+                    .putInt(0)
+                    .putInt(0)
+                    .putLong(entries)
+                    .putLong(entries)
+                    .putLong(directorySize)
+                    .putLong(directoryOffset);
+            end.putInt(ZIP64_LOCATOR_SIGNATURE).putInt(0).putLong(zip64EndOffset).putInt(1);
+        }
+        end.putInt(END_SIGNATURE)
+                .putShort((short) 0)
+                .putShort((short) 0)
+                .putShort((short) Math.min(entries, ZIP64_ENTRY_LIMIT))
+                .putShort((short) Math.min(entries, ZIP64_ENTRY_LIMIT))
+                .putInt((int) Math.min(directorySize, ZIP64_LIMIT))
+                .putInt((int) Math.min(directoryOffset, ZIP64_LIMIT))
+                .putShort((short) 0);
+        return end.array();
+    }
+
+    static int toDosTime(long millis) {
+        LocalDateTime time = LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+        if (time.getYear() < 1980) {
+            return (1 << 21) | (1 << 16);
+        }
+        return (time.getYear() - 1980) << 25
+                | time.getMonthValue() << 21
+                | time.getDayOfMonth() << 16
+                | time.getHour() << 11
+                | time.getMinute() << 5
+                | time.getSecond() >> 1;
+    }
+
+    /**
+     * Collects bytes in memory and moves them to a temporary file once they exceed
+     * {@link #MEMORY_THRESHOLD}.
+     */
+    private static final class SpillOutputStream extends OutputStream {
+        private final Path directory;
+        private ByteArrayOutputStream memory = new ByteArrayOutputStream();
+        private OutputStream fileOut;
+        private Path file;
+        private long count;
+
+        private SpillOutputStream(Path directory) {
+            this.directory = directory;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] data, int off, int len) throws IOException {
+            if (fileOut == null && memory.size() + len > MEMORY_THRESHOLD) {
+                file = Files.createTempFile(directory, "entry", ".deflate");
+                fileOut = new BufferedOutputStream(Files.newOutputStream(file), 1 << 16);
+                memory.writeTo(fileOut);
+                memory = null;
+            }
+            if (fileOut != null) {
+                fileOut.write(data, off, len);
+            } else {
+                memory.write(data, off, len);
+            }
+            count += len;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (fileOut != null) {
+                fileOut.close();
+            }
+        }
+
+        private byte[] memory() {
+            return memory != null ? memory.toByteArray() : null;
+        }
+
+        private void discard() throws IOException {
+            close();
+            if (file != null) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+}
@@ -1,7 +1,17 @@
 package com.scs.core;
 
-import com.moandjiezana.toml.Toml;
 import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.arguments.StringArgumentType;
+import com.scs.server.ChunkStore;
+import com.scs.server.DownloadAdmission;
+import com.scs.server.HotFileCache;
+import com.scs.server.ObjectStore;
+import com.scs.server.PackHistory;
+import com.scs.server.PatchStore;
+import com.scs.server.PublishedGenerations;
+import com.scs.server.StaticExport;
+import com.scs.server.StoreSweep;
+import com.scs.server.TickThrottle;
 import net.minecraft.commands.CommandSourceStack;
 import net.minecraft.commands.Commands;
 import net.minecraft.network.chat.Component;
@@ -9,33 +19,158 @@ import net.neoforged.neoforge.event.RegisterCommandsEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.attribute.FileTime;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Predicate;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
-import java.util.zip.ZipOutputStream;
-import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
 
 public class RegisterCommands {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(RegisterCommands.class);
-    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor();
+    /**
+     * Runs builds and exports; the per-pack locks let mods and config build at the same time while
+     * two builds of one pack, or a build and an export, never overlap.
+     */
+    private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(buildThreadFactory("scs-pack-build"));
+    /**
+     * Compresses pack files; sized by {@code packBuildThreads} before every build.
+     */
+    private static final ThreadPoolExecutor COMPRESSION_POOL = newCompressionPool();
+    private static final ReentrantLock MODS_BUILD_LOCK = new ReentrantLock();
+    private static final ReentrantLock CONFIG_BUILD_LOCK = new ReentrantLock();
+    /**
+     * Most earlier versions of one file a patch is offered from, newest first.
+     */
+    private static final int MAX_PATCH_BASES = 3;
+    private static final AtomicBoolean SWEEP_PENDING = new AtomicBoolean();
 
-    private static final Path MODS_FOLDER = Path.of("mods");
-    private static final Path CONFIG_FOLDER = Path.of("config");
+    public static final Path MODS_FOLDER = Path.of("mods");
+    public static final Path CONFIG_FOLDER = Path.of("config");
     private static final Path SHARED_FILES_FOLDER = Path.of("SCS/shared-files");
-    private static final Path MODS_ZIP = SHARED_FILES_FOLDER.resolve("mods.zip");
-    private static final Path CONFIG_ZIP = SHARED_FILES_FOLDER.resolve("config.zip");
 
-    private static FileTime lastBuildTime = FileTime.fromMillis(0);
-    private static FileTime lastConfigBuildTime = FileTime.fromMillis(0);
+    /**
+     * A file changed while it was packed, so its object could not be stored under the hash the
+     * manifest would list. Fails the whole build rather than leaving the file out.
+     */
+    private static final class FileChangedException extends IOException {
+        private FileChangedException(Path file) {
+            super(file + " changed while the pack was built");
+        }
+    }
+
+    /**
+     * A file compressed for the zip, with its manifest entry and the line logged when it is added.
+     */
+    private static final class PackedFile {
+        private final ParallelZipWriter.ScatterEntry scatter;
+        private final PackManifest.Entry entry;
+        private final String description;
+        private final boolean reused;
+
+        private PackedFile(ParallelZipWriter.ScatterEntry scatter, PackManifest.Entry entry, String description, boolean reused) {
+            this.scatter = scatter;
+            this.entry = entry;
+            this.description = description;
+            this.reused = reused;
+        }
+    }
+
+    /**
+     * The archive and manifest of the last build, whose entries are copied as they are when the
+     * file did not change.
+     */
+    private static final class PreviousPack implements Closeable {
+        private final ZipDirectory directory;
+        private final Map<String, PackManifest.Entry> entries;
+
+        private PreviousPack(ZipDirectory directory, Map<String, PackManifest.Entry> entries) {
+            this.directory = directory;
+            this.entries = entries;
+        }
+
+        /**
+         * Opens the published pack, or returns null when there is none or it cannot be read, in
+         * which case every file is compressed.
+         */
+        private static PreviousPack open(Path zip, Path manifestFile) {
+            if (!Files.isRegularFile(zip)) {
+                return null;
+            }
+            try {
+                PackManifest manifest = PackManifest.read(manifestFile);
+                if (manifest == null) {
+                    return null;
+                }
+                return new PreviousPack(ZipDirectory.open(zip), manifest.entriesByPath());
+            } catch (IOException e) {
+                LOGGER.warn("Cannot reuse the previous {}; compressing every file.", zip.getFileName(), e);
+                return null;
+            }
+        }
+
+        /**
+         * Returns the previous entry for a file if the file still has the content recorded
+         * in the manifest and the archive holds exactly that content, otherwise null.
+         */
+        private ZipDirectory.Entry unchangedEntry(String entryName, String sha256) {
+            PackManifest.Entry before = entries.get(entryName);
+            ZipDirectory.Entry zipped = directory.get(entryName);
+            if (before == null || zipped == null || !zipped.isCopyable() || !before.sha256().equals(sha256)) {
+                return null;
+            }
+            return zipped.size() == before.size() && zipped.crc() == before.crc32() ? zipped : null;
+        }
+
+        private boolean mayBeUnchanged(String entryName, long size) {
+            PackManifest.Entry before = entries.get(entryName);
+            return before != null && before.size() == size;
+        }
+
+        @Override
+        public void close() throws IOException {
+            directory.close();
+        }
+    }
+
+    @FunctionalInterface
+    private interface FilePacker {
+        /**
+         * Compresses one file; returns null to leave it out of the pack.
+         */
+        PackedFile pack(ParallelZipWriter zip, PreviousPack previous, Path file) throws IOException;
+    }
 
     public static void onRegisterCommands(RegisterCommandsEvent event) {
         LOGGER.info("Registering server commands...");
@@ -65,138 +200,470 @@ public class RegisterCommands {
                             return 1;
                         })
                 )
+                .then(Commands.literal("save-pack")
+                        .requires(source -> source.hasPermission(2))
+                        .then(Commands.argument("name", StringArgumentType.word())
+                                .executes(context -> {
+                                    String name = StringArgumentType.getString(context, "name");
+                                    HostedPacks.Pack hosted = HostedPacks.find(name);
+                                    if (hosted == null) {
+                                        context.getSource().sendFailure(
+                                                Component.literal("No hosted pack named '" + name + "' in hostedPacks."));
+                                        return 0;
+                                    }
+                                    saveHostedModsToZip(hosted);
+                                    saveHostedConfigToZip(hosted);
+                                    context.getSource().sendSuccess(
+                                            () -> Component.literal("Building hosted pack " + name + "... check console for progress."),
+                                            true
+                                    );
+                                    return 1;
+                                })
+                        )
+                )
+                .then(Commands.literal("export")
+                        .requires(source -> source.hasPermission(2))
+                        .executes(context -> {
+                            exportStaticTree(StaticExport.DEFAULT_DIRECTORY);
+                            context.getSource().sendSuccess(
+                                    () -> Component.literal("Exporting packs to " + StaticExport.DEFAULT_DIRECTORY + "... check console for progress."),
+                                    true
+                            );
+                            return 1;
+                        })
+                        .then(Commands.argument("directory", StringArgumentType.greedyString())
+                                .executes(context -> {
+                                    Path directory = Path.of(StringArgumentType.getString(context, "directory"));
+                                    exportStaticTree(directory);
+                                    context.getSource().sendSuccess(
+                                            () -> Component.literal("Exporting packs to " + directory + "... check console for progress."),
+                                            true
+                                    );
+                                    return 1;
+                                })
+                        )
+                )
+                .then(Commands.literal("cache-stats")
+                        .requires(source -> source.hasPermission(2))
+                        .executes(context -> {
+                            String stats = HotFileCache.describeStats();
+                            context.getSource().sendSuccess(() -> Component.literal(stats), false);
+                            return 1;
+                        })
+                )
+                .then(Commands.literal("benchmark-compression")
+                        .requires(source -> source.hasPermission(2))
+                        .executes(context -> {
+                            benchmarkCompression();
+                            context.getSource().sendSuccess(
+                                    () -> Component.literal("Benchmarking compression... check console for results."),
+                                    true
+                            );
+                            return 1;
+                        })
+                )
+                .then(Commands.literal("throttle")
+                        .requires(source -> source.hasPermission(2))
+                        .executes(context -> {
+                            String status = TickThrottle.describe();
+                            String queue = DownloadAdmission.describe();
+                            context.getSource().sendSuccess(() -> Component.literal(status), false);
+                            context.getSource().sendSuccess(() -> Component.literal(queue), false);
+                            return 1;
+                        })
+                )
         );
     }
 
     public static void saveModsToZip() {
-        EXECUTOR.execute(RegisterCommands::buildModsZip);
+        EXECUTOR.execute(() -> runLocked(MODS_BUILD_LOCK,
+                () -> buildModsZip(PackManifest.MODS, MODS_FOLDER, Config.streamPacks)));
     }
 
     public static void saveConfigToZip() {
-        EXECUTOR.execute(RegisterCommands::buildConfigZip);
+        EXECUTOR.execute(() -> runLocked(CONFIG_BUILD_LOCK,
+                () -> buildConfigZip(PackManifest.CONFIG, CONFIG_FOLDER, Config.streamPacks)));
     }
 
-    private static void buildModsZip() {
+    /**
+     * Builds the mods of a hosted pack. It shares the build lock of the server's own mods, so the
+     * builds of every server take turns on the compression pool and never overlap an export.
+     */
+    public static void saveHostedModsToZip(HostedPacks.Pack hosted) {
+        EXECUTOR.execute(() -> runLocked(MODS_BUILD_LOCK,
+                () -> buildModsZip(hosted.packId(PackManifest.MODS), hosted.modsFolder(), true)));
+    }
+
+    public static void saveHostedConfigToZip(HostedPacks.Pack hosted) {
+        EXECUTOR.execute(() -> runLocked(CONFIG_BUILD_LOCK,
+                () -> buildConfigZip(hosted.packId(PackManifest.CONFIG), hosted.configFolder(), true)));
+    }
+
+    private static void runLocked(ReentrantLock lock, Runnable build) {
+        lock.lock();
         try {
-            List<Path> modFiles = collectFiles(MODS_FOLDER, path -> path.toString().endsWith(".jar"));
-            if (modFiles.isEmpty()) {
-                LOGGER.warn("No .jar files found in mods folder, skipping zip.");
+            build.run();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Holds both build locks so an export never copies a pack that is being rebuilt.
+     */
+    public static void exportStaticTree(Path directory) {
+        EXECUTOR.execute(() -> {
+            MODS_BUILD_LOCK.lock();
+            CONFIG_BUILD_LOCK.lock();
+            try {
+                int packs = StaticExport.export(directory);
+                LOGGER.info("Static export to {} finished: {} pack(s).", directory, packs);
+            } catch (IOException e) {
+                LOGGER.error("Failed to export packs to {}", directory, e);
+            } finally {
+                CONFIG_BUILD_LOCK.unlock();
+                MODS_BUILD_LOCK.unlock();
+            }
+        });
+    }
+
+    /**
+     * Packs the current mods and config files with and without the compression rules and logs how
+     * the archives compare.
+     */
+    public static void benchmarkCompression() {
+        EXECUTOR.execute(() -> {
+            try {
+                Map<String, Path> files = new LinkedHashMap<>();
+                if (Files.isDirectory(MODS_FOLDER)) {
+                    List<Path> jars = collectFiles(MODS_FOLDER, PackIgnore.load(MODS_FOLDER), RegisterCommands::isModJar);
+                    for (Path file : excludeServerOnlyMods(MODS_FOLDER, jars, FileFingerprints.load(PackManifest.MODS))) {
+                        files.put("mods/" + entryName(MODS_FOLDER, file), file);
+                    }
+                }
+                if (Files.isDirectory(CONFIG_FOLDER)) {
+                    for (Path file : collectFiles(CONFIG_FOLDER, PackIgnore.load(CONFIG_FOLDER), Files::isRegularFile)) {
+                        files.put("config/" + entryName(CONFIG_FOLDER, file), file);
+                    }
+                }
+                for (String line : CompressionBenchmark.run(files)) {
+                    LOGGER.info(line);
+                }
+            } catch (IOException e) {
+                LOGGER.error("Compression benchmark failed", e);
+            }
+        });
+    }
+
+    /**
+     * Builds a mods pack: the server's own mods.zip from {@code mods/}, or the mods of a hosted pack.
+     */
+    private static void buildModsZip(String pack, Path modsFolder, boolean streamed) {
+        String zipName = zipName(pack);
+        // Pins the published pack the build compares against and copies from until it is done.
+        try (PublishedGenerations.Lease published = PublishedGenerations.acquireCurrent()) {
+            if (!Files.isDirectory(modsFolder)) {
+                LOGGER.warn("Mods folder {} does not exist, skipping {}.", modsFolder, zipName);
                 return;
             }
 
-            FileTime latestChange = findLatestChange(modFiles);
-            if (shouldSkipZipBuild(latestChange, lastBuildTime, MODS_ZIP)) {
-                LOGGER.info("Mods have not changed since last build. Skipping zip creation.");
+            PackIgnore ignore = PackIgnore.load(modsFolder);
+            FileFingerprints fingerprints = FileFingerprints.load(pack);
+            Path groupsFile = modsFolder.resolve(ModGroups.FILE_NAME);
+            List<Path> modFiles = excludeServerOnlyMods(modsFolder,
+                    collectFiles(modsFolder, ignore, path -> isModJar(path) || path.equals(groupsFile)), fingerprints);
+            if (modFiles.isEmpty() || modFiles.equals(List.of(groupsFile))) {
+                LOGGER.warn("No .jar files found in {}, skipping {}.", modsFolder, zipName);
                 return;
             }
+            ModGroups groups = readModGroups(modFiles.contains(groupsFile) ? groupsFile : null);
 
-            LOGGER.info("Starting mods.zip creation. Found {} mods.", modFiles.size());
-            if (!ensureParentExists(MODS_ZIP)) {
+            CompressionPolicy policy = CompressionPolicy.fromConfig();
+            String settings = buildSettings(policy, ignore, streamed);
+            if (isUpToDate(published, pack, modsFolder, modFiles, fingerprints, settings, true, streamed)) {
+                fingerprints.save(entryNames(modsFolder, modFiles));
+                LOGGER.info("Mods of {} have not changed since last build. Skipping zip creation.", zipName);
                 return;
             }
 
-            try (ZipOutputStream zipOut = new ZipOutputStream(Files.newOutputStream(MODS_ZIP))) {
-                int total = modFiles.size();
-                int index = 0;
+            LOGGER.info("Starting {} creation. Found {} mods.", zipName, modFiles.size());
+            if (!ensureParentExists(SHARED_FILES_FOLDER.resolve(zipName))) {
+                return;
+            }
 
-                for (Path path : modFiles) {
-                    index++;
+            Path builtZip = streamed ? null : createTempFile(zipName);
+            try {
+                List<PackManifest.Entry> manifestEntries = writeZip(published, builtZip, pack, modFiles, (zip, previous, path) -> {
                     try {
-                        String modName = getModNameFromJar(path);
-                        Path relativePath = MODS_FOLDER.relativize(path);
-                        ZipEntry zipEntry = new ZipEntry(relativePath.toString());
-                        zipOut.putNextEntry(zipEntry);
-                        Files.copy(path, zipOut);
-                        zipOut.closeEntry();
-
-                        LOGGER.info("[{}/{}] Included mod: {} ({})",
-                                index, total, modName, path.getFileName());
+                        FileFingerprints.Fingerprint fingerprint = fingerprints.check(entryName(modsFolder, path), path);
+                        if (!isModJar(path)) {
+                            return packFile(zip, previous, policy, fingerprints, fingerprint, path, null, "mod groups: " + path.getFileName());
+                        }
+                        ModJarMetadata metadata = fingerprint.isKnown() && fingerprint.metadata() != null
+                                ? fingerprint.metadata()
+                                : readModMetadata(path);
+                        String modName = getModNameFromJar(path, metadata);
+                        return packFile(zip, previous, policy, fingerprints, fingerprint, path, metadata, "mod: " + modName + " (" + path.getFileName() + ")");
+                    } catch (FileChangedException e) {
+                        throw e;
                     } catch (Exception e) {
                         LOGGER.error("Failed to process mod: " + path, e);
+                        return null;
                     }
+                });
+                logModGroups(groups, manifestEntries);
+                publish(published, pack, builtZip, manifestEntries, ignore, groups, MODS_BUILD_LOCK);
+            } finally {
+                if (builtZip != null) {
+                    Files.deleteIfExists(builtZip);
                 }
             }
-
-            lastBuildTime = latestChange;
-            LOGGER.info("Finished creating mods.zip in shared-files. {} mods processed.", modFiles.size());
+            fingerprints.settings(settings);
+            fingerprints.save(entryNames(modsFolder, modFiles));
+            LOGGER.info("Finished {} {} in shared-files. {} mods processed.",
+                    streamed ? "publishing the streamed" : "creating", zipName, modFiles.size());
         } catch (IOException e) {
-            LOGGER.error("Failed to create mods.zip", e);
+            LOGGER.error("Failed to create {}", zipName, e);
         }
     }
 
-    private static void buildConfigZip() {
-        try {
-            if (!Files.exists(CONFIG_FOLDER)) {
-                LOGGER.warn("Config folder does not exist, skipping zip.");
+    /**
+     * Builds a config pack: the server's own config.zip from {@code config/}, or the config of a
+     * hosted pack.
+     */
+    private static void buildConfigZip(String pack, Path configFolder, boolean streamed) {
+        String zipName = zipName(pack);
+        try (PublishedGenerations.Lease published = PublishedGenerations.acquireCurrent()) {
+            if (!Files.exists(configFolder)) {
+                LOGGER.warn("Config folder {} does not exist, skipping {}.", configFolder, zipName);
                 return;
             }
 
-            List<Path> configFiles = collectFiles(CONFIG_FOLDER, Files::isRegularFile);
+            PackIgnore ignore = PackIgnore.load(configFolder);
+            List<Path> configFiles = collectFiles(configFolder, ignore, Files::isRegularFile);
             if (configFiles.isEmpty()) {
-                LOGGER.warn("No files found in config folder, skipping zip.");
+                LOGGER.warn("No files found in {}, skipping {}.", configFolder, zipName);
                 return;
             }
 
-            FileTime latestChange = findLatestChange(configFiles);
-            if (shouldSkipZipBuild(latestChange, lastConfigBuildTime, CONFIG_ZIP)) {
-                LOGGER.info("Config has not changed since last build. Skipping zip creation.");
+            CompressionPolicy policy = CompressionPolicy.fromConfig();
+            FileFingerprints fingerprints = FileFingerprints.load(pack);
+            String settings = buildSettings(policy, ignore, streamed);
+            if (isUpToDate(published, pack, configFolder, configFiles, fingerprints, settings, false, streamed)) {
+                fingerprints.save(entryNames(configFolder, configFiles));
+                LOGGER.info("Config of {} has not changed since last build. Skipping zip creation.", zipName);
                 return;
             }
 
-            LOGGER.info("Starting config.zip creation. Found {} files.", configFiles.size());
-            if (!ensureParentExists(CONFIG_ZIP)) {
+            LOGGER.info("Starting {} creation. Found {} files.", zipName, configFiles.size());
+            if (!ensureParentExists(SHARED_FILES_FOLDER.resolve(zipName))) {
                 return;
             }
 
-            try (ZipOutputStream zipOut = new ZipOutputStream(Files.newOutputStream(CONFIG_ZIP))) {
-                int total = configFiles.size();
-                int index = 0;
+            Path builtZip = streamed ? null : createTempFile(zipName);
+            try {
+                List<PackManifest.Entry> manifestEntries = writeZip(published, builtZip, pack, configFiles, (zip, previous, path) -> {
+                    FileFingerprints.Fingerprint fingerprint = fingerprints.check(entryName(configFolder, path), path);
+                    return packFile(zip, previous, policy, fingerprints, fingerprint, path, null, "config file: " + configFolder.relativize(path));
+                });
+                publish(published, pack, builtZip, manifestEntries, ignore, ModGroups.NONE, CONFIG_BUILD_LOCK);
+            } finally {
+                if (builtZip != null) {
+                    Files.deleteIfExists(builtZip);
+                }
+            }
+            fingerprints.settings(settings);
+            fingerprints.save(entryNames(configFolder, configFiles));
+            LOGGER.info("Finished {} {} in shared-files. {} files processed.",
+                    streamed ? "publishing the streamed" : "creating", zipName, configFiles.size());
+        } catch (IOException e) {
+            LOGGER.error("Failed to create {}", zipName, e);
+        }
+    }
+
+    /**
+     * Lists the regular files under {@code root} that pass {@code filter} and are not excluded by
+     * its {@code .scsignore}. Files below an excluded directory are only counted, never matched.
+     */
+    private static List<Path> collectFiles(Path root, PackIgnore ignore, Predicate<Path> filter) throws IOException {
+        List<Path> files = new ArrayList<>();
+        long[] excluded = new long[2];
+        Path ignoreFile = root.resolve(PackIgnore.FILE_NAME);
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            private Path ignoredDirectory;
+
+            @Override
+            public FileVisitResult preVisitDirectory(Path directory, BasicFileAttributes attributes) {
+                if (ignoredDirectory == null && !directory.equals(root) && ignore.matches(entryName(root, directory), true)) {
+                    ignoredDirectory = directory;
+                }
+                return FileVisitResult.CONTINUE;
+            }
 
-                for (Path path : configFiles) {
-                    index++;
-                    Path relativePath = CONFIG_FOLDER.relativize(path);
-                    String entryName = relativePath.toString().replace('\\', '/');
-                    ZipEntry zipEntry = new ZipEntry(entryName);
-                    zipOut.putNextEntry(zipEntry);
-                    Files.copy(path, zipOut);
-                    zipOut.closeEntry();
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                if (!(attributes.isRegularFile() || Files.isRegularFile(file)) || !filter.test(file) || file.equals(ignoreFile)) {
+                    return FileVisitResult.CONTINUE;
+                }
+                if (ignoredDirectory != null || ignore.matches(entryName(root, file), false)) {
+                    excluded[0]++;
+                    excluded[1] += attributes.size();
+                } else {
+                    files.add(file);
+                }
+                return FileVisitResult.CONTINUE;
+            }
 
-                    LOGGER.info("[{}/{}] Included config file: {}",
-                            index, total, relativePath);
+            @Override
+            public FileVisitResult postVisitDirectory(Path directory, IOException e) throws IOException {
+                if (directory.equals(ignoredDirectory)) {
+                    ignoredDirectory = null;
+                }
+                if (e != null) {
+                    throw e;
                 }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        if (excluded[0] > 0) {
+            LOGGER.info("{} excludes {} file(s) from {}/, {} bytes in total.", PackIgnore.FILE_NAME, excluded[0], root, excluded[1]);
+        }
+        return files;
+    }
+
+    /**
+     * Drops the jars {@link ServerOnlyMods} leaves out of mods.zip. The toml of a jar is only read
+     * when its fingerprint does not already hold the metadata.
+     */
+    private static List<Path> excludeServerOnlyMods(Path modsFolder, List<Path> jars, FileFingerprints fingerprints) throws IOException {
+        ServerOnlyMods rules = ServerOnlyMods.fromConfig();
+        List<Path> packed = new ArrayList<>(jars.size());
+        List<String> excluded = new ArrayList<>();
+        long excludedBytes = 0;
+        for (Path jar : jars) {
+            if (!isModJar(jar)) {
+                packed.add(jar);
+                continue;
+            }
+            FileFingerprints.Fingerprint fingerprint = fingerprints.check(entryName(modsFolder, jar), jar);
+            ModJarMetadata metadata = fingerprint.isKnown() && fingerprint.metadata() != null
+                    ? fingerprint.metadata()
+                    : readModMetadata(jar);
+            if (rules.excludes(jar.getFileName().toString(), metadata)) {
+                excluded.add(getModNameFromJar(jar, metadata));
+                excludedBytes += fingerprint.size();
+            } else {
+                packed.add(jar);
             }
+        }
+        if (!excluded.isEmpty()) {
+            LOGGER.info("Leaving {} server-only mod(s) out of mods.zip, {} bytes in total: {}",
+                    excluded.size(), excludedBytes, String.join(", ", excluded));
+        }
+        return packed;
+    }
 
-            lastConfigBuildTime = latestChange;
-            LOGGER.info("Finished creating config.zip in shared-files. {} files processed.", configFiles.size());
+    /**
+     * Reads {@code mods/scs-groups.json}. A malformed descriptor is still packed, but no group is
+     * published until it is fixed.
+     */
+    private static ModGroups readModGroups(Path file) {
+        if (file == null) {
+            return ModGroups.NONE;
+        }
+        try {
+            return ModGroups.read(file);
         } catch (IOException e) {
-            LOGGER.error("Failed to create config.zip", e);
+            LOGGER.error("Failed to read {}; publishing mods without optional groups.", file, e);
+            return ModGroups.NONE;
         }
     }
 
-    private static List<Path> collectFiles(Path root, Predicate<Path> filter) throws IOException {
-        try (var stream = Files.walk(root)) {
-            return stream
-                    .filter(Files::isRegularFile)
-                    .filter(filter)
-                    .collect(Collectors.toList());
+    private static void logModGroups(ModGroups groups, List<PackManifest.Entry> entries) {
+        for (ModGroups.Group group : groups.groups()) {
+            int files = 0;
+            long bytes = 0;
+            for (PackManifest.Entry entry : entries) {
+                if (groups.groupOf(entry.path()) == group) {
+                    files++;
+                    bytes += entry.size();
+                }
+            }
+            LOGGER.info("Optional group '{}' ({}): {} file(s), {} bytes.",
+                    group.name(), group.enabledByDefault() ? "on by default" : "off by default", files, bytes);
         }
     }
 
-    private static FileTime findLatestChange(List<Path> paths) {
-        return paths.stream()
-                .map(path -> {
-                    try {
-                        return Files.getLastModifiedTime(path);
-                    } catch (IOException e) {
-                        return FileTime.fromMillis(0);
-                    }
-                })
-                .max(FileTime::compareTo)
-                .orElse(FileTime.fromMillis(0));
+    private static boolean isModJar(Path path) {
+        return path.toString().endsWith(".jar");
     }
 
-    private static boolean shouldSkipZipBuild(FileTime latestChange, FileTime lastBuild, Path zipPath) {
-        return latestChange.compareTo(lastBuild) <= 0 && Files.exists(zipPath);
+    private static String entryName(Path root, Path file) {
+        return root.relativize(file).toString().replace('\\', '/');
+    }
+
+    private static List<String> entryNames(Path root, List<Path> files) {
+        List<String> names = new ArrayList<>(files.size());
+        for (Path file : files) {
+            names.add(entryName(root, file));
+        }
+        return names;
+    }
+
+    /**
+     * What a pack is built with besides its files: the compression rules, or nothing but stored
+     * entries when the zip is streamed, and the ignore patterns published in the manifest.
+     */
+    private static String buildSettings(CompressionPolicy policy, PackIgnore ignore, boolean streamed) {
+        String settings = streamed ? "streamed" : policy.describe();
+        return ignore.isEmpty() ? settings : settings + "; ignore " + String.join(",", ignore.patterns());
+    }
+
+    /**
+     * True when the published pack holds exactly these files with the content recorded in its
+     * manifest, which also catches deletions and renames, and was built with the same settings.
+     * Files whose fingerprint still matches are not read, so an unchanged pack is confirmed with one
+     * stat per file; the first difference ends the check.
+     */
+    private static boolean isUpToDate(
+            PublishedGenerations.Lease published,
+            String pack,
+            Path root,
+            List<Path> files,
+            FileFingerprints fingerprints,
+            String settings,
+            boolean modJars,
+            boolean streamed
+    ) throws IOException {
+        if (!settings.equals(fingerprints.settings())
+                || !streamed && !Files.isRegularFile(published.resolve(zipName(pack)))) {
+            return false;
+        }
+        PackManifest manifest;
+        try {
+            manifest = PackManifest.read(published.resolve(PackManifest.fileName(pack)));
+        } catch (IOException e) {
+            return false;
+        }
+        if (manifest == null || manifest.entries().size() != files.size()) {
+            return false;
+        }
+        Map<String, PackManifest.Entry> publishedEntries = manifest.entriesByPath();
+        for (Path file : files) {
+            String entryName = entryName(root, file);
+            PackManifest.Entry entry = publishedEntries.get(entryName);
+            FileFingerprints.Fingerprint fingerprint = fingerprints.check(entryName, file);
+            if (entry == null || entry.size() != fingerprint.size()) {
+                return false;
+            }
+            if (!fingerprint.isKnown()) {
+                fingerprint = hash(fingerprints, fingerprint, file, modJars && isModJar(file) ? readModMetadata(file) : null);
+            }
+            if (!fingerprint.sha256().equals(entry.sha256())) {
+                return false;
+            }
+        }
+        return true;
     }
 
     private static boolean ensureParentExists(Path path) {
@@ -212,30 +679,439 @@ public class RegisterCommands {
         }
     }
 
-    private static String getModNameFromJar(Path jarPath) {
-        try (ZipFile zipFile = new ZipFile(jarPath.toFile())) {
-            ZipEntry entry = zipFile.getEntry("META-INF/neoforge.mods.toml");
-            if (entry != null) {
-                try (InputStream is = zipFile.getInputStream(entry)) {
-                    Toml toml = new Toml().read(is);
-                    String rootDisplayName = toml.getString("display_name");
-                    if (rootDisplayName != null) {
-                        return rootDisplayName;
+    /**
+     * Creates the file a new pack file is written to, on the same file system as the published
+     * generations so it can be moved into one.
+     */
+    private static Path createTempFile(String name) throws IOException {
+        return Files.createTempFile(SHARED_FILES_FOLDER, name, ".tmp");
+    }
+
+    /**
+     * Compresses the files on the compression pool and writes them to {@code target} in their
+     * original order, copying unchanged entries from the published pack. Only a few files more than
+     * there are threads are compressed ahead of the writer, which bounds the memory and temporary
+     * disk used by finished entries. With a null {@code target} (streamed packs) nothing is
+     * compressed: the files are only hashed where needed and added to the object store.
+     */
+    private static List<PackManifest.Entry> writeZip(
+            PublishedGenerations.Lease published,
+            Path target,
+            String pack,
+            List<Path> files,
+            FilePacker packer
+    ) throws IOException {
+        int window = configureCompressionPool() * 2;
+        int priority = Config.packBuildLowPriority ? Thread.MIN_PRIORITY : Thread.NORM_PRIORITY;
+        List<PackManifest.Entry> entries = new ArrayList<>();
+        Deque<Future<PackedFile>> pending = new ArrayDeque<>();
+        int reused = 0;
+        int stored = 0;
+        Path zipPath = published.resolve(zipName(pack));
+        try (PreviousPack previous = target == null ? null : PreviousPack.open(zipPath, published.resolve(PackManifest.fileName(pack)));
+             ParallelZipWriter zip = target == null ? null : new ParallelZipWriter(target)) {
+            try {
+                int submitted = 0;
+                for (int index = 1; index <= files.size(); index++) {
+                    while (submitted < files.size() && pending.size() < window) {
+                        Path file = files.get(submitted++);
+                        pending.add(COMPRESSION_POOL.submit(() -> {
+                            Thread.currentThread().setPriority(priority);
+                            return packer.pack(zip, previous, file);
+                        }));
                     }
-                    var modsList = toml.getTables("mods");
-                    if (modsList != null && !modsList.isEmpty()) {
-                        Toml firstMod = modsList.get(0);
-                        String modDisplayName = firstMod.getString("displayName");
-                        if (modDisplayName != null) {
-                            return modDisplayName;
-                        }
+                    PackedFile packed = await(pending.poll());
+                    if (packed == null) {
+                        continue;
+                    }
+                    if (zip != null) {
+                        zip.append(packed.scatter);
+                    }
+                    entries.add(packed.entry);
+                    if (packed.reused) {
+                        reused++;
+                    } else if (packed.scatter == null || packed.scatter.isStored()) {
+                        stored++;
+                    }
+                    LOGGER.info("[{}/{}] Included {}{}", index, files.size(), packed.description, packed.reused ? " (unchanged)" : "");
+                }
+            } finally {
+                discard(pending);
+            }
+        }
+        if (target == null) {
+            LOGGER.info("{}: {} entries unchanged, {} hashed; the zip is streamed.", zipPath.getFileName(), reused, stored);
+        } else {
+            LOGGER.info("{}: {} entries copied unchanged from the previous build, {} stored, {} deflated.",
+                    zipPath.getFileName(), reused, stored, entries.size() - reused - stored);
+        }
+        return entries;
+    }
+
+    /**
+     * Adds a file to the zip. When the previous build holds the same content under the same name,
+     * compressed the way the policy asks for, its bytes are reused; otherwise the file is compressed
+     * into a scatter entry while computing the SHA-256 recorded in the manifest. Either way the file is then added to the
+     * object store (and chunk store, for large files) when no object with that hash exists yet.
+     * The hash comes from the file's fingerprint when it is still valid, so an unchanged file is
+     * only read if it has to be compressed. Without a zip (streamed packs) the file is only hashed
+     * if its fingerprint is stale and stored as an object, which the streamed zip is read from.
+     */
+    private static PackedFile packFile(
+            ParallelZipWriter zip,
+            PreviousPack previous,
+            CompressionPolicy policy,
+            FileFingerprints fingerprints,
+            FileFingerprints.Fingerprint fingerprint,
+            Path file,
+            ModJarMetadata metadata,
+            String description
+    ) throws IOException {
+        String entryName = fingerprint.path();
+        if (zip == null) {
+            boolean known = fingerprint.isKnown();
+            if (!known) {
+                fingerprint = hash(fingerprints, fingerprint, file, metadata);
+            }
+            if (!ObjectStore.storeIfAbsent(file, fingerprint.sha256(), fingerprint.size())) {
+                throw new FileChangedException(file);
+            }
+            ChunkStore.indexIfAbsent(fingerprint.sha256());
+            PackManifest.Entry entry = new PackManifest.Entry(entryName, fingerprint.size(), fingerprint.sha256(), fingerprint.crc32(), metadata);
+            return new PackedFile(null, entry, description, known);
+        }
+
+        CompressionPolicy.Compression compression = policy.forEntry(entryName);
+        if (previous != null && (fingerprint.isKnown() || previous.mayBeUnchanged(entryName, fingerprint.size()))) {
+            String sha256 = fingerprint.isKnown()
+                    ? fingerprint.sha256()
+                    : hash(fingerprints, fingerprint, file, metadata).sha256();
+            ZipDirectory.Entry unchanged = previous.unchangedEntry(entryName, sha256);
+            if (unchanged != null && compression.accepts(unchanged.method())) {
+                if (!ObjectStore.storeIfAbsent(file, sha256, unchanged.size())) {
+                    throw new FileChangedException(file);
+                }
+                ChunkStore.indexIfAbsent(sha256);
+                PackManifest.Entry entry = new PackManifest.Entry(entryName, unchanged.size(), sha256, unchanged.crc(), metadata);
+                return new PackedFile(zip.reuse(previous.directory, unchanged), entry, description, true);
+            }
+        }
+
+        MessageDigest digest = newDigest();
+        ParallelZipWriter.ScatterEntry scatter;
+        try (InputStream in = new DigestInputStream(Files.newInputStream(file), digest)) {
+            scatter = zip.scatter(entryName, in, compression);
+        }
+        String sha256 = HexFormat.of().formatHex(digest.digest());
+        fingerprints.record(fingerprint, sha256, scatter.crc(), metadata);
+        try {
+            if (!ObjectStore.storeIfAbsent(file, sha256, scatter.size())) {
+                throw new FileChangedException(file);
+            }
+            ChunkStore.indexIfAbsent(sha256);
+        } catch (IOException | RuntimeException e) {
+            scatter.discard();
+            throw e;
+        }
+        PackManifest.Entry entry = new PackManifest.Entry(entryName, scatter.size(), sha256, scatter.crc(), metadata);
+        return new PackedFile(scatter, entry, description, false);
+    }
+
+    /**
+     * Reads a file once for its SHA-256 and CRC32 and records both in its fingerprint.
+     */
+    private static FileFingerprints.Fingerprint hash(
+            FileFingerprints fingerprints,
+            FileFingerprints.Fingerprint checked,
+            Path file,
+            ModJarMetadata metadata
+    ) throws IOException {
+        MessageDigest digest = newDigest();
+        CRC32 crc = new CRC32();
+        try (InputStream in = new CheckedInputStream(new DigestInputStream(Files.newInputStream(file), digest), crc)) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+        return fingerprints.record(checked, HexFormat.of().formatHex(digest.digest()), crc.getValue(), metadata);
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static PackedFile await(Future<PackedFile> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while compressing", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException io) {
+                throw io;
+            }
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IOException("Failed to compress a file", cause);
+        }
+    }
+
+    /**
+     * Drops the files still in flight after a failed build, deleting whatever they spilled to disk.
+     */
+    private static void discard(Deque<Future<PackedFile>> pending) {
+        for (Future<PackedFile> future : pending) {
+            future.cancel(false);
+            if (!future.isCancelled()) {
+                try {
+                    PackedFile packed = await(future);
+                    if (packed != null && packed.scatter != null) {
+                        packed.scatter.discard();
+                    }
+                } catch (IOException | RuntimeException ignored) {
+                }
+            }
+        }
+        pending.clear();
+    }
+
+    /**
+     * Sizes the shared compression pool from {@code packBuildThreads} and returns the thread count.
+     * Mods and config builds share the pool, so running both at once does not take more cores.
+     */
+    private static synchronized int configureCompressionPool() {
+        int threads = Config.packBuildThreads > 0
+                ? Config.packBuildThreads
+                : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        if (threads > COMPRESSION_POOL.getMaximumPoolSize()) {
+            COMPRESSION_POOL.setMaximumPoolSize(threads);
+            COMPRESSION_POOL.setCorePoolSize(threads);
+        } else if (threads < COMPRESSION_POOL.getMaximumPoolSize()) {
+            COMPRESSION_POOL.setCorePoolSize(threads);
+            COMPRESSION_POOL.setMaximumPoolSize(threads);
+        }
+        return threads;
+    }
+
+    private static ThreadPoolExecutor newCompressionPool() {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(
+                1, 1, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), buildThreadFactory("scs-pack-compress"));
+        // Idle between builds, so do not keep threads around.
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    private static ThreadFactory buildThreadFactory(String name) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Publishes a built zip with its manifest as a new generation of the shared files. The zip and
+     * manifest become visible together, and downloads still reading the previous generation finish
+     * from it undisturbed. Without a built zip only the manifest is published and the zip is
+     * streamed from it. Patches for a new generation are created afterwards, off the build lock.
+     */
+    private static void publish(
+            PublishedGenerations.Lease published,
+            String pack,
+            Path builtZip,
+            List<PackManifest.Entry> entries,
+            PackIgnore ignore,
+            ModGroups groups,
+            ReentrantLock buildLock
+    ) throws IOException {
+        String manifestName = PackManifest.fileName(pack);
+        PackManifest manifest = prepareManifest(published.resolve(manifestName), pack, entries, ignore, groups);
+        Path builtManifest = createTempFile(manifestName);
+        try {
+            manifest.write(builtManifest);
+            if (builtZip != null) {
+                PublishedGenerations.publish(Map.of(zipName(pack), builtZip, manifestName, builtManifest), Set.of());
+            } else {
+                PublishedGenerations.publish(Map.of(manifestName, builtManifest), Set.of(zipName(pack)));
+            }
+        } finally {
+            Files.deleteIfExists(builtManifest);
+        }
+        PackHistory.record(manifest);
+        LOGGER.info("Published {} (generation {}, {} entries).", manifestName, manifest.generation(), entries.size());
+        EXECUTOR.execute(() -> createPatches(manifest, buildLock));
+        scheduleSweep();
+    }
+
+    /**
+     * Sweeps the stored files of pruned generations once the running builds are done. Holds both
+     * build locks like an export; publications made while a sweep is pending share it.
+     */
+    private static void scheduleSweep() {
+        if (!SWEEP_PENDING.compareAndSet(false, true)) {
+            return;
+        }
+        EXECUTOR.execute(() -> {
+            MODS_BUILD_LOCK.lock();
+            CONFIG_BUILD_LOCK.lock();
+            try {
+                SWEEP_PENDING.set(false);
+                StoreSweep.run();
+            } catch (IOException e) {
+                LOGGER.warn("Failed to sweep unreferenced objects", e);
+            } finally {
+                CONFIG_BUILD_LOCK.unlock();
+                MODS_BUILD_LOCK.unlock();
+            }
+        });
+    }
+
+    /**
+     * Creates the patches missing from a freshly published generation, then republishes its manifest
+     * with their bases. The diffs run without the build lock; only the republish takes it, and it
+     * is skipped when a newer generation was published meanwhile.
+     */
+    private static void createPatches(PackManifest manifest, ReentrantLock buildLock) {
+        List<PackManifest> history = new ArrayList<>();
+        for (PackManifest past : PackHistory.recent(manifest.pack())) {
+            if (past.generation() != manifest.generation()) {
+                history.add(past);
+            }
+        }
+        if (attachPatches(manifest, history, true) == 0) {
+            return;
+        }
+        String manifestName = PackManifest.fileName(manifest.pack());
+        runLocked(buildLock, () -> {
+            try (PublishedGenerations.Lease published = PublishedGenerations.acquireCurrent()) {
+                PackManifest current = PackManifest.read(published.resolve(manifestName));
+                if (current == null || current.generation() != manifest.generation()) {
+                    LOGGER.debug("{} moved on from generation {}; not republishing its patches.", manifestName, manifest.generation());
+                    return;
+                }
+                Map<String, PackManifest.Entry> patched = manifest.entriesByPath();
+                for (PackManifest.Entry entry : current.entries()) {
+                    PackManifest.Entry source = patched.get(entry.path());
+                    if (source != null && source.sha256().equals(entry.sha256())) {
+                        source.patchBases().forEach(entry::addPatchBase);
+                    }
+                }
+                Path builtManifest = createTempFile(manifestName);
+                try {
+                    current.write(builtManifest);
+                    PublishedGenerations.publish(Map.of(manifestName, builtManifest), Set.of());
+                } finally {
+                    Files.deleteIfExists(builtManifest);
+                }
+                PackHistory.record(current);
+            } catch (IOException e) {
+                LOGGER.warn("Failed to republish {} with its patches", manifestName, e);
+            }
+        });
+    }
+
+    /**
+     * Builds {@code <pack>.manifest.json}. The generation only advances when the content changed.
+     */
+    private static PackManifest prepareManifest(Path path, String pack, List<PackManifest.Entry> entries, PackIgnore ignore, ModGroups groups) {
+        PackManifest previous = null;
+        try {
+            previous = PackManifest.read(path);
+        } catch (IOException e) {
+            LOGGER.warn("Ignoring unreadable {}", path.getFileName(), e);
+        }
+        // The history keeps numbering going even if the published manifest was deleted.
+        long generation = Math.max(previous == null ? 0 : previous.generation(), PackHistory.latestGeneration(pack)) + 1;
+        PackManifest manifest = PackManifest.create(pack, generation, entries, ignore.patterns(), groups);
+        if (manifest.sameContentAs(previous)) {
+            manifest = PackManifest.create(pack, previous.generation(), entries, ignore.patterns(), groups);
+            Map<String, PackManifest.Entry> previousEntries = previous.entriesByPath();
+            for (PackManifest.Entry entry : manifest.entries()) {
+                PackManifest.Entry before = previousEntries.get(entry.path());
+                if (before != null) {
+                    before.patchBases().forEach(entry::addPatchBase);
+                }
+            }
+        } else {
+            attachPatches(manifest, PackHistory.recent(pack), false);
+        }
+        return manifest;
+    }
+
+    /**
+     * Lists in the manifest the bases of patches from earlier versions of a modified file still in
+     * the history to its new version, at most {@value #MAX_PATCH_BASES} per file, newest first. Only
+     * patches that already exist are listed unless {@code create} is set. Jars are matched by path
+     * or, when the file was renamed for a new version, by a shared modId. Returns how many bases
+     * were added.
+     */
+    private static int attachPatches(PackManifest manifest, List<PackManifest> history, boolean create) {
+        List<Map<String, PackManifest.Entry>> pastEntries = new ArrayList<>();
+        for (PackManifest past : history) {
+            pastEntries.add(0, past.entriesByPath());
+        }
+        int added = 0;
+        for (PackManifest.Entry entry : manifest.entries()) {
+            Set<String> bases = new LinkedHashSet<>();
+            for (Map<String, PackManifest.Entry> past : pastEntries) {
+                PackManifest.Entry base = findPreviousVersion(past, entry);
+                if (base != null && !base.sha256().equals(entry.sha256())) {
+                    bases.add(base.sha256());
+                    if (bases.size() == MAX_PATCH_BASES) {
+                        break;
                     }
                 }
             }
+            for (String base : bases) {
+                boolean available = create
+                        ? PatchStore.create(base, entry.sha256())
+                        : PatchStore.exists(base, entry.sha256());
+                if (available && !entry.patchBases().contains(base)) {
+                    entry.addPatchBase(base);
+                    added++;
+                }
+            }
+        }
+        if (added > 0) {
+            LOGGER.info("{} patch(es) available for {} generation {}.", added, manifest.pack(), manifest.generation());
+        }
+        return added;
+    }
+
+    private static PackManifest.Entry findPreviousVersion(Map<String, PackManifest.Entry> pastEntries, PackManifest.Entry entry) {
+        PackManifest.Entry samePath = pastEntries.get(entry.path());
+        if (samePath != null || !entry.hasModMetadata() || entry.metadata().modIds().isEmpty()) {
+            return samePath;
+        }
+        for (PackManifest.Entry candidate : pastEntries.values()) {
+            if (candidate.hasModMetadata()
+                    && !Collections.disjoint(candidate.metadata().modIds(), entry.metadata().modIds())) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    private static String zipName(String pack) {
+        return pack + ".zip";
+    }
+
+    private static ModJarMetadata readModMetadata(Path jarPath) {
+        try {
+            return ModJarMetadata.read(jarPath);
         } catch (Exception e) {
             LOGGER.warn("Failed to read toml from: " + jarPath + ", using file name as fallback.", e);
-            return jarPath.getFileName().toString();
+            return ModJarMetadata.of(null, null);
         }
-        return jarPath.getFileName().toString();
+    }
+
+    private static String getModNameFromJar(Path jarPath, ModJarMetadata metadata) {
+        String displayName = metadata.displayName();
+        return displayName != null ? displayName : jarPath.getFileName().toString();
     }
 }
\ No newline at end of file
@@ -0,0 +1,76 @@
+package com.scs.core;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Decides which jars of {@code mods/} stay out of mods.zip. A jar whose toml marks it as
+ * server-only (see {@link ModJarMetadata.Side#SERVER}) is left out when
+ * {@code excludeServerOnlyMods} is on, since clients would download it for nothing. Rules in
+ * {@code serverOnlyModOverrides}, {@code <modId or jar file name>=include|exclude}, take
+ * precedence: {@code include} packs a jar the toml gets wrong, {@code exclude} leaves out one that
+ * declares nothing.
+ */
+final class ServerOnlyMods {
+
+    private static final String INCLUDE = "include";
+    private static final String EXCLUDE = "exclude";
+
+    private final boolean excludeServerOnly;
+    private final Map<String, Boolean> overrides;
+
+    private ServerOnlyMods(boolean excludeServerOnly, Map<String, Boolean> overrides) {
+        this.excludeServerOnly = excludeServerOnly;
+        this.overrides = overrides;
+    }
+
+    /**
+     * The rules configured in {@code excludeServerOnlyMods} and {@code serverOnlyModOverrides}.
+     */
+    static ServerOnlyMods fromConfig() {
+        Map<String, Boolean> overrides = new HashMap<>();
+        List<? extends String> rules = Config.serverOnlyModOverrides != null ? Config.serverOnlyModOverrides : List.of();
+        for (String rule : rules) {
+            if (!isValidOverride(rule)) {
+                SCS.LOGGER.warn("Ignoring malformed server-only mod override '{}'; expected <modId or jar>=include|exclude", rule);
+                continue;
+            }
+            int separator = rule.lastIndexOf('=');
+            overrides.put(rule.substring(0, separator).trim().toLowerCase(Locale.ROOT),
+                    rule.substring(separator + 1).trim().equalsIgnoreCase(EXCLUDE));
+        }
+        return new ServerOnlyMods(Config.excludeServerOnlyMods, overrides);
+    }
+
+    static boolean isValidOverride(Object rule) {
+        if (!(rule instanceof String text)) {
+            return false;
+        }
+        int separator = text.lastIndexOf('=');
+        if (separator <= 0 || text.substring(0, separator).isBlank()) {
+            return false;
+        }
+        String choice = text.substring(separator + 1).trim();
+        return choice.equalsIgnoreCase(INCLUDE) || choice.equalsIgnoreCase(EXCLUDE);
+    }
+
+    /**
+     * True when the jar must not be packed. An override naming the jar file wins over one naming
+     * one of its modIds.
+     */
+    boolean excludes(String jarName, ModJarMetadata metadata) {
+        Boolean excluded = overrides.get(jarName.toLowerCase(Locale.ROOT));
+        if (excluded != null) {
+            return excluded;
+        }
+        for (String modId : metadata.modIds()) {
+            excluded = overrides.get(modId);
+            if (excluded != null) {
+                return excluded;
+            }
+        }
+        return excludeServerOnly && metadata.side() == ModJarMetadata.Side.SERVER;
+    }
+}
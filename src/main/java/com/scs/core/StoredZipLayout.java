@@ -0,0 +1,134 @@
+package com.scs.core;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Byte layout of a zip that stores a manifest's entries uncompressed, in manifest order. Headers
+ * and the central directory are generated here; the data of each entry is the file itself, so the
+ * archive never has to exist on disk. Sizes and CRCs come from the manifest, which makes the
+ * length of the archive, and the bytes at any offset, known before anything is read.
+ */
+public final class StoredZipLayout {
+
+    private static final int STORED = 0;
+
+    private final List<PackManifest.Entry> entries;
+    private final byte[][] headers;
+    private final long[] headerOffsets;
+    private final byte[] directory;
+    private final long directoryOffset;
+
+    private StoredZipLayout(List<PackManifest.Entry> entries, byte[][] headers, long[] headerOffsets, byte[] directory, long directoryOffset) {
+        this.entries = entries;
+        this.headers = headers;
+        this.headerOffsets = headerOffsets;
+        this.directory = directory;
+        this.directoryOffset = directoryOffset;
+    }
+
+    /**
+     * A run of bytes of the archive: generated header bytes, or part of one entry's file.
+     */
+    public static final class Section {
+        private final byte[] bytes;
+        private final PackManifest.Entry entry;
+        private final long position;
+        private final long length;
+
+        private Section(byte[] bytes, PackManifest.Entry entry, long position, long length) {
+            this.bytes = bytes;
+            this.entry = entry;
+            this.position = position;
+            this.length = length;
+        }
+
+        /**
+         * Header bytes, or null when the section is entry data.
+         */
+        public byte[] bytes() {
+            return bytes;
+        }
+
+        /**
+         * Entry whose file holds the section, or null for header bytes.
+         */
+        public PackManifest.Entry entry() {
+            return entry;
+        }
+
+        /**
+         * Offset of the section in the entry's file; 0 for header bytes.
+         */
+        public long position() {
+            return position;
+        }
+
+        public long length() {
+            return length;
+        }
+    }
+
+    /**
+     * Lays out the entries of a manifest, all dated {@code modifiedMillis}.
+     */
+    public static StoredZipLayout of(PackManifest manifest, long modifiedMillis) {
+        List<PackManifest.Entry> entries = manifest.entries();
+        int dosTime = ParallelZipWriter.toDosTime(modifiedMillis);
+        byte[][] headers = new byte[entries.size()][];
+        long[] headerOffsets = new long[entries.size()];
+        ByteArrayOutputStream directory = new ByteArrayOutputStream();
+        long offset = 0;
+        for (int i = 0; i < entries.size(); i++) {
+            PackManifest.Entry entry = entries.get(i);
+            byte[] name = entry.path().getBytes(StandardCharsets.UTF_8);
+            headers[i] = ParallelZipWriter.localHeader(name, STORED, entry.crc32(), entry.size(), entry.size(), dosTime);
+            headerOffsets[i] = offset;
+            directory.writeBytes(ParallelZipWriter.centralHeader(name, STORED, entry.crc32(), entry.size(), entry.size(), dosTime, offset));
+            offset += headers[i].length + entry.size();
+        }
+        int directorySize = directory.size();
+        directory.writeBytes(ParallelZipWriter.endRecords(entries.size(), offset, directorySize));
+        return new StoredZipLayout(List.copyOf(entries), headers, headerOffsets, directory.toByteArray(), offset);
+    }
+
+    public long length() {
+        return directoryOffset + directory.length;
+    }
+
+    /**
+     * The sections covering {@code length} bytes from {@code start}, in order.
+     */
+    public List<Section> sections(long start, long length) {
+        List<Section> sections = new ArrayList<>();
+        long end = Math.min(start + length, length());
+        // The last entry whose header starts at or before the requested offset.
+        int index = Arrays.binarySearch(headerOffsets, start);
+        index = index >= 0 ? index : -index - 2;
+        long position = start;
+        for (int i = Math.max(index, 0); i < entries.size() && position < end; i++) {
+            PackManifest.Entry entry = entries.get(i);
+            long dataOffset = headerOffsets[i] + headers[i].length;
+            if (position < dataOffset) {
+                int from = (int) (position - headerOffsets[i]);
+                int to = (int) Math.min(headers[i].length, end - headerOffsets[i]);
+                sections.add(new Section(Arrays.copyOfRange(headers[i], from, to), null, 0, to - from));
+                position = headerOffsets[i] + to;
+            }
+            long dataEnd = Math.min(dataOffset + entry.size(), end);
+            if (position < dataEnd) {
+                sections.add(new Section(null, entry, position - dataOffset, dataEnd - position));
+                position = dataEnd;
+            }
+        }
+        if (position < end) {
+            int from = (int) (position - directoryOffset);
+            int to = (int) (end - directoryOffset);
+            sections.add(new Section(Arrays.copyOfRange(directory, from, to), null, 0, to - from));
+        }
+        return sections;
+    }
+}
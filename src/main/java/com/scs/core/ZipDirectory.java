@@ -0,0 +1,227 @@
+package com.scs.core;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Central directory of a zip on disk, read without inflating anything, so entries can be copied
+ * byte for byte into a new archive by {@link ParallelZipWriter#reuse}.
+ */
+public final class ZipDirectory implements Closeable {
+
+    private static final int END_RECORD_SIZE = 22;
+    private static final int MAX_COMMENT_SIZE = 0xFFFF;
+    private static final int ZIP64_LOCATOR_SIZE = 20;
+    private static final int END_SIGNATURE = 0x06054b50;
+    private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+    private static final int ZIP64_END_SIGNATURE = 0x06064b50;
+    private static final int CENTRAL_SIGNATURE = 0x02014b50;
+    private static final int LOCAL_SIGNATURE = 0x04034b50;
+    private static final int ENCRYPTED_FLAG = 0x0001;
+
+    public static final class Entry {
+        private final String name;
+        private final int flags;
+        private final int method;
+        private final int dosTime;
+        private final long crc;
+        private final long compressedSize;
+        private final long size;
+        private final long localHeaderOffset;
+
+        private Entry(String name, int flags, int method, int dosTime, long crc, long compressedSize, long size, long localHeaderOffset) {
+            this.name = name;
+            this.flags = flags;
+            this.method = method;
+            this.dosTime = dosTime;
+            this.crc = crc;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.localHeaderOffset = localHeaderOffset;
+        }
+
+        public String name() {
+            return name;
+        }
+
+        /**
+         * Compression method: 0 (stored) or 8 (deflated) for entries that can be copied.
+         */
+        public int method() {
+            return method;
+        }
+
+        public long crc() {
+            return crc;
+        }
+
+        public long compressedSize() {
+            return compressedSize;
+        }
+
+        public long size() {
+            return size;
+        }
+
+        int dosTime() {
+            return dosTime;
+        }
+
+        /**
+         * True when the bytes can be copied into another archive as they are.
+         */
+        public boolean isCopyable() {
+            return (flags & ENCRYPTED_FLAG) == 0 && (method == 0 || method == 8);
+        }
+    }
+
+    private final FileChannel channel;
+    private final Map<String, Entry> entries;
+
+    private ZipDirectory(FileChannel channel, Map<String, Entry> entries) {
+        this.channel = channel;
+        this.entries = entries;
+    }
+
+    public static ZipDirectory open(Path zip) throws IOException {
+        FileChannel channel = FileChannel.open(zip, StandardOpenOption.READ);
+        try {
+            return new ZipDirectory(channel, readEntries(channel));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public Entry get(String name) {
+        return entries.get(name);
+    }
+
+    public Map<String, Entry> entries() {
+        return Collections.unmodifiableMap(entries);
+    }
+
+    /**
+     * Offset of the entry's compressed data, behind its local header.
+     */
+    long dataOffset(Entry entry) throws IOException {
+        ByteBuffer header = read(channel, entry.localHeaderOffset, 30);
+        if (header.getInt(0) != LOCAL_SIGNATURE) {
+            throw new IOException("Bad local header for " + entry.name);
+        }
+        return entry.localHeaderOffset + 30 + (header.getShort(26) & 0xFFFF) + (header.getShort(28) & 0xFFFF);
+    }
+
+    FileChannel channel() {
+        return channel;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private static Map<String, Entry> readEntries(FileChannel channel) throws IOException {
+        long fileSize = channel.size();
+        int tailLength = (int) Math.min(fileSize, END_RECORD_SIZE + MAX_COMMENT_SIZE + ZIP64_LOCATOR_SIZE);
+        long tailStart = fileSize - tailLength;
+        ByteBuffer tail = read(channel, tailStart, tailLength);
+
+        int end = -1;
+        for (int i = tailLength - END_RECORD_SIZE; i >= 0; i--) {
+            if (tail.getInt(i) == END_SIGNATURE && i + END_RECORD_SIZE + (tail.getShort(i + 20) & 0xFFFF) == tailLength) {
+                end = i;
+                break;
+            }
+        }
+        if (end < 0) {
+            throw new IOException("No end of central directory record");
+        }
+        long count = tail.getShort(end + 10) & 0xFFFFL;
+        long directorySize = tail.getInt(end + 12) & 0xFFFFFFFFL;
+        long directoryOffset = tail.getInt(end + 16) & 0xFFFFFFFFL;
+        if (count == 0xFFFF || directorySize == 0xFFFFFFFFL || directoryOffset == 0xFFFFFFFFL) {
+            int locator = end - ZIP64_LOCATOR_SIZE;
+            if (locator < 0 || tail.getInt(locator) != ZIP64_LOCATOR_SIGNATURE) {
+                throw new IOException("Missing ZIP64 locator");
+            }
+            ByteBuffer zip64 = read(channel, tail.getLong(locator + 8), 56);
+            if (zip64.getInt(0) != ZIP64_END_SIGNATURE) {
+                throw new IOException("Bad ZIP64 end record");
+            }
+            count = zip64.getLong(32);
+            directorySize = zip64.getLong(40);
+            directoryOffset = zip64.getLong(48);
+        }
+        if (directorySize > Integer.MAX_VALUE || directoryOffset + directorySize > fileSize) {
+            throw new IOException("Central directory out of bounds");
+        }
+
+        ByteBuffer directory = read(channel, directoryOffset, (int) directorySize);
+        Map<String, Entry> entries = new HashMap<>();
+        int position = 0;
+        for (long i = 0; i < count; i++) {
+            if (position + 46 > directory.capacity() || directory.getInt(position) != CENTRAL_SIGNATURE) {
+                throw new IOException("Malformed central directory");
+            }
+            int flags = directory.getShort(position + 8) & 0xFFFF;
+            int method = directory.getShort(position + 10) & 0xFFFF;
+            int dosTime = directory.getInt(position + 12);
+            long crc = directory.getInt(position + 16) & 0xFFFFFFFFL;
+            long compressedSize = directory.getInt(position + 20) & 0xFFFFFFFFL;
+            long size = directory.getInt(position + 24) & 0xFFFFFFFFL;
+            int nameLength = directory.getShort(position + 28) & 0xFFFF;
+            int extraLength = directory.getShort(position + 30) & 0xFFFF;
+            int commentLength = directory.getShort(position + 32) & 0xFFFF;
+            long localHeaderOffset = directory.getInt(position + 42) & 0xFFFFFFFFL;
+            byte[] nameBytes = new byte[nameLength];
+            directory.get(position + 46, nameBytes);
+            String name = new String(nameBytes, StandardCharsets.UTF_8);
+
+            // ZIP64 extended information replaces the saturated 32-bit fields, in this order.
+            int extra = position + 46 + nameLength;
+            int extraEnd = extra + extraLength;
+            while (extra + 4 <= extraEnd) {
+                int id = directory.getShort(extra) & 0xFFFF;
+                int length = directory.getShort(extra + 2) & 0xFFFF;
+                if (id == 0x0001) {
+                    int field = extra + 4;
+                    if (size == 0xFFFFFFFFL) {
+                        size = directory.getLong(field);
+                        field += 8;
+                    }
+                    if (compressedSize == 0xFFFFFFFFL) {
+                        compressedSize = directory.getLong(field);
+                        field += 8;
+                    }
+                    if (localHeaderOffset == 0xFFFFFFFFL) {
+                        localHeaderOffset = directory.getLong(field);
+                    }
+                }
+                extra += 4 + length;
+            }
+            entries.put(name, new Entry(name, flags, method, dosTime, crc, compressedSize, size, localHeaderOffset));
+            position = extraEnd + commentLength;
+        }
+        return entries;
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of zip");
+            }
+        }
+        return buffer.flip();
+    }
+}
@@ -1,6 +1,7 @@
 package com.scs.mixin;
 
 import com.scs.client.ServerMetadata;
+import com.scs.core.HostedPacks;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.gui.GuiGraphics;
 import net.minecraft.client.gui.components.CycleButton;
@@ -23,6 +24,7 @@ public abstract class EditServerScreenMixin {
 
     private int[] labelYPositions = new int[2]; // 0 = Server Name Y, 1 = Server Address Y
     private EditBox customField;
+    private EditBox packField;
 
     @Inject(method = "init", at = @At("TAIL"))
     private void onInit(CallbackInfo ci) {
@@ -50,11 +52,22 @@ public abstract class EditServerScreenMixin {
                 mc.font,
                 mc.getWindow().getGuiScaledWidth() / 2 - 100,
                 mc.getWindow().getGuiScaledHeight() / 4 + 60,
-                200, 20,
+                146, 20,
                 Component.translatable("screen.scs.download_url")
         );
         customField.setMaxLength(100);
 
+        // Hosted pack of this server; empty for the file server's own packs
+        packField = new EditBox(
+                mc.font,
+                mc.getWindow().getGuiScaledWidth() / 2 + 50,
+                mc.getWindow().getGuiScaledHeight() / 4 + 60,
+                50, 20,
+                Component.translatable("screen.scs.pack_name")
+        );
+        packField.setMaxLength(32);
+        packField.setFilter(value -> value.isEmpty() || HostedPacks.isValidName(value));
+
         // Fill the custom field if metadata exists
         EditServerScreenAccessor accessor = (EditServerScreenAccessor) screen;
         String serverIP = accessor.getServerData().ip;
@@ -63,7 +76,10 @@ public abstract class EditServerScreenMixin {
             customField.setValue(existingMetadata);
         }
 
+        packField.setValue(ServerMetadata.getPack(serverIP));
+
         ((ScreenAccessorMixin) (Object) this).invokeAddRenderableWidget(customField);
+        ((ScreenAccessorMixin) (Object) this).invokeAddRenderableWidget(packField);
     }
 
     @Inject(method = "onAdd", at = @At("TAIL"))
@@ -74,6 +90,9 @@ public abstract class EditServerScreenMixin {
             EditServerScreen screen = (EditServerScreen) (Object) this;
             String serverIP = ((EditServerScreenAccessor) screen).getServerData().ip;
             ServerMetadata.setMetadata(serverIP, customValue);
+            if (packField != null) {
+                ServerMetadata.setPack(serverIP, packField.getValue());
+            }
         }
     }
 
@@ -87,6 +106,7 @@ public abstract class EditServerScreenMixin {
             graphics.drawString(Minecraft.getInstance().font, Component.translatable("screen.scs.server_address"), x, labelYPositions[1], 0xA0A0A0);
         }
         graphics.drawString(Minecraft.getInstance().font, Component.translatable("screen.scs.download_url"), x, Minecraft.getInstance().getWindow().getGuiScaledHeight() / 4 + 50, 0xA0A0A0);
+        graphics.drawString(Minecraft.getInstance().font, Component.translatable("screen.scs.pack_name"), x + 150, Minecraft.getInstance().getWindow().getGuiScaledHeight() / 4 + 50, 0xA0A0A0);
     }
 
     // Redirect original label draw call for "Server Name"
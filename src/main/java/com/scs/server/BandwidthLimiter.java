@@ -0,0 +1,148 @@
+package com.scs.server;
+
+import com.scs.core.Config;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Token-bucket shaping for file transfers with a global, a per-IP and a per-connection cap.
+ * Limits are read from {@link Config} on every reservation, so a config reload applies to
+ * transfers that are already running. While {@link TickThrottle} is engaged every limit is scaled
+ * down with the throttle level.
+ */
+public final class BandwidthLimiter {
+
+    /**
+     * Bodies are written in chunks of this size so every limit is checked often.
+     */
+    static final int CHUNK_SIZE = 64 * 1024;
+
+    private static final TokenBucket GLOBAL = new TokenBucket();
+    private static final Map<String, IpBucket> PER_IP = new ConcurrentHashMap<>();
+    private static final AtomicInteger ACTIVE_TRANSFERS = new AtomicInteger();
+    private static final LongAdder BYTES_SENT = new LongAdder();
+
+    private BandwidthLimiter() {
+    }
+
+    public static boolean isActive() {
+        return globalRate() > 0 || perIpRate() > 0 || perConnectionRate() > 0;
+    }
+
+    public static int activeTransfers() {
+        return ACTIVE_TRANSFERS.get();
+    }
+
+    /**
+     * Total body bytes handed to the engines since startup.
+     */
+    public static long bytesSent() {
+        return BYTES_SENT.sum();
+    }
+
+    /**
+     * Starts shaping one response body for a client address. Must be closed when the body is done.
+     */
+    static Transfer open(String clientAddress) {
+        String key = clientAddress == null ? "unknown" : clientAddress;
+        IpBucket ipBucket = PER_IP.compute(key, (ignored, existing) -> {
+            IpBucket bucket = existing != null ? existing : new IpBucket();
+            bucket.transfers++;
+            return bucket;
+        });
+        ACTIVE_TRANSFERS.incrementAndGet();
+        return new Transfer(key, ipBucket);
+    }
+
+    static final class Transfer implements AutoCloseable {
+        private final String clientAddress;
+        private final IpBucket ipBucket;
+        private final TokenBucket connectionBucket = new TokenBucket();
+        private boolean closed;
+
+        private Transfer(String clientAddress, IpBucket ipBucket) {
+            this.clientAddress = clientAddress;
+            this.ipBucket = ipBucket;
+        }
+
+        /**
+         * Takes {@code bytes} from every bucket and returns how long to wait, in nanoseconds,
+         * before those bytes may be sent.
+         */
+        long reserve(long bytes) {
+            BYTES_SENT.add(bytes);
+            long wait = GLOBAL.reserve(bytes, globalRate());
+            wait = Math.max(wait, ipBucket.bucket.reserve(bytes, perIpRate()));
+            wait = Math.max(wait, connectionBucket.reserve(bytes, perConnectionRate()));
+            return wait;
+        }
+
+        /**
+         * Blocking variant for thread-per-transfer engines.
+         */
+        void acquire(long bytes) throws InterruptedException {
+            long wait = reserve(bytes);
+            if (wait > 0) {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            }
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            ACTIVE_TRANSFERS.decrementAndGet();
+            PER_IP.computeIfPresent(clientAddress, (ignored, bucket) -> --bucket.transfers <= 0 ? null : bucket);
+        }
+    }
+
+    private static final class IpBucket {
+        private final TokenBucket bucket = new TokenBucket();
+        private int transfers;
+    }
+
+    /**
+     * Reservation-style bucket: tokens may go negative, the debt is paid by waiting.
+     * Holds at most one second of burst.
+     */
+    private static final class TokenBucket {
+        private double tokens;
+        private long lastRefillNanos = System.nanoTime();
+
+        synchronized long reserve(long bytes, long bytesPerSecond) {
+            long now = System.nanoTime();
+            if (bytesPerSecond <= 0) {
+                tokens = 0;
+                lastRefillNanos = now;
+                return 0;
+            }
+            double elapsedSeconds = (now - lastRefillNanos) / 1_000_000_000.0;
+            lastRefillNanos = now;
+            tokens = Math.min(bytesPerSecond, tokens + elapsedSeconds * bytesPerSecond);
+            tokens -= bytes;
+            if (tokens >= 0) {
+                return 0;
+            }
+            return (long) ((-tokens / bytesPerSecond) * 1_000_000_000L);
+        }
+    }
+
+    private static long globalRate() {
+        long configured = Config.globalBandwidthLimitKBps * 1024L;
+        return configured > 0 ? TickThrottle.scale(configured) : TickThrottle.implicitGlobalRate();
+    }
+
+    private static long perIpRate() {
+        return TickThrottle.scale(Config.perIpBandwidthLimitKBps * 1024L);
+    }
+
+    private static long perConnectionRate() {
+        return TickThrottle.scale(Config.perConnectionBandwidthLimitKBps * 1024L);
+    }
+}
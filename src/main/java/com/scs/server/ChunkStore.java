@@ -0,0 +1,111 @@
+package com.scs.server;
+
+import com.scs.core.ChunkIndex;
+import com.scs.core.ContentChunker;
+import com.scs.core.SCS;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Content-defined chunks of the larger objects, stored once in {@code SCS/chunks/<xx>/<sha256>}
+ * however many files or versions contain them, with one {@link ChunkIndex} per object in
+ * {@code SCS/chunks/index/<object sha256>.json}. Served at {@code /chunks/<sha256>} and
+ * {@code /chunk-index/<object sha256>}.
+ */
+public final class ChunkStore {
+
+    public static final Path DIRECTORY = Path.of("SCS/chunks");
+    static final String CHUNK_URL_PREFIX = "/chunks/";
+    static final String INDEX_URL_PREFIX = "/chunk-index/";
+
+    static final Path INDEX_DIRECTORY = DIRECTORY.resolve("index");
+    private static final Pattern SHA256 = Pattern.compile("[0-9a-f]{64}");
+
+    private ChunkStore() {
+    }
+
+    static Path resolveChunk(String sha256) {
+        if (sha256 == null || !SHA256.matcher(sha256).matches()) {
+            return null;
+        }
+        return DIRECTORY.resolve(sha256.substring(0, 2)).resolve(sha256);
+    }
+
+    static Path resolveIndex(String objectSha256) {
+        if (objectSha256 == null || !SHA256.matcher(objectSha256).matches()) {
+            return null;
+        }
+        return INDEX_DIRECTORY.resolve(objectSha256 + ".json");
+    }
+
+    /**
+     * Splits an object of the {@link ObjectStore} into chunks unless it is small or already indexed.
+     */
+    public static void indexIfAbsent(String objectSha256) throws IOException {
+        Path object = ObjectStore.resolve(objectSha256);
+        Path indexPath = resolveIndex(objectSha256);
+        if (object == null || indexPath == null || !Files.isRegularFile(object)
+                || Files.size(object) < ChunkIndex.MIN_FILE_SIZE || Files.isRegularFile(indexPath)) {
+            return;
+        }
+
+        MessageDigest digest = newDigest();
+        HexFormat hex = HexFormat.of();
+        List<ChunkIndex.Chunk> chunks = new ArrayList<>();
+        int[] stored = new int[1];
+        try (InputStream in = Files.newInputStream(object)) {
+            ContentChunker.split(in, (data, offset, length) -> {
+                digest.update(data, offset, length);
+                String chunkSha = hex.formatHex(digest.digest());
+                if (storeIfAbsent(chunkSha, data, offset, length)) {
+                    stored[0]++;
+                }
+                chunks.add(new ChunkIndex.Chunk(chunkSha, length));
+            });
+        }
+        new ChunkIndex(objectSha256, Files.size(object), chunks).write(indexPath);
+        SCS.LOGGER.debug("Indexed object {}: {} chunks, {} new", objectSha256, chunks.size(), stored[0]);
+    }
+
+    private static boolean storeIfAbsent(String sha256, byte[] data, int offset, int length) throws IOException {
+        Path target = resolveChunk(sha256);
+        if (Files.isRegularFile(target) && Files.size(target) == length) {
+            return false;
+        }
+        Files.createDirectories(target.getParent());
+        Path temp = Files.createTempFile(target.getParent(), sha256, ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                out.write(data, offset, length);
+            }
+            try {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return true;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package com.scs.server;
+
+import com.scs.core.Checksum;
+import com.scs.core.SCS;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Caches the strong ETag (SHA-256 of the content) of served files, keyed by path and
+ * revalidated against size and modification time so the hash is only recomputed after a rebuild.
+ * Concurrent lookups of a file that needs hashing wait for one hash instead of each reading it.
+ */
+public final class ContentValidators {
+
+    private static final Map<Path, Validator> CACHE = new ConcurrentHashMap<>();
+    private static final Map<Path, CompletableFuture<Validator>> HASHING = new ConcurrentHashMap<>();
+
+    private ContentValidators() {
+    }
+
+    public static final class Validator {
+        private final long size;
+        private final FileTime lastModified;
+        private final String etag;
+
+        private Validator(long size, FileTime lastModified, String etag) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.etag = etag;
+        }
+
+        public long size() {
+            return size;
+        }
+
+        public FileTime lastModified() {
+            return lastModified;
+        }
+
+        public String etag() {
+            return etag;
+        }
+
+        private boolean matches(long size, FileTime lastModified) {
+            return this.size == size && this.lastModified.equals(lastModified);
+        }
+    }
+
+    /**
+     * Returns the validator for the file, hashing it only if it changed since the last lookup.
+     */
+    public static Validator get(Path file) throws IOException {
+        Path key = file.toAbsolutePath().normalize();
+        while (true) {
+            long size = Files.size(key);
+            FileTime lastModified = Files.getLastModifiedTime(key);
+            Validator cached = CACHE.get(key);
+            if (cached != null && cached.matches(size, lastModified)) {
+                return cached;
+            }
+
+            CompletableFuture<Validator> mine = new CompletableFuture<>();
+            CompletableFuture<Validator> running = HASHING.putIfAbsent(key, mine);
+            if (running != null) {
+                // Another request is hashing this path; its result is used if the file is unchanged.
+                Validator other = await(running, key);
+                if (other.matches(size, lastModified)) {
+                    return other;
+                }
+                continue;
+            }
+            try {
+                Validator computed = new Validator(size, lastModified, "\"" + hash(key) + "\"");
+                CACHE.put(key, computed);
+                mine.complete(computed);
+                return computed;
+            } catch (IOException | RuntimeException e) {
+                mine.completeExceptionally(e);
+                throw e;
+            } finally {
+                HASHING.remove(key, mine);
+            }
+        }
+    }
+
+    private static String hash(Path key) throws IOException {
+        try {
+            return Checksum.computeChecksum(key);
+        } catch (Exception e) {
+            throw e instanceof IOException io ? io : new IOException("Failed to hash " + key, e);
+        }
+    }
+
+    private static Validator await(CompletableFuture<Validator> running, Path key) throws IOException {
+        try {
+            return running.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the hash of " + key, e);
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to hash " + key, e.getCause());
+        }
+    }
+
+    /**
+     * Validator for a content-addressed file (object or patch): its name already identifies the
+     * content, so nothing is hashed or cached.
+     */
+    static Validator forContentAddressed(Path file, String name) throws IOException {
+        return new Validator(Files.size(file), Files.getLastModifiedTime(file), "\"" + name + "\"");
+    }
+
+    /**
+     * Validator for a zip streamed from a manifest: the zip is generated from the manifest alone, so
+     * the manifest's hash identifies its content too.
+     */
+    static Validator forStreamed(Path manifest, long size) throws IOException {
+        Validator base = get(manifest);
+        String hash = base.etag().substring(1, base.etag().length() - 1);
+        return new Validator(size, base.lastModified(), "\"" + hash + "-zip\"");
+    }
+
+    /**
+     * Recomputes the validator right after a pack is published, so the first request does not pay for hashing.
+     */
+    public static void refresh(Path file) {
+        try {
+            CACHE.remove(file.toAbsolutePath().normalize());
+            if (Files.isRegularFile(file)) {
+                get(file);
+            }
+        } catch (IOException e) {
+            SCS.LOGGER.warn("Failed to precompute ETag for {}", file, e);
+        }
+    }
+
+    /**
+     * Gives a file linked or copied into a new generation the ETag of its source, hashing the
+     * source first if it has no validator yet, so requests for the new path never hash.
+     */
+    static void carry(Path source, Path target) {
+        try {
+            Validator validator = get(source);
+            Path key = target.toAbsolutePath().normalize();
+            CACHE.put(key, new Validator(Files.size(key), Files.getLastModifiedTime(key), validator.etag()));
+        } catch (IOException e) {
+            SCS.LOGGER.warn("Failed to carry the ETag of {} over to {}", source, target, e);
+        }
+    }
+
+    /**
+     * Drops the validator of a file that is being deleted.
+     */
+    static void forget(Path file) {
+        CACHE.remove(file.toAbsolutePath().normalize());
+    }
+
+    /**
+     * Weak comparison as required for If-None-Match: a list of entity tags or "*".
+     */
+    public static boolean matchesAny(String header, String etag) {
+        if (header == null || header.isBlank()) {
+            return false;
+        }
+        String trimmed = header.trim();
+        if ("*".equals(trimmed)) {
+            return true;
+        }
+        String opaque = stripWeak(etag);
+        for (String candidate : trimmed.split(",")) {
+            if (stripWeak(candidate.trim()).equals(opaque)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String stripWeak(String tag) {
+        return tag.startsWith("W/") ? tag.substring(2) : tag;
+    }
+}
@@ -0,0 +1,153 @@
+package com.scs.server;
+
+import com.scs.core.Config;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Admission queue for full-pack transfers. At most {@link Config#maxConcurrentPackTransfers} run at
+ * once (fewer while {@link TickThrottle} is engaged); other clients get a ticket and are admitted
+ * in arrival order when they retry. Tickets that stop polling are forgotten.
+ */
+public final class DownloadAdmission {
+
+    public static final String TICKET_HEADER = "X-SCS-Queue-Ticket";
+    public static final String POSITION_HEADER = "X-SCS-Queue-Position";
+
+    private static final long TICKET_EXPIRY_NANOS = 120L * 1_000_000_000L;
+    private static final int MIN_RETRY_SECONDS = 2;
+    private static final int MAX_RETRY_SECONDS = 120;
+    private static final double DEFAULT_TRANSFER_SECONDS = 30;
+
+    private static final Object LOCK = new Object();
+    private static final LinkedHashMap<String, Long> WAITING = new LinkedHashMap<>();
+    private static int active;
+    private static double averageTransferSeconds = DEFAULT_TRANSFER_SECONDS;
+
+    private DownloadAdmission() {
+    }
+
+    /**
+     * Result of an admission attempt: a slot to release when the transfer ends, or the queue
+     * position, ticket and Retry-After estimate to answer with.
+     */
+    static final class Decision {
+        private final Slot slot;
+        private final String ticket;
+        private final int position;
+        private final int retryAfterSeconds;
+
+        private Decision(Slot slot, String ticket, int position, int retryAfterSeconds) {
+            this.slot = slot;
+            this.ticket = ticket;
+            this.position = position;
+            this.retryAfterSeconds = retryAfterSeconds;
+        }
+
+        boolean admitted() {
+            return slot != null;
+        }
+
+        Slot slot() {
+            return slot;
+        }
+
+        String ticket() {
+            return ticket;
+        }
+
+        int position() {
+            return position;
+        }
+
+        int retryAfterSeconds() {
+            return retryAfterSeconds;
+        }
+    }
+
+    static final class Slot implements AutoCloseable {
+        private final long startNanos = System.nanoTime();
+        private boolean released;
+
+        @Override
+        public void close() {
+            synchronized (LOCK) {
+                if (released) {
+                    return;
+                }
+                released = true;
+                active--;
+                double seconds = (System.nanoTime() - startNanos) / 1_000_000_000.0;
+                averageTransferSeconds = averageTransferSeconds * 0.8 + seconds * 0.2;
+            }
+        }
+    }
+
+    /**
+     * Tries to start a pack transfer for a client presenting {@code ticket} (null on the first try).
+     */
+    static Decision tryAdmit(String ticket) {
+        long now = System.nanoTime();
+        synchronized (LOCK) {
+            expireTickets(now);
+            int limit = TickThrottle.scaleConcurrency(Config.maxConcurrentPackTransfers);
+            int free = limit <= 0 ? Integer.MAX_VALUE : limit - active;
+
+            String key = ticket != null && WAITING.containsKey(ticket) ? ticket : null;
+            int position = key != null ? positionOf(key) : WAITING.size() + 1;
+            if (free > 0 && position <= free) {
+                if (key != null) {
+                    WAITING.remove(key);
+                }
+                active++;
+                return new Decision(new Slot(), null, 0, 0);
+            }
+
+            if (key == null) {
+                key = UUID.randomUUID().toString();
+            }
+            WAITING.put(key, now);
+            int slots = Math.max(1, limit);
+            int waves = (int) Math.ceil(position / (double) slots);
+            int retryAfter = (int) Math.round(averageTransferSeconds * waves / 2);
+            retryAfter = Math.max(MIN_RETRY_SECONDS, Math.min(MAX_RETRY_SECONDS, retryAfter));
+            return new Decision(null, key, position, retryAfter);
+        }
+    }
+
+    public static String describe() {
+        synchronized (LOCK) {
+            expireTickets(System.nanoTime());
+            return String.format(Locale.ROOT,
+                    "Pack transfers: %d active (limit %s), %d queued, average %.1fs per transfer",
+                    active,
+                    Config.maxConcurrentPackTransfers <= 0 ? "none" : String.valueOf(Config.maxConcurrentPackTransfers),
+                    WAITING.size(),
+                    averageTransferSeconds);
+        }
+    }
+
+    private static int positionOf(String ticket) {
+        int position = 1;
+        for (String waiting : WAITING.keySet()) {
+            if (waiting.equals(ticket)) {
+                return position;
+            }
+            position++;
+        }
+        return position;
+    }
+
+    private static void expireTickets(long now) {
+        Iterator<Map.Entry<String, Long>> iterator = WAITING.entrySet().iterator();
+        while (iterator.hasNext()) {
+            if (now - iterator.next().getValue() > TICKET_EXPIRY_NANOS) {
+                iterator.remove();
+            }
+        }
+    }
+}
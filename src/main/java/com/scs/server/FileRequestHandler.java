@@ -0,0 +1,420 @@
+package com.scs.server;
+
+import com.scs.core.HostedPacks;
+import com.scs.core.PackManifest;
+import com.scs.core.SCS;
+
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+
+/**
+ * Request logic shared by every serving engine: path resolution, conditional requests and ranges.
+ */
+final class FileRequestHandler {
+
+    private static final String ZIP_CONTENT_TYPE = "application/zip";
+    private static final String JSON_CONTENT_TYPE = "application/json";
+    private static final String DEFAULT_CONTENT_TYPE = "application/octet-stream";
+    /**
+     * Pack files keep their names across rebuilds, so caches must revalidate them with the ETag.
+     */
+    private static final String REVALIDATE_CACHE_CONTROL = "no-cache";
+    /**
+     * Objects, patches and chunks are named by their hashes and deltas by their generations; none ever changes.
+     */
+    private static final String IMMUTABLE_CACHE_CONTROL = "public, max-age=31536000, immutable";
+    private static final DateTimeFormatter HTTP_DATE_FORMAT =
+            DateTimeFormatter.ofPattern("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US).withZone(ZoneOffset.UTC);
+
+    private FileRequestHandler() {
+    }
+
+    /**
+     * Plans the response for a decoded request path.
+     *
+     * @param queryParameter looks up a decoded query parameter by name, returning null when absent.
+     * @param requestHeader  looks up a request header by name, returning null when absent.
+     */
+    static FileResponse handle(
+            String requestPath,
+            Function<String, String> queryParameter,
+            Function<String, String> requestHeader
+    ) throws IOException {
+        SCS.LOGGER.info("Received request: " + requestPath);
+
+        if (requestPath.startsWith(HostedPacks.URL_PREFIX)) {
+            String resolved = resolveHostedPath(requestPath);
+            if (resolved == null) {
+                SCS.LOGGER.warn("Not a hosted pack file: " + requestPath);
+                return FileResponse.status(404);
+            }
+            requestPath = resolved;
+        }
+
+        if (requestPath.startsWith(ObjectStore.URL_PREFIX)) {
+            String name = requestPath.substring(ObjectStore.URL_PREFIX.length());
+            return handleContentAddressed(ObjectStore.resolve(name), name, DEFAULT_CONTENT_TYPE, requestHeader);
+        }
+        if (requestPath.startsWith(PatchStore.URL_PREFIX)) {
+            String name = requestPath.substring(PatchStore.URL_PREFIX.length());
+            return handleContentAddressed(PatchStore.resolve(name), name, DEFAULT_CONTENT_TYPE, requestHeader);
+        }
+        if (requestPath.startsWith(ChunkStore.CHUNK_URL_PREFIX)) {
+            String name = requestPath.substring(ChunkStore.CHUNK_URL_PREFIX.length());
+            return handleContentAddressed(ChunkStore.resolveChunk(name), name, DEFAULT_CONTENT_TYPE, requestHeader);
+        }
+        if (requestPath.startsWith(ChunkStore.INDEX_URL_PREFIX)) {
+            String name = requestPath.substring(ChunkStore.INDEX_URL_PREFIX.length());
+            return handleContentAddressed(ChunkStore.resolveIndex(name), "index-" + name, JSON_CONTENT_TYPE, requestHeader);
+        }
+        if (requestPath.equals(PackHistory.URL_PATH)) {
+            return handleDelta(queryParameter, requestHeader);
+        }
+
+        String name = requestPath.substring(1);
+        PublishedGenerations.Lease lease = PublishedGenerations.acquire(name);
+        boolean streamed = false;
+        if (lease == null && name.endsWith(".zip")) {
+            // A pack published without its zip is streamed from its manifest.
+            lease = PublishedGenerations.acquire(PackManifest.fileName(name.substring(0, name.length() - ".zip".length())));
+            streamed = lease != null;
+        }
+        try {
+            FileResponse response = streamed
+                    ? handleStreamed(name, lease, requestHeader)
+                    : handlePublished(requestPath, lease, requestHeader);
+            if (lease != null && response.hasBody()) {
+                // The generation stays on disk until the body has been sent.
+                response.attach(lease);
+                lease = null;
+            }
+            return response;
+        } finally {
+            if (lease != null) {
+                lease.close();
+            }
+        }
+    }
+
+    /**
+     * Maps {@code /packs/<name>/<file>} to what the root serves: the pack files of a hosted pack are
+     * published as {@code <name>-<file>}, while objects, patches, chunks and deltas come from the
+     * stores every pack shares. Returns null for anything else below {@code /packs/}.
+     */
+    private static String resolveHostedPath(String requestPath) {
+        String rest = requestPath.substring(HostedPacks.URL_PREFIX.length());
+        int slash = rest.indexOf('/');
+        if (slash <= 0 || !HostedPacks.isValidName(rest.substring(0, slash))) {
+            return null;
+        }
+        String file = rest.substring(slash);
+        if (file.startsWith(ObjectStore.URL_PREFIX)
+                || file.startsWith(PatchStore.URL_PREFIX)
+                || file.startsWith(ChunkStore.CHUNK_URL_PREFIX)
+                || file.startsWith(ChunkStore.INDEX_URL_PREFIX)
+                || file.equals(PackHistory.URL_PATH)) {
+            return file;
+        }
+        if (file.length() == 1 || file.indexOf('/', 1) >= 0) {
+            return null;
+        }
+        return "/" + rest.substring(0, slash) + "-" + file.substring(1);
+    }
+
+    /**
+     * Serves a pack file: from the leased generation when the current one holds it, otherwise from
+     * {@code SCS/shared-files} itself. That fallback only serves plain top-level files placed there
+     * by hand, never the generation directories, the pointer or a build's temporary files.
+     */
+    private static FileResponse handlePublished(
+            String requestPath,
+            PublishedGenerations.Lease lease,
+            Function<String, String> requestHeader
+    ) throws IOException {
+        String name = requestPath.substring(1);
+        if (lease == null && !PublishedGenerations.isLegacyName(name)) {
+            SCS.LOGGER.warn("File not found: " + requestPath);
+            return FileResponse.status(404);
+        }
+        Path filePath = lease != null
+                ? lease.file()
+                : FileHostingServer.FILE_DIRECTORY.resolve(name).normalize();
+
+        if (!filePath.startsWith(FileHostingServer.FILE_DIRECTORY)) {
+            SCS.LOGGER.warn("Unauthorized access attempt: " + filePath);
+            return FileResponse.status(403);
+        }
+
+        HotFileCache.Entry cached = HotFileCache.get(filePath);
+        if (cached == null && (!Files.exists(filePath) || Files.isDirectory(filePath))) {
+            SCS.LOGGER.warn("File not found: " + filePath);
+            return FileResponse.status(404);
+        }
+
+        String contentType = contentTypeFor(requestPath);
+        ContentValidators.Validator validator = cached != null ? cached.validator() : ContentValidators.get(filePath);
+        FileResponse.Source source = cached != null ? FileResponse.inMemory(cached.content()) : FileResponse.onDisk(filePath);
+        FileResponse response = planFile(filePath, source, validator, contentType, REVALIDATE_CACHE_CONTROL, requestHeader);
+        if (response.hasBody() && requestPath.endsWith(".zip")) {
+            return admit(response, filePath, requestHeader);
+        }
+        return response;
+    }
+
+    /**
+     * Serves a zip generated on the fly from the leased manifest. It is planned like a file of the
+     * same generation, so conditional and Range requests behave exactly as for a built zip.
+     */
+    private static FileResponse handleStreamed(
+            String name,
+            PublishedGenerations.Lease lease,
+            Function<String, String> requestHeader
+    ) throws IOException {
+        StreamedZip zip = StreamedZip.forManifest(lease.file());
+        Path zipPath = lease.file().resolveSibling(name);
+        FileResponse response = planFile(zipPath, zip::pieces, zip.validator(), ZIP_CONTENT_TYPE, REVALIDATE_CACHE_CONTROL, requestHeader);
+        return response.hasBody() ? admit(response, zipPath, requestHeader) : response;
+    }
+
+    /**
+     * Lets a pack download start now, or answers 503 with the client's place in the download queue.
+     */
+    private static FileResponse admit(FileResponse response, Path filePath, Function<String, String> requestHeader) {
+        DownloadAdmission.Decision decision = DownloadAdmission.tryAdmit(requestHeader.apply(DownloadAdmission.TICKET_HEADER));
+        if (!decision.admitted()) {
+            return queued(decision, filePath.toString());
+        }
+        response.attach(decision.slot());
+        return response;
+    }
+
+    private static FileResponse queued(DownloadAdmission.Decision decision, String download) {
+        SCS.LOGGER.info("Queued download of {} at position {} (retry in {}s)",
+                download, decision.position(), decision.retryAfterSeconds());
+        Map<String, String> headers = new LinkedHashMap<>();
+        headers.put("Retry-After", String.valueOf(decision.retryAfterSeconds()));
+        headers.put(DownloadAdmission.TICKET_HEADER, decision.ticket());
+        headers.put(DownloadAdmission.POSITION_HEADER, String.valueOf(decision.position()));
+        return FileResponse.empty(503, headers);
+    }
+
+    /**
+     * Serves {@code /delta?pack=<pack>&from=<gen>&to=<gen>}: 404 when either generation left the
+     * history, so the client knows to download the full zip. A delta that is not cached yet is
+     * only built once the request has been admitted, so queued clients never start a build.
+     */
+    private static FileResponse handleDelta(
+            Function<String, String> queryParameter,
+            Function<String, String> requestHeader
+    ) throws IOException {
+        String pack = queryParameter.apply("pack");
+        long from;
+        long to;
+        try {
+            from = Long.parseLong(String.valueOf(queryParameter.apply("from")));
+            to = Long.parseLong(String.valueOf(queryParameter.apply("to")));
+        } catch (NumberFormatException e) {
+            return FileResponse.status(400);
+        }
+        DownloadAdmission.Slot slot = null;
+        if (!PackHistory.isBuilt(pack, from, to)) {
+            DownloadAdmission.Decision decision = DownloadAdmission.tryAdmit(requestHeader.apply(DownloadAdmission.TICKET_HEADER));
+            if (!decision.admitted()) {
+                return queued(decision, pack + " delta " + from + "-" + to);
+            }
+            slot = decision.slot();
+        }
+        try {
+            Path deltaPath = PackHistory.delta(pack, from, to);
+            if (deltaPath == null) {
+                SCS.LOGGER.info("No {} delta from generation {} to {}", pack, from, to);
+                return FileResponse.status(404);
+            }
+            ContentValidators.Validator validator = ContentValidators.get(deltaPath);
+            FileResponse response = planFile(deltaPath, FileResponse.onDisk(deltaPath), validator, ZIP_CONTENT_TYPE, IMMUTABLE_CACHE_CONTROL, requestHeader);
+            if (!response.hasBody()) {
+                return response;
+            }
+            if (slot == null) {
+                return admit(response, deltaPath, requestHeader);
+            }
+            response.attach(slot);
+            slot = null;
+            return response;
+        } finally {
+            if (slot != null) {
+                slot.close();
+            }
+        }
+    }
+
+    /**
+     * Serves objects, patches, chunks and chunk indexes. These are small per-file downloads, so they
+     * bypass the pack download queue but are still paced by the bandwidth limits.
+     */
+    private static FileResponse handleContentAddressed(
+            Path path,
+            String name,
+            String contentType,
+            Function<String, String> requestHeader
+    ) throws IOException {
+        if (path == null || !Files.isRegularFile(path)) {
+            SCS.LOGGER.warn("Not found: " + name);
+            return FileResponse.status(404);
+        }
+        ContentValidators.Validator validator = ContentValidators.forContentAddressed(path, name);
+        return planFile(path, FileResponse.onDisk(path), validator, contentType, IMMUTABLE_CACHE_CONTROL, requestHeader);
+    }
+
+    /**
+     * Answers conditional and Range headers: 304 when the client already holds the current content,
+     * otherwise a full 200, a single-range 206, a multipart/byteranges 206 for several ranges, or
+     * 416 when nothing requested lies inside the file.
+     */
+    private static FileResponse planFile(
+            Path filePath,
+            FileResponse.Source source,
+            ContentValidators.Validator validator,
+            String contentType,
+            String cacheControl,
+            Function<String, String> requestHeader
+    ) {
+        long fileSize = validator.size();
+        Map<String, String> headers = new LinkedHashMap<>();
+        headers.put("Accept-Ranges", "bytes");
+        headers.put("ETag", validator.etag());
+        headers.put("Last-Modified", formatHttpDate(validator.lastModified()));
+        headers.put("Cache-Control", cacheControl);
+
+        if (isNotModified(requestHeader, validator)) {
+            return FileResponse.empty(304, headers);
+        }
+
+        List<HttpRange> ranges = null;
+        String rangeHeader = requestHeader.apply("Range");
+        if (rangeHeader != null && ifRangeMatches(requestHeader.apply("If-Range"), validator)) {
+            ranges = HttpRange.parse(rangeHeader, fileSize);
+        }
+
+        if (ranges != null && ranges.isEmpty()) {
+            headers.put("Content-Range", "bytes */" + fileSize);
+            return FileResponse.empty(416, headers);
+        }
+
+        if (ranges == null) {
+            headers.put("Content-Type", contentType);
+            return FileResponse.file(200, headers, filePath, source, new HttpRange(0, fileSize - 1));
+        }
+
+        if (ranges.size() == 1) {
+            HttpRange range = ranges.get(0);
+            headers.put("Content-Type", contentType);
+            headers.put("Content-Range", range.toContentRange(fileSize));
+            return FileResponse.file(206, headers, filePath, source, range);
+        }
+
+        String boundary = "SCS-" + Long.toHexString(ThreadLocalRandom.current().nextLong());
+        byte[][] partHeaders = new byte[ranges.size()][];
+        for (int i = 0; i < ranges.size(); i++) {
+            String partHeader = "\r\n--" + boundary + "\r\n"
+                    + "Content-Type: " + contentType + "\r\n"
+                    + "Content-Range: " + ranges.get(i).toContentRange(fileSize) + "\r\n\r\n";
+            partHeaders[i] = partHeader.getBytes(StandardCharsets.US_ASCII);
+        }
+        byte[] closing = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+        headers.put("Content-Type", "multipart/byteranges; boundary=" + boundary);
+        return FileResponse.multipart(headers, filePath, source, ranges, partHeaders, closing);
+    }
+
+    /**
+     * If-None-Match takes precedence; If-Modified-Since is only consulted when it is absent.
+     */
+    private static boolean isNotModified(Function<String, String> requestHeader, ContentValidators.Validator validator) {
+        String ifNoneMatch = requestHeader.apply("If-None-Match");
+        if (ifNoneMatch != null) {
+            return ContentValidators.matchesAny(ifNoneMatch, validator.etag());
+        }
+        String ifModifiedSince = requestHeader.apply("If-Modified-Since");
+        if (ifModifiedSince == null || ifModifiedSince.isBlank()) {
+            return false;
+        }
+        try {
+            long since = ZonedDateTime.parse(ifModifiedSince.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toEpochSecond();
+            return validator.lastModified().toMillis() / 1000 <= since;
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
+    /**
+     * A Range is only honored when If-Range is absent or still names the current file:
+     * entity tags must match strongly, dates must match exactly.
+     */
+    private static boolean ifRangeMatches(String ifRange, ContentValidators.Validator validator) {
+        if (ifRange == null || ifRange.isBlank()) {
+            return true;
+        }
+        String value = ifRange.trim();
+        if (value.startsWith("W/")) {
+            return false;
+        }
+        if (value.startsWith("\"")) {
+            return value.equals(validator.etag());
+        }
+        try {
+            long requested = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toEpochSecond();
+            return requested == validator.lastModified().toMillis() / 1000;
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
+    private static String contentTypeFor(String requestPath) {
+        if (requestPath.endsWith(".zip")) {
+            return ZIP_CONTENT_TYPE;
+        }
+        if (requestPath.endsWith(".json")) {
+            return JSON_CONTENT_TYPE;
+        }
+        return DEFAULT_CONTENT_TYPE;
+    }
+
+    /**
+     * Decodes an {@code application/x-www-form-urlencoded} query; the first value of a repeated name wins.
+     */
+    static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> parameters = new LinkedHashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return parameters;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int separator = pair.indexOf('=');
+            String name = separator < 0 ? pair : pair.substring(0, separator);
+            String value = separator < 0 ? "" : pair.substring(separator + 1);
+            try {
+                parameters.putIfAbsent(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+            } catch (IllegalArgumentException e) {
+                // Malformed escape: ignore the parameter.
+            }
+        }
+        return parameters;
+    }
+
+    static String formatHttpDate(FileTime time) {
+        return HTTP_DATE_FORMAT.format(time.toInstant());
+    }
+}
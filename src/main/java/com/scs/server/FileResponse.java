@@ -0,0 +1,239 @@
+package com.scs.server;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Engine-neutral description of a response: status, headers and which byte ranges of which file
+ * make up the body. Each serving engine only decides how the bytes reach the socket.
+ */
+final class FileResponse {
+
+    private final int status;
+    private final Map<String, String> headers;
+    private final Path file;
+    private final Source source;
+    private final List<HttpRange> segments;
+    private final byte[][] partHeaders;
+    private final byte[] closing;
+    private DownloadAdmission.Slot slot;
+    private PublishedGenerations.Lease lease;
+
+    private FileResponse(
+            int status,
+            Map<String, String> headers,
+            Path file,
+            Source source,
+            List<HttpRange> segments,
+            byte[][] partHeaders,
+            byte[] closing
+    ) {
+        this.status = status;
+        this.headers = headers;
+        this.file = file;
+        this.source = source;
+        this.segments = segments;
+        this.partHeaders = partHeaders;
+        this.closing = closing;
+    }
+
+    /**
+     * Where the bytes of a body come from: the pieces that make up a segment, in order.
+     */
+    @FunctionalInterface
+    interface Source {
+        List<Piece> pieces(HttpRange segment);
+    }
+
+    /**
+     * A region of a file on disk, or bytes already in memory.
+     */
+    static final class Piece {
+        private final Path file;
+        private final long position;
+        private final long length;
+        private final ByteBuffer bytes;
+
+        private Piece(Path file, long position, long length, ByteBuffer bytes) {
+            this.file = file;
+            this.position = position;
+            this.length = length;
+            this.bytes = bytes;
+        }
+
+        static Piece ofFile(Path file, long position, long length) {
+            return new Piece(file, position, length, null);
+        }
+
+        static Piece ofBytes(ByteBuffer bytes) {
+            return new Piece(null, 0, bytes.remaining(), bytes);
+        }
+
+        boolean isInMemory() {
+            return bytes != null;
+        }
+
+        Path file() {
+            return file;
+        }
+
+        long position() {
+            return position;
+        }
+
+        long length() {
+            return length;
+        }
+
+        /**
+         * The in-memory bytes; only valid when {@link #isInMemory()}.
+         */
+        ByteBuffer bytes() {
+            return bytes.duplicate();
+        }
+
+        /**
+         * {@code size} bytes of this piece from {@code offset}.
+         */
+        Piece slice(long offset, long size) {
+            if (bytes == null) {
+                return ofFile(file, position + offset, size);
+            }
+            ByteBuffer view = bytes.duplicate();
+            view.position(view.position() + (int) offset);
+            view.limit(view.position() + (int) size);
+            return ofBytes(view.slice());
+        }
+    }
+
+    /**
+     * Reads segments straight from a file on disk.
+     */
+    static Source onDisk(Path file) {
+        return segment -> List.of(Piece.ofFile(file, segment.start(), segment.length()));
+    }
+
+    /**
+     * Serves segments from the whole content of a file, as held by the hot cache.
+     */
+    static Source inMemory(ByteBuffer content) {
+        return segment -> {
+            ByteBuffer view = content.duplicate();
+            view.limit((int) (segment.start() + segment.length()));
+            view.position((int) segment.start());
+            return List.of(Piece.ofBytes(view.slice()));
+        };
+    }
+
+    static FileResponse empty(int status, Map<String, String> headers) {
+        return new FileResponse(status, headers, null, null, Collections.emptyList(), null, null);
+    }
+
+    static FileResponse status(int status) {
+        return empty(status, new LinkedHashMap<>());
+    }
+
+    /**
+     * @param file the file served, named in logs; the bytes come from {@code source}.
+     */
+    static FileResponse file(int status, Map<String, String> headers, Path file, Source source, HttpRange segment) {
+        return new FileResponse(status, headers, file, source, List.of(segment), null, null);
+    }
+
+    static FileResponse multipart(
+            Map<String, String> headers,
+            Path file,
+            Source source,
+            List<HttpRange> segments,
+            byte[][] partHeaders,
+            byte[] closing
+    ) {
+        return new FileResponse(206, headers, file, source, segments, partHeaders, closing);
+    }
+
+    int status() {
+        return status;
+    }
+
+    Map<String, String> headers() {
+        return headers;
+    }
+
+    boolean hasBody() {
+        return file != null;
+    }
+
+    Path file() {
+        return file;
+    }
+
+    /**
+     * The pieces that make up a segment of the body.
+     */
+    List<Piece> pieces(HttpRange segment) {
+        return source.pieces(segment);
+    }
+
+    List<HttpRange> segments() {
+        return segments;
+    }
+
+    boolean isMultipart() {
+        return partHeaders != null;
+    }
+
+    /**
+     * Delimiter and part headers written before segment {@code index} of a multipart body.
+     */
+    byte[] partHeader(int index) {
+        return partHeaders[index];
+    }
+
+    byte[] closing() {
+        return closing;
+    }
+
+    /**
+     * Ties an admission slot to this response; engines call {@link #release()} once the body is done.
+     */
+    void attach(DownloadAdmission.Slot slot) {
+        this.slot = slot;
+    }
+
+    /**
+     * Keeps the generation the file belongs to until {@link #release()}.
+     */
+    void attach(PublishedGenerations.Lease lease) {
+        this.lease = lease;
+    }
+
+    void release() {
+        if (slot != null) {
+            slot.close();
+        }
+        if (lease != null) {
+            lease.close();
+        }
+    }
+
+    long contentLength() {
+        if (file == null) {
+            return -1;
+        }
+        long length = 0;
+        for (int i = 0; i < segments.size(); i++) {
+            length += segments.get(i).length();
+            if (partHeaders != null) {
+                length += partHeaders[i].length;
+            }
+        }
+        if (closing != null) {
+            length += closing.length;
+        }
+        return length;
+    }
+}
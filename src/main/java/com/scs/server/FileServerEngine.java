@@ -0,0 +1,13 @@
+package com.scs.server;
+
+import java.io.IOException;
+
+/**
+ * A transport that serves {@link FileRequestHandler} responses on a port.
+ */
+interface FileServerEngine {
+
+    void start(int port) throws IOException;
+
+    void stop();
+}
@@ -0,0 +1,233 @@
+package com.scs.server;
+
+import com.scs.core.Config;
+import com.scs.core.SCS;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Size-budgeted LRU cache of served files. Small files are copied into direct buffers, larger files
+ * that are requested repeatedly are memory-mapped. Published packs are never modified in place (each
+ * build is a new {@link PublishedGenerations generation}), so a rebuild leaves every entry valid;
+ * entries are only revalidated against file metadata after a short interval, to catch files
+ * replaced by hand.
+ */
+public final class HotFileCache {
+
+    private static final long REVALIDATE_INTERVAL_MS = 5_000;
+    private static final int HOT_REQUEST_THRESHOLD = 2;
+
+    private static final Map<Path, Entry> ENTRIES = new LinkedHashMap<>(16, 0.75f, true);
+    private static final Map<Path, Integer> LARGE_FILE_REQUESTS = new HashMap<>();
+    private static final LongAdder HITS = new LongAdder();
+    private static final LongAdder MISSES = new LongAdder();
+    private static long cachedBytes = 0;
+
+    private HotFileCache() {
+    }
+
+    static final class Entry {
+        private final ContentValidators.Validator validator;
+        private final ByteBuffer content;
+        private volatile long checkedAt;
+
+        private Entry(ContentValidators.Validator validator, ByteBuffer content) {
+            this.validator = validator;
+            this.content = content;
+            this.checkedAt = System.currentTimeMillis();
+        }
+
+        ContentValidators.Validator validator() {
+            return validator;
+        }
+
+        /**
+         * Read-only view of the whole file; callers slice their own ranges from it.
+         */
+        ByteBuffer content() {
+            return content.asReadOnlyBuffer();
+        }
+    }
+
+    /**
+     * Returns the cached file, loading it when it qualifies, or null when it should be read from disk.
+     */
+    static Entry get(Path file) throws IOException {
+        long budget = budgetBytes();
+        if (budget <= 0) {
+            clearIfPopulated();
+            return null;
+        }
+
+        Path key = file.toAbsolutePath().normalize();
+        Entry entry;
+        synchronized (HotFileCache.class) {
+            entry = ENTRIES.get(key);
+        }
+        if (entry != null && isStillValid(key, entry)) {
+            HITS.increment();
+            return entry;
+        }
+
+        MISSES.increment();
+        if (entry != null) {
+            remove(key);
+        }
+        if (!Files.isRegularFile(key)) {
+            return null;
+        }
+        return load(key, budget);
+    }
+
+    /**
+     * Drops the cached copy of a file that is being deleted, leaving every other entry valid.
+     */
+    static void forget(Path file) {
+        Path key = file.toAbsolutePath().normalize();
+        remove(key);
+        synchronized (HotFileCache.class) {
+            LARGE_FILE_REQUESTS.remove(key);
+        }
+    }
+
+    /**
+     * Logs the counters after a publication when {@code hotCacheLogStats} is on.
+     */
+    static void logStats() {
+        if (Config.hotCacheLogStats) {
+            SCS.LOGGER.info(describeStats());
+        }
+    }
+
+    public static String describeStats() {
+        long hits = HITS.sum();
+        long misses = MISSES.sum();
+        long total = hits + misses;
+        int entries;
+        long bytes;
+        synchronized (HotFileCache.class) {
+            entries = ENTRIES.size();
+            bytes = cachedBytes;
+        }
+        double hitRate = total > 0 ? (hits * 100.0) / total : 0.0;
+        return String.format("Hot cache: %d entries, %.1f/%d MB, %d hits, %d misses (%.1f%% hit rate)",
+                entries, bytes / (1024.0 * 1024.0), budgetBytes() / (1024 * 1024), hits, misses, hitRate);
+    }
+
+    private static boolean isStillValid(Path key, Entry entry) {
+        long now = System.currentTimeMillis();
+        if (now - entry.checkedAt < REVALIDATE_INTERVAL_MS) {
+            return true;
+        }
+        try {
+            long size = Files.size(key);
+            FileTime lastModified = Files.getLastModifiedTime(key);
+            if (size == entry.validator.size() && lastModified.equals(entry.validator.lastModified())) {
+                entry.checkedAt = now;
+                return true;
+            }
+        } catch (IOException ignored) {
+        }
+        return false;
+    }
+
+    private static Entry load(Path key, long budget) throws IOException {
+        long size = Files.size(key);
+        long maxDirectBytes = (long) Config.hotCacheMaxFileKb * 1024;
+        boolean mapped = size > maxDirectBytes;
+        if (size > budget || (mapped && !shouldMap(key, size, budget))) {
+            return null;
+        }
+
+        ContentValidators.Validator validator = ContentValidators.get(key);
+        ByteBuffer content;
+        try (FileChannel channel = FileChannel.open(key, StandardOpenOption.READ)) {
+            if (mapped) {
+                content = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            } else {
+                content = ByteBuffer.allocateDirect((int) size);
+                while (content.hasRemaining()) {
+                    if (channel.read(content) < 0) {
+                        break;
+                    }
+                }
+                content.flip();
+            }
+        }
+        if (content.remaining() != validator.size()) {
+            // The file changed while it was being read; serve it from disk this time.
+            return null;
+        }
+
+        Entry entry = new Entry(validator, content);
+        synchronized (HotFileCache.class) {
+            Entry previous = ENTRIES.put(key, entry);
+            if (previous != null) {
+                cachedBytes -= previous.validator.size();
+            }
+            cachedBytes += size;
+            evictOverBudget(budget);
+        }
+        return entry;
+    }
+
+    /**
+     * Large files are only mapped once they have proven hot, and never past half of the budget.
+     */
+    private static boolean shouldMap(Path key, long size, long budget) {
+        if (!Config.hotCacheMapLargeFiles || size > budget / 2 || size > Integer.MAX_VALUE) {
+            return false;
+        }
+        synchronized (HotFileCache.class) {
+            int requests = LARGE_FILE_REQUESTS.merge(key, 1, Integer::sum);
+            if (requests < HOT_REQUEST_THRESHOLD) {
+                return false;
+            }
+            LARGE_FILE_REQUESTS.remove(key);
+            return true;
+        }
+    }
+
+    private static void evictOverBudget(long budget) {
+        Iterator<Map.Entry<Path, Entry>> iterator = ENTRIES.entrySet().iterator();
+        while (cachedBytes > budget && iterator.hasNext()) {
+            Map.Entry<Path, Entry> eldest = iterator.next();
+            cachedBytes -= eldest.getValue().validator.size();
+            iterator.remove();
+        }
+    }
+
+    private static void remove(Path key) {
+        synchronized (HotFileCache.class) {
+            Entry removed = ENTRIES.remove(key);
+            if (removed != null) {
+                cachedBytes -= removed.validator.size();
+            }
+        }
+    }
+
+    private static void clearIfPopulated() {
+        synchronized (HotFileCache.class) {
+            if (!ENTRIES.isEmpty()) {
+                ENTRIES.clear();
+                LARGE_FILE_REQUESTS.clear();
+                cachedBytes = 0;
+            }
+        }
+    }
+
+    private static long budgetBytes() {
+        return (long) Config.hotCacheSizeMb * 1024 * 1024;
+    }
+}
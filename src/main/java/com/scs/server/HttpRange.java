@@ -0,0 +1,127 @@
+package com.scs.server;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A single satisfiable byte range of a served file, plus parsing for the HTTP Range header.
+ */
+public final class HttpRange {
+
+    private static final String BYTES_UNIT = "bytes=";
+    private static final int MAX_RANGES = 32;
+
+    private final long start;
+    private final long end;
+
+    public HttpRange(long start, long end) {
+        this.start = start;
+        this.end = end;
+    }
+
+    public long start() {
+        return start;
+    }
+
+    /**
+     * Last byte of the range, inclusive.
+     */
+    public long end() {
+        return end;
+    }
+
+    public long length() {
+        return end - start + 1;
+    }
+
+    public String toContentRange(long totalLength) {
+        return "bytes " + start + "-" + end + "/" + totalLength;
+    }
+
+    /**
+     * Parses a Range header against a file of the given length.
+     *
+     * Overlapping and adjacent ranges are merged, so the result is sorted by start and never
+     * covers a byte twice. A header asking for more than {@value #MAX_RANGES} ranges is ignored.
+     *
+     * @return null when the header is absent or malformed (serve the full file), an empty list when
+     *         no range is satisfiable (answer 416), otherwise the merged ranges.
+     */
+    public static List<HttpRange> parse(String header, long totalLength) {
+        if (header == null || header.isBlank()) {
+            return null;
+        }
+        String value = header.trim();
+        if (!value.toLowerCase(Locale.ROOT).startsWith(BYTES_UNIT)) {
+            return null;
+        }
+
+        String[] specs = value.substring(BYTES_UNIT.length()).split(",");
+        if (specs.length > MAX_RANGES) {
+            return null;
+        }
+
+        List<HttpRange> ranges = new ArrayList<>();
+        for (String rawSpec : specs) {
+            String spec = rawSpec.trim();
+            int dash = spec.indexOf('-');
+            if (dash < 0) {
+                return null;
+            }
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            try {
+                if (first.isEmpty()) {
+                    // Suffix range: the last N bytes.
+                    if (last.isEmpty()) {
+                        return null;
+                    }
+                    long suffix = Long.parseLong(last);
+                    if (suffix <= 0 || totalLength == 0) {
+                        continue;
+                    }
+                    long start = Math.max(0, totalLength - suffix);
+                    ranges.add(new HttpRange(start, totalLength - 1));
+                } else {
+                    long start = Long.parseLong(first);
+                    long end = last.isEmpty() ? totalLength - 1 : Long.parseLong(last);
+                    if (start < 0) {
+                        return null;
+                    }
+                    if (start >= totalLength) {
+                        // Unsatisfiable, and an open end would clamp below start.
+                        continue;
+                    }
+                    if (end < start) {
+                        return null;
+                    }
+                    ranges.add(new HttpRange(start, Math.min(end, totalLength - 1)));
+                }
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        return ranges.isEmpty() ? Collections.emptyList() : merge(ranges);
+    }
+
+    private static List<HttpRange> merge(List<HttpRange> ranges) {
+        ranges.sort(Comparator.comparingLong(HttpRange::start));
+        List<HttpRange> merged = new ArrayList<>();
+        HttpRange current = ranges.get(0);
+        for (int i = 1; i < ranges.size(); i++) {
+            HttpRange next = ranges.get(i);
+            if (next.start <= current.end + 1) {
+                current = new HttpRange(current.start, Math.max(current.end, next.end));
+            } else {
+                merged.add(current);
+                current = next;
+            }
+        }
+        merged.add(current);
+        return merged;
+    }
+}
@@ -0,0 +1,172 @@
+package com.scs.server;
+
+import com.scs.core.SCS;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Serving engine built on {@code com.sun.net.httpserver}, one pooled thread per transfer.
+ * Bodies are copied in {@link BandwidthLimiter#CHUNK_SIZE} steps; the thread sleeps when a limit is hit.
+ */
+final class JdkFileServerEngine implements FileServerEngine {
+
+    private HttpServer httpServer;
+    private ExecutorService executor;
+
+    @Override
+    public void start(int port) throws IOException {
+        // Create and configure the HTTP server
+        httpServer = HttpServer.create(new InetSocketAddress(port), 0);
+        httpServer.createContext("/", this::handleRequest);
+
+        executor = Executors.newCachedThreadPool(); // Enable concurrent downloads
+        httpServer.setExecutor(executor);
+        // Start the server on a separate thread
+        HttpServer server = httpServer;
+        new Thread(() -> {
+            server.start();
+            SCS.LOGGER.info("File hosting server started on port " + port);
+        }).start();
+    }
+
+    @Override
+    public void stop() {
+        if (httpServer != null) {
+            httpServer.stop(0);
+            httpServer = null;
+        }
+        if (executor != null) {
+            executor.shutdown();
+            executor = null;
+        }
+    }
+
+    private void handleRequest(HttpExchange exchange) {
+        FileResponse response = null;
+        try {
+            String requestPath = exchange.getRequestURI().getPath();
+            Map<String, String> query = FileRequestHandler.parseQuery(exchange.getRequestURI().getRawQuery());
+            response = FileRequestHandler.handle(requestPath, query::get, exchange.getRequestHeaders()::getFirst);
+            writeResponse(exchange, response);
+            if (response.hasBody()) {
+                SCS.LOGGER.info("Successfully served file: " + response.file());
+            }
+        } catch (Exception e) {
+            SCS.LOGGER.error("Error processing request", e);
+            try {
+                exchange.sendResponseHeaders(500, -1); // Internal Server Error
+            } catch (IOException ioException) {
+                SCS.LOGGER.error("Failed to send error response", ioException);
+            }
+        } finally {
+            if (response != null) {
+                response.release();
+            }
+            exchange.close();
+        }
+    }
+
+    private static void writeResponse(HttpExchange exchange, FileResponse response) throws IOException {
+        for (Map.Entry<String, String> header : response.headers().entrySet()) {
+            exchange.getResponseHeaders().add(header.getKey(), header.getValue());
+        }
+
+        long contentLength = response.contentLength();
+        if (!response.hasBody() || contentLength == 0) {
+            // A length of 0 would switch the JDK server to chunked encoding.
+            exchange.sendResponseHeaders(response.status(), -1);
+            return;
+        }
+
+        exchange.sendResponseHeaders(response.status(), contentLength);
+        try (BandwidthLimiter.Transfer transfer = BandwidthLimiter.open(clientAddress(exchange));
+             var os = exchange.getResponseBody()) {
+            WritableByteChannel target = Channels.newChannel(os);
+            for (int i = 0; i < response.segments().size(); i++) {
+                if (response.isMultipart()) {
+                    writeBytes(os, response.partHeader(i), transfer);
+                }
+                for (FileResponse.Piece piece : response.pieces(response.segments().get(i))) {
+                    if (piece.isInMemory()) {
+                        writeBuffer(piece.bytes(), target, transfer);
+                        continue;
+                    }
+                    try (FileChannel channel = FileChannel.open(piece.file(), StandardOpenOption.READ)) {
+                        copyRange(channel, piece.position(), piece.length(), target, transfer);
+                    }
+                }
+            }
+            if (response.isMultipart()) {
+                writeBytes(os, response.closing(), transfer);
+            }
+        }
+    }
+
+    private static void writeBuffer(ByteBuffer buffer, WritableByteChannel target, BandwidthLimiter.Transfer transfer) throws IOException {
+        while (buffer.hasRemaining()) {
+            ByteBuffer chunk = buffer.slice();
+            chunk.limit(Math.min(chunk.remaining(), BandwidthLimiter.CHUNK_SIZE));
+            acquire(transfer, chunk.remaining());
+            buffer.position(buffer.position() + chunk.remaining());
+            while (chunk.hasRemaining()) {
+                target.write(chunk);
+            }
+        }
+    }
+
+    private static void copyRange(
+            FileChannel channel,
+            long start,
+            long length,
+            WritableByteChannel target,
+            BandwidthLimiter.Transfer transfer
+    ) throws IOException {
+        long position = start;
+        long remaining = length;
+        while (remaining > 0) {
+            long chunk = Math.min(remaining, BandwidthLimiter.CHUNK_SIZE);
+            acquire(transfer, chunk);
+            long end = position + chunk;
+            while (position < end) {
+                long transferred = channel.transferTo(position, end - position, target);
+                if (transferred <= 0) {
+                    throw new IOException("Unexpected end of file while serving range");
+                }
+                position += transferred;
+            }
+            remaining -= chunk;
+        }
+    }
+
+    private static void writeBytes(OutputStream os, byte[] bytes, BandwidthLimiter.Transfer transfer) throws IOException {
+        acquire(transfer, bytes.length);
+        os.write(bytes);
+    }
+
+    private static void acquire(BandwidthLimiter.Transfer transfer, long bytes) throws IOException {
+        try {
+            transfer.acquire(bytes);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for bandwidth");
+        }
+    }
+
+    private static String clientAddress(HttpExchange exchange) {
+        InetSocketAddress remote = exchange.getRemoteAddress();
+        return remote == null || remote.getAddress() == null ? null : remote.getAddress().getHostAddress();
+    }
+}
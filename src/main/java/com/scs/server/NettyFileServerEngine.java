@@ -0,0 +1,410 @@
+package com.scs.server;
+
+import com.scs.core.SCS;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelProgressiveFuture;
+import io.netty.channel.ChannelProgressiveFutureListener;
+import io.netty.channel.ChannelProgressivePromise;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.DefaultFileRegion;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.DefaultHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.handler.codec.http.QueryStringDecoder;
+import io.netty.handler.timeout.IdleStateEvent;
+import io.netty.handler.timeout.IdleStateHandler;
+import io.netty.util.concurrent.DefaultEventExecutorGroup;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.concurrent.EventExecutorGroup;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serving engine on Netty event loops. File bodies are written as {@link DefaultFileRegion}s so the
+ * kernel copies them straight to the socket (sendfile); connections are kept alive between requests.
+ * Threads are bounded: one acceptor, {@code workerThreads} I/O loops and as many request planners,
+ * which keep hashing/filesystem lookups off the I/O loops. While a bandwidth limit is configured,
+ * bodies are paced in chunks instead of being handed to the kernel in one piece.
+ */
+final class NettyFileServerEngine implements FileServerEngine {
+
+    private static final int MAX_REQUEST_SIZE = 16 * 1024;
+    private static final int IDLE_TIMEOUT_SECONDS = 60;
+
+    private final int workerThreads;
+    private EventLoopGroup bossGroup;
+    private EventLoopGroup workerGroup;
+    private EventExecutorGroup requestGroup;
+    private Channel serverChannel;
+
+    NettyFileServerEngine(int workerThreads) {
+        this.workerThreads = Math.max(1, workerThreads);
+    }
+
+    @Override
+    public void start(int port) throws IOException {
+        bossGroup = new NioEventLoopGroup(1, new DefaultThreadFactory("scs-file-server-boss", true));
+        workerGroup = new NioEventLoopGroup(workerThreads, new DefaultThreadFactory("scs-file-server-io", true));
+        requestGroup = new DefaultEventExecutorGroup(workerThreads, new DefaultThreadFactory("scs-file-server-request", true));
+
+        ServerBootstrap bootstrap = new ServerBootstrap()
+                .group(bossGroup, workerGroup)
+                .channel(NioServerSocketChannel.class)
+                .childOption(ChannelOption.TCP_NODELAY, true)
+                .childHandler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel channel) {
+                        channel.pipeline().addLast(
+                                new IdleStateHandler(true, 0, 0, IDLE_TIMEOUT_SECONDS, TimeUnit.SECONDS),
+                                new HttpServerCodec(),
+                                new HttpObjectAggregator(MAX_REQUEST_SIZE)
+                        );
+                        channel.pipeline().addLast(requestGroup, "scs-request", new RequestHandler());
+                    }
+                });
+
+        try {
+            serverChannel = bootstrap.bind(port).sync().channel();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            stop();
+            throw new IOException("Interrupted while binding file server port " + port, e);
+        } catch (Exception e) {
+            stop();
+            throw new IOException("Failed to bind file server port " + port, e);
+        }
+        SCS.LOGGER.info("File hosting server (netty, {} worker threads) started on port {}", workerThreads, port);
+    }
+
+    @Override
+    public void stop() {
+        if (serverChannel != null) {
+            serverChannel.close().awaitUninterruptibly();
+            serverChannel = null;
+        }
+        if (bossGroup != null) {
+            bossGroup.shutdownGracefully(0, 2, TimeUnit.SECONDS);
+            bossGroup = null;
+        }
+        if (workerGroup != null) {
+            workerGroup.shutdownGracefully(0, 2, TimeUnit.SECONDS);
+            workerGroup = null;
+        }
+        if (requestGroup != null) {
+            requestGroup.shutdownGracefully(0, 2, TimeUnit.SECONDS);
+            requestGroup = null;
+        }
+    }
+
+    private static final class RequestHandler extends SimpleChannelInboundHandler<FullHttpRequest> {
+
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, FullHttpRequest request) {
+            if (!request.decoderResult().isSuccess()) {
+                sendStatus(ctx, HttpResponseStatus.BAD_REQUEST);
+                return;
+            }
+
+            boolean keepAlive = HttpUtil.isKeepAlive(request);
+            FileResponse response;
+            try {
+                QueryStringDecoder decoder = new QueryStringDecoder(request.uri());
+                Map<String, List<String>> query = decoder.parameters();
+                response = FileRequestHandler.handle(
+                        decoder.path(),
+                        name -> query.containsKey(name) ? query.get(name).get(0) : null,
+                        request.headers()::get
+                );
+            } catch (Exception e) {
+                SCS.LOGGER.error("Error processing request", e);
+                sendStatus(ctx, HttpResponseStatus.INTERNAL_SERVER_ERROR);
+                return;
+            }
+
+            HttpResponse head = new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.valueOf(response.status()));
+            for (Map.Entry<String, String> header : response.headers().entrySet()) {
+                head.headers().set(header.getKey(), header.getValue());
+            }
+            if (response.status() != 304) {
+                HttpUtil.setContentLength(head, Math.max(0, response.contentLength()));
+            }
+            HttpUtil.setKeepAlive(head, keepAlive);
+            ctx.write(head);
+
+            if (response.hasBody() && BandwidthLimiter.isActive()) {
+                new PacedBody(ctx, response, keepAlive, clientAddress(ctx)).start();
+                return;
+            }
+
+            BandwidthLimiter.Transfer transfer = null;
+            if (response.hasBody()) {
+                // Unlimited: bytes are counted as the socket takes them, so throughput and active
+                // transfers stay visible to TickThrottle for as long as the body is being sent.
+                transfer = BandwidthLimiter.open(clientAddress(ctx));
+                try {
+                    for (int i = 0; i < response.segments().size(); i++) {
+                        HttpRange segment = response.segments().get(i);
+                        if (response.isMultipart()) {
+                            writeCounted(ctx, transfer, Unpooled.wrappedBuffer(response.partHeader(i)), response.partHeader(i).length);
+                        }
+                        if (segment.length() <= 0) {
+                            continue;
+                        }
+                        for (FileResponse.Piece piece : response.pieces(segment)) {
+                            writeCounted(ctx, transfer, toMessage(piece), piece.length());
+                        }
+                    }
+                    if (response.isMultipart()) {
+                        writeCounted(ctx, transfer, Unpooled.wrappedBuffer(response.closing()), response.closing().length);
+                    }
+                } catch (RuntimeException e) {
+                    // The head is already written, so the only way to fail the response is to drop
+                    // the connection; the download slot, transfer and lease are released here.
+                    SCS.LOGGER.error("Failed to send " + response.file(), e);
+                    transfer.close();
+                    response.release();
+                    ctx.close();
+                    return;
+                }
+            }
+
+            ChannelFuture done = ctx.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT);
+            if (transfer != null) {
+                BandwidthLimiter.Transfer finished = transfer;
+                done.addListener(future -> {
+                    finished.close();
+                    response.release();
+                    if (future.isSuccess()) {
+                        SCS.LOGGER.info("Successfully served file: " + response.file());
+                    }
+                });
+            }
+            if (!keepAlive) {
+                done.addListener(ChannelFutureListener.CLOSE);
+            }
+        }
+
+        @Override
+        public void userEventTriggered(ChannelHandlerContext ctx, Object event) {
+            if (event instanceof IdleStateEvent) {
+                ctx.close();
+            }
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            SCS.LOGGER.debug("File server connection error", cause);
+            ctx.close();
+        }
+
+        /**
+         * Writes one message of an unpaced body and counts its bytes as the socket accepts them.
+         */
+        private static void writeCounted(ChannelHandlerContext ctx, BandwidthLimiter.Transfer transfer, Object message, long length) {
+            ChannelProgressivePromise promise = ctx.newProgressivePromise();
+            promise.addListener(new SentBytes(transfer, length));
+            ctx.write(message, promise);
+        }
+
+        private static void sendStatus(ChannelHandlerContext ctx, HttpResponseStatus status) {
+            FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, status, Unpooled.EMPTY_BUFFER);
+            HttpUtil.setContentLength(response, 0);
+            ctx.writeAndFlush(response).addListener(ChannelFutureListener.CLOSE);
+        }
+
+        private static String clientAddress(ChannelHandlerContext ctx) {
+            if (ctx.channel().remoteAddress() instanceof InetSocketAddress remote && remote.getAddress() != null) {
+                return remote.getAddress().getHostAddress();
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Counts one written message as it is flushed, the way {@link PacedBody} counts each chunk: a
+     * large file region is reported in the steps the kernel copies it in rather than in one piece.
+     */
+    private static final class SentBytes implements ChannelProgressiveFutureListener {
+        private final BandwidthLimiter.Transfer transfer;
+        private final long length;
+        private long counted;
+
+        private SentBytes(BandwidthLimiter.Transfer transfer, long length) {
+            this.transfer = transfer;
+            this.length = length;
+        }
+
+        @Override
+        public void operationProgressed(ChannelProgressiveFuture future, long progress, long total) {
+            count(Math.min(progress, length));
+        }
+
+        @Override
+        public void operationComplete(ChannelProgressiveFuture future) {
+            if (future.isSuccess()) {
+                count(length);
+            }
+        }
+
+        private void count(long sent) {
+            if (sent > counted) {
+                transfer.reserve(sent - counted);
+                counted = sent;
+            }
+        }
+    }
+
+    /**
+     * Bytes in memory are wrapped; file regions are left for the kernel to copy.
+     */
+    private static Object toMessage(FileResponse.Piece piece) {
+        return piece.isInMemory()
+                ? Unpooled.wrappedBuffer(piece.bytes())
+                : new DefaultFileRegion(piece.file().toFile(), piece.position(), piece.length());
+    }
+
+    /**
+     * Writes a body one {@link BandwidthLimiter#CHUNK_SIZE} piece at a time, scheduling the next piece
+     * once the limiter allows it instead of blocking the executor. Reading is paused meanwhile so a
+     * pipelined request cannot interleave its response with this one.
+     */
+    private static final class PacedBody {
+        private final ChannelHandlerContext ctx;
+        private final FileResponse response;
+        private final boolean keepAlive;
+        private final BandwidthLimiter.Transfer transfer;
+        private int segmentIndex;
+        private List<FileResponse.Piece> pieces;
+        private int pieceIndex;
+        private long pieceOffset;
+        private boolean partHeaderSent;
+        private boolean closingSent;
+        private long pieceSize;
+
+        private PacedBody(ChannelHandlerContext ctx, FileResponse response, boolean keepAlive, String clientAddress) {
+            this.ctx = ctx;
+            this.response = response;
+            this.keepAlive = keepAlive;
+            this.transfer = BandwidthLimiter.open(clientAddress);
+        }
+
+        void start() {
+            ctx.channel().config().setAutoRead(false);
+            writeNext();
+        }
+
+        private void writeNext() {
+            Object piece;
+            try {
+                piece = nextPiece();
+            } catch (RuntimeException e) {
+                SCS.LOGGER.error("Failed to send " + response.file(), e);
+                abort();
+                return;
+            }
+            if (piece == null) {
+                finish();
+                return;
+            }
+            long wait = transfer.reserve(pieceSize);
+            if (wait > 0) {
+                ctx.executor().schedule(() -> write(piece), wait, TimeUnit.NANOSECONDS);
+            } else {
+                write(piece);
+            }
+        }
+
+        private void write(Object piece) {
+            ctx.writeAndFlush(piece).addListener(future -> {
+                if (future.isSuccess()) {
+                    writeNext();
+                } else {
+                    abort();
+                }
+            });
+        }
+
+        private void abort() {
+            transfer.close();
+            response.release();
+            ctx.close();
+        }
+
+        private Object nextPiece() {
+            while (segmentIndex < response.segments().size()) {
+                HttpRange segment = response.segments().get(segmentIndex);
+                if (response.isMultipart() && !partHeaderSent) {
+                    partHeaderSent = true;
+                    byte[] partHeader = response.partHeader(segmentIndex);
+                    pieceSize = partHeader.length;
+                    return Unpooled.wrappedBuffer(partHeader);
+                }
+                if (pieces == null) {
+                    pieces = segment.length() > 0 ? response.pieces(segment) : List.of();
+                }
+                while (pieceIndex < pieces.size()) {
+                    FileResponse.Piece piece = pieces.get(pieceIndex);
+                    long remaining = piece.length() - pieceOffset;
+                    if (remaining > 0) {
+                        int size = (int) Math.min(remaining, BandwidthLimiter.CHUNK_SIZE);
+                        FileResponse.Piece chunk = piece.slice(pieceOffset, size);
+                        pieceOffset += size;
+                        pieceSize = size;
+                        return toMessage(chunk);
+                    }
+                    pieceIndex++;
+                    pieceOffset = 0;
+                }
+                segmentIndex++;
+                pieces = null;
+                pieceIndex = 0;
+                partHeaderSent = false;
+            }
+            if (response.isMultipart() && !closingSent) {
+                closingSent = true;
+                pieceSize = response.closing().length;
+                return Unpooled.wrappedBuffer(response.closing());
+            }
+            return null;
+        }
+
+        private void finish() {
+            ChannelFuture done = ctx.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT);
+            done.addListener(future -> {
+                transfer.close();
+                response.release();
+                if (future.isSuccess()) {
+                    SCS.LOGGER.info("Successfully served file: " + response.file());
+                }
+            });
+            if (keepAlive) {
+                done.addListener(future -> ctx.channel().config().setAutoRead(true));
+            } else {
+                done.addListener(ChannelFutureListener.CLOSE);
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.scs.server;
+
+import com.scs.core.SCS;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.regex.Pattern;
+
+/**
+ * Content-addressed copies of every file published in a pack, stored beside {@code SCS/shared-files}
+ * as {@code SCS/objects/<first two hex digits>/<sha256>} and served at {@code /objects/<sha256>}.
+ * Objects never change once written, so clients fetch only the hashes they do not already hold.
+ */
+public final class ObjectStore {
+
+    public static final Path DIRECTORY = Path.of("SCS/objects");
+    static final String URL_PREFIX = "/objects/";
+
+    private static final Pattern SHA256 = Pattern.compile("[0-9a-f]{64}");
+
+    private ObjectStore() {
+    }
+
+    /**
+     * Path of the object for a hash, or null when the string is not a lower-case SHA-256.
+     */
+    static Path resolve(String sha256) {
+        if (sha256 == null || !SHA256.matcher(sha256).matches()) {
+            return null;
+        }
+        return DIRECTORY.resolve(sha256.substring(0, 2)).resolve(sha256);
+    }
+
+    /**
+     * Copies a published file into the store unless its object already exists. The copy is hashed
+     * again and dropped if the file changed after it was zipped, so an object always matches its name.
+     * Returns false in that case, true when the object is in the store.
+     */
+    public static boolean storeIfAbsent(Path file, String sha256, long size) throws IOException {
+        Path target = resolve(sha256);
+        if (target == null) {
+            throw new IOException("Invalid object hash " + sha256);
+        }
+        if (Files.isRegularFile(target) && Files.size(target) == size) {
+            return true;
+        }
+
+        Files.createDirectories(target.getParent());
+        Path temp = Files.createTempFile(target.getParent(), sha256, ".tmp");
+        try {
+            MessageDigest digest = newDigest();
+            try (InputStream in = Files.newInputStream(file); OutputStream out = Files.newOutputStream(temp)) {
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    digest.update(buffer, 0, read);
+                    out.write(buffer, 0, read);
+                }
+            }
+            if (!HexFormat.of().formatHex(digest.digest()).equals(sha256)) {
+                SCS.LOGGER.warn("{} changed while the pack was built; not storing object {}", file, sha256);
+                return false;
+            }
+            try {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return true;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
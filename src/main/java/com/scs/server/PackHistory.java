@@ -0,0 +1,296 @@
+package com.scs.server;
+
+import com.google.gson.Gson;
+import com.scs.core.CompressionPolicy;
+import com.scs.core.Config;
+import com.scs.core.PackManifest;
+import com.scs.core.SCS;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Keeps the manifests of the last {@code packHistoryGenerations} generations of each pack under
+ * {@code SCS/history} and builds delta archives between them on demand. A delta holds the files added
+ * or modified in the newer generation, read from the {@link ObjectStore}, plus {@value #DELTA_INFO_NAME}
+ * listing the removed paths, each compressed by {@code packCompressionRules} like the packs. Deltas
+ * are cached under {@code SCS/deltas} and dropped with their generations; each is built once, and
+ * building one never holds up requests for another.
+ */
+public final class PackHistory {
+
+    public static final String DELTA_INFO_NAME = "scs-delta.json";
+    static final String URL_PATH = "/delta";
+
+    private static final Path HISTORY_DIRECTORY = Path.of("SCS/history");
+    private static final Path DELTA_DIRECTORY = Path.of("SCS/deltas");
+    private static final Pattern PACK_NAME = Pattern.compile("[a-z0-9_-]+");
+    private static final Pattern HISTORY_FILE = Pattern.compile("([a-z0-9_-]+)-(\\d+)\\.manifest\\.json");
+    private static final Pattern DELTA_FILE = Pattern.compile("([a-z0-9_-]+)-(\\d+)-(\\d+)\\.zip");
+    /**
+     * One lock per delta being built, so requests for different deltas never wait on each other.
+     */
+    private static final Map<Path, Object> BUILDING = new ConcurrentHashMap<>();
+    private static final Gson GSON = new Gson();
+
+    private PackHistory() {
+    }
+
+    /**
+     * Highest generation recorded for the pack, or 0 when there is no history.
+     */
+    public static long latestGeneration(String pack) {
+        List<Long> generations = generations(pack);
+        return generations.isEmpty() ? 0 : generations.get(generations.size() - 1);
+    }
+
+    /**
+     * Manifests of the generations still in the history, oldest first; unreadable ones are skipped.
+     */
+    public static List<PackManifest> recent(String pack) {
+        List<PackManifest> manifests = new ArrayList<>();
+        for (long generation : generations(pack)) {
+            try {
+                PackManifest manifest = PackManifest.read(historyPath(pack, generation));
+                if (manifest != null) {
+                    manifests.add(manifest);
+                }
+            } catch (IOException e) {
+                SCS.LOGGER.warn("Skipping unreadable {} generation {}", pack, generation, e);
+            }
+        }
+        return manifests;
+    }
+
+    /**
+     * Manifests of every generation of every pack still in the history; unreadable ones are skipped.
+     */
+    static List<PackManifest> retained() {
+        List<PackManifest> manifests = new ArrayList<>();
+        if (!Files.isDirectory(HISTORY_DIRECTORY)) {
+            return manifests;
+        }
+        try (Stream<Path> files = Files.list(HISTORY_DIRECTORY)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (!HISTORY_FILE.matcher(file.getFileName().toString()).matches()) {
+                    continue;
+                }
+                try {
+                    PackManifest manifest = PackManifest.read(file);
+                    if (manifest != null) {
+                        manifests.add(manifest);
+                    }
+                } catch (IOException e) {
+                    SCS.LOGGER.warn("Skipping unreadable {}", file.getFileName(), e);
+                }
+            }
+        } catch (IOException e) {
+            SCS.LOGGER.warn("Failed to list the pack history", e);
+        }
+        return manifests;
+    }
+
+    /**
+     * Stores a published manifest and prunes generations (and their deltas) beyond the configured history.
+     */
+    public static void record(PackManifest manifest) {
+        try {
+            manifest.write(historyPath(manifest.pack(), manifest.generation()));
+            List<Long> generations = generations(manifest.pack());
+            int excess = generations.size() - Math.max(1, Config.packHistoryGenerations);
+            for (int i = 0; i < excess; i++) {
+                prune(manifest.pack(), generations.get(i));
+            }
+        } catch (IOException e) {
+            SCS.LOGGER.warn("Failed to record {} generation {}", manifest.pack(), manifest.generation(), e);
+        }
+    }
+
+    /**
+     * Returns the cached delta archive between two generations, building it on first use, or null
+     * when either generation is no longer (or never was) in the history.
+     */
+    static Path delta(String pack, long from, long to) throws IOException {
+        Path target = deltaPath(pack, from, to);
+        if (target == null) {
+            return null;
+        }
+        if (Files.isRegularFile(target)) {
+            return target;
+        }
+        Object lock = BUILDING.computeIfAbsent(target, key -> new Object());
+        try {
+            synchronized (lock) {
+                if (Files.isRegularFile(target)) {
+                    return target;
+                }
+                PackManifest base = PackManifest.read(historyPath(pack, from));
+                PackManifest current = PackManifest.read(historyPath(pack, to));
+                if (base == null || current == null) {
+                    return null;
+                }
+                build(base, current, target);
+                return target;
+            }
+        } finally {
+            BUILDING.remove(target, lock);
+        }
+    }
+
+    /**
+     * Whether the delta between two generations is already cached, so serving it builds nothing.
+     */
+    static boolean isBuilt(String pack, long from, long to) {
+        Path target = deltaPath(pack, from, to);
+        return target != null && Files.isRegularFile(target);
+    }
+
+    private static Path deltaPath(String pack, long from, long to) {
+        if (pack == null || !PACK_NAME.matcher(pack).matches() || from < 1 || to <= from) {
+            return null;
+        }
+        return DELTA_DIRECTORY.resolve(pack + "-" + from + "-" + to + ".zip");
+    }
+
+    private static void build(PackManifest base, PackManifest current, Path target) throws IOException {
+        Map<String, PackManifest.Entry> before = base.entriesByPath();
+        List<PackManifest.Entry> changed = new ArrayList<>();
+        for (PackManifest.Entry entry : current.entries()) {
+            PackManifest.Entry previous = before.remove(entry.path());
+            if (previous == null || !previous.sha256().equals(entry.sha256())) {
+                changed.add(entry);
+            }
+        }
+        // Whatever is left in the base generation was removed.
+        List<String> removed = new ArrayList<>(before.keySet());
+
+        CompressionPolicy policy = CompressionPolicy.fromConfig();
+        Files.createDirectories(target.getParent());
+        Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+        try {
+            try (ZipOutputStream zipOut = new ZipOutputStream(Files.newOutputStream(temp))) {
+                for (PackManifest.Entry entry : changed) {
+                    Path object = ObjectStore.resolve(entry.sha256());
+                    if (object == null || !Files.isRegularFile(object)) {
+                        throw new IOException("Object " + entry.sha256() + " for " + entry.path() + " is missing");
+                    }
+                    zipOut.putNextEntry(newEntry(entry, object, policy, zipOut));
+                    try (InputStream in = Files.newInputStream(object)) {
+                        in.transferTo(zipOut);
+                    }
+                    zipOut.closeEntry();
+                }
+                zipOut.setLevel(Deflater.DEFAULT_COMPRESSION);
+                zipOut.putNextEntry(new ZipEntry(DELTA_INFO_NAME));
+                zipOut.write(GSON.toJson(new DeltaInfo(base.generation(), current.generation(), removed))
+                        .getBytes(StandardCharsets.UTF_8));
+                zipOut.closeEntry();
+            }
+            try {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        SCS.LOGGER.info("Built {} delta {} -> {}: {} changed, {} removed.",
+                current.pack(), base.generation(), current.generation(), changed.size(), removed.size());
+    }
+
+    /**
+     * Contents of {@value #DELTA_INFO_NAME}.
+     */
+    private static final class DeltaInfo {
+        private final long from;
+        private final long to;
+        private final List<String> removed;
+
+        private DeltaInfo(long from, long to, List<String> removed) {
+            this.from = from;
+            this.to = to;
+            this.removed = removed;
+        }
+    }
+
+    /**
+     * Entry compressed as the pack build would ({@code packCompressionRules}): jars and other
+     * already-compressed files are stored, using the size and CRC32 from the manifest.
+     */
+    private static ZipEntry newEntry(PackManifest.Entry entry, Path object, CompressionPolicy policy, ZipOutputStream zipOut) throws IOException {
+        CompressionPolicy.Compression compression = policy.forEntry(entry.path());
+        if (compression.isSampled()) {
+            byte[] sample = new byte[CompressionPolicy.SAMPLE_SIZE];
+            int length;
+            try (InputStream in = Files.newInputStream(object)) {
+                length = in.readNBytes(sample, 0, sample.length);
+            }
+            compression = compression.resolve(sample, length);
+        }
+        ZipEntry zipEntry = new ZipEntry(entry.path());
+        if (compression.isStored()) {
+            zipEntry.setMethod(ZipEntry.STORED);
+            zipEntry.setSize(entry.size());
+            zipEntry.setCompressedSize(entry.size());
+            zipEntry.setCrc(entry.crc32());
+        } else {
+            zipEntry.setMethod(ZipEntry.DEFLATED);
+            zipOut.setLevel(compression.level());
+        }
+        return zipEntry;
+    }
+
+    private static void prune(String pack, long generation) throws IOException {
+        Files.deleteIfExists(historyPath(pack, generation));
+        if (Files.isDirectory(DELTA_DIRECTORY)) {
+            try (Stream<Path> files = Files.list(DELTA_DIRECTORY)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    Matcher matcher = DELTA_FILE.matcher(file.getFileName().toString());
+                    if (matcher.matches() && matcher.group(1).equals(pack)
+                            && (Long.parseLong(matcher.group(2)) == generation || Long.parseLong(matcher.group(3)) == generation)) {
+                        Files.deleteIfExists(file);
+                    }
+                }
+            }
+        }
+        SCS.LOGGER.info("Pruned {} generation {} from the pack history.", pack, generation);
+    }
+
+    private static List<Long> generations(String pack) {
+        List<Long> generations = new ArrayList<>();
+        if (!Files.isDirectory(HISTORY_DIRECTORY)) {
+            return generations;
+        }
+        try (Stream<Path> files = Files.list(HISTORY_DIRECTORY)) {
+            files.forEach(file -> {
+                Matcher matcher = HISTORY_FILE.matcher(file.getFileName().toString());
+                if (matcher.matches() && matcher.group(1).equals(pack)) {
+                    generations.add(Long.parseLong(matcher.group(2)));
+                }
+            });
+        } catch (IOException e) {
+            SCS.LOGGER.warn("Failed to list the pack history", e);
+        }
+        generations.sort(null);
+        return generations;
+    }
+
+    private static Path historyPath(String pack, long generation) {
+        return HISTORY_DIRECTORY.resolve(pack + "-" + generation + ".manifest.json");
+    }
+}
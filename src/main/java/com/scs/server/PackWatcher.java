@@ -0,0 +1,299 @@
+package com.scs.server;
+
+import com.scs.core.Config;
+import com.scs.core.HostedPacks;
+import com.scs.core.ModGroups;
+import com.scs.core.PackIgnore;
+import com.scs.core.PackManifest;
+import com.scs.core.RegisterCommands;
+import com.scs.core.SCS;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Rebuilds mods.zip and config.zip when the files behind them change. One daemon thread watches
+ * {@code mods/} and {@code config/}, and those of every {@link HostedPacks hosted pack} (every
+ * subdirectory, since a {@link WatchService} is not recursive), and collects events per pack. A
+ * pack is rebuilt once no event has arrived for {@link Config#autoRebuildDelaySeconds}, or after
+ * ten times that if changes never stop, and never sooner than
+ * {@link Config#autoRebuildMinIntervalSeconds} after its last automatic build. Builds go through
+ * {@link RegisterCommands#saveModsToZip} and {@link RegisterCommands#saveConfigToZip} exactly like
+ * the commands, so a burst that ends up changing nothing costs one skipped build. Paths excluded
+ * by a pack's {@link PackIgnore .scsignore} are not changes; editing that file reloads it and is
+ * one. The watcher is restarted when the hosted packs change.
+ */
+public final class PackWatcher {
+
+    private static final long MAX_DELAY_FACTOR = 10;
+
+    private static WatchService watchService;
+    private static Thread thread;
+    /**
+     * The hosted packs the running watcher covers, as {@code <name>=<root>}.
+     */
+    private static List<String> watchedHosted = List.of();
+
+    private PackWatcher() {
+    }
+
+    /**
+     * A watched folder and the events not yet turned into a build.
+     */
+    private static final class WatchedPack {
+        private final String name;
+        private final Path root;
+        private final Predicate<Path> relevant;
+        private final Runnable build;
+        private PackIgnore ignore = PackIgnore.NONE;
+        private long firstChangeAt = -1;
+        private long lastChangeAt = -1;
+        private long lastBuildAt = Long.MIN_VALUE / 2;
+
+        private WatchedPack(String name, Path root, Predicate<Path> relevant, Runnable build) {
+            this.name = name;
+            this.root = root;
+            this.relevant = relevant;
+            this.build = build;
+        }
+
+        private void changed(long now) {
+            if (firstChangeAt < 0) {
+                firstChangeAt = now;
+            }
+            lastChangeAt = now;
+        }
+
+        /**
+         * Re-reads the pack's {@code .scsignore}; a file that cannot be read ignores nothing, like
+         * a missing one, and the build reports the error.
+         */
+        private void loadIgnore() {
+            try {
+                ignore = PackIgnore.load(root);
+            } catch (IOException e) {
+                SCS.LOGGER.warn("Cannot read {}; watching every file in {}/.", root.resolve(PackIgnore.FILE_NAME), root, e);
+                ignore = PackIgnore.NONE;
+            }
+        }
+
+        /**
+         * True when a change to this path can alter the pack: it passes the pack's filter and is
+         * not excluded by its {@code .scsignore}. A change to the ignore file itself reloads it and
+         * always counts, since it changes what the pack holds.
+         */
+        private boolean isRelevant(Path path) {
+            if (path.equals(root.resolve(PackIgnore.FILE_NAME))) {
+                loadIgnore();
+                return true;
+            }
+            if (!relevant.test(path)) {
+                return false;
+            }
+            String relativePath = root.relativize(path).toString().replace('\\', '/');
+            return !ignore.matchesPath(relativePath);
+        }
+
+        private boolean isPending() {
+            return lastChangeAt >= 0;
+        }
+
+        /**
+         * Time at which the pending changes may be built.
+         */
+        private long dueAt() {
+            long delay = TimeUnit.SECONDS.toMillis(Config.autoRebuildDelaySeconds);
+            long settled = Math.min(lastChangeAt + delay, firstChangeAt + delay * MAX_DELAY_FACTOR);
+            return Math.max(settled, lastBuildAt + TimeUnit.SECONDS.toMillis(Config.autoRebuildMinIntervalSeconds));
+        }
+    }
+
+    /**
+     * Starts or stops the watcher to match {@link Config#autoRebuild}, and restarts it when the
+     * hosted packs it watches no longer match {@link Config#hostedPacks}.
+     */
+    public static synchronized void applyConfig() {
+        if (Config.autoRebuild) {
+            if (thread != null && !hostedRules(HostedPacks.fromConfig()).equals(watchedHosted)) {
+                SCS.LOGGER.info("Hosted packs changed; restarting the pack watcher.");
+                stop();
+            }
+            start();
+        } else {
+            stop();
+        }
+    }
+
+    private static synchronized void start() {
+        if (thread != null) {
+            return;
+        }
+        WatchService service;
+        try {
+            service = FileSystems.getDefault().newWatchService();
+        } catch (IOException e) {
+            SCS.LOGGER.error("Cannot watch the mods and config folders; packs are only rebuilt by command.", e);
+            return;
+        }
+        List<WatchedPack> packs = new ArrayList<>();
+        packs.add(new WatchedPack(PackManifest.MODS, RegisterCommands.MODS_FOLDER, PackWatcher::isModsFile, RegisterCommands::saveModsToZip));
+        packs.add(new WatchedPack(PackManifest.CONFIG, RegisterCommands.CONFIG_FOLDER, path -> true, RegisterCommands::saveConfigToZip));
+        List<HostedPacks.Pack> hostedPacks = HostedPacks.fromConfig();
+        for (HostedPacks.Pack hosted : hostedPacks) {
+            packs.add(new WatchedPack(hosted.packId(PackManifest.MODS), hosted.modsFolder(), PackWatcher::isModsFile,
+                    () -> RegisterCommands.saveHostedModsToZip(hosted)));
+            packs.add(new WatchedPack(hosted.packId(PackManifest.CONFIG), hosted.configFolder(), path -> true,
+                    () -> RegisterCommands.saveHostedConfigToZip(hosted)));
+        }
+        watchService = service;
+        watchedHosted = hostedRules(hostedPacks);
+        thread = new Thread(() -> run(service, packs), "scs-pack-watcher");
+        thread.setDaemon(true);
+        thread.start();
+        SCS.LOGGER.info("Watching {} and {} for changes, and {} hosted pack(s).",
+                RegisterCommands.MODS_FOLDER, RegisterCommands.CONFIG_FOLDER, (packs.size() - 2) / 2);
+    }
+
+    private static List<String> hostedRules(List<HostedPacks.Pack> hostedPacks) {
+        List<String> rules = new ArrayList<>();
+        for (HostedPacks.Pack hosted : hostedPacks) {
+            rules.add(hosted.name() + "=" + hosted.root());
+        }
+        return rules;
+    }
+
+    private static boolean isModsFile(Path path) {
+        return path.toString().endsWith(".jar")
+                || path.getFileName().toString().equals(PackIgnore.FILE_NAME)
+                || path.getFileName().toString().equals(ModGroups.FILE_NAME)
+                || !Files.isRegularFile(path);
+    }
+
+    public static synchronized void stop() {
+        if (thread == null) {
+            return;
+        }
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            SCS.LOGGER.warn("Failed to close the pack watcher.", e);
+        }
+        thread.interrupt();
+        thread = null;
+        watchService = null;
+        watchedHosted = List.of();
+        SCS.LOGGER.info("Stopped watching the mods and config folders.");
+    }
+
+    private static void run(WatchService service, List<WatchedPack> packs) {
+        Map<WatchKey, WatchedPack> keys = new HashMap<>();
+        long now = System.currentTimeMillis();
+        for (WatchedPack pack : packs) {
+            pack.loadIgnore();
+            register(service, keys, pack, pack.root);
+            // Files may have changed while the server was down; the build skips itself if not.
+            pack.changed(now);
+        }
+        try {
+            while (true) {
+                long dueAt = Long.MAX_VALUE;
+                for (WatchedPack pack : packs) {
+                    if (pack.isPending()) {
+                        dueAt = Math.min(dueAt, pack.dueAt());
+                    }
+                }
+                WatchKey key = dueAt == Long.MAX_VALUE
+                        ? service.take()
+                        : service.poll(Math.max(0, dueAt - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+                while (key != null) {
+                    handle(service, keys, key);
+                    key = service.poll();
+                }
+                now = System.currentTimeMillis();
+                for (WatchedPack pack : packs) {
+                    if (pack.isPending() && pack.dueAt() <= now) {
+                        SCS.LOGGER.info("Changes detected in {}/, rebuilding {}.zip.", pack.root, pack.name);
+                        pack.firstChangeAt = -1;
+                        pack.lastChangeAt = -1;
+                        pack.lastBuildAt = now;
+                        pack.build.run();
+                    }
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Stopped.
+        }
+    }
+
+    private static void handle(WatchService service, Map<WatchKey, WatchedPack> keys, WatchKey key) {
+        WatchedPack pack = keys.get(key);
+        if (pack == null) {
+            key.cancel();
+            return;
+        }
+        Path directory = (Path) key.watchable();
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                // Events were lost, possibly including new directories and ignore file edits.
+                pack.loadIgnore();
+                register(service, keys, pack, pack.root);
+                pack.changed(System.currentTimeMillis());
+                continue;
+            }
+            Path path = directory.resolve((Path) event.context());
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(path)) {
+                register(service, keys, pack, path);
+            }
+            if (pack.isRelevant(path)) {
+                pack.changed(System.currentTimeMillis());
+            }
+        }
+        if (!key.reset()) {
+            keys.remove(key);
+        }
+    }
+
+    /**
+     * Watches a directory and everything below it. Directories already watched keep their key.
+     */
+    private static void register(WatchService service, Map<WatchKey, WatchedPack> keys, WatchedPack pack, Path start) {
+        if (!Files.isDirectory(start)) {
+            return;
+        }
+        try {
+            Files.walkFileTree(start, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path directory, BasicFileAttributes attributes) throws IOException {
+                    keys.put(directory.register(service,
+                            StandardWatchEventKinds.ENTRY_CREATE,
+                            StandardWatchEventKinds.ENTRY_DELETE,
+                            StandardWatchEventKinds.ENTRY_MODIFY), pack);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            SCS.LOGGER.warn("Cannot watch {} for changes.", start, e);
+        }
+    }
+}
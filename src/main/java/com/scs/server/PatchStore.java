@@ -0,0 +1,120 @@
+package com.scs.server;
+
+import com.scs.core.BinaryPatch;
+import com.scs.core.SCS;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.regex.Pattern;
+
+/**
+ * Binary patches between two objects of the {@link ObjectStore}, stored as
+ * {@code SCS/patches/<from sha256>-<to sha256>} and served at {@code /patches/<from>-<to>}. A pair
+ * whose patch is not worth keeping is remembered by an empty {@code <from>-<to>.rejected} marker so
+ * later builds do not diff it again.
+ */
+public final class PatchStore {
+
+    public static final Path DIRECTORY = Path.of("SCS/patches");
+    static final String URL_PREFIX = "/patches/";
+
+    private static final Pattern PATCH_NAME = Pattern.compile("[0-9a-f]{64}-[0-9a-f]{64}");
+    /**
+     * A patch is only kept when it is at most this fraction of the full file, otherwise the client
+     * might as well download the object.
+     */
+    private static final double MAX_PATCH_RATIO = 0.5;
+    static final String REJECTED_SUFFIX = ".rejected";
+
+    private PatchStore() {
+    }
+
+    /**
+     * Path of the patch for a {@code <from>-<to>} name, or null when the name is malformed.
+     */
+    static Path resolve(String name) {
+        if (name == null || !PATCH_NAME.matcher(name).matches()) {
+            return null;
+        }
+        return DIRECTORY.resolve(name);
+    }
+
+    /**
+     * Whether the patch from one object to another has already been created.
+     */
+    public static boolean exists(String fromSha256, String toSha256) {
+        Path target = resolve(fromSha256 + "-" + toSha256);
+        return target != null && Files.isRegularFile(target);
+    }
+
+    /**
+     * Makes sure a patch from one object to another exists. Returns false when either object is
+     * missing, the files are too large to diff, or the patch would not save enough to be worth it;
+     * the last two are remembered, so the pair is not diffed again.
+     */
+    public static boolean create(String fromSha256, String toSha256) {
+        String name = fromSha256 + "-" + toSha256;
+        Path target = resolve(name);
+        Path from = ObjectStore.resolve(fromSha256);
+        Path to = ObjectStore.resolve(toSha256);
+        if (target == null || from == null || to == null) {
+            return false;
+        }
+        if (Files.isRegularFile(target)) {
+            return true;
+        }
+        Path rejected = DIRECTORY.resolve(name + REJECTED_SUFFIX);
+        if (Files.exists(rejected)) {
+            return false;
+        }
+        try {
+            if (!Files.isRegularFile(from) || !Files.isRegularFile(to)) {
+                return false;
+            }
+            if (Files.size(from) > BinaryPatch.MAX_DIFF_SIZE || Files.size(to) > BinaryPatch.MAX_DIFF_SIZE) {
+                reject(rejected);
+                return false;
+            }
+            Files.createDirectories(DIRECTORY);
+            Path temp = Files.createTempFile(DIRECTORY, toSha256, ".tmp");
+            try {
+                try (OutputStream out = Files.newOutputStream(temp)) {
+                    BinaryPatch.diff(from, to, out);
+                }
+                long patchSize = Files.size(temp);
+                long fullSize = Files.size(to);
+                if (patchSize > fullSize * MAX_PATCH_RATIO) {
+                    SCS.LOGGER.debug("Patch {} -> {} saves too little ({} of {} bytes)", fromSha256, toSha256, patchSize, fullSize);
+                    reject(rejected);
+                    return false;
+                }
+                try {
+                    Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+                }
+                SCS.LOGGER.info("Created patch {} -> {} ({} of {} bytes)", fromSha256, toSha256, patchSize, fullSize);
+                return true;
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            SCS.LOGGER.warn("Failed to create patch {} -> {}", fromSha256, toSha256, e);
+            return false;
+        }
+    }
+
+    private static void reject(Path marker) throws IOException {
+        Files.createDirectories(DIRECTORY);
+        try {
+            Files.createFile(marker);
+        } catch (FileAlreadyExistsException e) {
+            // Another build rejected the same pair.
+        }
+    }
+}
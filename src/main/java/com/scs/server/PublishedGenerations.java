@@ -0,0 +1,390 @@
+package com.scs.server;
+
+import com.scs.core.SCS;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The published pack files (mods.zip, config.zip and their manifests, or only the manifest of a
+ * {@link StreamedZip streamed} pack), kept as numbered, immutable generations under
+ * {@code SCS/shared-files/gen-<n>/}. The file {@code SCS/shared-files/current} names the generation
+ * being served. A build fills a new directory and promotes it by replacing that pointer atomically,
+ * so a file is never modified once a client can see it.
+ * <p>
+ * Every request for a published file leases the generation it was answered from, and a generation
+ * that is no longer current is only deleted once its last lease is released. A rebuild therefore
+ * never touches a file that is being sent, and the cached copies and ETags of files still in use
+ * stay valid. The numbers count publications and are unrelated to the generations in the
+ * manifests. Files placed directly in {@code SCS/shared-files} by hand are still served when the
+ * current generation has no file of that name; the first generation takes over and removes the
+ * pack files published there by earlier versions.
+ */
+public final class PublishedGenerations {
+
+    private static final Path POINTER = FileHostingServer.FILE_DIRECTORY.resolve("current");
+    private static final String PREFIX = "gen-";
+    private static final Pattern DIRECTORY_NAME = Pattern.compile("gen-(\\d+)");
+    /**
+     * Serializes publications; the lease bookkeeping below has its own monitor so requests are never
+     * held up by one.
+     */
+    private static final Object PUBLISH_LOCK = new Object();
+    private static final Map<Long, Generation> LEASED = new HashMap<>();
+
+    private static Generation current;
+    private static boolean loaded;
+
+    private PublishedGenerations() {
+    }
+
+    private static final class Generation {
+        private final long number;
+        private final Path directory;
+        private int leases;
+
+        private Generation(long number) {
+            this.number = number;
+            this.directory = FileHostingServer.FILE_DIRECTORY.resolve(PREFIX + number);
+        }
+    }
+
+    /**
+     * A published file, or a whole generation, pinned to the generation it belongs to; closing it
+     * releases the generation.
+     */
+    public static final class Lease implements Closeable {
+        private final Generation generation;
+        private final Path file;
+        private boolean closed;
+
+        private Lease(Generation generation, Path file) {
+            this.generation = generation;
+            this.file = file;
+        }
+
+        Path file() {
+            return file;
+        }
+
+        /**
+         * Path of a published file in the leased generation if it holds the name, otherwise directly
+         * in {@code SCS/shared-files}. The path may not exist.
+         */
+        public Path resolve(String name) {
+            if (generation != null) {
+                Path published = generation.directory.resolve(name);
+                if (Files.isRegularFile(published)) {
+                    return published;
+                }
+            }
+            return FileHostingServer.FILE_DIRECTORY.resolve(name);
+        }
+
+        @Override
+        public void close() {
+            if (generation == null) {
+                return;
+            }
+            boolean retired;
+            synchronized (PublishedGenerations.class) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                retired = --generation.leases == 0 && generation != current;
+                if (generation.leases == 0) {
+                    LEASED.remove(generation.number);
+                }
+            }
+            if (retired) {
+                delete(generation.directory);
+            }
+        }
+    }
+
+    /**
+     * Leases the whole current generation, so the files a build or an export reads through
+     * {@link Lease#resolve} stay on disk until it closes the lease, even if another pack is published
+     * meanwhile. Before the first publication the lease pins nothing and resolves to
+     * {@code SCS/shared-files}.
+     */
+    public static Lease acquireCurrent() {
+        Generation generation;
+        synchronized (PublishedGenerations.class) {
+            generation = current();
+            if (generation == null) {
+                return new Lease(null, FileHostingServer.FILE_DIRECTORY);
+            }
+            generation.leases++;
+            LEASED.put(generation.number, generation);
+        }
+        return new Lease(generation, generation.directory);
+    }
+
+    /**
+     * True when a name may be served straight from {@code SCS/shared-files}: a plain top-level file,
+     * not a generation directory, the pointer or a file still being written by a build.
+     */
+    static boolean isLegacyName(String name) {
+        return !name.isEmpty()
+                && !name.contains("/")
+                && !name.contains("\\")
+                && !name.equals(POINTER.getFileName().toString())
+                && !name.endsWith(".tmp")
+                && !DIRECTORY_NAME.matcher(name).matches();
+    }
+
+    /**
+     * Leases a file of the current generation, or returns null when the name is not a file there.
+     */
+    static Lease acquire(String name) {
+        if (name.isEmpty() || name.contains("/") || name.contains("\\")) {
+            return null;
+        }
+        Generation generation;
+        synchronized (PublishedGenerations.class) {
+            generation = current();
+            if (generation == null) {
+                return null;
+            }
+            generation.leases++;
+            LEASED.put(generation.number, generation);
+        }
+        Lease lease = new Lease(generation, generation.directory.resolve(name));
+        if (!Files.isRegularFile(lease.file)) {
+            lease.close();
+            return null;
+        }
+        return lease;
+    }
+
+    /**
+     * Publishes a new generation holding {@code files} (name to a finished file, which is moved) and
+     * every other file of the current generation except the {@code withdrawn} names. Returns the
+     * published paths by name.
+     */
+    public static Map<String, Path> publish(Map<String, Path> files, Set<String> withdrawn) throws IOException {
+        synchronized (PUBLISH_LOCK) {
+            Generation previous = current();
+            Generation next = new Generation(nextNumber(previous));
+            Files.createDirectories(next.directory);
+            Map<String, Path> published = new HashMap<>();
+            try {
+                for (Map.Entry<String, Path> file : files.entrySet()) {
+                    Path target = next.directory.resolve(file.getKey());
+                    Files.move(file.getValue(), target);
+                    published.put(file.getKey(), target);
+                }
+                for (Path carried : previousFiles(previous)) {
+                    String name = carried.getFileName().toString();
+                    if (!files.containsKey(name) && !withdrawn.contains(name)) {
+                        Path target = next.directory.resolve(name);
+                        link(carried, target);
+                        // Validators are keyed by path; the carried file keeps its ETag without a rehash.
+                        ContentValidators.carry(carried, target);
+                    }
+                }
+                writePointer(next);
+            } catch (IOException | RuntimeException e) {
+                delete(next.directory);
+                throw e;
+            }
+
+            boolean retired;
+            synchronized (PublishedGenerations.class) {
+                current = next;
+                retired = previous != null && previous.leases == 0;
+            }
+            // Hash the new files now so the first request does not pay for their ETags.
+            for (Path file : published.values()) {
+                ContentValidators.refresh(file);
+            }
+            HotFileCache.logStats();
+            if (retired) {
+                delete(previous.directory);
+            }
+            if (previous == null) {
+                removeLegacyCopies(next, withdrawn);
+            }
+            removeAbandoned();
+            SCS.LOGGER.info("Serving {}{}.", PREFIX, next.number);
+            return published;
+        }
+    }
+
+    private static Generation current() {
+        synchronized (PublishedGenerations.class) {
+            if (!loaded) {
+                loaded = true;
+                current = readPointer();
+            }
+            return current;
+        }
+    }
+
+    private static Generation readPointer() {
+        try {
+            if (!Files.isRegularFile(POINTER)) {
+                return null;
+            }
+            Matcher matcher = DIRECTORY_NAME.matcher(Files.readString(POINTER).trim());
+            if (matcher.matches()) {
+                Generation generation = new Generation(Long.parseLong(matcher.group(1)));
+                if (Files.isDirectory(generation.directory)) {
+                    return generation;
+                }
+            }
+            SCS.LOGGER.warn("{} does not name a published generation; ignoring it.", POINTER);
+        } catch (IOException | NumberFormatException e) {
+            SCS.LOGGER.warn("Failed to read {}", POINTER, e);
+        }
+        return null;
+    }
+
+    private static void writePointer(Generation generation) throws IOException {
+        Path temp = Files.createTempFile(FileHostingServer.FILE_DIRECTORY, "current", ".tmp");
+        try {
+            Files.writeString(temp, PREFIX + generation.number);
+            try {
+                Files.move(temp, POINTER, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, POINTER, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * One past the highest number on disk, so a directory left behind by a crash is never reused.
+     */
+    private static long nextNumber(Generation previous) throws IOException {
+        long highest = previous == null ? 0 : previous.number;
+        for (long number : numbersOnDisk()) {
+            highest = Math.max(highest, number);
+        }
+        return highest + 1;
+    }
+
+    /**
+     * Files the new generation takes over: the current generation's, or before the first generation
+     * the files that used to be published straight into {@code SCS/shared-files}.
+     */
+    private static List<Path> previousFiles(Generation previous) throws IOException {
+        List<Path> files = new ArrayList<>();
+        Path directory = previous != null ? previous.directory : FileHostingServer.FILE_DIRECTORY;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, PublishedGenerations::isPackFile)) {
+            for (Path file : stream) {
+                if (Files.isRegularFile(file)) {
+                    files.add(file);
+                }
+            }
+        }
+        return files;
+    }
+
+    private static boolean isPackFile(Path file) {
+        String name = file.getFileName().toString();
+        return name.endsWith(".zip") || name.endsWith(".manifest.json");
+    }
+
+    /**
+     * Drops the files the first generation took over from {@code SCS/shared-files}, or withdrew.
+     */
+    private static void removeLegacyCopies(Generation generation, Set<String> withdrawn) {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(FileHostingServer.FILE_DIRECTORY, PublishedGenerations::isPackFile)) {
+            for (Path file : stream) {
+                boolean replaced = Files.isRegularFile(generation.directory.resolve(file.getFileName()))
+                        || withdrawn.contains(file.getFileName().toString());
+                if (Files.isRegularFile(file) && replaced) {
+                    forget(file);
+                    Files.deleteIfExists(file);
+                }
+            }
+        } catch (IOException e) {
+            SCS.LOGGER.warn("Failed to remove files replaced by {}{}", PREFIX, generation.number, e);
+        }
+    }
+
+    /**
+     * Deletes generations that are neither current nor leased, such as ones whose deletion failed
+     * earlier or that a crash left behind.
+     */
+    private static void removeAbandoned() {
+        try {
+            for (long number : numbersOnDisk()) {
+                boolean abandoned;
+                synchronized (PublishedGenerations.class) {
+                    abandoned = (current == null || current.number != number) && !LEASED.containsKey(number);
+                }
+                if (abandoned) {
+                    delete(new Generation(number).directory);
+                }
+            }
+        } catch (IOException e) {
+            SCS.LOGGER.warn("Failed to look for old generations in {}", FileHostingServer.FILE_DIRECTORY, e);
+        }
+    }
+
+    private static List<Long> numbersOnDisk() throws IOException {
+        List<Long> numbers = new ArrayList<>();
+        if (!Files.isDirectory(FileHostingServer.FILE_DIRECTORY)) {
+            return numbers;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(FileHostingServer.FILE_DIRECTORY, Files::isDirectory)) {
+            for (Path directory : stream) {
+                Matcher matcher = DIRECTORY_NAME.matcher(directory.getFileName().toString());
+                if (matcher.matches()) {
+                    numbers.add(Long.parseLong(matcher.group(1)));
+                }
+            }
+        }
+        return numbers;
+    }
+
+    /**
+     * A hard link shares the unchanged file with the previous generation; a copy is the fallback.
+     */
+    private static void link(Path source, Path target) throws IOException {
+        try {
+            Files.createLink(target, source);
+        } catch (IOException | UnsupportedOperationException e) {
+            Files.copy(source, target);
+        }
+    }
+
+    /**
+     * Deletes a generation directory. A file that cannot be deleted yet (memory-mapped on Windows)
+     * is left for the next publication to retry.
+     */
+    private static void delete(Path directory) {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path file : stream) {
+                forget(file);
+                Files.deleteIfExists(file);
+            }
+            Files.deleteIfExists(directory);
+        } catch (IOException e) {
+            SCS.LOGGER.debug("Could not delete {} yet", directory, e);
+        }
+    }
+
+    private static void forget(Path file) {
+        HotFileCache.forget(file);
+        ContentValidators.forget(file);
+        StreamedZip.forget(file);
+    }
+}
@@ -20,5 +20,6 @@ public class ServerEventHandlers {
         } catch (Exception e) {
             SCS.LOGGER.error("Failed to start file hosting server: ", e);
         }
+        PackWatcher.applyConfig();
     }
 }
@@ -0,0 +1,170 @@
+package com.scs.server;
+
+import com.scs.core.ChunkIndex;
+import com.scs.core.PackManifest;
+import com.scs.core.SCS;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+
+/**
+ * Writes the published packs as a static tree that any web server or CDN can host, laid out like the
+ * URLs of the built-in file server:
+ * <pre>
+ * mods.zip, mods.manifest.json            entry points, replaced on every export
+ * packs/mods-&lt;generation&gt;.zip           versioned copies, never modified
+ * objects/&lt;sha256&gt;                        content-addressed, never modified
+ * patches/&lt;from&gt;-&lt;to&gt;
+ * chunk-index/&lt;sha256&gt;, chunks/&lt;sha256&gt;
+ * </pre>
+ * Everything except the entry points may be cached forever ({@code Cache-Control: immutable}).
+ * Content-addressed files are written first and the manifest last, so a client polling the tree
+ * while it is exported never sees a manifest that refers to a missing file. Old files are kept for
+ * clients still fetching an earlier generation.
+ */
+public final class StaticExport {
+
+    public static final Path DEFAULT_DIRECTORY = Path.of("SCS/export");
+    static final String PACKS_DIRECTORY = "packs";
+
+    private StaticExport() {
+    }
+
+    /**
+     * Exports every pack that has a published manifest. Returns the number of packs exported.
+     */
+    public static int export(Path target) throws IOException {
+        Files.createDirectories(target);
+        int exported = 0;
+        try (PublishedGenerations.Lease published = PublishedGenerations.acquireCurrent()) {
+            for (String pack : List.of(PackManifest.MODS, PackManifest.CONFIG)) {
+                if (exportPack(published, pack, target)) {
+                    exported++;
+                }
+            }
+        }
+        return exported;
+    }
+
+    private static boolean exportPack(PublishedGenerations.Lease published, String pack, Path target) throws IOException {
+        Path manifestFile = published.resolve(PackManifest.fileName(pack));
+        Path zip = published.resolve(pack + ".zip");
+        PackManifest manifest = PackManifest.read(manifestFile);
+        if (manifest == null) {
+            SCS.LOGGER.info("Nothing to export for {}: no published pack.", pack);
+            return false;
+        }
+
+        int objects = 0;
+        int patches = 0;
+        int chunks = 0;
+        for (PackManifest.Entry entry : manifest.entries()) {
+            Path object = ObjectStore.resolve(entry.sha256());
+            if (object == null || !Files.isRegularFile(object)) {
+                throw new IOException("Object " + entry.sha256() + " of " + entry.path() + " is missing; rebuild the pack");
+            }
+            if (copyImmutable(object, target.resolve("objects").resolve(entry.sha256()))) {
+                objects++;
+            }
+            for (String base : entry.patchBases()) {
+                String name = base + "-" + entry.sha256();
+                Path patch = PatchStore.resolve(name);
+                if (patch != null && Files.isRegularFile(patch)
+                        && copyImmutable(patch, target.resolve("patches").resolve(name))) {
+                    patches++;
+                }
+            }
+            Path index = ChunkStore.resolveIndex(entry.sha256());
+            if (index != null && Files.isRegularFile(index)) {
+                for (ChunkIndex.Chunk chunk : ChunkIndex.parse(Files.readString(index)).chunks()) {
+                    Path chunkFile = ChunkStore.resolveChunk(chunk.sha256());
+                    if (chunkFile == null || !Files.isRegularFile(chunkFile)) {
+                        throw new IOException("Chunk " + chunk.sha256() + " of " + entry.path() + " is missing");
+                    }
+                    if (copyImmutable(chunkFile, target.resolve("chunks").resolve(chunk.sha256()))) {
+                        chunks++;
+                    }
+                }
+                copyImmutable(index, target.resolve("chunk-index").resolve(entry.sha256()));
+            }
+        }
+
+        Path versioned = target.resolve(PACKS_DIRECTORY).resolve(pack + "-" + manifest.generation() + ".zip");
+        if (Files.isRegularFile(zip)) {
+            copyImmutable(zip, versioned);
+        } else if (!Files.exists(versioned)) {
+            writeStreamed(manifestFile, versioned);
+        }
+        replace(versioned, target.resolve(pack + ".zip"));
+        replace(manifestFile, target.resolve(PackManifest.fileName(pack)));
+        SCS.LOGGER.info("Exported {} generation {} to {}: {} new object(s), {} patch(es), {} chunk(s).",
+                pack, manifest.generation(), target, objects, patches, chunks);
+        return true;
+    }
+
+    /**
+     * Copies a file whose name identifies its content; an existing file is left untouched. Returns
+     * true when the file was written.
+     */
+    private static boolean copyImmutable(Path source, Path target) throws IOException {
+        if (Files.exists(target)) {
+            return false;
+        }
+        Files.createDirectories(target.getParent());
+        try {
+            // A hard link costs no space; different file systems need a copy.
+            Files.createLink(target, source);
+            return true;
+        } catch (FileAlreadyExistsException e) {
+            return false;
+        } catch (IOException | UnsupportedOperationException e) {
+            replace(source, target);
+            return true;
+        }
+    }
+
+    /**
+     * A static host cannot generate a {@link StreamedZip}, so its bytes are written out once.
+     */
+    private static void writeStreamed(Path manifestFile, Path target) throws IOException {
+        Files.createDirectories(target.getParent());
+        Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+        try {
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp))) {
+                StreamedZip.forManifest(manifestFile).writeTo(out);
+            }
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Copies through a temporary file so readers see either the old or the new file.
+     */
+    private static void replace(Path source, Path target) throws IOException {
+        Files.createDirectories(target.getParent());
+        Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+        try {
+            Files.copy(source, temp, StandardCopyOption.REPLACE_EXISTING);
+            try {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.scs.server;
+
+import com.scs.core.ChunkIndex;
+import com.scs.core.HostedPacks;
+import com.scs.core.PackManifest;
+import com.scs.core.SCS;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * Deletes the objects, chunk indexes, chunks and patches that no retained generation needs any
+ * more. What a manifest in the {@link PackHistory} or a currently published manifest (the server's
+ * own packs and every hosted pack) refers to is kept, and so is a patch between two kept objects,
+ * which a background patch run may not have listed yet. Callers hold the build locks, so no build
+ * is storing files its manifest does not list yet.
+ */
+public final class StoreSweep {
+
+    private StoreSweep() {
+    }
+
+    public static void run() throws IOException {
+        List<PackManifest> manifests = PackHistory.retained();
+        manifests.addAll(published());
+        Set<String> objects = new HashSet<>();
+        Set<String> patches = new HashSet<>();
+        for (PackManifest manifest : manifests) {
+            for (PackManifest.Entry entry : manifest.entries()) {
+                objects.add(entry.sha256());
+                for (String base : entry.patchBases()) {
+                    patches.add(base + "-" + entry.sha256());
+                }
+            }
+        }
+
+        Set<String> chunks = new HashSet<>();
+        for (String sha256 : objects) {
+            Path index = ChunkStore.resolveIndex(sha256);
+            if (index != null && Files.isRegularFile(index)) {
+                try {
+                    for (ChunkIndex.Chunk chunk : ChunkIndex.parse(Files.readString(index)).chunks()) {
+                        chunks.add(chunk.sha256());
+                    }
+                } catch (IOException e) {
+                    // Without the full list of chunks in use, none can safely go.
+                    SCS.LOGGER.warn("Not sweeping chunks: cannot read the index of {}", sha256, e);
+                    chunks = null;
+                    break;
+                }
+            }
+        }
+
+        int deleted = 0;
+        deleted += sweep(ObjectStore.DIRECTORY, name -> objects.contains(name));
+        deleted += sweep(PatchStore.DIRECTORY, name -> keepPatch(name, objects, patches));
+        deleted += sweep(ChunkStore.INDEX_DIRECTORY, name -> name.endsWith(".json")
+                && objects.contains(name.substring(0, name.length() - ".json".length())));
+        if (chunks != null) {
+            Set<String> keptChunks = chunks;
+            // The indexes live below the chunks and were swept above.
+            deleted += sweep(ChunkStore.DIRECTORY, name -> name.endsWith(".json") || keptChunks.contains(name));
+        }
+        if (deleted > 0) {
+            SCS.LOGGER.info("Removed {} stored file(s) no longer referenced by any retained generation.", deleted);
+        }
+    }
+
+    private static List<PackManifest> published() {
+        List<String> packs = new ArrayList<>(List.of(PackManifest.MODS, PackManifest.CONFIG));
+        for (HostedPacks.Pack hosted : HostedPacks.fromConfig()) {
+            packs.add(hosted.packId(PackManifest.MODS));
+            packs.add(hosted.packId(PackManifest.CONFIG));
+        }
+        List<PackManifest> manifests = new ArrayList<>();
+        try (PublishedGenerations.Lease published = PublishedGenerations.acquireCurrent()) {
+            for (String pack : packs) {
+                try {
+                    PackManifest manifest = PackManifest.read(published.resolve(PackManifest.fileName(pack)));
+                    if (manifest != null) {
+                        manifests.add(manifest);
+                    }
+                } catch (IOException e) {
+                    SCS.LOGGER.warn("Skipping unreadable published manifest of {}", pack, e);
+                }
+            }
+        }
+        return manifests;
+    }
+
+    /**
+     * Keeps listed patches, patches between two kept objects, and the rejection markers of pairs
+     * whose target is kept.
+     */
+    private static boolean keepPatch(String name, Set<String> objects, Set<String> patches) {
+        if (name.endsWith(PatchStore.REJECTED_SUFFIX)) {
+            name = name.substring(0, name.length() - PatchStore.REJECTED_SUFFIX.length());
+            int dash = name.indexOf('-');
+            return dash < 0 || objects.contains(name.substring(dash + 1));
+        }
+        int dash = name.indexOf('-');
+        return patches.contains(name)
+                || dash < 0
+                || objects.contains(name.substring(0, dash)) && objects.contains(name.substring(dash + 1));
+    }
+
+    /**
+     * Deletes the regular files under a store directory (one level of {@code <xx>/} subdirectories
+     * included) whose names are not kept. Temporary files of writes in progress are left alone.
+     */
+    private static int sweep(Path directory, Predicate<String> keep) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return 0;
+        }
+        int deleted = 0;
+        try (Stream<Path> files = Files.walk(directory, 2)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String name = file.getFileName().toString();
+                if (!Files.isRegularFile(file) || name.endsWith(".tmp") || keep.test(name)) {
+                    continue;
+                }
+                if (Files.deleteIfExists(file)) {
+                    deleted++;
+                }
+            }
+        }
+        return deleted;
+    }
+}
@@ -0,0 +1,117 @@
+package com.scs.server;
+
+import com.scs.core.PackManifest;
+import com.scs.core.StoredZipLayout;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A pack zip that only exists as its published manifest ({@code streamPacks}). Every entry is
+ * stored uncompressed and read from its object in {@link ObjectStore}, which never changes, while
+ * the headers and central directory are generated from the sizes and CRCs in the manifest. The
+ * length and every byte of the zip are therefore fixed by the manifest alone, so it is served with
+ * a Content-Length, ETag and Range support like a zip on disk, without one being written.
+ */
+final class StreamedZip {
+
+    /**
+     * Layouts by manifest path; published manifests never change, so an entry stays valid until
+     * its generation is deleted.
+     */
+    private static final Map<Path, StreamedZip> CACHE = new ConcurrentHashMap<>();
+
+    private final StoredZipLayout layout;
+    private final ContentValidators.Validator validator;
+
+    private StreamedZip(StoredZipLayout layout, ContentValidators.Validator validator) {
+        this.layout = layout;
+        this.validator = validator;
+    }
+
+    /**
+     * The zip described by a published manifest. Fails when an object of the pack is missing.
+     */
+    static StreamedZip forManifest(Path manifestFile) throws IOException {
+        Path key = manifestFile.toAbsolutePath().normalize();
+        StreamedZip zip = CACHE.get(key);
+        if (zip == null) {
+            zip = load(key);
+            CACHE.put(key, zip);
+        }
+        return zip;
+    }
+
+    private static StreamedZip load(Path manifestFile) throws IOException {
+        PackManifest manifest = PackManifest.read(manifestFile);
+        if (manifest == null) {
+            throw new IOException("No manifest at " + manifestFile);
+        }
+        for (PackManifest.Entry entry : manifest.entries()) {
+            Path object = ObjectStore.resolve(entry.sha256());
+            if (object == null || !Files.isRegularFile(object) || Files.size(object) != entry.size()) {
+                throw new IOException("Object " + entry.sha256() + " of " + entry.path() + " is missing; rebuild the pack");
+            }
+        }
+        StoredZipLayout layout = StoredZipLayout.of(manifest, Files.getLastModifiedTime(manifestFile).toMillis());
+        return new StreamedZip(layout, ContentValidators.forStreamed(manifestFile, layout.length()));
+    }
+
+    ContentValidators.Validator validator() {
+        return validator;
+    }
+
+    /**
+     * Generated bytes and object regions making up a segment of the zip.
+     */
+    List<FileResponse.Piece> pieces(HttpRange segment) {
+        List<FileResponse.Piece> pieces = new ArrayList<>();
+        for (StoredZipLayout.Section section : layout.sections(segment.start(), segment.length())) {
+            pieces.add(section.bytes() != null
+                    ? FileResponse.Piece.ofBytes(ByteBuffer.wrap(section.bytes()))
+                    : FileResponse.Piece.ofFile(ObjectStore.resolve(section.entry().sha256()), section.position(), section.length()));
+        }
+        return pieces;
+    }
+
+    /**
+     * Writes the whole zip to {@code out}, for copies that must exist as a file.
+     */
+    void writeTo(OutputStream out) throws IOException {
+        WritableByteChannel target = Channels.newChannel(out);
+        for (FileResponse.Piece piece : pieces(new HttpRange(0, layout.length() - 1))) {
+            if (piece.isInMemory()) {
+                target.write(piece.bytes());
+                continue;
+            }
+            try (FileChannel channel = FileChannel.open(piece.file(), StandardOpenOption.READ)) {
+                long copied = 0;
+                while (copied < piece.length()) {
+                    long transferred = channel.transferTo(piece.position() + copied, piece.length() - copied, target);
+                    if (transferred <= 0) {
+                        throw new IOException("Object " + piece.file() + " is truncated");
+                    }
+                    copied += transferred;
+                }
+            }
+        }
+    }
+
+    /**
+     * Drops the layout of a manifest that is being deleted.
+     */
+    static void forget(Path file) {
+        CACHE.remove(file.toAbsolutePath().normalize());
+    }
+}
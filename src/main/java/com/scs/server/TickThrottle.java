@@ -0,0 +1,218 @@
+package com.scs.server;
+
+import com.scs.core.Config;
+import com.scs.core.SCS;
+import net.neoforged.api.distmarker.Dist;
+import net.neoforged.bus.api.SubscribeEvent;
+import net.neoforged.fml.common.EventBusSubscriber;
+import net.neoforged.neoforge.event.tick.ServerTickEvent;
+
+import java.util.Locale;
+
+/**
+ * Scales file server bandwidth and concurrency with the dedicated server's tick time (MSPT).
+ * Every second the average MSPT is compared with {@link Config#adaptiveThrottleMsptThreshold}:
+ * above it the throttle level is halved, below 80% of it the level recovers by 10 points.
+ * Each one-second sample of MSPT and upload rate is kept so their correlation can be reported.
+ */
+@EventBusSubscriber(modid = SCS.MODID, bus = EventBusSubscriber.Bus.GAME, value = Dist.DEDICATED_SERVER)
+public final class TickThrottle {
+
+    private static final int TICKS_PER_SAMPLE = 20;
+    private static final int HISTORY_SIZE = 300;
+    private static final int LOG_INTERVAL_SAMPLES = 60;
+    private static final double RECOVERY_RATIO = 0.8;
+    private static final double RECOVERY_STEP = 0.1;
+    /**
+     * Upload rate scaled while throttled when nothing was uploaded in the recent history either,
+     * e.g. when the server lags first and players press Update afterwards.
+     */
+    private static final long FALLBACK_BASELINE_BYTES_PER_SECOND = 8L * 1024 * 1024;
+    /**
+     * Transfers scaled while throttled without a configured limit when none were running as
+     * throttling started; the default of {@code maxConcurrentPackTransfers}.
+     */
+    private static final int FALLBACK_BASELINE_TRANSFERS = 4;
+
+    private static long tickStartNanos;
+    private static long tickNanosSum;
+    private static int ticksInSample;
+    private static long lastSampleNanos = System.nanoTime();
+    private static long lastSentBytes;
+    private static int samplesSinceLog;
+
+    private static volatile double level = 1.0;
+    private static volatile double lastMspt;
+    private static volatile long lastBytesPerSecond;
+    private static volatile long baselineBytesPerSecond;
+    private static volatile int baselineTransfers;
+
+    private static final double[] HISTORY_MSPT = new double[HISTORY_SIZE];
+    private static final double[] HISTORY_RATE = new double[HISTORY_SIZE];
+    private static int historyCount;
+    private static int historyNext;
+
+    private TickThrottle() {
+    }
+
+    @SubscribeEvent
+    public static void onServerTickPre(ServerTickEvent.Pre event) {
+        tickStartNanos = System.nanoTime();
+    }
+
+    @SubscribeEvent
+    public static void onServerTickPost(ServerTickEvent.Post event) {
+        if (tickStartNanos == 0) {
+            return;
+        }
+        tickNanosSum += System.nanoTime() - tickStartNanos;
+        if (++ticksInSample >= TICKS_PER_SAMPLE) {
+            sample(tickNanosSum / (double) ticksInSample / 1_000_000.0);
+            tickNanosSum = 0;
+            ticksInSample = 0;
+        }
+    }
+
+    /**
+     * Current throttle level, from 1.0 (unthrottled) down to the configured minimum.
+     */
+    public static double level() {
+        return level;
+    }
+
+    /**
+     * Multiplier applied to a configured limit; only differs from 1 while throttled.
+     */
+    static long scale(long bytesPerSecond) {
+        double current = level;
+        if (bytesPerSecond <= 0 || current >= 1.0) {
+            return bytesPerSecond;
+        }
+        return Math.max(1024, (long) (bytesPerSecond * current));
+    }
+
+    /**
+     * Global rate to enforce while throttled when no global limit is configured: a fraction of the
+     * peak upload rate over the recent history when throttling started, or of
+     * {@value #FALLBACK_BASELINE_BYTES_PER_SECOND} bytes/s if nothing was uploaded. 0 while
+     * unthrottled.
+     */
+    static long implicitGlobalRate() {
+        double current = level;
+        if (current >= 1.0 || baselineBytesPerSecond <= 0) {
+            return 0;
+        }
+        return Math.max(1024, (long) (baselineBytesPerSecond * current));
+    }
+
+    /**
+     * Concurrent pack transfer limit while throttled; {@code limit} 0 means unlimited, in which case
+     * the number of transfers running when throttling started is scaled instead, or
+     * {@value #FALLBACK_BASELINE_TRANSFERS} if none were running.
+     */
+    static int scaleConcurrency(int limit) {
+        double current = level;
+        if (current >= 1.0) {
+            return limit;
+        }
+        int base = limit > 0 ? limit : baselineTransfers > 0 ? baselineTransfers : FALLBACK_BASELINE_TRANSFERS;
+        return Math.max(1, (int) Math.floor(base * current));
+    }
+
+    public static String describe() {
+        return String.format(Locale.ROOT,
+                "File server throttle: %d%% (MSPT %.1f ms, threshold %.1f ms), upload %d KB/s, %d transfers, MSPT/upload correlation %s",
+                Math.round(level * 100), lastMspt, Config.adaptiveThrottleMsptThreshold,
+                lastBytesPerSecond / 1024, BandwidthLimiter.activeTransfers(), describeCorrelation());
+    }
+
+    private static void sample(double mspt) {
+        long now = System.nanoTime();
+        long sent = BandwidthLimiter.bytesSent();
+        double seconds = Math.max(0.001, (now - lastSampleNanos) / 1_000_000_000.0);
+        long bytesPerSecond = (long) ((sent - lastSentBytes) / seconds);
+        lastSampleNanos = now;
+        lastSentBytes = sent;
+        lastMspt = mspt;
+        lastBytesPerSecond = bytesPerSecond;
+        record(mspt, bytesPerSecond);
+
+        double previous = level;
+        double next = previous;
+        if (!Config.adaptiveThrottleEnabled) {
+            next = 1.0;
+        } else if (mspt > Config.adaptiveThrottleMsptThreshold) {
+            if (previous >= 1.0) {
+                long peak = peakRate();
+                baselineBytesPerSecond = peak > 0 ? peak : FALLBACK_BASELINE_BYTES_PER_SECOND;
+                baselineTransfers = BandwidthLimiter.activeTransfers();
+            }
+            next = Math.max(Config.adaptiveThrottleMinPercent / 100.0, previous / 2);
+        } else if (mspt < Config.adaptiveThrottleMsptThreshold * RECOVERY_RATIO) {
+            next = Math.min(1.0, previous + RECOVERY_STEP);
+        }
+        level = next;
+
+        if (next != previous) {
+            SCS.LOGGER.info("File server throttle {} to {}% (MSPT {} ms, upload {} KB/s, {} transfers)",
+                    next < previous ? "lowered" : "raised", Math.round(next * 100),
+                    String.format(Locale.ROOT, "%.1f", mspt), bytesPerSecond / 1024, BandwidthLimiter.activeTransfers());
+        }
+
+        boolean busy = bytesPerSecond > 0 || next < 1.0;
+        if (busy && ++samplesSinceLog >= LOG_INTERVAL_SAMPLES) {
+            samplesSinceLog = 0;
+            SCS.LOGGER.info(describe());
+        }
+    }
+
+    private static synchronized void record(double mspt, long bytesPerSecond) {
+        HISTORY_MSPT[historyNext] = mspt;
+        HISTORY_RATE[historyNext] = bytesPerSecond;
+        historyNext = (historyNext + 1) % HISTORY_SIZE;
+        historyCount = Math.min(HISTORY_SIZE, historyCount + 1);
+    }
+
+    /**
+     * Highest per-second upload rate in the recent history, the current sample included.
+     */
+    private static synchronized long peakRate() {
+        double peak = 0;
+        for (int i = 0; i < historyCount; i++) {
+            peak = Math.max(peak, HISTORY_RATE[i]);
+        }
+        return (long) peak;
+    }
+
+    /**
+     * Pearson correlation between per-second MSPT and upload rate over the recent history.
+     */
+    private static synchronized String describeCorrelation() {
+        int n = historyCount;
+        if (n < 2) {
+            return "n/a";
+        }
+        double meanMspt = 0;
+        double meanRate = 0;
+        for (int i = 0; i < n; i++) {
+            meanMspt += HISTORY_MSPT[i];
+            meanRate += HISTORY_RATE[i];
+        }
+        meanMspt /= n;
+        meanRate /= n;
+        double covariance = 0;
+        double varianceMspt = 0;
+        double varianceRate = 0;
+        for (int i = 0; i < n; i++) {
+            double dm = HISTORY_MSPT[i] - meanMspt;
+            double dr = HISTORY_RATE[i] - meanRate;
+            covariance += dm * dr;
+            varianceMspt += dm * dm;
+            varianceRate += dr * dr;
+        }
+        if (varianceMspt == 0 || varianceRate == 0) {
+            return String.format(Locale.ROOT, "n/a over %ds", n);
+        }
+        return String.format(Locale.ROOT, "%.2f over %ds", covariance / Math.sqrt(varianceMspt * varianceRate), n);
+    }
+}
@@ -0,0 +1,126 @@
+package com.scs.core;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.DeflaterOutputStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class BinaryPatchTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void applyingADiffReproducesTheTarget() throws IOException {
+        byte[] source = random(200_000, 1);
+        byte[] target = edit(source);
+        byte[] patch = roundTrip(source, target);
+        assertTrue(patch.length < target.length / 10, "patch of " + patch.length + " bytes");
+    }
+
+    @Test
+    void unrelatedFilesRoundTrip() throws IOException {
+        roundTrip(random(50_000, 2), random(70_000, 3));
+    }
+
+    @Test
+    void filesSmallerThanABlockRoundTrip() throws IOException {
+        roundTrip(new byte[] {1, 2, 3}, new byte[] {3, 2, 1, 0});
+        roundTrip(new byte[0], random(100, 4));
+    }
+
+    @Test
+    void emptyTargetRoundTrips() throws IOException {
+        roundTrip(random(1_000, 5), new byte[0]);
+    }
+
+    @Test
+    void baseOfAnotherSizeIsRejected() throws IOException {
+        byte[] source = random(100_000, 6);
+        byte[] patch = diff(source, edit(source));
+        Path otherBase = write("other", random(99_999, 7));
+        IOException e = assertThrows(IOException.class,
+                () -> BinaryPatch.apply(otherBase, new ByteArrayInputStream(patch), new ByteArrayOutputStream()));
+        assertTrue(e.getMessage().contains("expects a base of 100000 bytes"), e.getMessage());
+    }
+
+    @Test
+    void garbageIsRejected() throws IOException {
+        Path base = write("base", random(1_000, 8));
+        assertThrows(IOException.class,
+                () -> BinaryPatch.apply(base, new ByteArrayInputStream(random(500, 9)), new ByteArrayOutputStream()));
+    }
+
+    @Test
+    void deflatedDataWithoutTheMagicIsRejected() throws IOException {
+        Path base = write("base", random(1_000, 10));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DeflaterOutputStream out = new DeflaterOutputStream(bytes)) {
+            out.write(random(64, 11));
+        }
+        IOException e = assertThrows(IOException.class,
+                () -> BinaryPatch.apply(base, new ByteArrayInputStream(bytes.toByteArray()), new ByteArrayOutputStream()));
+        assertTrue(e.getMessage().contains("Not a patch"), e.getMessage());
+    }
+
+    @Test
+    void truncatedPatchIsRejected() throws IOException {
+        byte[] source = random(100_000, 12);
+        byte[] patch = diff(source, random(100_000, 13));
+        byte[] truncated = Arrays.copyOf(patch, patch.length / 2);
+        Path base = write("base", source);
+        assertThrows(IOException.class,
+                () -> BinaryPatch.apply(base, new ByteArrayInputStream(truncated), new ByteArrayOutputStream()));
+    }
+
+    private byte[] roundTrip(byte[] source, byte[] target) throws IOException {
+        byte[] patch = diff(source, target);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryPatch.apply(dir.resolve("old"), new ByteArrayInputStream(patch), out);
+        assertArrayEquals(target, out.toByteArray());
+        return patch;
+    }
+
+    private byte[] diff(byte[] source, byte[] target) throws IOException {
+        Path oldFile = write("old", source);
+        Path newFile = write("new", target);
+        ByteArrayOutputStream patch = new ByteArrayOutputStream();
+        BinaryPatch.diff(oldFile, newFile, patch);
+        return patch.toByteArray();
+    }
+
+    private Path write(String name, byte[] bytes) throws IOException {
+        return Files.write(dir.resolve(name), bytes);
+    }
+
+    /**
+     * The source with a few bytes changed, a run inserted and a run removed.
+     */
+    private static byte[] edit(byte[] source) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] changed = source.clone();
+        changed[1_000] ^= 0x55;
+        changed[source.length / 2] ^= 0x55;
+        out.write(changed, 0, 5_000);
+        out.writeBytes(random(300, 99));
+        out.write(changed, 5_000, 20_000);
+        out.write(changed, 30_000, changed.length - 30_000);
+        return out.toByteArray();
+    }
+
+    private static byte[] random(int length, long seed) {
+        byte[] bytes = new byte[length];
+        new Random(seed).nextBytes(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,114 @@
+package com.scs.core;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+class ContentChunkerTest {
+
+    @Test
+    void chunksConcatenateToTheInput() throws IOException {
+        byte[] data = random(1_000_000, 1);
+        ByteArrayOutputStream joined = new ByteArrayOutputStream();
+        for (byte[] chunk : split(new ByteArrayInputStream(data))) {
+            joined.writeBytes(chunk);
+        }
+        assertArrayEquals(data, joined.toByteArray());
+    }
+
+    @Test
+    void chunkSizesStayWithinTheBounds() throws IOException {
+        List<byte[]> chunks = split(new ByteArrayInputStream(random(1_000_000, 2)));
+        assertTrue(chunks.size() > 1_000_000 / ContentChunker.MAX_SIZE);
+        for (int i = 0; i < chunks.size(); i++) {
+            int length = chunks.get(i).length;
+            assertTrue(length <= ContentChunker.MAX_SIZE, "chunk of " + length + " bytes");
+            if (i < chunks.size() - 1) {
+                assertTrue(length >= ContentChunker.MIN_SIZE, "chunk of " + length + " bytes");
+            }
+        }
+    }
+
+    @Test
+    void repetitiveInputIsCutAtTheMaximum() throws IOException {
+        List<byte[]> chunks = split(new ByteArrayInputStream(new byte[3 * ContentChunker.MAX_SIZE + 10]));
+        assertEquals(4, chunks.size());
+        assertEquals(ContentChunker.MAX_SIZE, chunks.get(0).length);
+        assertEquals(10, chunks.get(3).length);
+    }
+
+    @Test
+    void emptyAndSmallInputs() throws IOException {
+        assertTrue(split(new ByteArrayInputStream(new byte[0])).isEmpty());
+        List<byte[]> chunks = split(new ByteArrayInputStream(random(ContentChunker.MIN_SIZE, 3)));
+        assertEquals(1, chunks.size());
+        assertEquals(ContentChunker.MIN_SIZE, chunks.get(0).length);
+    }
+
+    @Test
+    void cutPointsDoNotDependOnHowTheStreamIsRead() throws IOException {
+        byte[] data = random(300_000, 4);
+        List<byte[]> whole = split(new ByteArrayInputStream(data));
+        List<byte[]> trickled = split(new FilterInputStream(new ByteArrayInputStream(data)) {
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return super.read(b, off, Math.min(len, 1_000));
+            }
+        });
+        assertEquals(whole.size(), trickled.size());
+        for (int i = 0; i < whole.size(); i++) {
+            assertArrayEquals(whole.get(i), trickled.get(i));
+        }
+    }
+
+    @Test
+    void anInsertionOnlyChangesTheChunksAroundIt() throws IOException {
+        byte[] data = random(1_000_000, 5);
+        ByteArrayOutputStream edited = new ByteArrayOutputStream();
+        edited.write(data, 0, 300_000);
+        edited.writeBytes(random(100, 6));
+        edited.write(data, 300_000, data.length - 300_000);
+
+        Set<ByteBuffer> before = new HashSet<>();
+        for (byte[] chunk : split(new ByteArrayInputStream(data))) {
+            before.add(ByteBuffer.wrap(chunk));
+        }
+        List<byte[]> after = split(new ByteArrayInputStream(edited.toByteArray()));
+        int changed = 0;
+        for (byte[] chunk : after) {
+            if (!before.contains(ByteBuffer.wrap(chunk))) {
+                changed++;
+            }
+        }
+        assertTrue(changed >= 1 && changed <= 3, changed + " of " + after.size() + " chunks changed");
+    }
+
+    private static List<byte[]> split(InputStream in) throws IOException {
+        List<byte[]> chunks = new ArrayList<>();
+        ContentChunker.split(in, (data, offset, length) -> {
+            byte[] chunk = new byte[length];
+            System.arraycopy(data, offset, chunk, 0, length);
+            chunks.add(chunk);
+        });
+        return chunks;
+    }
+
+    private static byte[] random(int length, long seed) {
+        byte[] bytes = new byte[length];
+        new Random(seed).nextBytes(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,129 @@
+package com.scs.core;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class PackIgnoreTest {
+
+    @Test
+    void doubleStarMatchesAnyNumberOfDirectories() {
+        PackIgnore ignore = ignore("**/cache/*.tmp");
+        assertTrue(ignore.isIgnored("cache/a.tmp"));
+        assertTrue(ignore.isIgnored("mod/cache/a.tmp"));
+        assertTrue(ignore.isIgnored("mod/deep/cache/a.tmp"));
+        assertFalse(ignore.isIgnored("mod/cache/a.toml"));
+    }
+
+    @Test
+    void trailingDoubleStarMatchesEverythingBelow() {
+        PackIgnore ignore = ignore("logs/**");
+        assertTrue(ignore.isIgnored("logs/latest.log"));
+        assertTrue(ignore.isIgnored("logs/old/1.log.gz"));
+        assertFalse(ignore.isIgnored("other/logs/latest.log"));
+    }
+
+    @Test
+    void singleStarStaysWithinOneSegment() {
+        PackIgnore ignore = ignore("data/*.json");
+        assertTrue(ignore.isIgnored("data/a.json"));
+        assertFalse(ignore.isIgnored("data/sub/a.json"));
+    }
+
+    @Test
+    void characterClassesAndTheirNegation() {
+        PackIgnore ignore = ignore("backup[0-9].zip", "file[!a].txt");
+        assertTrue(ignore.isIgnored("backup3.zip"));
+        assertFalse(ignore.isIgnored("backupx.zip"));
+        assertTrue(ignore.isIgnored("fileb.txt"));
+        assertFalse(ignore.isIgnored("filea.txt"));
+    }
+
+    @Test
+    void questionMarkMatchesOneCharacter() {
+        PackIgnore ignore = ignore("v?.cfg");
+        assertTrue(ignore.isIgnored("v1.cfg"));
+        assertFalse(ignore.isIgnored("v10.cfg"));
+    }
+
+    @Test
+    void escapedCharactersMatchLiterally() {
+        PackIgnore ignore = ignore("\\#notes.txt", "\\!important.txt", "star\\*.txt");
+        assertTrue(ignore.isIgnored("#notes.txt"));
+        assertTrue(ignore.isIgnored("!important.txt"));
+        assertTrue(ignore.isIgnored("star*.txt"));
+        assertFalse(ignore.isIgnored("starry.txt"));
+    }
+
+    @Test
+    void commentsAndBlankLinesAreSkipped() {
+        PackIgnore ignore = ignore("# a comment", "", "   ");
+        assertTrue(ignore.isEmpty());
+        assertFalse(ignore.isIgnored("# a comment"));
+    }
+
+    @Test
+    void patternWithoutSlashMatchesTheNameAtAnyDepth() {
+        PackIgnore ignore = ignore("local.toml");
+        assertTrue(ignore.isIgnored("local.toml"));
+        assertTrue(ignore.isIgnored("mod/local.toml"));
+    }
+
+    @Test
+    void patternWithSlashIsAnchoredToTheRoot() {
+        PackIgnore ignore = ignore("/local.toml", "mod/secret.toml");
+        assertTrue(ignore.isIgnored("local.toml"));
+        assertFalse(ignore.isIgnored("mod/local.toml"));
+        assertTrue(ignore.isIgnored("mod/secret.toml"));
+        assertFalse(ignore.isIgnored("other/mod/secret.toml"));
+    }
+
+    @Test
+    void directoryPatternExcludesEverythingInsideButNotAFileOfThatName() {
+        PackIgnore ignore = ignore("cache/");
+        assertTrue(ignore.isIgnored("cache/a.txt"));
+        assertTrue(ignore.isIgnored("mod/cache/deep/a.txt"));
+        assertFalse(ignore.isIgnored("cache"));
+    }
+
+    @Test
+    void laterNegationReincludesAFile() {
+        PackIgnore ignore = ignore("*.log", "!keep.log");
+        assertTrue(ignore.isIgnored("server.log"));
+        assertFalse(ignore.isIgnored("keep.log"));
+        assertFalse(ignore.isIgnored("sub/keep.log"));
+    }
+
+    @Test
+    void negationCannotReincludeAFileInAnExcludedDirectory() {
+        PackIgnore ignore = ignore("logs/", "!logs/keep.txt");
+        assertTrue(ignore.isIgnored("logs/keep.txt"));
+    }
+
+    @Test
+    void negationReincludesAFileWhenOnlyTheContentsAreExcluded() {
+        PackIgnore ignore = ignore("logs/*", "!logs/keep.txt");
+        assertTrue(ignore.isIgnored("logs/other.txt"));
+        assertFalse(ignore.isIgnored("logs/keep.txt"));
+    }
+
+    @Test
+    void negatedDirectoryReincludesItsContents() {
+        PackIgnore ignore = ignore("*/", "!defaults/");
+        assertTrue(ignore.isIgnored("mod/a.toml"));
+        assertFalse(ignore.isIgnored("defaults/a.toml"));
+        assertFalse(ignore.isIgnored("top.toml"));
+    }
+
+    @Test
+    void theIgnoreFileItselfIsAlwaysExcluded() {
+        assertTrue(PackIgnore.NONE.isIgnored(PackIgnore.FILE_NAME));
+        assertFalse(PackIgnore.NONE.matchesPath(PackIgnore.FILE_NAME));
+    }
+
+    private static PackIgnore ignore(String... lines) {
+        return PackIgnore.compile(List.of(lines));
+    }
+}
@@ -0,0 +1,140 @@
+package com.scs.core;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class StoredZipLayoutTest {
+
+    private static final long MODIFIED = 1_700_000_000_000L;
+
+    @TempDir
+    Path dir;
+
+    private final Map<String, byte[]> files = new HashMap<>();
+
+    @Test
+    void theLaidOutArchiveIsAValidZip() throws IOException {
+        StoredZipLayout layout = StoredZipLayout.of(manifest(), MODIFIED);
+        byte[] archive = assemble(layout, 0, layout.length());
+        assertEquals(layout.length(), archive.length);
+
+        Path zip = Files.write(dir.resolve("pack.zip"), archive);
+        try (ZipFile zipFile = new ZipFile(zip.toFile())) {
+            assertEquals(files.size(), zipFile.size());
+            for (Map.Entry<String, byte[]> file : files.entrySet()) {
+                ZipEntry entry = zipFile.getEntry(file.getKey());
+                assertEquals(ZipEntry.STORED, entry.getMethod());
+                assertArrayEquals(file.getValue(), zipFile.getInputStream(entry).readAllBytes());
+            }
+        }
+        try (ZipDirectory directory = ZipDirectory.open(zip)) {
+            assertEquals(files.size(), directory.entries().size());
+        }
+    }
+
+    @Test
+    void anyRangeMatchesTheWholeArchive() throws IOException {
+        StoredZipLayout layout = StoredZipLayout.of(manifest(), MODIFIED);
+        byte[] archive = assemble(layout, 0, layout.length());
+        Random random = new Random(1);
+        for (int i = 0; i < 500; i++) {
+            int start = random.nextInt(archive.length);
+            int length = 1 + random.nextInt(archive.length - start);
+            assertArrayEquals(Arrays.copyOfRange(archive, start, start + length), assemble(layout, start, length),
+                    "bytes " + start + "+" + length);
+        }
+        for (int start = 0; start < archive.length; start++) {
+            assertArrayEquals(Arrays.copyOfRange(archive, start, start + 1), assemble(layout, start, 1));
+        }
+    }
+
+    @Test
+    void rangesAreClampedToTheArchive() {
+        StoredZipLayout layout = StoredZipLayout.of(manifest(), MODIFIED);
+        long length = layout.length();
+        assertEquals(10, sectionLength(layout.sections(length - 10, 1_000)));
+        assertTrue(layout.sections(length, 10).isEmpty());
+    }
+
+    @Test
+    void entryDataIsReferencedNotCopied() {
+        StoredZipLayout layout = StoredZipLayout.of(manifest(), MODIFIED);
+        for (StoredZipLayout.Section section : layout.sections(0, layout.length())) {
+            if (section.entry() != null) {
+                assertNull(section.bytes());
+            }
+        }
+    }
+
+    @Test
+    void anEmptyManifestIsAnEmptyZip() throws IOException {
+        StoredZipLayout layout = StoredZipLayout.of(PackManifest.create("mods", 1, List.of()), MODIFIED);
+        Path zip = Files.write(dir.resolve("empty.zip"), assemble(layout, 0, layout.length()));
+        try (ZipFile zipFile = new ZipFile(zip.toFile())) {
+            assertEquals(0, zipFile.size());
+        }
+    }
+
+    private PackManifest manifest() {
+        List<PackManifest.Entry> entries = new ArrayList<>();
+        entries.add(entry("mods/a.jar", random(70_000, 2)));
+        entries.add(entry("mods/empty.txt", new byte[0]));
+        entries.add(entry("config/caf\u00e9.toml", "key = value\n".getBytes(StandardCharsets.UTF_8)));
+        entries.add(entry("mods/b.jar", random(3_000, 3)));
+        return PackManifest.create("mods", 1, entries);
+    }
+
+    private PackManifest.Entry entry(String path, byte[] data) {
+        files.put(path, data);
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        return new PackManifest.Entry(path, data.length, "0".repeat(64), crc.getValue(), null);
+    }
+
+    private byte[] assemble(StoredZipLayout layout, long start, long length) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (StoredZipLayout.Section section : layout.sections(start, length)) {
+            if (section.bytes() != null) {
+                assertEquals(section.bytes().length, section.length());
+                out.writeBytes(section.bytes());
+            } else {
+                byte[] data = files.get(section.entry().path());
+                out.write(data, (int) section.position(), (int) section.length());
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static long sectionLength(List<StoredZipLayout.Section> sections) {
+        long length = 0;
+        for (StoredZipLayout.Section section : sections) {
+            length += section.length();
+        }
+        return length;
+    }
+
+    private static byte[] random(int length, long seed) {
+        byte[] bytes = new byte[length];
+        new Random(seed).nextBytes(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,167 @@
+package com.scs.core;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ZipDirectoryTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void readsStoredAndDeflatedEntries() throws IOException, DataFormatException {
+        byte[] stored = random(5_000, 1);
+        byte[] deflated = "key = value\n".repeat(500).getBytes(StandardCharsets.UTF_8);
+        Path zip = dir.resolve("pack.zip");
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(zip))) {
+            out.setComment("a comment that moves the end record");
+            putStored(out, "mods/a.jar", stored);
+            out.putNextEntry(new ZipEntry("config/b.toml"));
+            out.write(deflated);
+            out.closeEntry();
+        }
+
+        try (ZipDirectory directory = ZipDirectory.open(zip)) {
+            assertEquals(2, directory.entries().size());
+            assertNull(directory.get("missing"));
+
+            ZipDirectory.Entry a = directory.get("mods/a.jar");
+            assertNotNull(a);
+            assertEquals(0, a.method());
+            assertEquals(stored.length, a.size());
+            assertEquals(stored.length, a.compressedSize());
+            assertEquals(crc(stored), a.crc());
+            assertTrue(a.isCopyable());
+            assertArrayEquals(stored, rawData(directory, a));
+
+            ZipDirectory.Entry b = directory.get("config/b.toml");
+            assertEquals(8, b.method());
+            assertEquals(deflated.length, b.size());
+            assertTrue(b.compressedSize() < b.size());
+            assertEquals(crc(deflated), b.crc());
+            assertArrayEquals(deflated, inflate(rawData(directory, b), deflated.length));
+        }
+    }
+
+    @Test
+    void readsTheZip64EndRecord() throws IOException {
+        int count = 0xFFFF + 10;
+        Path zip = dir.resolve("many.zip");
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(zip))) {
+            for (int i = 0; i < count; i++) {
+                putStored(out, "f" + i, new byte[0]);
+            }
+        }
+        try (ZipDirectory directory = ZipDirectory.open(zip)) {
+            assertEquals(count, directory.entries().size());
+            assertEquals(0, directory.get("f" + (count - 1)).size());
+        }
+    }
+
+    @Test
+    void notAZipIsRejected() throws IOException {
+        Path file = Files.write(dir.resolve("plain.zip"), random(1_000, 2));
+        assertThrows(IOException.class, () -> ZipDirectory.open(file));
+        Path tiny = Files.write(dir.resolve("tiny.zip"), new byte[5]);
+        assertThrows(IOException.class, () -> ZipDirectory.open(tiny));
+    }
+
+    @Test
+    void truncatedZipIsRejected() throws IOException {
+        Path zip = dir.resolve("pack.zip");
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(zip))) {
+            putStored(out, "a", random(1_000, 3));
+        }
+        byte[] bytes = Files.readAllBytes(zip);
+        Path truncated = Files.write(dir.resolve("truncated.zip"), Arrays.copyOf(bytes, bytes.length - 10));
+        assertThrows(IOException.class, () -> ZipDirectory.open(truncated));
+    }
+
+    @Test
+    void otherMethodsAreNotCopyable() throws IOException {
+        Path zip = dir.resolve("pack.zip");
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(zip))) {
+            putStored(out, "a", random(100, 4));
+        }
+        // Rewrite the method in the central directory header to 12 (bzip2).
+        byte[] bytes = Files.readAllBytes(zip);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i + 4 <= bytes.length; i++) {
+            if (buffer.getInt(i) == 0x02014b50) {
+                buffer.putShort(i + 10, (short) 12);
+            }
+        }
+        Files.write(zip, bytes);
+        try (ZipDirectory directory = ZipDirectory.open(zip)) {
+            assertFalse(directory.get("a").isCopyable());
+        }
+    }
+
+    private static void putStored(ZipOutputStream out, String name, byte[] data) throws IOException {
+        ZipEntry entry = new ZipEntry(name);
+        entry.setMethod(ZipEntry.STORED);
+        entry.setSize(data.length);
+        entry.setCompressedSize(data.length);
+        entry.setCrc(crc(data));
+        out.putNextEntry(entry);
+        out.write(data);
+        out.closeEntry();
+    }
+
+    private static byte[] rawData(ZipDirectory directory, ZipDirectory.Entry entry) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) entry.compressedSize());
+        long offset = directory.dataOffset(entry);
+        while (buffer.hasRemaining()) {
+            if (directory.channel().read(buffer, offset + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of zip");
+            }
+        }
+        return buffer.array();
+    }
+
+    private static byte[] inflate(byte[] raw, int size) throws DataFormatException {
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(raw);
+            byte[] out = new byte[size];
+            int length = inflater.inflate(out);
+            assertEquals(size, length);
+            return out;
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static long crc(byte[] data) {
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        return crc.getValue();
+    }
+
+    private static byte[] random(int length, long seed) {
+        byte[] bytes = new byte[length];
+        new Random(seed).nextBytes(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,65 @@
+package com.scs.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class HttpRangeTest {
+
+    @Test
+    void openRangePastTheEndIsUnsatisfiable() {
+        List<HttpRange> ranges = HttpRange.parse("bytes=100-", 50);
+        assertTrue(ranges.isEmpty());
+    }
+
+    @Test
+    void rangeStartingPastTheEndIsSkipped() {
+        List<HttpRange> ranges = HttpRange.parse("bytes=100-200, 0-9", 50);
+        assertEquals(1, ranges.size());
+        assertRange(ranges.get(0), 0, 9);
+    }
+
+    @Test
+    void anyRangeOfAnEmptyFileIsUnsatisfiable() {
+        assertTrue(HttpRange.parse("bytes=0-", 0).isEmpty());
+        assertTrue(HttpRange.parse("bytes=-10", 0).isEmpty());
+    }
+
+    @Test
+    void endBeforeStartIsMalformed() {
+        assertNull(HttpRange.parse("bytes=20-10", 50));
+    }
+
+    @Test
+    void endIsClampedToTheFile() {
+        List<HttpRange> ranges = HttpRange.parse("bytes=40-99", 50);
+        assertEquals(1, ranges.size());
+        assertRange(ranges.get(0), 40, 49);
+    }
+
+    @Test
+    void overlappingAndAdjacentRangesAreMerged() {
+        List<HttpRange> ranges = HttpRange.parse("bytes=20-29, 0-9, 5-14, 15-17, -5", 50);
+        assertEquals(3, ranges.size());
+        assertRange(ranges.get(0), 0, 17);
+        assertRange(ranges.get(1), 20, 29);
+        assertRange(ranges.get(2), 45, 49);
+    }
+
+    @Test
+    void tooManyRangesServeTheFullFile() {
+        StringBuilder header = new StringBuilder("bytes=0-0");
+        for (int i = 1; i <= 32; i++) {
+            header.append(", ").append(i * 2).append('-').append(i * 2);
+        }
+        assertNull(HttpRange.parse(header.toString(), 1000));
+    }
+
+    private static void assertRange(HttpRange range, long start, long end) {
+        assertEquals(start, range.start());
+        assertEquals(end, range.end());
+    }
+}